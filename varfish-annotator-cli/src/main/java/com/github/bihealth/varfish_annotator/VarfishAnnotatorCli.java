@@ -6,6 +6,10 @@ import com.github.bihealth.varfish_annotator.annotate.AnnotateArgs;
 import com.github.bihealth.varfish_annotator.annotate.AnnotateVcf;
 import com.github.bihealth.varfish_annotator.annotate_svs.AnnotateSvsArgs;
 import com.github.bihealth.varfish_annotator.annotate_svs.AnnotateSvsVcf;
+import com.github.bihealth.varfish_annotator.build_snv_table.BuildSnvTable;
+import com.github.bihealth.varfish_annotator.build_snv_table.BuildSnvTableArgs;
+import com.github.bihealth.varfish_annotator.convert_transcripts.ConvertTranscripts;
+import com.github.bihealth.varfish_annotator.convert_transcripts.ConvertTranscriptsArgs;
 import com.github.bihealth.varfish_annotator.dbstats.DbStats;
 import com.github.bihealth.varfish_annotator.dbstats.DbStatsArgs;
 import com.github.bihealth.varfish_annotator.init_db.InitDb;
@@ -18,6 +22,8 @@ public class VarfishAnnotatorCli {
     final AnnotateArgs annotate = new AnnotateArgs();
     final AnnotateSvsArgs annotateSvs = new AnnotateSvsArgs();
     final DbStatsArgs dbStats = new DbStatsArgs();
+    final ConvertTranscriptsArgs convertTranscripts = new ConvertTranscriptsArgs();
+    final BuildSnvTableArgs buildSnvTable = new BuildSnvTableArgs();
 
     final JCommander jc =
         JCommander.newBuilder()
@@ -25,6 +31,8 @@ public class VarfishAnnotatorCli {
             .addCommand("annotate", annotate)
             .addCommand("annotate-svs", annotateSvs)
             .addCommand("db-stats", dbStats)
+            .addCommand("convert-transcripts", convertTranscripts)
+            .addCommand("build-snv-table", buildSnvTable)
             .build();
 
     if ((args == null || args.length == 0)) {
@@ -80,6 +88,20 @@ public class VarfishAnnotatorCli {
           new DbStats(dbStats).run();
         }
         break;
+      case "convert-transcripts":
+        if (convertTranscripts.isHelp()) {
+          jc.usage("convert-transcripts");
+        } else {
+          new ConvertTranscripts(convertTranscripts).run();
+        }
+        break;
+      case "build-snv-table":
+        if (buildSnvTable.isHelp()) {
+          jc.usage("build-snv-table");
+        } else {
+          new BuildSnvTable(buildSnvTable).run();
+        }
+        break;
       default:
         System.err.println("Unknown command: " + cmd);
         System.exit(1);
@@ -0,0 +1,140 @@
+package com.github.bihealth.varfish_annotator.annotate;
+
+import com.github.bihealth.varfish_annotator.VarfishAnnotatorException;
+import com.github.bihealth.varfish_annotator.utils.VariantDescription;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Annotation of one alternative allele that does not depend on the samples.
+ *
+ * <p>This is everything that {@code annotate} computes from Jannovar and the database for an
+ * allele, such that it can be kept in the {@link
+ * com.github.bihealth.varfish_annotator.utils.AnnotationCache}.
+ */
+final class AlleleAnnotation {
+
+  /** Version of the serialization format, part of the annotation cache fingerprint. */
+  static final int FORMAT_VERSION = 2;
+
+  /** Number of columns per gene, seven each for RefSeq and ENSEMBL. */
+  static final int NUM_GENE_COLUMNS = 14;
+
+  /** The normalized variant. */
+  private final VariantDescription normalizedVar;
+
+  /** Variant type, one of "snv", "mnv", "indel". */
+  private final String varType;
+
+  /** Columns for ClinVar, ExAC, Thousand Genomes, gnomAD exomes and genomes. */
+  private final List<String> dbColumns;
+
+  /** RefSeq and ENSEMBL columns for each overlapping gene, empty for intergenic variants. */
+  private final List<List<String>> geneColumns;
+
+  /** Constructor. */
+  AlleleAnnotation(
+      VariantDescription normalizedVar,
+      String varType,
+      List<String> dbColumns,
+      List<List<String>> geneColumns) {
+    this.normalizedVar = normalizedVar;
+    this.varType = varType;
+    this.dbColumns = dbColumns;
+    this.geneColumns = geneColumns;
+  }
+
+  public VariantDescription getNormalizedVar() {
+    return normalizedVar;
+  }
+
+  public String getVarType() {
+    return varType;
+  }
+
+  public List<String> getDbColumns() {
+    return dbColumns;
+  }
+
+  public List<List<String>> getGeneColumns() {
+    return geneColumns;
+  }
+
+  /** Serialize for storing in the cache. */
+  byte[] toBytes() throws VarfishAnnotatorException {
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream(512);
+    try (DataOutputStream out = new DataOutputStream(bytes)) {
+      writeString(out, normalizedVar.getChrom());
+      out.writeInt(normalizedVar.getPos());
+      writeString(out, normalizedVar.getRef());
+      writeString(out, normalizedVar.getAlt());
+      writeString(out, varType);
+      writeStrings(out, dbColumns);
+      out.writeInt(geneColumns.size());
+      for (List<String> columns : geneColumns) {
+        writeStrings(out, columns);
+      }
+    } catch (IOException e) {
+      throw new VarfishAnnotatorException("Problem serializing allele annotation", e);
+    }
+    return bytes.toByteArray();
+  }
+
+  /** Deserialize from the cache. */
+  static AlleleAnnotation fromBytes(byte[] data) throws VarfishAnnotatorException {
+    try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data))) {
+      final VariantDescription normalizedVar =
+          new VariantDescription(readString(in), in.readInt(), readString(in), readString(in));
+      final String varType = readString(in);
+      final List<String> dbColumns = readStrings(in);
+      final int numGenes = in.readInt();
+      final List<List<String>> geneColumns = new ArrayList<>(numGenes);
+      for (int i = 0; i < numGenes; ++i) {
+        geneColumns.add(readStrings(in));
+      }
+      return new AlleleAnnotation(normalizedVar, varType, dbColumns, geneColumns);
+    } catch (IOException e) {
+      throw new VarfishAnnotatorException("Problem deserializing allele annotation", e);
+    }
+  }
+
+  private static void writeStrings(DataOutputStream out, List<String> values) throws IOException {
+    out.writeInt(values.size());
+    for (String value : values) {
+      writeString(out, value);
+    }
+  }
+
+  private static List<String> readStrings(DataInputStream in) throws IOException {
+    final int size = in.readInt();
+    final List<String> result = new ArrayList<>(size);
+    for (int i = 0; i < size; ++i) {
+      result.add(readString(in));
+    }
+    return result;
+  }
+
+  /**
+   * Write {@code value} as length-prefixed UTF-8.
+   *
+   * <p>Unlike {@link DataOutputStream#writeUTF(String)}, this is not limited to 64 KiB, such that
+   * long alleles can be cached.
+   */
+  private static void writeString(DataOutputStream out, String value) throws IOException {
+    final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  private static String readString(DataInputStream in) throws IOException {
+    final byte[] bytes = new byte[in.readInt()];
+    in.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+}
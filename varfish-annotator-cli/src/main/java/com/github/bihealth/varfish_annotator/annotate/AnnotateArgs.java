@@ -83,11 +83,129 @@ public final class AnnotateArgs {
       required = true)
   private String outputDbInfos;
 
+  @Parameter(
+      names = "--output-format",
+      description =
+          "Format of the genotypes file, one of 'tsv' and 'pgcopy' (PostgreSQL binary COPY "
+              + "format)")
+  private String outputFormat = "tsv";
+
   @Parameter(
       names = "--contig-regex",
       description = "Regular expression to use for selection of contigs")
   private String contigRegex = "^(chr)?(\\d+|X|Y|M|MT)$";
 
+  @Parameter(
+      names = "--threads",
+      description =
+          "Number of worker threads; values larger than 1 enable parallel annotation as selected "
+              + "by --parallel-mode")
+  private int threads = 1;
+
+  @Parameter(
+      names = "--parallel-mode",
+      description =
+          "Parallelization to use with more than one thread, one of 'auto', 'shards' (annotate "
+              + "sub-regions of indexed VCF file), 'pipeline' (stream records through annotation "
+              + "workers); 'auto' uses 'shards' if a tabix/tribble index is present")
+  private String parallelMode = "auto";
+
+  @Parameter(
+      names = "--db-lookup-mode",
+      description =
+          "How to look up frequencies and ClinVar membership, one of 'point' (one query per "
+              + "variant and table), 'merge-join' (scan tables along the coordinate-sorted input, "
+              + "only pays off for dense inputs such as WGS), 'binary-index' (frequencies from "
+              + "files written by "
+              + "'init-db --export-binary-index'), 'combined' (one query per variant in the table "
+              + "written by 'init-db --build-combined-table')")
+  private String dbLookupMode = "point";
+
+  @Parameter(
+      names = "--bloom-filters",
+      description =
+          "Skip database lookups of variants ruled out by the Bloom filters written by "
+              + "'init-db --build-bloom-filters'")
+  private boolean bloomFilters = false;
+
+  @Parameter(
+      names = "--db-connections",
+      description =
+          "Number of read-only database connections per annotation thread; with more than one, "
+              + "the lookups of each variant in the frequency tables and ClinVar run concurrently")
+  private int dbConnections = 1;
+
+  @Parameter(
+      names = "--clinvar-in-memory",
+      description = "Load the ClinVar variants into memory at startup instead of querying them")
+  private boolean clinvarInMemory = false;
+
+  @Parameter(
+      names = "--clinvar-memory-budget",
+      description =
+          "Memory budget for --clinvar-in-memory in MB, ClinVar is queried from the database if "
+              + "it does not fit")
+  private int clinvarMemoryBudget = 64;
+
+  @Parameter(
+      names = "--annotation-cache",
+      description =
+          "Path to file for caching allele annotations across runs; it is cleared automatically "
+              + "when the transcript or frequency databases change")
+  private String annotationCache = null;
+
+  @Parameter(
+      names = "--annotation-cache-size",
+      description = "Size of the annotation cache file in MB, at most 1536")
+  private int annotationCacheSize = 1024;
+
+  @Parameter(
+      names = "--transcript-memory-budget",
+      description =
+          "Load the transcripts of each chromosome on first use and keep at most this many MB "
+              + "of them for RefSeq and ENSEMBL together; requires files written by "
+              + "convert-transcripts, 0 loads all transcripts at startup")
+  private int transcriptMemoryBudget = 0;
+
+  @Parameter(
+      names = "--transcript-allowlist",
+      description =
+          "Path to file with one transcript accession per line, e.g. MANE Select; only these "
+              + "transcripts are used for annotation, versions are ignored")
+  private String transcriptAllowlist;
+
+  @Parameter(
+      names = "--coding-transcripts-only",
+      description = "Use only protein-coding transcripts for annotation")
+  private boolean codingTranscriptsOnly = false;
+
+  @Parameter(
+      names = "--transcript-sweep",
+      description =
+          "Annotate variants within transcripts using only the transcripts near the current "
+              + "position; for coordinate-sorted input, falls back to all transcripts otherwise")
+  private boolean transcriptSweep = false;
+
+  @Parameter(
+      names = "--intergenic-fast-path",
+      description =
+          "Reuse Jannovar's intergenic annotation for variants far away from all transcripts")
+  private boolean intergenicFastPath = false;
+
+  @Parameter(
+      names = "--prune-transcripts",
+      description =
+          "Leave out transcripts in whose introns a variant lies deep if their annotation cannot "
+              + "be selected for the output, saving Jannovar annotations and HGVS changes")
+  private boolean pruneTranscripts = false;
+
+  @Parameter(
+      names = "--snv-table",
+      description =
+          "Path to file written by build-snv-table for the same transcript files, used instead of "
+              + "Jannovar for SNVs in exons and splice regions")
+  private String snvTable;
+
   public boolean isHelp() {
     return help;
   }
@@ -140,6 +258,10 @@ public final class AnnotateArgs {
     return outputGts;
   }
 
+  public String getOutputFormat() {
+    return outputFormat;
+  }
+
   public String getContigRegex() {
     return contigRegex;
   }
@@ -148,6 +270,70 @@ public final class AnnotateArgs {
     return outputDbInfos;
   }
 
+  public int getThreads() {
+    return threads;
+  }
+
+  public String getParallelMode() {
+    return parallelMode;
+  }
+
+  public String getDbLookupMode() {
+    return dbLookupMode;
+  }
+
+  public boolean isBloomFilters() {
+    return bloomFilters;
+  }
+
+  public int getDbConnections() {
+    return dbConnections;
+  }
+
+  public boolean isClinvarInMemory() {
+    return clinvarInMemory;
+  }
+
+  public int getClinvarMemoryBudget() {
+    return clinvarMemoryBudget;
+  }
+
+  public String getAnnotationCache() {
+    return annotationCache;
+  }
+
+  public int getAnnotationCacheSize() {
+    return annotationCacheSize;
+  }
+
+  public int getTranscriptMemoryBudget() {
+    return transcriptMemoryBudget;
+  }
+
+  public String getTranscriptAllowlist() {
+    return transcriptAllowlist;
+  }
+
+  public boolean isCodingTranscriptsOnly() {
+    return codingTranscriptsOnly;
+  }
+
+  public boolean isTranscriptSweep() {
+    return transcriptSweep;
+  }
+
+  public boolean isIntergenicFastPath() {
+    return intergenicFastPath;
+  }
+
+  public boolean isPruneTranscripts() {
+    return pruneTranscripts;
+  }
+
+  public String getSnvTable() {
+    return snvTable;
+  }
+
   @Override
   public String toString() {
     return "AnnotateArgs{"
@@ -190,9 +376,49 @@ public final class AnnotateArgs {
         + ", outputDbInfos='"
         + outputDbInfos
         + '\''
+        + ", outputFormat='"
+        + outputFormat
+        + '\''
         + ", contigRegex='"
         + contigRegex
         + '\''
+        + ", threads="
+        + threads
+        + ", parallelMode='"
+        + parallelMode
+        + '\''
+        + ", dbLookupMode='"
+        + dbLookupMode
+        + '\''
+        + ", bloomFilters="
+        + bloomFilters
+        + ", dbConnections="
+        + dbConnections
+        + ", clinvarInMemory="
+        + clinvarInMemory
+        + ", clinvarMemoryBudget="
+        + clinvarMemoryBudget
+        + ", annotationCache='"
+        + annotationCache
+        + '\''
+        + ", annotationCacheSize="
+        + annotationCacheSize
+        + ", transcriptMemoryBudget="
+        + transcriptMemoryBudget
+        + ", transcriptAllowlist='"
+        + transcriptAllowlist
+        + '\''
+        + ", codingTranscriptsOnly="
+        + codingTranscriptsOnly
+        + ", transcriptSweep="
+        + transcriptSweep
+        + ", intergenicFastPath="
+        + intergenicFastPath
+        + ", pruneTranscripts="
+        + pruneTranscripts
+        + ", snvTable='"
+        + snvTable
+        + '\''
         + '}';
   }
 }
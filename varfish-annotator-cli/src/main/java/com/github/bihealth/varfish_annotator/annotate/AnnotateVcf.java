@@ -3,46 +3,62 @@ package com.github.bihealth.varfish_annotator.annotate;
 import com.github.bihealth.varfish_annotator.VarfishAnnotatorException;
 import com.github.bihealth.varfish_annotator.checks.IncompatibleVcfException;
 import com.github.bihealth.varfish_annotator.checks.VcfCompatibilityChecker;
+import com.github.bihealth.varfish_annotator.data.EagerTranscriptSource;
 import com.github.bihealth.varfish_annotator.data.GenomeVersion;
+import com.github.bihealth.varfish_annotator.data.LazyTranscriptSource;
+import com.github.bihealth.varfish_annotator.data.PgCopyColumns;
+import com.github.bihealth.varfish_annotator.data.SnvEffectTable;
+import com.github.bihealth.varfish_annotator.data.TranscriptDatabase;
+import com.github.bihealth.varfish_annotator.data.TranscriptFilter;
+import com.github.bihealth.varfish_annotator.data.TranscriptSource;
 import com.github.bihealth.varfish_annotator.data.VcfConstants;
+import com.github.bihealth.varfish_annotator.db.BinaryFrequencyIndex;
+import com.github.bihealth.varfish_annotator.db.BinaryIndexFrequencyLookup;
+import com.github.bihealth.varfish_annotator.db.BloomFilterFrequencyLookup;
+import com.github.bihealth.varfish_annotator.db.ClinvarPresenceSet;
+import com.github.bihealth.varfish_annotator.db.ClinvarPresenceSetFrequencyLookup;
+import com.github.bihealth.varfish_annotator.db.CombinedFrequencyLookup;
+import com.github.bihealth.varfish_annotator.db.ConcurrentFrequencyLookup;
 import com.github.bihealth.varfish_annotator.db.DbInfo;
 import com.github.bihealth.varfish_annotator.db.DbInfoWriterHelper;
+import com.github.bihealth.varfish_annotator.db.FrequencyLookup;
+import com.github.bihealth.varfish_annotator.db.FrequencyLookupResult;
+import com.github.bihealth.varfish_annotator.db.MergeJoinFrequencyLookup;
+import com.github.bihealth.varfish_annotator.db.PointQueryFrequencyLookup;
+import com.github.bihealth.varfish_annotator.db.VariantBloomFilter;
+import com.github.bihealth.varfish_annotator.init_db.BloomFilterBuilder;
+import com.github.bihealth.varfish_annotator.init_db.CombinedTableBuilder;
 import com.github.bihealth.varfish_annotator.utils.*;
 import com.google.common.base.Joiner;
 import com.google.common.collect.ImmutableList;
-import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
-import de.charite.compbio.jannovar.annotation.Annotation;
 import de.charite.compbio.jannovar.annotation.VariantAnnotations;
-import de.charite.compbio.jannovar.annotation.VariantEffect;
 import de.charite.compbio.jannovar.data.JannovarData;
-import de.charite.compbio.jannovar.data.JannovarDataSerializer;
 import de.charite.compbio.jannovar.data.ReferenceDictionary;
-import de.charite.compbio.jannovar.data.SerializationException;
-import de.charite.compbio.jannovar.hgvs.AminoAcidCode;
 import de.charite.compbio.jannovar.htsjdk.InvalidCoordinatesException;
 import de.charite.compbio.jannovar.htsjdk.VariantContextAnnotator;
-import de.charite.compbio.jannovar.htsjdk.VariantContextAnnotator.Options;
 import de.charite.compbio.jannovar.pedigree.PedFileContents;
 import de.charite.compbio.jannovar.pedigree.PedFileReader;
 import de.charite.compbio.jannovar.pedigree.PedParseException;
 import de.charite.compbio.jannovar.pedigree.Pedigree;
-import de.charite.compbio.jannovar.reference.GenomeInterval;
-import de.charite.compbio.jannovar.reference.Strand;
-import de.charite.compbio.jannovar.reference.TranscriptModel;
-import htsjdk.variant.variantcontext.Allele;
+import htsjdk.samtools.util.CloseableIterator;
+import htsjdk.tribble.index.Index;
 import htsjdk.variant.variantcontext.Genotype;
 import htsjdk.variant.variantcontext.VariantContext;
 import htsjdk.variant.vcf.VCFFileReader;
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.sql.Connection;
 import java.sql.DriverManager;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -50,8 +66,12 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
-import java.util.TreeSet;
-import java.util.stream.Collectors;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /** Implementation of the <tt>annotate</tt> command. */
 public final class AnnotateVcf {
@@ -62,10 +82,62 @@ public final class AnnotateVcf {
   /** Pedigree to use for annotation. */
   private Pedigree pedigree;
 
+  /** Binary frequency indices by table prefix, used with {@code --db-lookup-mode binary-index}. */
+  private final Map<String, BinaryFrequencyIndex> binaryIndices;
+
+  /** Bloom filters by table name, used with {@code --bloom-filters}. */
+  private final Map<String, VariantBloomFilter> bloomFilters;
+
+  /** Whether the combined table is up to date, used with {@code --db-lookup-mode combined}. */
+  private boolean combinedTableUpToDate;
+
+  /** Preloaded ClinVar variants, used with {@code --clinvar-in-memory} if within budget. */
+  private ClinvarPresenceSet clinvarSet;
+
+  /** Cache of allele annotations from previous runs, used with {@code --annotation-cache}. */
+  private AnnotationCache annotationCache;
+
+  /** Intergenic annotations learned from Jannovar, used with {@code --intergenic-fast-path}. */
+  private IntergenicCache intergenicCache;
+
+  /** Precomputed annotation of SNVs in exons and splice regions, used with {@code --snv-table}. */
+  private SnvEffectTable snvTable;
+
+  /** Number of records passed at once to the workers in pipeline mode. */
+  private static final int PIPELINE_BATCH_SIZE = 256;
+
+  /** Number of batches in the queues of the pipeline mode per worker thread. */
+  private static final int PIPELINE_BATCHES_PER_THREAD = 4;
+
+  /** Quoted keys of the genotypes JSON expression. */
+  private static final String GT_KEY = tripleQuote("gt");
+
+  private static final String AD_KEY = tripleQuote("ad");
+
+  private static final String DP_KEY = tripleQuote("dp");
+
+  private static final String GQ_KEY = tripleQuote("gq");
+
+  /** Keys of the genotypes JSON for the PostgreSQL binary COPY format. */
+  private static final String GT_JSON_KEY = StringUtils.jsonQuote("gt");
+
+  private static final String AD_JSON_KEY = StringUtils.jsonQuote("ad");
+
+  private static final String DP_JSON_KEY = StringUtils.jsonQuote("dp");
+
+  private static final String GQ_JSON_KEY = StringUtils.jsonQuote("gq");
+
   /** Construct with the given configuration. */
   public AnnotateVcf(AnnotateArgs args) {
     this.args = args;
     this.pedigree = null;
+    this.binaryIndices = new HashMap<>();
+    this.bloomFilters = new TreeMap<>();
+    this.combinedTableUpToDate = false;
+    this.clinvarSet = null;
+    this.annotationCache = null;
+    this.intergenicCache = null;
+    this.snvTable = null;
   }
 
   /** Execute the command. */
@@ -76,9 +148,43 @@ public final class AnnotateVcf {
       System.exit(1);
     }
 
-    String dbPath = args.getDbPath();
-    if (dbPath.endsWith(".h2.db")) {
-      dbPath = dbPath.substring(0, dbPath.length() - ".h2.db".length());
+    if (args.getThreads() < 1) {
+      System.err.println("Invalid number of threads: " + args.getThreads());
+      System.exit(1);
+    }
+    if (args.getTranscriptMemoryBudget() < 0) {
+      System.err.println("Invalid transcript memory budget: " + args.getTranscriptMemoryBudget());
+      System.exit(1);
+    }
+    if (args.getDbConnections() < 1) {
+      System.err.println("Invalid number of database connections: " + args.getDbConnections());
+      System.exit(1);
+    }
+    if (!ImmutableList.of("point", "merge-join", "binary-index", "combined")
+        .contains(args.getDbLookupMode())) {
+      System.err.println(
+          "Invalid DB lookup mode: "
+              + args.getDbLookupMode()
+              + ", not one of point, merge-join, binary-index, combined");
+      System.exit(1);
+    }
+    if (!ImmutableList.of("tsv", "pgcopy").contains(args.getOutputFormat())) {
+      System.err.println(
+          "Invalid output format: " + args.getOutputFormat() + ", not one of tsv, pgcopy");
+      System.exit(1);
+    }
+    if (isPgCopy()
+        && !(StringUtils.isIntegerOrMissing(args.getCaseId())
+            && StringUtils.isIntegerOrMissing(args.getSetId()))) {
+      System.err.println("Case and set ID must be integers for output format pgcopy");
+      System.exit(1);
+    }
+    if (!ImmutableList.of("auto", "shards", "pipeline").contains(args.getParallelMode())) {
+      System.err.println(
+          "Invalid parallel mode: "
+              + args.getParallelMode()
+              + ", not one of auto, shards, pipeline");
+      System.exit(1);
     }
 
     if (args.getInputPed() != null) {
@@ -93,32 +199,59 @@ public final class AnnotateVcf {
         System.exit(1);
       }
     }
-    try (Connection conn =
-            DriverManager.getConnection(
-                "jdbc:h2:"
-                    + dbPath
-                    + ";TRACE_LEVEL_FILE=0;MV_STORE=FALSE;MVCC=FALSE;ACCESS_MODE_DATA=r"
-                    + ";DB_CLOSE_ON_EXIT=FALSE",
-                "sa",
-                "");
+    try (Connection conn = openDatabaseConnection();
         VCFFileReader reader = new VCFFileReader(new File(args.getInputVcf()));
-        OutputStream gtsStream = Files.newOutputStream(Paths.get(args.getOutputGts()));
-        OutputStream dbInfoStream = Files.newOutputStream(Paths.get(args.getOutputDbInfos()));
-        Writer gtWriter = GzipUtil.maybeOpenGzipOutputStream(gtsStream, args.getOutputGts());
-        Writer dbInfoWriter =
-            GzipUtil.maybeOpenGzipOutputStream(dbInfoStream, args.getOutputDbInfos());
-        BufferedWriter dbInfoBufWriter = new BufferedWriter(dbInfoWriter); ) {
+        OutputStream gtsStream = new AsyncFileOutputStream(Paths.get(args.getOutputGts()));
+        OutputStream gtOut =
+            GzipUtil.maybeBgzfOutputStream(
+                gtsStream, args.getOutputGts(), args.getThreads(), !isPgCopy()); ) {
       new VcfCompatibilityChecker(reader).check(args.getRelease());
       new DatabaseSelfTest(conn)
           .selfTest(args.getRelease(), args.isSelfTestChr1Only(), args.isSelfTestChr22Only());
 
+      if ("binary-index".equals(args.getDbLookupMode())) {
+        openBinaryIndices(conn);
+      }
+      if ("combined".equals(args.getDbLookupMode())) {
+        combinedTableUpToDate = CombinedTableBuilder.isUpToDate(conn, args.getRelease());
+        if (!combinedTableUpToDate) {
+          System.err.println(
+              "Combined table is missing or out of date, querying source tables instead");
+        }
+      }
+      if (args.isBloomFilters()) {
+        loadBloomFilters(conn);
+      }
+      if (args.isClinvarInMemory()) {
+        loadClinvarSet(conn);
+      }
+      if (args.getAnnotationCache() != null) {
+        openAnnotationCache(conn);
+      }
+
       System.err.println("Deserializing Jannovar file...");
-      JannovarData refseqJvData = new JannovarDataSerializer(args.getRefseqSerPath()).load();
-      JannovarData ensemblJvData = new JannovarDataSerializer(args.getEnsemblSerPath()).load();
+      final List<TranscriptSource> transcriptSources = openTranscriptSources();
+      if (args.isIntergenicFastPath()) {
+        intergenicCache = new IntergenicCache(transcriptSources.get(0), transcriptSources.get(1));
+      }
+      if (args.getSnvTable() != null) {
+        openSnvTable();
+      }
       final VariantNormalizer normalizer = new VariantNormalizer(args.getRefPath());
-      annotateVcf(conn, reader, refseqJvData, ensemblJvData, normalizer, gtWriter);
+      final RowWriter gtWriter = openRowWriter(gtOut);
+      annotateVcf(
+          conn,
+          reader,
+          transcriptSources.get(0),
+          transcriptSources.get(1),
+          normalizer,
+          gtWriter);
+      gtWriter.finish();
+      reportBloomFilterStats();
+      reportAnnotationCacheStats();
+      reportTranscriptSourceStats(transcriptSources);
       new DbInfoWriterHelper()
-          .writeDbInfos(conn, dbInfoBufWriter, args.getRelease(), AnnotateVcf.class);
+          .writeDbInfos(conn, args.getOutputDbInfos(), args.getRelease(), AnnotateVcf.class);
     } catch (SQLException e) {
       System.err.println("Problem with database connection");
       e.printStackTrace();
@@ -127,10 +260,6 @@ public final class AnnotateVcf {
       System.err.println("Problem executing annotate");
       e.printStackTrace();
       System.exit(1);
-    } catch (SerializationException e) {
-      System.err.println("Problem deserializing Jannovar database");
-      e.printStackTrace();
-      System.exit(1);
     } catch (IOException e) {
       System.err.println("Problem opening output files database");
       e.printStackTrace();
@@ -143,16 +272,290 @@ public final class AnnotateVcf {
       System.err.println("Problem with database self-test: " + e.getMessage());
       e.printStackTrace();
       System.exit(1);
+    } finally {
+      closeBinaryIndices();
+      closeAnnotationCache();
+    }
+  }
+
+  /** Open the binary frequency indices next to the database, skipping missing or stale ones. */
+  private void openBinaryIndices(Connection conn) throws VarfishAnnotatorException {
+    for (String prefix : VcfConstants.FREQUENCY_PREFIXES) {
+      final File file = BinaryFrequencyIndex.getPath(args.getDbPath(), prefix);
+      if (!file.exists()) {
+        System.err.println("No binary index " + file + ", querying database for " + prefix);
+        continue;
+      }
+      final BinaryFrequencyIndex index;
+      try {
+        index = BinaryFrequencyIndex.open(file);
+      } catch (IOException e) {
+        throw new VarfishAnnotatorException("Problem opening binary index " + file, e);
+      }
+      if (!index.getRelease().equals(args.getRelease())) {
+        closeBinaryIndex(index);
+        throw new VarfishAnnotatorException(
+            "Binary index " + file + " is for release " + index.getRelease());
+      } else if (index.getTableRowCount()
+          != BloomFilterBuilder.countAllRows(conn, prefix + "_var")) {
+        System.err.println("Binary index " + file + " is out of date, querying database instead");
+        closeBinaryIndex(index);
+        continue;
+      }
+      binaryIndices.put(prefix, index);
+    }
+  }
+
+  /** Load the Bloom filters next to the database, skipping missing or stale ones. */
+  private void loadBloomFilters(Connection conn) throws VarfishAnnotatorException {
+    for (String table : BloomFilterBuilder.TABLES) {
+      final File file = VariantBloomFilter.getPath(args.getDbPath(), table);
+      if (!file.exists()) {
+        System.err.println("No Bloom filter " + file + ", querying database for " + table);
+        continue;
+      }
+      final VariantBloomFilter filter;
+      try {
+        filter = VariantBloomFilter.read(file);
+      } catch (IOException e) {
+        throw new VarfishAnnotatorException("Problem reading Bloom filter " + file, e);
+      }
+      if (!filter.getRelease().equals(args.getRelease())) {
+        throw new VarfishAnnotatorException(
+            "Bloom filter " + file + " is for release " + filter.getRelease());
+      } else if (filter.getTableRowCount() != BloomFilterBuilder.countAllRows(conn, table)) {
+        System.err.println("Bloom filter " + file + " is out of date, ignoring it");
+        continue;
+      }
+      bloomFilters.put(table, filter);
+    }
+  }
+
+  /** Load ClinVar variants into memory unless this would exceed the memory budget. */
+  private void loadClinvarSet(Connection conn) throws VarfishAnnotatorException {
+    System.err.println("Loading ClinVar variants into memory...");
+    final long maxBytes = args.getClinvarMemoryBudget() * 1024L * 1024L;
+    clinvarSet = ClinvarPresenceSet.load(conn, args.getRelease(), maxBytes);
+    if (clinvarSet == null) {
+      System.err.println(
+          "ClinVar table exceeds memory budget of "
+              + args.getClinvarMemoryBudget()
+              + " MB, querying database instead");
+    } else {
+      System.err.println("Loaded " + clinvarSet.size() + " ClinVar variants");
+    }
+  }
+
+  /**
+   * Open the annotation cache.
+   *
+   * <p>The cache is tagged with a fingerprint of the database versions from {@link
+   * DbInfoWriterHelper}, of the transcript databases and their filter, of the reference, and of
+   * the serialization format, such that it is cleared when any of them changes. If another process
+   * uses the cache, annotation runs without it.
+   */
+  private void openAnnotationCache(Connection conn) throws VarfishAnnotatorException {
+    final StringWriter dbInfos = new StringWriter();
+    try (BufferedWriter dbInfoWriter = new BufferedWriter(dbInfos)) {
+      new DbInfoWriterHelper()
+          .writeDbInfos(conn, dbInfoWriter, args.getRelease(), AnnotateVcf.class);
+    } catch (IOException e) {
+      throw new VarfishAnnotatorException("Problem building database versions", e);
+    }
+    final StringBuilder identity = new StringBuilder();
+    identity.append(args.getRelease()).append('\n').append(dbInfos).append('\n');
+    final List<String> paths =
+        Lists.newArrayList(args.getRefseqSerPath(), args.getEnsemblSerPath(), args.getRefPath());
+    if (args.getTranscriptAllowlist() != null) {
+      paths.add(args.getTranscriptAllowlist());
+    }
+    for (String path : paths) {
+      final File file = new File(path);
+      identity
+          .append(file.getAbsolutePath())
+          .append('\t')
+          .append(file.length())
+          .append('\t')
+          .append(file.lastModified())
+          .append('\n');
+    }
+    identity.append("codingTranscriptsOnly=").append(args.isCodingTranscriptsOnly()).append('\n');
+    identity.append("formatVersion=").append(AlleleAnnotation.FORMAT_VERSION).append('\n');
+    final long fingerprint;
+    try {
+      final byte[] digest =
+          MessageDigest.getInstance("SHA-256")
+              .digest(identity.toString().getBytes(StandardCharsets.UTF_8));
+      fingerprint = ByteBuffer.wrap(digest).getLong();
+    } catch (NoSuchAlgorithmException e) {
+      throw new VarfishAnnotatorException("Problem computing annotation cache fingerprint", e);
+    }
+
+    annotationCache =
+        AnnotationCache.open(
+            new File(args.getAnnotationCache()),
+            args.getAnnotationCacheSize() * 1024L * 1024L,
+            fingerprint);
+    if (annotationCache == null) {
+      System.err.println(
+          "Annotation cache " + args.getAnnotationCache() + " is in use, running without it");
+    }
+  }
+
+  /** Open the SNV effect table, running without it if it was built from other transcripts. */
+  private void openSnvTable() throws VarfishAnnotatorException {
+    final SnvEffectTable table = SnvEffectTable.open(new File(args.getSnvTable()));
+    final String identity =
+        SnvEffectTable.buildIdentity(
+            args.getRelease(),
+            Lists.newArrayList(
+                args.getRefseqSerPath(), args.getEnsemblSerPath(), args.getTranscriptAllowlist()),
+            args.isCodingTranscriptsOnly());
+    if (identity.equals(table.getIdentity())) {
+      snvTable = table;
+    } else {
+      System.err.println(
+          "SNV effect table "
+              + args.getSnvTable()
+              + " was built for other transcripts or release, running without it");
+    }
+  }
+
+  /**
+   * Open the RefSeq and ENSEMBL transcript databases.
+   *
+   * <p>With a transcript memory budget and files written by {@code convert-transcripts}, the
+   * chromosomes are loaded on first use. Otherwise, all transcripts are loaded at once.
+   */
+  private List<TranscriptSource> openTranscriptSources() throws VarfishAnnotatorException {
+    final List<String> paths = ImmutableList.of(args.getRefseqSerPath(), args.getEnsemblSerPath());
+    final TranscriptFilter transcriptFilter =
+        TranscriptFilter.load(args.getTranscriptAllowlist(), args.isCodingTranscriptsOnly());
+    final List<TranscriptSource> result = new ArrayList<>();
+    if (args.getTranscriptMemoryBudget() > 0) {
+      boolean allConverted = true;
+      for (String path : paths) {
+        allConverted = allConverted && TranscriptDatabase.isTranscriptDatabase(new File(path));
+      }
+      if (allConverted) {
+        final long maxBytes = args.getTranscriptMemoryBudget() * 1024L * 1024L / paths.size();
+        for (String path : paths) {
+          result.add(
+              new LazyTranscriptSource(
+                  TranscriptDatabase.open(new File(path)), transcriptFilter, maxBytes));
+        }
+        return result;
+      }
+      System.err.println(
+          "Transcript files were not written by convert-transcripts, loading all transcripts");
+    }
+    for (JannovarData jvData : TranscriptDatabase.loadJannovarData(paths, transcriptFilter)) {
+      result.add(new EagerTranscriptSource(jvData));
+    }
+    return result;
+  }
+
+  /** Write out how many chromosomes were loaded on first use and dropped again. */
+  private static void reportTranscriptSourceStats(List<TranscriptSource> sources) {
+    for (TranscriptSource source : sources) {
+      if (source instanceof LazyTranscriptSource) {
+        final LazyTranscriptSource lazySource = (LazyTranscriptSource) source;
+        System.err.println(
+            "Transcripts: "
+                + lazySource.getNumLoads()
+                + " chromosomes loaded, "
+                + lazySource.getNumEvictions()
+                + " dropped");
+      }
+    }
+  }
+
+  /** Write out the hit rate of the annotation cache. */
+  private void reportAnnotationCacheStats() {
+    if (annotationCache != null) {
+      System.err.println(
+          "Annotation cache: "
+              + annotationCache.getNumHits()
+              + " of "
+              + annotationCache.getNumLookups()
+              + " alleles found");
+    }
+  }
+
+  /** Close the annotation cache, if any. */
+  private void closeAnnotationCache() {
+    if (annotationCache != null) {
+      try {
+        annotationCache.close();
+      } catch (VarfishAnnotatorException e) {
+        System.err.println("Problem closing annotation cache: " + e.getMessage());
+      }
+      annotationCache = null;
+    }
+  }
+
+  /** Write out how many lookups were skipped because of the Bloom filters. */
+  private void reportBloomFilterStats() {
+    for (Map.Entry<String, VariantBloomFilter> entry : bloomFilters.entrySet()) {
+      final VariantBloomFilter filter = entry.getValue();
+      System.err.println(
+          String.format(
+              "Bloom filter for %s: %d lookups, %d skipped, %d false positives "
+                  + "(observed false-positive rate %.4f)",
+              entry.getKey(),
+              filter.getNumQueries(),
+              filter.getNumSkipped(),
+              filter.getNumFalsePositives(),
+              filter.getObservedFpp()));
+    }
+  }
+
+  /** Close the binary frequency indices, ignoring errors. */
+  private void closeBinaryIndices() {
+    for (BinaryFrequencyIndex index : binaryIndices.values()) {
+      closeBinaryIndex(index);
+    }
+    binaryIndices.clear();
+  }
+
+  /** Close one binary frequency index, ignoring errors. */
+  private static void closeBinaryIndex(BinaryFrequencyIndex index) {
+    try {
+      index.close();
+    } catch (IOException e) {
+      // ignore, only used for reading
     }
   }
 
+  /**
+   * Open a read-only connection to the annotation database.
+   *
+   * <p>Each worker thread uses its own connection; H2 shares the opened database between them.
+   * With {@code --db-connections} larger than one, the database is opened in multi-threaded mode
+   * such that queries on different connections do not wait for each other.
+   */
+  private Connection openDatabaseConnection() throws SQLException {
+    String dbPath = args.getDbPath();
+    if (dbPath.endsWith(".h2.db")) {
+      dbPath = dbPath.substring(0, dbPath.length() - ".h2.db".length());
+    }
+    return DriverManager.getConnection(
+        "jdbc:h2:"
+            + dbPath
+            + ";TRACE_LEVEL_FILE=0;MV_STORE=FALSE;MVCC=FALSE;ACCESS_MODE_DATA=r"
+            + (args.getDbConnections() > 1 ? ";MULTI_THREADED=TRUE" : "")
+            + ";DB_CLOSE_ON_EXIT=FALSE",
+        "sa",
+        "");
+  }
+
   /**
    * Perform the variant annotation.
    *
    * @param conn Database connection for getting ExAC/ClinVar information from.
    * @param reader Reader for the input VCF file.
-   * @param refseqJv Deserialized RefSeq transcript database for Jannovar.
-   * @param ensemblJv Deserialized ENSEMBL transcript database for Jannovar.
+   * @param refseqSource Source of RefSeq transcripts for Jannovar.
+   * @param ensemblSource Source of ENSEMBL transcripts for Jannovar.
    * @param normalizer Helper for normalizing variants.
    * @param gtWriter Writer for variant call ("genotype") TSV file.
    * @throws VarfishAnnotatorException in case of problems
@@ -160,35 +563,327 @@ public final class AnnotateVcf {
   private void annotateVcf(
       Connection conn,
       VCFFileReader reader,
-      JannovarData refseqJv,
-      JannovarData ensemblJv,
+      TranscriptSource refseqSource,
+      TranscriptSource ensemblSource,
       VariantNormalizer normalizer,
-      Writer gtWriter)
+      RowWriter gtWriter)
       throws VarfishAnnotatorException {
     // Guess genome version.
     final GenomeVersion genomeVersion = new VcfCompatibilityChecker(reader).guessGenomeVersion();
 
     // Write out header.
     try {
-      gtWriter.append(Joiner.on("\t").join(VcfConstants.HEADERS_GT) + "\n");
+      gtWriter.writeHeader();
     } catch (IOException e) {
       throw new VarfishAnnotatorException("Could not write out headers", e);
     }
 
-    final VariantContextAnnotator refseqAnnotator =
-        new VariantContextAnnotator(
-            refseqJv.getRefDict(),
-            refseqJv.getChromosomes(),
-            new Options(false, AminoAcidCode.ONE_LETTER, false, false, false, false, false));
-    final VariantContextAnnotator ensemblAnnotator =
-        new VariantContextAnnotator(
-            ensemblJv.getRefDict(),
-            ensemblJv.getChromosomes(),
-            new Options(false, AminoAcidCode.ONE_LETTER, false, false, false, false, false));
+    // Annotate in parallel if more than one thread is requested.  Sub-regions of the file are
+    // annotated in parallel if an index is available, otherwise records are streamed through a
+    // pipeline of annotation workers.
+    if (args.getThreads() > 1) {
+      final Index index =
+          "pipeline".equals(args.getParallelMode())
+              ? null
+              : VcfShardPlanner.loadIndex(args.getInputVcf());
+      if (index != null) {
+        annotateVcfSharded(
+            index, reader, genomeVersion, refseqSource, ensemblSource, normalizer, gtWriter);
+      } else {
+        if ("shards".equals(args.getParallelMode())) {
+          System.err.println(
+              "No tabix (.tbi) or tribble (.idx) index found for "
+                  + args.getInputVcf()
+                  + ", falling back to pipeline mode");
+        }
+        annotateVcfPipelined(
+            reader, genomeVersion, refseqSource, ensemblSource, normalizer, gtWriter);
+      }
+      return;
+    }
+
+    final ContigAnnotators annotators =
+        new ContigAnnotators(
+            refseqSource, ensemblSource, args.isTranscriptSweep(), args.isPruneTranscripts());
+    final GenotypeMatrix genotypes = new GenotypeMatrix(pedigree, args.getRelease());
 
     // Collect names of skipped contigs.
     Set<String> skippedContigs = new HashSet<>();
 
+    try (FrequencyLookup lookup = openFrequencyLookup(conn)) {
+      String prevChr = null;
+      for (VariantContext ctx : reader) {
+        // Check whether contigs should be skipped.
+        if (skippedContigs.contains(ctx.getContig())) {
+          continue; // skip silently
+        } else if (!ctx.getContig().matches(args.getContigRegex())) {
+          System.err.println("Skipping contig " + ctx.getContig());
+          skippedContigs.add(ctx.getContig());
+          continue;
+        }
+
+        if (!ctx.getContig().equals(prevChr)) {
+          System.err.println("Now on contig " + ctx.getContig());
+        }
+        annotateVariantContext(
+            lookup,
+            genomeVersion,
+            annotators,
+            genotypes,
+            normalizer,
+            ctx,
+            gtWriter);
+        prevChr = ctx.getContig();
+      }
+    }
+  }
+
+  /**
+   * Perform the variant annotation of the indexed VCF file with multiple worker threads.
+   *
+   * <p>The file is split into {@link VcfShard}s using {@link VcfShardPlanner}. The shards are
+   * scheduled largest first and each worker writes to its own temporary file. The temporary files
+   * are appended to {@code gtWriter} in input order, such that the result is identical to the one
+   * from the single-threaded annotation.
+   *
+   * @param index The index of the input VCF file.
+   * @param reader Reader for the input VCF file.
+   * @param genomeVersion The genome version of the VCF file.
+   * @param refseqSource Source of RefSeq transcripts for Jannovar.
+   * @param ensemblSource Source of ENSEMBL transcripts for Jannovar.
+   * @param normalizer Helper for normalizing variants, shared by all threads.
+   * @param gtWriter Writer for variant call ("genotype") TSV file.
+   * @throws VarfishAnnotatorException in case of problems
+   */
+  private void annotateVcfSharded(
+      Index index,
+      VCFFileReader reader,
+      GenomeVersion genomeVersion,
+      TranscriptSource refseqSource,
+      TranscriptSource ensemblSource,
+      VariantNormalizer normalizer,
+      RowWriter gtWriter)
+      throws VarfishAnnotatorException {
+    final List<String> contigs = new ArrayList<>();
+    for (String contig : index.getSequenceNames()) {
+      if (contig.matches(args.getContigRegex())) {
+        contigs.add(contig);
+      } else {
+        System.err.println("Skipping contig " + contig);
+      }
+    }
+    final List<VcfShard> shards =
+        new VcfShardPlanner(index, reader.getFileHeader().getSequenceDictionary())
+            .planShards(contigs, args.getThreads());
+    System.err.println(
+        "Annotating " + shards.size() + " shards with " + args.getThreads() + " threads");
+
+    // Start with the heaviest shards such that no large shard is left to run at the end.
+    final List<VcfShard> shardsByWeight = new ArrayList<>(shards);
+    shardsByWeight.sort(Comparator.comparingLong(VcfShard::getWeight).reversed());
+
+    final ExecutorService executor = Executors.newFixedThreadPool(args.getThreads());
+    Path tmpDir = null;
+    try {
+      tmpDir = Files.createTempDirectory("varfish-annotator-shards");
+      final Map<Integer, Future<File>> futures = new HashMap<>();
+      for (VcfShard shard : shardsByWeight) {
+        final Path shardDir = tmpDir;
+        futures.put(
+            shard.getIndex(),
+            executor.submit(
+                () ->
+                    annotateShard(
+                        shard, shardDir, genomeVersion, refseqSource, ensemblSource, normalizer)));
+      }
+
+      // Append the shard outputs in input order while later shards are still being processed.
+      for (VcfShard shard : shards) {
+        final File shardFile = futures.get(shard.getIndex()).get();
+        appendFile(shardFile, gtWriter);
+        Files.delete(shardFile.toPath());
+      }
+    } catch (IOException e) {
+      throw new VarfishAnnotatorException("Problem with temporary shard files", e);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new VarfishAnnotatorException("Interrupted while annotating shards", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof VarfishAnnotatorException) {
+        throw (VarfishAnnotatorException) e.getCause();
+      } else {
+        throw new VarfishAnnotatorException("Problem annotating shard", e.getCause());
+      }
+    } finally {
+      executor.shutdownNow();
+      if (tmpDir != null) {
+        deleteShardFiles(tmpDir);
+      }
+    }
+  }
+
+  /**
+   * Annotate all records starting in {@code shard} into a temporary file.
+   *
+   * <p>Each call uses its own database connection, VCF reader, and annotators. Only the Jannovar
+   * transcript databases and the thread-safe normalizer are shared.
+   *
+   * @return The temporary file with the annotated records.
+   */
+  private File annotateShard(
+      VcfShard shard,
+      Path tmpDir,
+      GenomeVersion genomeVersion,
+      TranscriptSource refseqSource,
+      TranscriptSource ensemblSource,
+      VariantNormalizer normalizer)
+      throws VarfishAnnotatorException {
+    if (shard.getStart() == 1) {
+      System.err.println("Now on contig " + shard.getContig());
+    }
+    final File shardFile = tmpDir.resolve("shard-" + shard.getIndex() + ".tsv").toFile();
+    try (Connection conn = openDatabaseConnection();
+        FrequencyLookup lookup = openFrequencyLookup(conn);
+        VCFFileReader reader = new VCFFileReader(new File(args.getInputVcf()), true);
+        CloseableIterator<VariantContext> it =
+            reader.query(shard.getContig(), shard.getStart(), shard.getEnd());
+        OutputStream shardOut = new AsyncFileOutputStream(shardFile.toPath())) {
+      final RowWriter writer = openRowWriter(shardOut);
+      final ContigAnnotators annotators =
+          new ContigAnnotators(
+              refseqSource, ensemblSource, args.isTranscriptSweep(), args.isPruneTranscripts());
+      final GenotypeMatrix genotypes = new GenotypeMatrix(pedigree, args.getRelease());
+      while (it.hasNext()) {
+        final VariantContext ctx = it.next();
+        if (!shard.containsStart(ctx.getStart())) {
+          continue; // overlapping record from previous shard
+        }
+        annotateVariantContext(
+            lookup,
+            genomeVersion,
+            annotators,
+            genotypes,
+            normalizer,
+            ctx,
+            writer);
+      }
+      writer.flush();
+    } catch (SQLException e) {
+      throw new VarfishAnnotatorException("Problem with database connection", e);
+    } catch (IOException e) {
+      throw new VarfishAnnotatorException("Problem writing shard file " + shardFile, e);
+    }
+    return shardFile;
+  }
+
+  /**
+   * Perform the variant annotation with a pipeline of decoding, annotation, and writing stages.
+   *
+   * <p>One thread reads the records from {@code reader} and passes batches of them through a
+   * bounded queue to the annotation workers. Each worker uses its own database connection and
+   * annotators and renders the output of a batch into a string. The calling thread
+   * writes these strings to {@code gtWriter} in input order with the help of a {@link
+   * ReorderBuffer}. The bounded queue and buffer limit the number of records in memory.
+   *
+   * @param reader Reader for the input VCF file.
+   * @param genomeVersion The genome version of the VCF file.
+   * @param refseqSource Source of RefSeq transcripts for Jannovar.
+   * @param ensemblSource Source of ENSEMBL transcripts for Jannovar.
+   * @param normalizer Helper for normalizing variants, shared by all threads.
+   * @param gtWriter Writer for variant call ("genotype") TSV file.
+   * @throws VarfishAnnotatorException in case of problems
+   */
+  private void annotateVcfPipelined(
+      VCFFileReader reader,
+      GenomeVersion genomeVersion,
+      TranscriptSource refseqSource,
+      TranscriptSource ensemblSource,
+      VariantNormalizer normalizer,
+      RowWriter gtWriter)
+      throws VarfishAnnotatorException {
+    final int numWorkers = args.getThreads();
+    final int capacity = numWorkers * PIPELINE_BATCHES_PER_THREAD;
+    final BlockingQueue<RecordBatch> inputQueue = new ArrayBlockingQueue<>(capacity);
+    final ReorderBuffer<byte[]> outputBuffer = new ReorderBuffer<>(capacity);
+    System.err.println("Annotating in pipeline mode with " + numWorkers + " threads");
+
+    final ExecutorService executor = Executors.newFixedThreadPool(numWorkers + 1);
+    try {
+      final List<Future<Void>> futures = new ArrayList<>();
+      futures.add(
+          executor.submit(
+              () -> {
+                try {
+                  decodeRecords(reader, numWorkers, inputQueue, outputBuffer);
+                } catch (Throwable e) {
+                  outputBuffer.abort(e);
+                  throw e;
+                }
+                return null;
+              }));
+      for (int i = 0; i < numWorkers; ++i) {
+        futures.add(
+            executor.submit(
+                () -> {
+                  try {
+                    annotateBatches(
+                        inputQueue,
+                        outputBuffer,
+                        genomeVersion,
+                        refseqSource,
+                        ensemblSource,
+                        normalizer);
+                  } catch (Throwable e) {
+                    outputBuffer.abort(e);
+                    throw e;
+                  }
+                  return null;
+                }));
+      }
+
+      byte[] chunk;
+      while ((chunk = outputBuffer.take()) != null) {
+        gtWriter.write(chunk, 0, chunk.length);
+      }
+      for (Future<Void> future : futures) {
+        future.get();
+      }
+    } catch (IllegalStateException e) {
+      final Throwable failure = outputBuffer.getFailure();
+      if (failure instanceof VarfishAnnotatorException) {
+        throw (VarfishAnnotatorException) failure;
+      } else {
+        throw new VarfishAnnotatorException("Problem in annotation pipeline", failure);
+      }
+    } catch (IOException e) {
+      throw new VarfishAnnotatorException("Problem writing to genotypes call file.", e);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new VarfishAnnotatorException("Interrupted while annotating", e);
+    } catch (ExecutionException e) {
+      throw new VarfishAnnotatorException("Problem in annotation pipeline", e.getCause());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * Read records from {@code reader} and put them in batches into {@code inputQueue}.
+   *
+   * <p>Finishes by putting one end marker per worker into the queue and announcing the number of
+   * batches to {@code outputBuffer}.
+   */
+  private void decodeRecords(
+      VCFFileReader reader,
+      int numWorkers,
+      BlockingQueue<RecordBatch> inputQueue,
+      ReorderBuffer<byte[]> outputBuffer)
+      throws InterruptedException {
+    // Collect names of skipped contigs.
+    Set<String> skippedContigs = new HashSet<>();
+
+    long seqNo = 0;
+    List<VariantContext> records = new ArrayList<>(PIPELINE_BATCH_SIZE);
     String prevChr = null;
     for (VariantContext ctx : reader) {
       // Check whether contigs should be skipped.
@@ -203,46 +898,136 @@ public final class AnnotateVcf {
       if (!ctx.getContig().equals(prevChr)) {
         System.err.println("Now on contig " + ctx.getContig());
       }
-      annotateVariantContext(
-          conn,
-          genomeVersion,
-          refseqJv.getRefDict(),
-          refseqAnnotator,
-          ensemblAnnotator,
-          normalizer,
-          ctx,
-          gtWriter);
+      records.add(ctx);
+      if (records.size() == PIPELINE_BATCH_SIZE) {
+        inputQueue.put(new RecordBatch(seqNo++, records));
+        records = new ArrayList<>(PIPELINE_BATCH_SIZE);
+      }
       prevChr = ctx.getContig();
     }
+    if (!records.isEmpty()) {
+      inputQueue.put(new RecordBatch(seqNo++, records));
+    }
+
+    outputBuffer.finish(seqNo);
+    for (int i = 0; i < numWorkers; ++i) {
+      inputQueue.put(RecordBatch.END);
+    }
+  }
+
+  /**
+   * Annotate batches from {@code inputQueue} and put the rendered output into {@code
+   * outputBuffer}.
+   */
+  private void annotateBatches(
+      BlockingQueue<RecordBatch> inputQueue,
+      ReorderBuffer<byte[]> outputBuffer,
+      GenomeVersion genomeVersion,
+      TranscriptSource refseqSource,
+      TranscriptSource ensemblSource,
+      VariantNormalizer normalizer)
+      throws VarfishAnnotatorException, InterruptedException {
+    try (Connection conn = openDatabaseConnection();
+        FrequencyLookup lookup = openFrequencyLookup(conn)) {
+      final ContigAnnotators annotators =
+          new ContigAnnotators(
+              refseqSource, ensemblSource, args.isTranscriptSweep(), args.isPruneTranscripts());
+      final GenotypeMatrix genotypes = new GenotypeMatrix(pedigree, args.getRelease());
+      final ByteArrayOutputStream batchBytes = new ByteArrayOutputStream();
+      final RowWriter writer = openRowWriter(batchBytes);
+      while (true) {
+        final RecordBatch batch = inputQueue.take();
+        if (batch == RecordBatch.END) {
+          break;
+        }
+        for (VariantContext ctx : batch.getRecords()) {
+          annotateVariantContext(
+              lookup,
+              genomeVersion,
+              annotators,
+              genotypes,
+              normalizer,
+              ctx,
+              writer);
+        }
+        writer.flush();
+        outputBuffer.put(batch.getSeqNo(), batchBytes.toByteArray());
+        batchBytes.reset();
+      }
+    } catch (SQLException e) {
+      throw new VarfishAnnotatorException("Problem with database connection", e);
+    } catch (IOException e) {
+      throw new VarfishAnnotatorException("Problem rendering annotated records", e);
+    }
+  }
+
+  /** @return whether to write the PostgreSQL binary COPY format instead of TSV. */
+  private boolean isPgCopy() {
+    return "pgcopy".equals(args.getOutputFormat());
+  }
+
+  /** Open writer for genotype rows in the selected output format. */
+  private RowWriter openRowWriter(OutputStream out) {
+    if (isPgCopy()) {
+      return PgCopyColumns.openWriter(VcfConstants.HEADERS_GT, out);
+    } else {
+      return new TsvRowWriter(VcfConstants.HEADERS_GT, out);
+    }
+  }
+
+  /** Append the rows in {@code file} to {@code writer}. */
+  private static void appendFile(File file, RowWriter writer) throws IOException {
+    try (InputStream in = new FileInputStream(file)) {
+      final byte[] buffer = new byte[64 * 1024];
+      int numRead;
+      while ((numRead = in.read(buffer)) != -1) {
+        writer.write(buffer, 0, numRead);
+      }
+    }
+  }
+
+  /** Remove left-over shard files and the temporary directory, ignoring errors. */
+  private static void deleteShardFiles(Path tmpDir) {
+    final File[] files = tmpDir.toFile().listFiles();
+    if (files != null) {
+      for (File file : files) {
+        file.delete();
+      }
+    }
+    tmpDir.toFile().delete();
   }
 
   /**
    * Annotate <tt>ctx</tt>, write out annotated variant call to <tt>gtWriter</tt>.
    *
-   * @param conn Database connection.
+   * @param lookup Lookup for the frequency and ClinVar information.
    * @param genomeVersion The genome version of the VCF file.
-   * @param refDict {@code ReferenceDictionary} to use for chromosome mapping
-   * @param refseqAnnotator Helper class to use for annotation of variants with Refseq
-   * @param ensemblAnnotator Helper class to use for annotation of variants with ENSEMBL
+   * @param annotators Jannovar annotators of this thread for RefSeq and ENSEMBL.
+   * @param genotypes Genotype matrix of this thread.
    * @param normalizer Helper for normalizing variants.
    * @param ctx The variant to annotate.
    * @param gtWriter Writer for annotated genotypes.
    * @throws VarfishAnnotatorException in case of problems
    */
   private void annotateVariantContext(
-      Connection conn,
+      FrequencyLookup lookup,
       GenomeVersion genomeVersion,
-      ReferenceDictionary refDict,
-      VariantContextAnnotator refseqAnnotator,
-      VariantContextAnnotator ensemblAnnotator,
+      ContigAnnotators annotators,
+      GenotypeMatrix genotypes,
       VariantNormalizer normalizer,
       VariantContext ctx,
-      Writer gtWriter)
+      RowWriter gtWriter)
       throws VarfishAnnotatorException {
-    ImmutableList<VariantAnnotations> refseqAnnotationsList =
-        silentBuildAnnotations(ctx, refseqAnnotator);
-    ImmutableList<VariantAnnotations> ensemblAnnotationsList =
-        silentBuildAnnotations(ctx, ensemblAnnotator);
+    // The genotypes are decoded once for all alleles.
+    genotypes.decode(ctx);
+
+    // Jannovar annotations are only built if an allele is not in the annotation cache.
+    ImmutableList<VariantAnnotations> refseqAnnotationsList = null;
+    ImmutableList<VariantAnnotations> ensemblAnnotationsList = null;
+    boolean annotationsBuilt = false;
+    // The intergenic slot is only looked up if an allele is not in the annotation cache.
+    IntergenicCache.Slot intergenicSlot = null;
+    boolean intergenicSlotFound = false;
 
     final String contigName =
         (genomeVersion == GenomeVersion.HG19)
@@ -257,390 +1042,166 @@ public final class AnnotateVcf {
         continue;
       }
 
-      // Normalize the from the VCF (will probably pad variant to the left).
-      final VariantDescription normalizedVar =
-          normalizer.normalizeInsertion(
-              new VariantDescription(
-                  contigName, ctx.getStart() - 1, ctx.getReference().getBaseString(), baseString));
-      // Get variant type string.
-      final String varType = getVarType(normalizedVar);
-
-      // Get annotations sorted descendingly by variant effect.
-      //
-      // Collect RefSeq and ENSEMBL annotations per gene.  Jannovar provides gene ID mappings
-      // *to* both RefSeq and ENSEMBL *from* both RefSeq and ENSEMBL.  We use an (arbitrarily)
-      // fixed lookup order as any should give sensible results except for genes whose annotation
-      // is not stable (and would thus be less interpretable in a rare disease setting anyway).
-      //
-      // The only exception are variants that only have intergenic variants.  Here, we match
-      // one arbitrary annotation for each transcript set.  The reason is that ENSEMBL contains
-      // so many more transcripts/genes such that we would expect them to never match.
-
-      // RefSeq first
-      final List<Annotation> sortedRefseqAnnos =
-          AnnoSorting.sortAnnotations(refseqAnnotationsList, i);
-      final HashMap<String, Annotation> refSeqAnnoByRefSeqGene = new HashMap<>();
-      final HashMap<String, Annotation> refSeqAnnoByEnsemblGene = new HashMap<>();
-      extractAnnotations(sortedRefseqAnnos, refSeqAnnoByRefSeqGene, refSeqAnnoByEnsemblGene, true);
-
-      // Then ENSEMBL
-      final List<Annotation> sortedEnsemblAnnos =
-          AnnoSorting.sortAnnotations(ensemblAnnotationsList, i);
-      final HashMap<String, Annotation> ensemblAnnoByRefSeqGene = new HashMap<>();
-      final HashMap<String, Annotation> ensemblAnnoByEnsemblGene = new HashMap<>();
-      extractAnnotations(
-          sortedEnsemblAnnos, ensemblAnnoByRefSeqGene, ensemblAnnoByEnsemblGene, false);
-
-      // Query for frequency/presence information in databases.
-      final String gnomadChrPrefix = "GRCh38".equals(args.getRelease()) ? "chr" : "";
-      final DbInfo exacInfo =
-          getDbInfo(conn, args.getRelease(), normalizedVar, VcfConstants.EXAC_PREFIX, "");
-      final DbInfo gnomadExomesInfo =
-          getDbInfo(
-              conn,
-              args.getRelease(),
-              normalizedVar,
-              VcfConstants.GNOMAD_EXOMES_PREFIX,
-              gnomadChrPrefix);
-      final DbInfo gnomadGenomesInfo =
-          getDbInfo(
-              conn,
-              args.getRelease(),
-              normalizedVar,
-              VcfConstants.GNOMAD_GENOMES_PREFIX,
-              gnomadChrPrefix);
-      final DbInfo thousandGenomesInfo =
-          getDbInfo(
-              conn, args.getRelease(), normalizedVar, VcfConstants.THOUSAND_GENOMES_PREFIX, "");
-      final boolean inClinvar = getClinVarInfo(conn, args.getRelease(), normalizedVar);
-
-      // Build a list of all gene IDs that we will iterate over later.
-      final TreeSet<String> geneIds = new TreeSet<>();
-      geneIds.addAll(refSeqAnnoByRefSeqGene.keySet());
-      geneIds.addAll(refSeqAnnoByEnsemblGene.keySet());
-      geneIds.addAll(ensemblAnnoByRefSeqGene.keySet());
-      geneIds.addAll(ensemblAnnoByEnsemblGene.keySet());
-
-      // List of gene IDs that have been processed now.
-      final TreeSet<String> doneGeneIds = new TreeSet<>();
-
-      // Additional information.
-      final String infoStr = "{}";
+      final byte[] cacheKey =
+          (annotationCache == null)
+              ? null
+              : Joiner.on('\t')
+                  .join(
+                      ctx.getContig(),
+                      ctx.getStart(),
+                      ctx.getReference().getBaseString(),
+                      baseString)
+                  .getBytes(StandardCharsets.UTF_8);
+      final byte[] cachedValue = (cacheKey == null) ? null : annotationCache.get(cacheKey);
+
+      final AlleleAnnotation alleleAnno;
+      if (cachedValue != null) {
+        alleleAnno = AlleleAnnotation.fromBytes(cachedValue);
+      } else {
+        if (!intergenicSlotFound) {
+          intergenicSlot = (intergenicCache == null) ? null : intergenicCache.find(ctx);
+          intergenicSlotFound = true;
+        }
+        // Normalize the from the VCF (will probably pad variant to the left).
+        final VariantDescription normalizedVar =
+            normalizer.normalizeInsertion(
+                new VariantDescription(
+                    contigName,
+                    ctx.getStart() - 1,
+                    ctx.getReference().getBaseString(),
+                    baseString));
+        final List<List<String>> snvGeneColumns =
+            lookupSnvTable(annotators.getRefDict(), contigName, ctx, baseString);
+        if (snvGeneColumns != null) {
+          alleleAnno =
+              new AlleleAnnotation(
+                  normalizedVar,
+                  getVarType(normalizedVar),
+                  buildDbColumns(lookup, normalizedVar),
+                  snvGeneColumns);
+        } else if (intergenicSlot != null && intergenicSlot.isKnown()) {
+          alleleAnno = annotateIntergenicAllele(lookup, intergenicSlot, normalizedVar);
+        } else {
+          if (!annotationsBuilt) {
+            annotators.switchTo(ctx);
+            refseqAnnotationsList =
+                buildAnnotations(
+                    ctx, annotators.getRefseqAnnotator(), annotators.getRefseqPruning());
+            ensemblAnnotationsList =
+                buildAnnotations(
+                    ctx, annotators.getEnsemblAnnotator(), annotators.getEnsemblPruning());
+            annotationsBuilt = true;
+          }
+          alleleAnno =
+              annotateAllele(
+                  lookup,
+                  refseqAnnotationsList,
+                  ensemblAnnotationsList,
+                  i,
+                  normalizedVar,
+                  intergenicSlot);
+        }
+        if (cacheKey != null) {
+          annotationCache.put(cacheKey, alleleAnno.toBytes());
+        }
+      }
 
       // Build per-genotype counts, taking into consideration the sex information from pedigree.
-      final GenotypeCounts gtCounts =
-          GenotypeCounts.buildGenotypeCounts(ctx, i, pedigree, args.getRelease());
+      final GenotypeCounts gtCounts = genotypes.countGenotypes(i);
 
       // Write output record (alsow write out empty one if necessary).
-      writeOutputRecords(
-          refDict,
-          ctx,
-          gtWriter,
-          i,
-          normalizedVar,
-          varType,
-          refSeqAnnoByRefSeqGene,
-          refSeqAnnoByEnsemblGene,
-          ensemblAnnoByRefSeqGene,
-          ensemblAnnoByEnsemblGene,
-          exacInfo,
-          gnomadExomesInfo,
-          gnomadGenomesInfo,
-          thousandGenomesInfo,
-          inClinvar,
-          geneIds,
-          doneGeneIds,
-          infoStr,
-          gtCounts);
+      writeOutputRecords(annotators.getRefDict(), genotypes, gtWriter, i, alleleAnno, gtCounts);
     }
   }
 
-  private static String getVarType(VariantDescription normalizedVar) {
-    final String varType;
-    if ((normalizedVar.getRef().length() == 1) && (normalizedVar.getAlt().length() == 1)) {
-      varType = "snv";
-    } else if (normalizedVar.getRef().length() == normalizedVar.getAlt().length()) {
-      varType = "mnv";
-    } else {
-      varType = "indel";
+  /**
+   * Look up the gene columns of an SNV in the SNV effect table.
+   *
+   * @return The gene columns or {@code null} if there is no table or the SNV is not in it.
+   * @throws VarfishAnnotatorException in case of problems with reading the table
+   */
+  private List<List<String>> lookupSnvTable(
+      ReferenceDictionary refDict, String contigName, VariantContext ctx, String baseString)
+      throws VarfishAnnotatorException {
+    final String refString = ctx.getReference().getBaseString();
+    if (snvTable == null || refString.length() != 1 || baseString.length() != 1) {
+      return null;
     }
-    return varType;
+    final Integer chrId = refDict.getContigNameToID().get(ctx.getContig());
+    if (chrId == null || !contigName.equals(snvTable.getContigName(chrId))) {
+      return null;
+    }
+    final String value =
+        snvTable.get(chrId, ctx.getStart() - 1, refString.charAt(0), baseString.charAt(0));
+    return (value == null) ? null : GeneColumns.decode(value);
   }
 
   /**
-   * Write output records with the data built for {@code ctx).
+   * Build the sample-independent annotation of the {@code i}-th allele.
    *
-   * This function will also take care of writing out an empty record in case there were no overlapping genes.
+   * @param lookup Lookup for the frequency and ClinVar information.
+   * @param refseqAnnotationsList Jannovar RefSeq annotations of the variant call.
+   * @param ensemblAnnotationsList Jannovar ENSEMBL annotations of the variant call.
+   * @param i Index of the allele in the variant call.
+   * @param normalizedVar The normalized allele.
+   * @param intergenicSlot Slot to learn the intergenic annotations for, may be {@code null}.
+   * @return The annotation of the allele.
+   * @throws VarfishAnnotatorException in case of problems
    */
-  private void writeOutputRecords(
-      ReferenceDictionary refDict,
-      VariantContext ctx,
-      Writer gtWriter,
+  private AlleleAnnotation annotateAllele(
+      FrequencyLookup lookup,
+      ImmutableList<VariantAnnotations> refseqAnnotationsList,
+      ImmutableList<VariantAnnotations> ensemblAnnotationsList,
       int i,
       VariantDescription normalizedVar,
-      String varType,
-      HashMap<String, Annotation> refSeqAnnoByRefSeqGene,
-      HashMap<String, Annotation> refSeqAnnoByEnsemblGene,
-      HashMap<String, Annotation> ensemblAnnoByRefSeqGene,
-      HashMap<String, Annotation> ensemblAnnoByEnsemblGene,
-      DbInfo exacInfo,
-      DbInfo gnomadExomesInfo,
-      DbInfo gnomadGenomesInfo,
-      DbInfo thousandGenomesInfo,
-      boolean inClinvar,
-      TreeSet<String> geneIds,
-      TreeSet<String> doneGeneIds,
-      String infoStr,
-      GenotypeCounts gtCounts)
+      IntergenicCache.Slot intergenicSlot)
       throws VarfishAnnotatorException {
-    // Write one entry for each gene into the annotated genotype call file.
-    for (String geneId : geneIds) {
-      if (doneGeneIds.contains(geneId)) {
-        continue; // Do not process twice.
-      }
-
-      // Select both RefSeq and ENSEMBL annotation for the given (RefSeq or ENSEMBL gene ID).
-      final Annotation refseqAnno;
-      if (refSeqAnnoByRefSeqGene.containsKey(geneId)) {
-        refseqAnno = refSeqAnnoByRefSeqGene.get(geneId);
-      } else if (refSeqAnnoByEnsemblGene.containsKey(geneId)) {
-        refseqAnno = refSeqAnnoByEnsemblGene.get(geneId);
-      } else {
-        refseqAnno = null;
-      }
-      final Annotation ensemblAnno;
-      if (ensemblAnnoByEnsemblGene.containsKey(geneId)) {
-        ensemblAnno = ensemblAnnoByEnsemblGene.get(geneId);
-      } else if (ensemblAnnoByRefSeqGene.containsKey(geneId)) {
-        ensemblAnno = ensemblAnnoByRefSeqGene.get(geneId);
-      } else {
-        ensemblAnno = null;
-      }
-
-      // Mark all gene IDs as done.
-      if (ensemblAnno != null && ensemblAnno.getTranscript() != null) {
-        doneGeneIds.add(ensemblAnno.getTranscript().getGeneID());
-        if (ensemblAnno.getTranscript().getAltGeneIDs().containsKey("ENTREZ_ID")) {
-          doneGeneIds.add(ensemblAnno.getTranscript().getAltGeneIDs().get("ENTREZ_ID"));
-        }
-      }
-      if (refseqAnno != null && refseqAnno.getTranscript() != null) {
-        doneGeneIds.add(refseqAnno.getTranscript().getGeneID());
-        if (refseqAnno.getTranscript().getAltGeneIDs().containsKey("ENSEMBL_GENE_ID")) {
-          doneGeneIds.add(refseqAnno.getTranscript().getAltGeneIDs().get("ENSEMBL_GENE_ID"));
-        }
-      }
+    final GeneColumns geneColumns =
+        GeneColumns.select(refseqAnnotationsList, ensemblAnnotationsList, i);
 
-      // Distance to next base of exon.
-      final int refSeqExonDist =
-          getDistance(normalizedVar, refseqAnno == null ? null : refseqAnno.getTranscript());
-      final int ensemblExonDist =
-          getDistance(normalizedVar, ensemblAnno == null ? null : ensemblAnno.getTranscript());
+    // Query for frequency/presence information in databases.
+    final List<String> dbColumns = buildDbColumns(lookup, normalizedVar);
 
-      // Construct output record.
-      final List<Object> gtOutRec =
-          constructOutputRecord(
-              refDict,
-              ctx,
-              i,
-              normalizedVar,
-              varType,
-              exacInfo,
-              gnomadExomesInfo,
-              gnomadGenomesInfo,
-              thousandGenomesInfo,
-              inClinvar,
-              infoStr,
-              gtCounts,
-              refseqAnno,
-              ensemblAnno,
-              refSeqExonDist,
-              ensemblExonDist);
-      // Write record to output stream.
-      try {
-        gtWriter.append(Joiner.on("\t").join(gtOutRec) + "\n");
-      } catch (IOException e) {
-        throw new VarfishAnnotatorException("Problem writing to genotypes call file.", e);
-      }
+    // Remember the result for intergenic variants for the following variants in the same slot.
+    if (intergenicSlot != null
+        && refseqAnnotationsList != null
+        && ensemblAnnotationsList != null
+        && geneColumns.isIntergenicOnly()) {
+      intergenicSlot.learn(geneColumns.getRefseqIntergenic(), geneColumns.getEnsemblIntergenic());
     }
 
-    if (geneIds.isEmpty()) {
-      // Construct output record.
-      final List<Object> gtOutRec =
-          constructEmptyOutputRecord(
-              refDict,
-              ctx,
-              i,
-              normalizedVar,
-              varType,
-              exacInfo,
-              gnomadExomesInfo,
-              gnomadGenomesInfo,
-              thousandGenomesInfo,
-              inClinvar,
-              infoStr,
-              gtCounts);
-      // Write record to output stream.
-      try {
-        gtWriter.append(Joiner.on("\t").join(gtOutRec) + "\n");
-      } catch (IOException e) {
-        throw new VarfishAnnotatorException("Problem writing to genotypes call file.", e);
-      }
-    }
+    return new AlleleAnnotation(
+        normalizedVar, getVarType(normalizedVar), dbColumns, geneColumns.build(normalizedVar));
   }
 
-  private List<Object> constructOutputRecord(
-      ReferenceDictionary refDict,
-      VariantContext ctx,
-      int i,
-      VariantDescription normalizedVar,
-      String varType,
-      DbInfo exacInfo,
-      DbInfo gnomadExomesInfo,
-      DbInfo gnomadGenomesInfo,
-      DbInfo thousandGenomesInfo,
-      boolean inClinvar,
-      String infoStr,
-      GenotypeCounts gtCounts,
-      Annotation refseqAnno,
-      Annotation ensemblAnno,
-      int refSeqExonDist,
-      int ensemblExonDist) {
-    return Lists.newArrayList(
-        args.getRelease(),
-        normalizedVar.getChrom(),
-        refDict.getContigNameToID().get(normalizedVar.getChrom()),
-        String.valueOf(normalizedVar.getPos() + 1),
-        String.valueOf(normalizedVar.getPos() + normalizedVar.getRef().length()),
-        UcscBinning.getContainingBin(
-            normalizedVar.getPos(), normalizedVar.getPos() + normalizedVar.getRef().length()),
-        normalizedVar.getRef(),
-        normalizedVar.getAlt(),
-        varType,
-        args.getCaseId(),
-        args.getSetId(),
-        infoStr,
-        buildGenotypeValue(ctx, i),
-        String.valueOf(gtCounts.numHomAlt),
-        String.valueOf(gtCounts.numHomRef),
-        String.valueOf(gtCounts.numHet),
-        String.valueOf(gtCounts.numHemiAlt),
-        String.valueOf(gtCounts.numHemiRef),
-        // ClinVar
-        inClinvar ? "TRUE" : "FALSE",
-        // EXAC
-        exacInfo.getAfPopmaxStr(),
-        exacInfo.getHomTotalStr(),
-        exacInfo.getHetTotalStr(),
-        exacInfo.getHemiTotalStr(),
-        // Thousand Genomes
-        thousandGenomesInfo.getAfPopmaxStr(),
-        thousandGenomesInfo.getHomTotalStr(),
-        thousandGenomesInfo.getHetTotalStr(),
-        thousandGenomesInfo.getHemiTotalStr(),
-        // gnomAD exomes
-        gnomadExomesInfo.getAfPopmaxStr(),
-        gnomadExomesInfo.getHomTotalStr(),
-        gnomadExomesInfo.getHetTotalStr(),
-        gnomadExomesInfo.getHemiTotalStr(),
-        // gnomAD genomes
-        gnomadGenomesInfo.getAfPopmaxStr(),
-        gnomadGenomesInfo.getHomTotalStr(),
-        gnomadGenomesInfo.getHetTotalStr(),
-        gnomadGenomesInfo.getHemiTotalStr(),
-        // RefSeq
-        (refseqAnno == null || refseqAnno.getTranscript() == null)
-            ? "."
-            : refseqAnno.getTranscript().getGeneID(),
-        (refseqAnno == null || refseqAnno.getTranscript() == null)
-            ? "."
-            : refseqAnno.getTranscript().getAccession(),
-        (refseqAnno == null || refseqAnno.getTranscript() == null)
-            ? "."
-            : refseqAnno.getTranscript().isCoding() ? "TRUE" : "FALSE",
-        (refseqAnno == null || refseqAnno.getTranscript() == null)
-            ? "."
-            : refseqAnno.getCDSNTChange() == null
-                ? "."
-                : (refseqAnno.getTranscript().isCoding() ? "c." : "n.")
-                    + refseqAnno.getCDSNTChange().toHGVSString(AminoAcidCode.ONE_LETTER),
-        refseqAnno == null
-            ? "."
-            : refseqAnno.getProteinChange() == null
-                ? "."
-                : "p."
-                    + refseqAnno
-                        .getProteinChange()
-                        .withOnlyPredicted(false)
-                        .toHGVSString(AminoAcidCode.ONE_LETTER),
-        (refseqAnno == null || refseqAnno.getTranscript() == null)
-            ? "{}"
-            : buildEffectsValue(refseqAnno.getEffects()),
-        (refSeqExonDist >= 0) ? Integer.toString(refSeqExonDist) : ".",
-        // ENSEMBL
-        (ensemblAnno == null || ensemblAnno.getTranscript() == null)
-            ? "."
-            : ensemblAnno.getTranscript().getGeneID(),
-        (ensemblAnno == null || ensemblAnno.getTranscript() == null)
-            ? "."
-            : ensemblAnno.getTranscript().getAccession(),
-        (ensemblAnno == null || ensemblAnno.getTranscript() == null)
-            ? "."
-            : ensemblAnno.getTranscript().isCoding() ? "TRUE" : "FALSE",
-        (ensemblAnno == null || ensemblAnno.getTranscript() == null)
-            ? "."
-            : ensemblAnno.getCDSNTChange() == null
-                ? "."
-                : (ensemblAnno.getTranscript().isCoding() ? "c." : "n.")
-                    + ensemblAnno.getCDSNTChange().toHGVSString(AminoAcidCode.ONE_LETTER),
-        (ensemblAnno == null || ensemblAnno.getTranscript() == null)
-            ? "."
-            : ensemblAnno.getProteinChange() == null
-                ? "."
-                : "p."
-                    + ensemblAnno
-                        .getProteinChange()
-                        .withOnlyPredicted(false)
-                        .toHGVSString(AminoAcidCode.ONE_LETTER),
-        (ensemblAnno == null || ensemblAnno.getTranscript() == null)
-            ? "{}"
-            : buildEffectsValue(ensemblAnno.getEffects()),
-        (ensemblExonDist >= 0) ? Integer.toString(ensemblExonDist) : ".");
-  }
-
-  private List<Object> constructEmptyOutputRecord(
-      ReferenceDictionary refDict,
-      VariantContext ctx,
-      int i,
-      VariantDescription normalizedVar,
-      String varType,
-      DbInfo exacInfo,
-      DbInfo gnomadExomesInfo,
-      DbInfo gnomadGenomesInfo,
-      DbInfo thousandGenomesInfo,
-      boolean inClinvar,
-      String infoStr,
-      GenotypeCounts gtCounts) {
-    return Lists.newArrayList(
-        args.getRelease(),
-        normalizedVar.getChrom(),
-        refDict.getContigNameToID().get(normalizedVar.getChrom()),
-        String.valueOf(normalizedVar.getPos() + 1),
-        String.valueOf(normalizedVar.getPos() + normalizedVar.getRef().length()),
-        UcscBinning.getContainingBin(
-            normalizedVar.getPos(), normalizedVar.getPos() + normalizedVar.getRef().length()),
-        normalizedVar.getRef(),
-        normalizedVar.getAlt(),
-        varType,
-        args.getCaseId(),
-        args.getSetId(),
-        infoStr,
-        buildGenotypeValue(ctx, i),
-        String.valueOf(gtCounts.numHomAlt),
-        String.valueOf(gtCounts.numHomRef),
-        String.valueOf(gtCounts.numHet),
-        String.valueOf(gtCounts.numHemiAlt),
-        String.valueOf(gtCounts.numHemiRef),
+  /**
+   * Build the sample-independent annotation of an intergenic allele from the annotations learned
+   * for its slot, without calling Jannovar.
+   */
+  private AlleleAnnotation annotateIntergenicAllele(
+      FrequencyLookup lookup, IntergenicCache.Slot intergenicSlot, VariantDescription normalizedVar)
+      throws VarfishAnnotatorException {
+    final List<List<String>> geneColumns =
+        GeneColumns.intergenic(intergenicSlot.getRefseqAnno(), intergenicSlot.getEnsemblAnno())
+            .build(normalizedVar);
+    return new AlleleAnnotation(
+        normalizedVar,
+        getVarType(normalizedVar),
+        buildDbColumns(lookup, normalizedVar),
+        geneColumns);
+  }
+
+  /** Build the frequency and ClinVar output columns of {@code normalizedVar}. */
+  private List<String> buildDbColumns(FrequencyLookup lookup, VariantDescription normalizedVar)
+      throws VarfishAnnotatorException {
+    final FrequencyLookupResult lookupResult = lookupAll(lookup, normalizedVar);
+    final DbInfo exacInfo = lookupResult.getDbInfo(VcfConstants.EXAC_PREFIX);
+    final DbInfo gnomadExomesInfo = lookupResult.getDbInfo(VcfConstants.GNOMAD_EXOMES_PREFIX);
+    final DbInfo gnomadGenomesInfo = lookupResult.getDbInfo(VcfConstants.GNOMAD_GENOMES_PREFIX);
+    final DbInfo thousandGenomesInfo =
+        lookupResult.getDbInfo(VcfConstants.THOUSAND_GENOMES_PREFIX);
+    final boolean inClinvar = lookupResult.isInClinvar();
+    return ImmutableList.of(
         // ClinVar
         inClinvar ? "TRUE" : "FALSE",
         // EXAC
@@ -662,119 +1223,87 @@ public final class AnnotateVcf {
         gnomadGenomesInfo.getAfPopmaxStr(),
         gnomadGenomesInfo.getHomTotalStr(),
         gnomadGenomesInfo.getHetTotalStr(),
-        gnomadGenomesInfo.getHemiTotalStr(),
-        // RefSeq
-        ".",
-        ".",
-        ".",
-        ".",
-        ".",
-        ".",
-        ".",
-        // ENSEMBL
-        ".",
-        ".",
-        ".",
-        ".",
-        ".",
-        ".",
-        ".");
+        gnomadGenomesInfo.getHemiTotalStr());
+  }
+
+  private static String getVarType(VariantDescription normalizedVar) {
+    final String varType;
+    if ((normalizedVar.getRef().length() == 1) && (normalizedVar.getAlt().length() == 1)) {
+      varType = "snv";
+    } else if (normalizedVar.getRef().length() == normalizedVar.getAlt().length()) {
+      varType = "mnv";
+    } else {
+      varType = "indel";
+    }
+    return varType;
   }
 
   /**
-   * Collect RefSeq or ENSEMBL annotations per gene.
-   *
-   * <p>See comment in {@link #annotateVariantContext} on the reasoning behind "__integergenic__".
+   * Write output records with the data built for {@code ctx}.
    *
-   * @param sortedAnnos Sorted annotations to process.
-   * @param annoByRefSeqGene Annotations by RefSeq gene are written here.
-   * @param annoByEnsemblGene Annotations by ENSEMBL gene ID.
-   * @param isRefSeq Whether to process as refseq or
+   * <p>This function will also take care of writing out an empty record in case there were no
+   * overlapping genes.
    */
-  private static void extractAnnotations(
-      List<Annotation> sortedAnnos,
-      HashMap<String, Annotation> annoByRefSeqGene,
-      HashMap<String, Annotation> annoByEnsemblGene,
-      boolean isRefSeq) {
-    for (Annotation annotation : sortedAnnos) {
-      if (annotation.getEffects().isEmpty()
-          || annotation.getEffects().equals(ImmutableSet.of(VariantEffect.INTERGENIC_VARIANT))) {
-        // Put into map under pseudo-identifier "__intergenic__". This ways, intergenic variants
-        // are written out only once for RefSeq/ENSEMBL and not twice if different genes are
-        // closest.
-        annoByRefSeqGene.put("__intergenic__", annotation);
-        annoByEnsemblGene.put("__intergenic__", annotation);
-      } else {
-        final String refseqGeneId;
-        final String ensemblGeneId;
-        if (isRefSeq) {
-          refseqGeneId = annotation.getTranscript().getGeneID();
-          ensemblGeneId = annotation.getTranscript().getAltGeneIDs().get("ENSEMBL_GENE_ID");
-        } else {
-          refseqGeneId = annotation.getTranscript().getAltGeneIDs().get("ENTREZ_ID");
-          ensemblGeneId = annotation.getTranscript().getGeneID();
-        }
-        if (refseqGeneId != null && !annoByRefSeqGene.containsKey(refseqGeneId)) {
-          annoByRefSeqGene.put(refseqGeneId, annotation);
-        }
-        if (ensemblGeneId != null && !annoByEnsemblGene.containsKey(ensemblGeneId)) {
-          annoByEnsemblGene.put(ensemblGeneId, annotation);
-        }
+  private void writeOutputRecords(
+      ReferenceDictionary refDict,
+      GenotypeMatrix genotypes,
+      RowWriter gtWriter,
+      int i,
+      AlleleAnnotation alleleAnno,
+      GenotypeCounts gtCounts)
+      throws VarfishAnnotatorException {
+    final VariantDescription normalizedVar = alleleAnno.getNormalizedVar();
+    final int end = normalizedVar.getPos() + normalizedVar.getRef().length();
+    final int chromNo = refDict.getContigNameToID().get(normalizedVar.getChrom());
+    final String genotypeValue = buildGenotypeValue(genotypes, i, isPgCopy());
+
+    // Write one entry for each gene into the annotated genotype call file, or an empty one.
+    final List<List<String>> geneColumns =
+        alleleAnno.getGeneColumns().isEmpty()
+            ? ImmutableList.of(Collections.nCopies(AlleleAnnotation.NUM_GENE_COLUMNS, "."))
+            : alleleAnno.getGeneColumns();
+    for (List<String> columns : geneColumns) {
+      gtWriter
+          .add(args.getRelease())
+          .add(normalizedVar.getChrom())
+          .add(chromNo)
+          .add(normalizedVar.getPos() + 1)
+          .add(end)
+          .add(UcscBinning.getContainingBin(normalizedVar.getPos(), end))
+          .add(normalizedVar.getRef())
+          .add(normalizedVar.getAlt())
+          .add(alleleAnno.getVarType())
+          .add(args.getCaseId())
+          .add(args.getSetId())
+          // Additional information.
+          .add("{}")
+          .add(genotypeValue)
+          .add(gtCounts.numHomAlt)
+          .add(gtCounts.numHomRef)
+          .add(gtCounts.numHet)
+          .add(gtCounts.numHemiAlt)
+          .add(gtCounts.numHemiRef)
+          .addAll(alleleAnno.getDbColumns())
+          .addAll(columns);
+      try {
+        gtWriter.endRow();
+      } catch (IOException e) {
+        throw new VarfishAnnotatorException("Problem writing to genotypes call file.", e);
       }
     }
   }
 
   /**
-   * Return distance from {@code normalizedVar} to exons of {@code transcript}.
-   *
-   * @param normalizedVar The normalized variant.
-   * @param transcript The transcript to compute distance to.
-   * @return Distance to base of exon, {@code -1} if {@code transcript} is {@code null}.
+   * Build the Jannovar annotations of {@code ctx}, leaving out transcripts with {@code pruning}
+   * where possible.
    */
-  private int getDistance(VariantDescription normalizedVar, TranscriptModel transcript) {
-    if (transcript == null) {
-      return -1;
-    } else {
-      final ReferenceDictionary refDict = transcript.getTXRegion().getRefDict();
-      final String txChrom = refDict.getContigIDToName().get(transcript.getChr());
-
-      if (!normalizedVar.getChrom().equals(txChrom)) {
-        return -1;
-      }
-
-      final GenomeInterval varInterval =
-          new GenomeInterval(
-              refDict,
-              Strand.FWD,
-              transcript.getChr(),
-              normalizedVar.getPos(),
-              normalizedVar.getEnd());
-
-      int result = -1;
-      for (GenomeInterval exon : transcript.getExonRegions()) {
-        exon = exon.withStrand(Strand.FWD); // normalize strand
-        if (exon.overlapsWith(varInterval)) { // variant overlaps with exon
-          result = 0;
-          break;
-        } else {
-          // Get distance between {@code exon} and {@code varInterval}.
-          final int distance;
-          if (varInterval.getEndPos() <= exon.getBeginPos()) { // variant left of exon
-            distance = (exon.getBeginPos() - varInterval.getEndPos()) + 1;
-          } else { // variant right of exon
-            if (!(varInterval.getBeginPos() >= exon.getEndPos())) {
-              throw new RuntimeException("Invariant violated!");
-            }
-            distance = (varInterval.getBeginPos() - exon.getEndPos()) + 1;
-          }
-          // Update {@code result} if necessary.
-          if (result == -1 || result > distance) {
-            result = distance;
-          }
-        }
-      }
-      return result;
-    }
+  private ImmutableList<VariantAnnotations> buildAnnotations(
+      VariantContext ctx, VariantContextAnnotator annotator, TranscriptPruning pruning) {
+    final ImmutableList<VariantAnnotations> prunedAnnotations =
+        (pruning == null) ? null : pruning.annotate(ctx);
+    return (prunedAnnotations != null)
+        ? prunedAnnotations
+        : silentBuildAnnotations(ctx, annotator);
   }
 
   private ImmutableList<VariantAnnotations> silentBuildAnnotations(
@@ -796,195 +1325,158 @@ public final class AnnotateVcf {
     return "\"\"\"" + s.replaceAll("\"\"\"", "") + "\"\"\"";
   }
 
+  /** @return {@code s} quoted for JSON if {@code json}, triple-quoted otherwise. */
+  private static String quote(String s, boolean json) {
+    return json ? StringUtils.jsonQuote(s) : tripleQuote(s);
+  }
+
   /**
    * Build genotypes JSON expression for Postgres TSV file.
    *
-   * @param ctx {@link VariantContext} from the input file.
+   * @param genotypes The decoded genotypes of the {@link VariantContext} from the input file.
    * @param alleleNo The allele number (first alternative is 1)
+   * @param json Whether to build plain JSON, as for the binary COPY format.
    * @return {@link String} with the genotype value.
    */
-  private String buildGenotypeValue(VariantContext ctx, int alleleNo) {
-    final List<String> mappings = new ArrayList<>();
-    final Comparator<String> c = Comparator.comparing(String::toString);
-    final List<String> sortedSampleNames = Lists.newArrayList(ctx.getSampleNames());
-    sortedSampleNames.sort(c);
-    for (String sample : sortedSampleNames) {
-      final Genotype genotype = ctx.getGenotype(sample);
-      final Map<String, String> gts = new TreeMap<>();
-      final List<String> gtList = new ArrayList<>();
-      for (Allele allele : genotype.getAlleles()) {
-        if (allele.isNoCall()) {
-          gtList.add(".");
-        } else if (ctx.getAlleleIndex(allele) == alleleNo) {
-          gtList.add("1");
-        } else {
-          gtList.add("0");
-        }
-      }
-      if (genotype.isPhased()) {
-        gts.put(sample, Joiner.on("|").join(gtList));
-      } else {
-        gtList.sort(Comparator.naturalOrder());
-        gts.put(sample, Joiner.on("/").join(gtList));
-      }
-      final int[] ad = ctx.getGenotype(sample).getAD();
-      int gq = ctx.getGenotype(sample).getGQ();
+  private String buildGenotypeValue(GenotypeMatrix genotypes, int alleleNo, boolean json) {
+    final StringBuilder result = new StringBuilder("{");
+    for (int sample : genotypes.getSamplesByName()) {
+      final Genotype genotype = genotypes.getGenotype(sample);
+      final int[] ad = genotype.getAD();
+      int gq = genotype.getGQ();
       double sq = -1.0;
       if (gq == -1) {
-        sq = Double.parseDouble((String) ctx.getGenotype(sample).getExtendedAttribute("SQ", "0"));
+        sq = Double.parseDouble((String) genotype.getExtendedAttribute("SQ", "0"));
         if (sq == 0.0) {
           gq = 0; // write out as int
         }
       }
-      int dp = ctx.getGenotype(sample).getDP();
+      int dp = genotype.getDP();
       if (dp == -1) {
         dp = 0;
       }
-      mappings.add(
-          Joiner.on("")
-              .join(
-                  tripleQuote(sample),
-                  ":{",
-                  tripleQuote("gt"),
-                  ":",
-                  tripleQuote(gts.get(sample)),
-                  ",",
-                  tripleQuote("ad"),
-                  ":",
-                  String.valueOf(ad == null ? 0 : (alleleNo >= ad.length ? -1 : ad[alleleNo])),
-                  ",",
-                  tripleQuote("dp"),
-                  ":",
-                  String.valueOf(dp),
-                  ",",
-                  tripleQuote("gq"),
-                  ":",
-                  (gq == -1 ? String.valueOf(sq) : String.valueOf(gq)),
-                  "}"));
-    }
-    return "{" + Joiner.on(",").join(mappings) + "}";
+      if (result.length() > 1) {
+        result.append(',');
+      }
+      result
+          .append(quote(genotypes.getSampleName(sample), json))
+          .append(":{")
+          .append(json ? GT_JSON_KEY : GT_KEY)
+          .append(':')
+          .append(quote(genotypes.getGenotypeString(sample, alleleNo), json))
+          .append(',')
+          .append(json ? AD_JSON_KEY : AD_KEY)
+          .append(':')
+          .append(ad == null ? 0 : (alleleNo >= ad.length ? -1 : ad[alleleNo]))
+          .append(',')
+          .append(json ? DP_JSON_KEY : DP_KEY)
+          .append(':')
+          .append(dp)
+          .append(',')
+          .append(json ? GQ_JSON_KEY : GQ_KEY)
+          .append(':')
+          .append(gq == -1 ? String.valueOf(sq) : String.valueOf(gq))
+          .append('}');
+    }
+    return result.append('}').toString();
   }
 
   /**
-   * Build Postgres array expression for TSV file with variant effects.
+   * Query frequency tables and ClinVar for information about variant.
    *
-   * @param effects The effects to create expression for.
-   * @return String with the variant effects.
+   * @param lookup Lookup to use for query.
+   * @param normalizedVar Normalized variant to query with.
+   * @return {@link FrequencyLookupResult} with the information from all tables.
+   * @throw VarfishAnnotatorException in case of problems with obtaining information
    */
-  private String buildEffectsValue(ImmutableSet<VariantEffect> effects) {
-    final List<String> effectStrings =
-        effects
-            .stream()
-            .map(e -> "\"" + e.getSequenceOntologyTerm() + "\"")
-            .collect(Collectors.toList());
-    return Joiner.on("").join("{", Joiner.on(',').join(effectStrings), "}");
+  private FrequencyLookupResult lookupAll(FrequencyLookup lookup, VariantDescription normalizedVar)
+      throws VarfishAnnotatorException {
+    final String gnomadChrPrefix = "GRCh38".equals(args.getRelease()) ? "chr" : "";
+    final Map<String, String> chromByPrefix = new HashMap<>();
+    for (String prefix : VcfConstants.FREQUENCY_PREFIXES) {
+      // ExAC and Thousand Genomes are only available for GRCh37, are "not found" otherwise.
+      if (!"GRCh37".equals(args.getRelease())
+          && ImmutableList.of(VcfConstants.EXAC_PREFIX, VcfConstants.THOUSAND_GENOMES_PREFIX)
+              .contains(prefix)) {
+        continue;
+      }
+      final boolean isGnomad =
+          ImmutableList.of(VcfConstants.GNOMAD_EXOMES_PREFIX, VcfConstants.GNOMAD_GENOMES_PREFIX)
+              .contains(prefix);
+      chromByPrefix.put(
+          prefix, adjustChrPrefix(normalizedVar.getChrom(), isGnomad ? gnomadChrPrefix : ""));
+    }
+    return lookup.lookupAll(
+        chromByPrefix,
+        normalizedVar.getChrom(),
+        normalizedVar.getPos() + 1,
+        normalizedVar.getRef(),
+        normalizedVar.getAlt());
+  }
+
+  /** Add or remove "chr" prefix of {@code chrom} to match {@code chrPrefix}. */
+  private static String adjustChrPrefix(String chrom, String chrPrefix) {
+    if (chrPrefix.isEmpty() && chrom.startsWith("chr")) {
+      return chrom.substring(3);
+    } else if (!chrPrefix.isEmpty() && !chrom.startsWith("chr")) {
+      return "chr" + chrom;
+    } else {
+      return chrom;
+    }
   }
 
   /**
-   * Query DB for information about variant.
+   * Open the {@link FrequencyLookup} for one annotation thread.
    *
-   * @param conn Database connection to use for query.
-   * @param release Genome release.
-   * @param normalizedVar Normalized variant.
-   * @param prefix Prefix for fields and table.
-   * @param chrPrefix Prefix for chromosome values.
-   * @return {@link DbInfo} with information from ExAC.
-   * @throw VarfishAnnotatorException in case of problems with obtaining information
+   * <p>With {@code --db-connections} larger than one, this opens a pool of read-only connections
+   * for running the lookups concurrently, otherwise {@code conn} is used.
    */
-  private DbInfo getDbInfo(
-      Connection conn,
-      String release,
-      VariantDescription normalizedVar,
-      String prefix,
-      String chrPrefix)
-      throws VarfishAnnotatorException {
-    // Return "not found" if looking for ExAC or Thousand Genomes but not using GRCh37.
-    // These are only available for GRCh37.
-    if (!"GRCh37".equals(release)
-        && ImmutableList.of(VcfConstants.EXAC_PREFIX, VcfConstants.THOUSAND_GENOMES_PREFIX)
-            .contains(prefix)) {
-      return DbInfo.nullValue();
-    }
-
-    final String query =
-        "SELECT "
-            + prefix
-            + "_af, "
-            + prefix
-            + "_het, "
-            + prefix
-            + "_hom, "
-            + prefix
-            + "_hemi FROM "
-            + prefix
-            + "_var WHERE (release = ?) AND (chrom = ?) AND (start = ?) AND (ref = ?) AND (alt = ?)";
+  private FrequencyLookup openFrequencyLookup(Connection conn) throws VarfishAnnotatorException {
+    if (args.getDbConnections() == 1) {
+      return buildFrequencyLookup(conn);
+    }
+    final List<Connection> connections = new ArrayList<>();
     try {
-      final PreparedStatement stmt = conn.prepareStatement(query);
-      stmt.setString(1, release);
-      final String chrom;
-      if (chrPrefix.isEmpty() && normalizedVar.getChrom().startsWith("chr")) {
-        chrom = normalizedVar.getChrom().substring(3);
-      } else if (!chrPrefix.isEmpty() && !normalizedVar.getChrom().startsWith("chr")) {
-        chrom = "chr" + normalizedVar.getChrom();
-      } else {
-        chrom = normalizedVar.getChrom();
+      for (int i = 0; i < args.getDbConnections(); ++i) {
+        connections.add(openDatabaseConnection());
       }
-      stmt.setString(2, chrom);
-      stmt.setInt(3, normalizedVar.getPos() + 1);
-      stmt.setString(4, normalizedVar.getRef());
-      stmt.setString(5, normalizedVar.getAlt());
-
-      try (ResultSet rs = stmt.executeQuery()) {
-        if (!rs.next()) {
-          return DbInfo.nullValue();
-        }
-        final DbInfo result = new DbInfo(rs.getDouble(1), rs.getInt(2), rs.getInt(3), rs.getInt(4));
-        if (rs.next()) {
-          throw new VarfishAnnotatorException(prefix + " returned more than one result");
+    } catch (SQLException e) {
+      for (Connection pooledConn : connections) {
+        try {
+          pooledConn.close();
+        } catch (SQLException e2) {
+          // swallow, report original problem below
         }
-        return result;
       }
-    } catch (SQLException e) {
-      throw new VarfishAnnotatorException("Problem with querying ExAC", e);
+      throw new VarfishAnnotatorException("Problem opening database connections", e);
     }
+    return new ConcurrentFrequencyLookup(connections, this::buildFrequencyLookup);
   }
 
   /**
-   * Query ClinVar for information about variant.
-   *
-   * @param conn Database connection to use for query.
-   * @param release Genome release.
-   * @param normalizedVar Normalized variant to query with.
-   * @return {@code bool} specifying whether variant is in ClinVar.
-   * @throw VarfishAnnotatorException in case of problems with obtaining information
+   * Build the {@link FrequencyLookup} selected by {@code --db-lookup-mode}, behind the Bloom
+   * filters and the preloaded ClinVar variants if any.
    */
-  private boolean getClinVarInfo(Connection conn, String release, VariantDescription normalizedVar)
-      throws VarfishAnnotatorException {
-    final String query =
-        "SELECT COUNT(*) FROM clinvar_var "
-            + "WHERE (release = ?) AND (chrom = ?) AND (start = ?) AND (ref = ?) AND (alt = ?)";
-    try {
-      final PreparedStatement stmt = conn.prepareStatement(query);
-      stmt.setString(1, release);
-      stmt.setString(2, normalizedVar.getChrom());
-      stmt.setInt(3, normalizedVar.getPos() + 1);
-      stmt.setString(4, normalizedVar.getRef());
-      stmt.setString(5, normalizedVar.getAlt());
-
-      try (ResultSet rs = stmt.executeQuery()) {
-        if (!rs.next()) {
-          throw new VarfishAnnotatorException(
-              "ClinVar counter query returned less than one result");
-        }
-        final boolean result = (rs.getInt(1) > 0);
-        if (rs.next()) {
-          throw new VarfishAnnotatorException(
-              "ClinVar counter query returned more than one result");
-        }
-        return result;
-      }
-    } catch (SQLException e) {
-      throw new VarfishAnnotatorException("Problem with querying ClinVar", e);
+  private FrequencyLookup buildFrequencyLookup(Connection conn) {
+    FrequencyLookup result;
+    if ("merge-join".equals(args.getDbLookupMode())) {
+      result = new MergeJoinFrequencyLookup(conn, args.getRelease());
+    } else if ("combined".equals(args.getDbLookupMode()) && combinedTableUpToDate) {
+      result =
+          new CombinedFrequencyLookup(conn, args.getRelease(), VcfConstants.FREQUENCY_PREFIXES);
+    } else if ("binary-index".equals(args.getDbLookupMode())) {
+      result =
+          new BinaryIndexFrequencyLookup(
+              binaryIndices, new PointQueryFrequencyLookup(conn, args.getRelease()));
+    } else {
+      result = new PointQueryFrequencyLookup(conn, args.getRelease());
+    }
+    if (!bloomFilters.isEmpty()) {
+      result = new BloomFilterFrequencyLookup(bloomFilters, result);
+    }
+    if (clinvarSet != null) {
+      result = new ClinvarPresenceSetFrequencyLookup(clinvarSet, result);
     }
+    return result;
   }
 }
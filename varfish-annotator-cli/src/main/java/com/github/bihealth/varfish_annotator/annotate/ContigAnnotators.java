@@ -0,0 +1,143 @@
+package com.github.bihealth.varfish_annotator.annotate;
+
+import com.github.bihealth.varfish_annotator.VarfishAnnotatorException;
+import com.github.bihealth.varfish_annotator.data.TranscriptSource;
+import de.charite.compbio.jannovar.data.ReferenceDictionary;
+import de.charite.compbio.jannovar.hgvs.AminoAcidCode;
+import de.charite.compbio.jannovar.htsjdk.VariantContextAnnotator;
+import de.charite.compbio.jannovar.htsjdk.VariantContextAnnotator.Options;
+import htsjdk.variant.variantcontext.VariantContext;
+
+/**
+ * Jannovar annotators for RefSeq and ENSEMBL, rebuilt from the {@link TranscriptSource}s when the
+ * contig changes.
+ *
+ * <p>Each worker thread uses its own instance, only the sources are shared. Optionally, variants
+ * are annotated with a {@link TranscriptSweep} over the transcripts near the current position, and
+ * a {@link TranscriptPruning} leaves out transcripts whose annotations cannot be selected.
+ */
+final class ContigAnnotators {
+
+  /** Source of RefSeq transcripts. */
+  private final TranscriptSource refseqSource;
+
+  /** Source of ENSEMBL transcripts. */
+  private final TranscriptSource ensemblSource;
+
+  /** Whether to use transcript sweeps for coordinate-sorted input. */
+  private final boolean sweep;
+
+  /** Whether to leave out transcripts whose annotations cannot be selected. */
+  private final boolean prune;
+
+  /** Contig of the current annotators, {@code null} before the first call. */
+  private String contig;
+
+  /** Annotators for the whole contig. */
+  private VariantContextAnnotator refseqContigAnnotator;
+
+  private VariantContextAnnotator ensemblContigAnnotator;
+
+  /** Sweeps over the contig, {@code null} if disabled. */
+  private TranscriptSweep refseqSweep;
+
+  private TranscriptSweep ensemblSweep;
+
+  /** Pruning for the contig, {@code null} if disabled. */
+  private TranscriptPruning refseqPruning;
+
+  private TranscriptPruning ensemblPruning;
+
+  /** Annotators selected for the current variant. */
+  private VariantContextAnnotator refseqAnnotator;
+
+  private VariantContextAnnotator ensemblAnnotator;
+
+  ContigAnnotators(
+      TranscriptSource refseqSource, TranscriptSource ensemblSource, boolean sweep, boolean prune) {
+    this.refseqSource = refseqSource;
+    this.ensemblSource = ensemblSource;
+    this.sweep = sweep;
+    this.prune = prune;
+  }
+
+  /** @return the RefSeq reference dictionary, used for chromosome mapping. */
+  ReferenceDictionary getRefDict() {
+    return refseqSource.getRefDict();
+  }
+
+  /** Switch to the annotators for {@code ctx}, loading the transcripts of its contig if needed. */
+  void switchTo(VariantContext ctx) throws VarfishAnnotatorException {
+    if (!ctx.getContig().equals(contig)) {
+      contig = null;
+      refseqContigAnnotator = buildAnnotator(refseqSource, ctx.getContig());
+      ensemblContigAnnotator = buildAnnotator(ensemblSource, ctx.getContig());
+      if (sweep) {
+        refseqSweep = buildSweep(refseqSource, ctx.getContig());
+        ensemblSweep = buildSweep(ensemblSource, ctx.getContig());
+      }
+      if (prune) {
+        refseqPruning = buildPruning(refseqSource, ctx.getContig(), true);
+        ensemblPruning = buildPruning(ensemblSource, ctx.getContig(), false);
+      }
+      contig = ctx.getContig();
+    }
+
+    refseqAnnotator = refseqContigAnnotator;
+    ensemblAnnotator = ensemblContigAnnotator;
+    if (sweep && !ctx.isSymbolicOrSV()) {
+      final VariantContextAnnotator refseqSweepAnnotator =
+          refseqSweep.advance(ctx.getStart() - 1, ctx.getEnd());
+      final VariantContextAnnotator ensemblSweepAnnotator =
+          ensemblSweep.advance(ctx.getStart() - 1, ctx.getEnd());
+      if (refseqSweepAnnotator != null) {
+        refseqAnnotator = refseqSweepAnnotator;
+      }
+      if (ensemblSweepAnnotator != null) {
+        ensemblAnnotator = ensemblSweepAnnotator;
+      }
+    }
+  }
+
+  VariantContextAnnotator getRefseqAnnotator() {
+    return refseqAnnotator;
+  }
+
+  VariantContextAnnotator getEnsemblAnnotator() {
+    return ensemblAnnotator;
+  }
+
+  /** @return the RefSeq pruning for the current contig, {@code null} if disabled. */
+  TranscriptPruning getRefseqPruning() {
+    return refseqPruning;
+  }
+
+  /** @return the ENSEMBL pruning for the current contig, {@code null} if disabled. */
+  TranscriptPruning getEnsemblPruning() {
+    return ensemblPruning;
+  }
+
+  /** Construct a Jannovar annotator for the transcripts of {@code contig}. */
+  private static VariantContextAnnotator buildAnnotator(TranscriptSource source, String contig)
+      throws VarfishAnnotatorException {
+    return new VariantContextAnnotator(
+        source.getRefDict(), source.getChromosomes(contig), buildOptions());
+  }
+
+  /** Construct a transcript sweep over {@code contig}. */
+  private static TranscriptSweep buildSweep(TranscriptSource source, String contig)
+      throws VarfishAnnotatorException {
+    return new TranscriptSweep(source.getRefDict(), source.getTranscripts(contig), buildOptions());
+  }
+
+  /** Construct a transcript pruning over {@code contig}. */
+  private static TranscriptPruning buildPruning(
+      TranscriptSource source, String contig, boolean isRefSeq) throws VarfishAnnotatorException {
+    return new TranscriptPruning(
+        source.getRefDict(), source.getTranscripts(contig), buildOptions(), isRefSeq);
+  }
+
+  private static Options buildOptions() {
+    return new Options(false, AminoAcidCode.ONE_LETTER, false, false, false, false, false);
+  }
+}
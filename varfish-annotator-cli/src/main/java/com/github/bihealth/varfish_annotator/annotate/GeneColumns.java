@@ -0,0 +1,476 @@
+package com.github.bihealth.varfish_annotator.annotate;
+
+import com.github.bihealth.varfish_annotator.utils.BestAnnotationSelector;
+import com.github.bihealth.varfish_annotator.utils.VariantDescription;
+import com.google.common.base.Joiner;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import de.charite.compbio.jannovar.annotation.Annotation;
+import de.charite.compbio.jannovar.annotation.VariantAnnotations;
+import de.charite.compbio.jannovar.annotation.VariantEffect;
+import de.charite.compbio.jannovar.data.ReferenceDictionary;
+import de.charite.compbio.jannovar.hgvs.AminoAcidCode;
+import de.charite.compbio.jannovar.reference.GenomeInterval;
+import de.charite.compbio.jannovar.reference.Strand;
+import de.charite.compbio.jannovar.reference.TranscriptModel;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The RefSeq and ENSEMBL annotations selected for each gene of one allele, and the output columns
+ * built from them.
+ */
+public final class GeneColumns {
+
+  /** Pseudo gene ID for intergenic annotations, see {@link #extractAnnotations}. */
+  static final String INTERGENIC = "__intergenic__";
+
+  /** Groups of {@link #SELECTOR} for the annotations by RefSeq and ENSEMBL gene ID. */
+  private static final int BY_REFSEQ_GENE = 0;
+
+  private static final int BY_ENSEMBL_GENE = 1;
+
+  /** Maximal number of entries in {@link #EFFECTS_VALUES}. */
+  private static final int MAX_EFFECTS_VALUES = 4096;
+
+  /** Rendered effect sets by the effects in Jannovar's order, see {@link #buildEffectsValue}. */
+  private static final ConcurrentHashMap<List<VariantEffect>, String> EFFECTS_VALUES =
+      new ConcurrentHashMap<>();
+
+  /** Per-thread selector of the annotations per gene, reused for each allele. */
+  private static final ThreadLocal<BestAnnotationSelector> SELECTOR =
+      ThreadLocal.withInitial(BestAnnotationSelector::new);
+
+  /** RefSeq annotations by RefSeq and ENSEMBL gene ID. */
+  private final Map<String, Annotation> refSeqAnnoByRefSeqGene;
+
+  private final Map<String, Annotation> refSeqAnnoByEnsemblGene;
+
+  /** ENSEMBL annotations by RefSeq and ENSEMBL gene ID. */
+  private final Map<String, Annotation> ensemblAnnoByRefSeqGene;
+
+  private final Map<String, Annotation> ensemblAnnoByEnsemblGene;
+
+  /** All gene IDs, in the order of the output rows. */
+  private final Collection<String> geneIds;
+
+  private GeneColumns(
+      Map<String, Annotation> refSeqAnnoByRefSeqGene,
+      Map<String, Annotation> refSeqAnnoByEnsemblGene,
+      Map<String, Annotation> ensemblAnnoByRefSeqGene,
+      Map<String, Annotation> ensemblAnnoByEnsemblGene,
+      Collection<String> geneIds) {
+    this.refSeqAnnoByRefSeqGene = refSeqAnnoByRefSeqGene;
+    this.refSeqAnnoByEnsemblGene = refSeqAnnoByEnsemblGene;
+    this.ensemblAnnoByRefSeqGene = ensemblAnnoByRefSeqGene;
+    this.ensemblAnnoByEnsemblGene = ensemblAnnoByEnsemblGene;
+    this.geneIds = geneIds;
+  }
+
+  /**
+   * Select the annotations of the {@code i}-th allele for each gene.
+   *
+   * @param refseqAnnotationsList Jannovar RefSeq annotations of the variant call.
+   * @param ensemblAnnotationsList Jannovar ENSEMBL annotations of the variant call.
+   * @param i Index of the allele in the variant call.
+   * @return The selected annotations.
+   */
+  public static GeneColumns select(
+      ImmutableList<VariantAnnotations> refseqAnnotationsList,
+      ImmutableList<VariantAnnotations> ensemblAnnotationsList,
+      int i) {
+    // Select the most pathogenic annotation per gene, as from the annotations sorted
+    // descendingly by variant effect.
+    //
+    // Collect RefSeq and ENSEMBL annotations per gene.  Jannovar provides gene ID mappings
+    // *to* both RefSeq and ENSEMBL *from* both RefSeq and ENSEMBL.  We use an (arbitrarily)
+    // fixed lookup order as any should give sensible results except for genes whose annotation
+    // is not stable (and would thus be less interpretable in a rare disease setting anyway).
+    //
+    // The only exception are variants that only have intergenic variants.  Here, we match
+    // one arbitrary annotation for each transcript set.  The reason is that ENSEMBL contains
+    // so many more transcripts/genes such that we would expect them to never match.
+
+    // RefSeq first
+    final HashMap<String, Annotation> refSeqAnnoByRefSeqGene = new HashMap<>();
+    final HashMap<String, Annotation> refSeqAnnoByEnsemblGene = new HashMap<>();
+    extractAnnotations(
+        refseqAnnotationsList, i, refSeqAnnoByRefSeqGene, refSeqAnnoByEnsemblGene, true);
+
+    // Then ENSEMBL
+    final HashMap<String, Annotation> ensemblAnnoByRefSeqGene = new HashMap<>();
+    final HashMap<String, Annotation> ensemblAnnoByEnsemblGene = new HashMap<>();
+    extractAnnotations(
+        ensemblAnnotationsList, i, ensemblAnnoByRefSeqGene, ensemblAnnoByEnsemblGene, false);
+
+    // Build a list of all gene IDs that we will iterate over later.
+    final TreeSet<String> geneIds = new TreeSet<>();
+    geneIds.addAll(refSeqAnnoByRefSeqGene.keySet());
+    geneIds.addAll(refSeqAnnoByEnsemblGene.keySet());
+    geneIds.addAll(ensemblAnnoByRefSeqGene.keySet());
+    geneIds.addAll(ensemblAnnoByEnsemblGene.keySet());
+
+    return new GeneColumns(
+        refSeqAnnoByRefSeqGene,
+        refSeqAnnoByEnsemblGene,
+        ensemblAnnoByRefSeqGene,
+        ensemblAnnoByEnsemblGene,
+        geneIds);
+  }
+
+  /**
+   * Construct from the intergenic annotations only.
+   *
+   * @param refseqAnno The RefSeq intergenic annotation, may be {@code null}.
+   * @param ensemblAnno The ENSEMBL intergenic annotation, may be {@code null}.
+   * @return The selected annotations.
+   */
+  static GeneColumns intergenic(Annotation refseqAnno, Annotation ensemblAnno) {
+    final Map<String, Annotation> refseqAnnos =
+        (refseqAnno == null) ? ImmutableMap.of() : ImmutableMap.of(INTERGENIC, refseqAnno);
+    final Map<String, Annotation> ensemblAnnos =
+        (ensemblAnno == null) ? ImmutableMap.of() : ImmutableMap.of(INTERGENIC, ensemblAnno);
+    final List<String> geneIds =
+        (refseqAnno == null && ensemblAnno == null)
+            ? ImmutableList.of()
+            : ImmutableList.of(INTERGENIC);
+    return new GeneColumns(refseqAnnos, refseqAnnos, ensemblAnnos, ensemblAnnos, geneIds);
+  }
+
+  /** @return the RefSeq intergenic annotation, {@code null} if there is none. */
+  Annotation getRefseqIntergenic() {
+    return refSeqAnnoByRefSeqGene.get(INTERGENIC);
+  }
+
+  /** @return the ENSEMBL intergenic annotation, {@code null} if there is none. */
+  Annotation getEnsemblIntergenic() {
+    return ensemblAnnoByEnsemblGene.get(INTERGENIC);
+  }
+
+  /**
+   * @return whether there are only intergenic annotations, of which the output columns do not
+   *     depend on the variant position except for the distance.
+   */
+  boolean isIntergenicOnly() {
+    return (geneIds.isEmpty() || (geneIds.size() == 1 && geneIds.contains(INTERGENIC)))
+        && isPositionIndependent(getRefseqIntergenic())
+        && isPositionIndependent(getEnsemblIntergenic());
+  }
+
+  /**
+   * Build the RefSeq and ENSEMBL output columns for each gene.
+   *
+   * @param normalizedVar The normalized allele, used for the distance to the exons.
+   * @return One list of {@link AlleleAnnotation#NUM_GENE_COLUMNS} columns per gene, empty if there
+   *     are no overlapping genes.
+   */
+  public List<List<String>> build(VariantDescription normalizedVar) {
+    return buildGeneColumns(
+        normalizedVar,
+        refSeqAnnoByRefSeqGene,
+        refSeqAnnoByEnsemblGene,
+        ensemblAnnoByRefSeqGene,
+        ensemblAnnoByEnsemblGene,
+        geneIds);
+  }
+
+  /** @return whether the output columns for {@code anno} do not depend on the variant position. */
+  private static boolean isPositionIndependent(Annotation anno) {
+    return anno == null || (anno.getCDSNTChange() == null && anno.getProteinChange() == null);
+  }
+
+  /**
+   * Encode the output columns built by {@link #build} for the SNV effect table, one line per gene
+   * and tab-separated columns.
+   */
+  public static String encode(List<List<String>> geneColumns) {
+    final StringBuilder result = new StringBuilder();
+    for (List<String> row : geneColumns) {
+      if (result.length() > 0) {
+        result.append('\n');
+      }
+      Joiner.on('\t').appendTo(result, row);
+    }
+    return result.toString();
+  }
+
+  /** Decode the output columns encoded by {@link #encode}. */
+  static List<List<String>> decode(String value) {
+    final List<List<String>> result = new ArrayList<>();
+    if (!value.isEmpty()) {
+      for (String line : Splitter.on('\n').split(value)) {
+        result.add(Splitter.on('\t').splitToList(line));
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Build the RefSeq and ENSEMBL output columns for each gene overlapping the variant.
+   *
+   * @return One list of {@link AlleleAnnotation#NUM_GENE_COLUMNS} columns per gene, empty if there
+   *     are no overlapping genes.
+   */
+  private static List<List<String>> buildGeneColumns(
+      VariantDescription normalizedVar,
+      Map<String, Annotation> refSeqAnnoByRefSeqGene,
+      Map<String, Annotation> refSeqAnnoByEnsemblGene,
+      Map<String, Annotation> ensemblAnnoByRefSeqGene,
+      Map<String, Annotation> ensemblAnnoByEnsemblGene,
+      Collection<String> geneIds) {
+    final List<List<String>> result = new ArrayList<>();
+    // List of gene IDs that have been processed now.
+    final TreeSet<String> doneGeneIds = new TreeSet<>();
+    for (String geneId : geneIds) {
+      if (doneGeneIds.contains(geneId)) {
+        continue; // Do not process twice.
+      }
+
+      // Select both RefSeq and ENSEMBL annotation for the given (RefSeq or ENSEMBL gene ID).
+      final Annotation refseqAnno;
+      if (refSeqAnnoByRefSeqGene.containsKey(geneId)) {
+        refseqAnno = refSeqAnnoByRefSeqGene.get(geneId);
+      } else if (refSeqAnnoByEnsemblGene.containsKey(geneId)) {
+        refseqAnno = refSeqAnnoByEnsemblGene.get(geneId);
+      } else {
+        refseqAnno = null;
+      }
+      final Annotation ensemblAnno;
+      if (ensemblAnnoByEnsemblGene.containsKey(geneId)) {
+        ensemblAnno = ensemblAnnoByEnsemblGene.get(geneId);
+      } else if (ensemblAnnoByRefSeqGene.containsKey(geneId)) {
+        ensemblAnno = ensemblAnnoByRefSeqGene.get(geneId);
+      } else {
+        ensemblAnno = null;
+      }
+
+      // Mark all gene IDs as done.
+      if (ensemblAnno != null && ensemblAnno.getTranscript() != null) {
+        doneGeneIds.add(ensemblAnno.getTranscript().getGeneID());
+        if (ensemblAnno.getTranscript().getAltGeneIDs().containsKey("ENTREZ_ID")) {
+          doneGeneIds.add(ensemblAnno.getTranscript().getAltGeneIDs().get("ENTREZ_ID"));
+        }
+      }
+      if (refseqAnno != null && refseqAnno.getTranscript() != null) {
+        doneGeneIds.add(refseqAnno.getTranscript().getGeneID());
+        if (refseqAnno.getTranscript().getAltGeneIDs().containsKey("ENSEMBL_GENE_ID")) {
+          doneGeneIds.add(refseqAnno.getTranscript().getAltGeneIDs().get("ENSEMBL_GENE_ID"));
+        }
+      }
+
+      // Distance to next base of exon.
+      final int refSeqExonDist =
+          getDistance(normalizedVar, refseqAnno == null ? null : refseqAnno.getTranscript());
+      final int ensemblExonDist =
+          getDistance(normalizedVar, ensemblAnno == null ? null : ensemblAnno.getTranscript());
+
+      result.add(
+          ImmutableList.of(
+              // RefSeq
+              (refseqAnno == null || refseqAnno.getTranscript() == null)
+                  ? "."
+                  : refseqAnno.getTranscript().getGeneID(),
+              (refseqAnno == null || refseqAnno.getTranscript() == null)
+                  ? "."
+                  : refseqAnno.getTranscript().getAccession(),
+              (refseqAnno == null || refseqAnno.getTranscript() == null)
+                  ? "."
+                  : refseqAnno.getTranscript().isCoding() ? "TRUE" : "FALSE",
+              (refseqAnno == null || refseqAnno.getTranscript() == null)
+                  ? "."
+                  : refseqAnno.getCDSNTChange() == null
+                      ? "."
+                      : (refseqAnno.getTranscript().isCoding() ? "c." : "n.")
+                          + refseqAnno.getCDSNTChange().toHGVSString(AminoAcidCode.ONE_LETTER),
+              refseqAnno == null
+                  ? "."
+                  : refseqAnno.getProteinChange() == null
+                      ? "."
+                      : "p."
+                          + refseqAnno
+                              .getProteinChange()
+                              .withOnlyPredicted(false)
+                              .toHGVSString(AminoAcidCode.ONE_LETTER),
+              (refseqAnno == null || refseqAnno.getTranscript() == null)
+                  ? "{}"
+                  : buildEffectsValue(refseqAnno.getEffects()),
+              (refSeqExonDist >= 0) ? Integer.toString(refSeqExonDist) : ".",
+              // ENSEMBL
+              (ensemblAnno == null || ensemblAnno.getTranscript() == null)
+                  ? "."
+                  : ensemblAnno.getTranscript().getGeneID(),
+              (ensemblAnno == null || ensemblAnno.getTranscript() == null)
+                  ? "."
+                  : ensemblAnno.getTranscript().getAccession(),
+              (ensemblAnno == null || ensemblAnno.getTranscript() == null)
+                  ? "."
+                  : ensemblAnno.getTranscript().isCoding() ? "TRUE" : "FALSE",
+              (ensemblAnno == null || ensemblAnno.getTranscript() == null)
+                  ? "."
+                  : ensemblAnno.getCDSNTChange() == null
+                      ? "."
+                      : (ensemblAnno.getTranscript().isCoding() ? "c." : "n.")
+                          + ensemblAnno.getCDSNTChange().toHGVSString(AminoAcidCode.ONE_LETTER),
+              (ensemblAnno == null || ensemblAnno.getTranscript() == null)
+                  ? "."
+                  : ensemblAnno.getProteinChange() == null
+                      ? "."
+                      : "p."
+                          + ensemblAnno
+                              .getProteinChange()
+                              .withOnlyPredicted(false)
+                              .toHGVSString(AminoAcidCode.ONE_LETTER),
+              (ensemblAnno == null || ensemblAnno.getTranscript() == null)
+                  ? "{}"
+                  : buildEffectsValue(ensemblAnno.getEffects()),
+              (ensemblExonDist >= 0) ? Integer.toString(ensemblExonDist) : "."));
+    }
+    return result;
+  }
+
+  /**
+   * Collect the most pathogenic RefSeq or ENSEMBL annotation per gene.
+   *
+   * <p>See comment in {@link #select} on the reasoning behind "__integergenic__".
+   *
+   * @param annotationsList Jannovar annotations of the variant call, may be {@code null}.
+   * @param i Index of the allele in the variant call.
+   * @param annoByRefSeqGene Annotations by RefSeq gene are written here.
+   * @param annoByEnsemblGene Annotations by ENSEMBL gene ID.
+   * @param isRefSeq Whether to process as refseq or
+   */
+  private static void extractAnnotations(
+      ImmutableList<VariantAnnotations> annotationsList,
+      int i,
+      HashMap<String, Annotation> annoByRefSeqGene,
+      HashMap<String, Annotation> annoByEnsemblGene,
+      boolean isRefSeq) {
+    if (annotationsList == null) {
+      return;
+    }
+    final List<Annotation> annos = annotationsList.get(i - 1).getAnnotations();
+    final BestAnnotationSelector selector = SELECTOR.get();
+    selector.clear();
+    for (int j = 0; j < annos.size(); ++j) {
+      final Annotation annotation = annos.get(j);
+      final int rank = BestAnnotationSelector.rank(annotation.getMostPathogenicVarType());
+      if (annotation.getEffects().isEmpty()
+          || annotation.getEffects().equals(ImmutableSet.of(VariantEffect.INTERGENIC_VARIANT))) {
+        // Put into map under pseudo-identifier "__intergenic__". This ways, intergenic variants
+        // are written out only once for RefSeq/ENSEMBL and not twice if different genes are
+        // closest.  The last one in sorted order wins.
+        selector.offerLast(BY_REFSEQ_GENE, INTERGENIC, rank, j);
+        selector.offerLast(BY_ENSEMBL_GENE, INTERGENIC, rank, j);
+      } else {
+        final String refseqGeneId;
+        final String ensemblGeneId;
+        if (isRefSeq) {
+          refseqGeneId = annotation.getTranscript().getGeneID();
+          ensemblGeneId = annotation.getTranscript().getAltGeneIDs().get("ENSEMBL_GENE_ID");
+        } else {
+          refseqGeneId = annotation.getTranscript().getAltGeneIDs().get("ENTREZ_ID");
+          ensemblGeneId = annotation.getTranscript().getGeneID();
+        }
+        if (refseqGeneId != null) {
+          selector.offer(BY_REFSEQ_GENE, refseqGeneId, rank, j);
+        }
+        if (ensemblGeneId != null) {
+          selector.offer(BY_ENSEMBL_GENE, ensemblGeneId, rank, j);
+        }
+      }
+    }
+
+    for (int slot = 0; slot < selector.size(); ++slot) {
+      final HashMap<String, Annotation> annoByGene =
+          (selector.getGroup(slot) == BY_REFSEQ_GENE) ? annoByRefSeqGene : annoByEnsemblGene;
+      annoByGene.put(selector.getKey(slot), annos.get(selector.getIndex(slot)));
+    }
+  }
+
+  /**
+   * Return distance from {@code normalizedVar} to exons of {@code transcript}.
+   *
+   * @param normalizedVar The normalized variant.
+   * @param transcript The transcript to compute distance to.
+   * @return Distance to base of exon, {@code -1} if {@code transcript} is {@code null}.
+   */
+  private static int getDistance(VariantDescription normalizedVar, TranscriptModel transcript) {
+    if (transcript == null) {
+      return -1;
+    } else {
+      final ReferenceDictionary refDict = transcript.getTXRegion().getRefDict();
+      final String txChrom = refDict.getContigIDToName().get(transcript.getChr());
+
+      if (!normalizedVar.getChrom().equals(txChrom)) {
+        return -1;
+      }
+
+      final GenomeInterval varInterval =
+          new GenomeInterval(
+              refDict,
+              Strand.FWD,
+              transcript.getChr(),
+              normalizedVar.getPos(),
+              normalizedVar.getEnd());
+
+      int result = -1;
+      for (GenomeInterval exon : transcript.getExonRegions()) {
+        exon = exon.withStrand(Strand.FWD); // normalize strand
+        if (exon.overlapsWith(varInterval)) { // variant overlaps with exon
+          result = 0;
+          break;
+        } else {
+          // Get distance between {@code exon} and {@code varInterval}.
+          final int distance;
+          if (varInterval.getEndPos() <= exon.getBeginPos()) { // variant left of exon
+            distance = (exon.getBeginPos() - varInterval.getEndPos()) + 1;
+          } else { // variant right of exon
+            if (!(varInterval.getBeginPos() >= exon.getEndPos())) {
+              throw new RuntimeException("Invariant violated!");
+            }
+            distance = (varInterval.getBeginPos() - exon.getEndPos()) + 1;
+          }
+          // Update {@code result} if necessary.
+          if (result == -1 || result > distance) {
+            result = distance;
+          }
+        }
+      }
+      return result;
+    }
+  }
+
+  /**
+   * Build Postgres array expression for TSV file with variant effects.
+   *
+   * @param effects The effects to create expression for.
+   * @return String with the variant effects.
+   */
+  private static String buildEffectsValue(ImmutableSet<VariantEffect> effects) {
+    // The rendered value depends on the order of the effects, thus the list is used as key.
+    final List<VariantEffect> key = effects.asList();
+    final String cached = EFFECTS_VALUES.get(key);
+    if (cached != null) {
+      return cached;
+    }
+    final StringBuilder result = new StringBuilder("{");
+    for (VariantEffect effect : key) {
+      if (result.length() > 1) {
+        result.append(',');
+      }
+      result.append('"').append(effect.getSequenceOntologyTerm()).append('"');
+    }
+    final String value = result.append('}').toString();
+    if (EFFECTS_VALUES.size() < MAX_EFFECTS_VALUES) {
+      EFFECTS_VALUES.putIfAbsent(key, value);
+    }
+    return value;
+  }
+}
@@ -0,0 +1,190 @@
+package com.github.bihealth.varfish_annotator.annotate;
+
+import com.github.bihealth.varfish_annotator.VarfishAnnotatorException;
+import com.github.bihealth.varfish_annotator.data.TranscriptSource;
+import com.github.bihealth.varfish_annotator.utils.IntergenicGaps;
+import com.google.common.collect.ImmutableList;
+import de.charite.compbio.jannovar.annotation.Annotation;
+import de.charite.compbio.jannovar.reference.GenomeInterval;
+import de.charite.compbio.jannovar.reference.Strand;
+import de.charite.compbio.jannovar.reference.TranscriptModel;
+import htsjdk.variant.variantcontext.VariantContext;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Intergenic annotations learned from Jannovar, reused for variants far away from all transcripts.
+ *
+ * <p>For a variant in a gap between the transcripts of a contig, Jannovar only reports the
+ * neighbouring transcripts as intergenic. The intergenic annotation selected for the first such
+ * variant is kept for each gap and side of the gap that is closer, per source, and used for the
+ * following variants in the same slot without calling Jannovar. Variants close to the middle of a
+ * gap, and gaps where Jannovar reports anything but intergenic annotations, always use Jannovar.
+ *
+ * <p>Thread-safe, shared by all worker threads.
+ */
+final class IntergenicCache {
+
+  /** Distance of the variant to transcripts, larger than Jannovar's upstream/downstream range. */
+  static final int PADDING = 10_000;
+
+  /** Minimal difference in distance to the left and right neighbour for using a slot. */
+  static final int MARGIN = 1_000;
+
+  /** Side of the gap for a source without neighbours. */
+  private static final int NO_SIDE = 0;
+
+  /** Side of the gap closer to the left neighbour or without right neighbour. */
+  private static final int LEFT = 1;
+
+  /** Side of the gap closer to the right neighbour or without left neighbour. */
+  private static final int RIGHT = 2;
+
+  /** Source of RefSeq transcripts. */
+  private final TranscriptSource refseqSource;
+
+  /** Source of ENSEMBL transcripts. */
+  private final TranscriptSource ensemblSource;
+
+  /** Gaps and slots by contig name. */
+  private final ConcurrentHashMap<String, ContigSlots> contigs = new ConcurrentHashMap<>();
+
+  IntergenicCache(TranscriptSource refseqSource, TranscriptSource ensemblSource) {
+    this.refseqSource = refseqSource;
+    this.ensemblSource = ensemblSource;
+  }
+
+  /**
+   * Find the slot of {@code ctx}.
+   *
+   * @return The slot or {@code null} if {@code ctx} must be annotated with Jannovar.
+   * @throws VarfishAnnotatorException in case of problems with loading the transcripts
+   */
+  Slot find(VariantContext ctx) throws VarfishAnnotatorException {
+    if (ctx.isSymbolicOrSV()) {
+      return null;
+    }
+    ContigSlots contigSlots = contigs.get(ctx.getContig());
+    if (contigSlots == null) {
+      contigSlots = new ContigSlots(buildGaps(ctx.getContig()));
+      final ContigSlots previous = contigs.putIfAbsent(ctx.getContig(), contigSlots);
+      if (previous != null) {
+        contigSlots = previous;
+      }
+    }
+
+    // Jannovar's alleles lie within [begin, end) after trimming and shifting.
+    final int begin = ctx.getStart() - 2;
+    final int end = ctx.getEnd() + 1;
+    final IntergenicGaps gaps = contigSlots.gaps;
+    final int gap = gaps.findGap(begin, end);
+    if (gap == IntergenicGaps.NO_GAP) {
+      return null;
+    }
+    final int refseqSide = getSide(gaps, 0, gap, begin, end);
+    final int ensemblSide = getSide(gaps, 1, gap, begin, end);
+    if (refseqSide < 0 || ensemblSide < 0) {
+      return null;
+    }
+    final long key = gap * 9L + refseqSide * 3 + ensemblSide;
+    return contigSlots.slots.computeIfAbsent(key, k -> new Slot());
+  }
+
+  /** @return side of {@code gap} that {@code [begin, end)} is closer to, or {@code -1}. */
+  private static int getSide(IntergenicGaps gaps, int source, int gap, int begin, int end) {
+    final int leftEnd = gaps.getLeftEnd(source, gap);
+    final int rightBegin = gaps.getRightBegin(source, gap);
+    if (leftEnd == Integer.MIN_VALUE && rightBegin == Integer.MAX_VALUE) {
+      return NO_SIDE;
+    } else if (rightBegin == Integer.MAX_VALUE) {
+      return LEFT;
+    } else if (leftEnd == Integer.MIN_VALUE) {
+      return RIGHT;
+    }
+    final long leftDist = (long) begin - leftEnd;
+    final long rightDist = (long) rightBegin - end;
+    if (leftDist + MARGIN < rightDist) {
+      return LEFT;
+    } else if (rightDist + MARGIN < leftDist) {
+      return RIGHT;
+    } else {
+      return -1;
+    }
+  }
+
+  /** Build the gaps between the RefSeq and ENSEMBL transcripts of {@code contig}. */
+  private IntergenicGaps buildGaps(String contig) throws VarfishAnnotatorException {
+    final List<TranscriptModel> refseqTms = refseqSource.getTranscripts(contig);
+    final List<TranscriptModel> ensemblTms = ensemblSource.getTranscripts(contig);
+    return new IntergenicGaps(
+        PADDING,
+        ImmutableList.of(getBegins(refseqTms), getBegins(ensemblTms)),
+        ImmutableList.of(getEnds(refseqTms), getEnds(ensemblTms)));
+  }
+
+  private static int[] getBegins(List<TranscriptModel> tms) {
+    final int[] result = new int[tms.size()];
+    for (int i = 0; i < result.length; ++i) {
+      result[i] = forwardRegion(tms.get(i)).getBeginPos();
+    }
+    return result;
+  }
+
+  private static int[] getEnds(List<TranscriptModel> tms) {
+    final int[] result = new int[tms.size()];
+    for (int i = 0; i < result.length; ++i) {
+      result[i] = forwardRegion(tms.get(i)).getEndPos();
+    }
+    return result;
+  }
+
+  private static GenomeInterval forwardRegion(TranscriptModel tm) {
+    return tm.getTXRegion().withStrand(Strand.FWD);
+  }
+
+  /** Gaps of a contig and their slots. */
+  private static final class ContigSlots {
+
+    final IntergenicGaps gaps;
+
+    final ConcurrentHashMap<Long, Slot> slots = new ConcurrentHashMap<>();
+
+    ContigSlots(IntergenicGaps gaps) {
+      this.gaps = gaps;
+    }
+  }
+
+  /** The intergenic annotations of one gap and side, once learned. */
+  static final class Slot {
+
+    /** Whether the annotations have been learned. */
+    private volatile boolean known;
+
+    private Annotation refseqAnno;
+
+    private Annotation ensemblAnno;
+
+    boolean isKnown() {
+      return known;
+    }
+
+    /** @return the RefSeq intergenic annotation, {@code null} if there is none. */
+    Annotation getRefseqAnno() {
+      return refseqAnno;
+    }
+
+    /** @return the ENSEMBL intergenic annotation, {@code null} if there is none. */
+    Annotation getEnsemblAnno() {
+      return ensemblAnno;
+    }
+
+    /** Learn the annotations selected from Jannovar's result, the first call wins. */
+    synchronized void learn(Annotation refseqAnno, Annotation ensemblAnno) {
+      if (!known) {
+        this.refseqAnno = refseqAnno;
+        this.ensemblAnno = ensemblAnno;
+        known = true;
+      }
+    }
+  }
+}
@@ -0,0 +1,32 @@
+package com.github.bihealth.varfish_annotator.annotate;
+
+import htsjdk.variant.variantcontext.VariantContext;
+import java.util.Collections;
+import java.util.List;
+
+/** A batch of consecutive VCF records passed to the annotation workers in pipeline mode. */
+final class RecordBatch {
+
+  /** Marker for the end of the input. */
+  static final RecordBatch END = new RecordBatch(-1, Collections.emptyList());
+
+  /** Position of the batch in the input, used for ordering the output. */
+  private final long seqNo;
+
+  /** The records in the batch. */
+  private final List<VariantContext> records;
+
+  /** Constructor. */
+  RecordBatch(long seqNo, List<VariantContext> records) {
+    this.seqNo = seqNo;
+    this.records = records;
+  }
+
+  public long getSeqNo() {
+    return seqNo;
+  }
+
+  public List<VariantContext> getRecords() {
+    return records;
+  }
+}
@@ -0,0 +1,106 @@
+package com.github.bihealth.varfish_annotator.annotate;
+
+import com.google.common.collect.ImmutableList;
+import de.charite.compbio.jannovar.data.JannovarData;
+import de.charite.compbio.jannovar.data.ReferenceDictionary;
+import de.charite.compbio.jannovar.htsjdk.VariantContextAnnotator;
+import de.charite.compbio.jannovar.reference.Strand;
+import de.charite.compbio.jannovar.reference.TranscriptModel;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * The transcripts of one contig ordered by begin position, with a Jannovar annotator over some of
+ * them that is only rebuilt when these change.
+ *
+ * <p>Used by {@link TranscriptSweep} and {@link TranscriptPruning}, not thread-safe.
+ */
+final class SortedTranscripts {
+
+  /** Reference dictionary for building the annotator. */
+  private final ReferenceDictionary refDict;
+
+  /** Options for building the annotator. */
+  private final VariantContextAnnotator.Options options;
+
+  /** The transcripts, ordered by begin position. */
+  private final TranscriptModel[] transcripts;
+
+  /** Forward strand begin and end positions of {@link #transcripts}. */
+  private final int[] begins;
+
+  private final int[] ends;
+
+  /** Indices of the transcripts of {@link #annotator}. */
+  private List<Integer> annotatorIndices;
+
+  /** Annotator for {@link #annotatorIndices}. */
+  private VariantContextAnnotator annotator;
+
+  /**
+   * Construct sorted transcripts.
+   *
+   * @param refDict Reference dictionary of the transcript database.
+   * @param transcripts The transcripts of the contig.
+   * @param options Options for building the annotator.
+   */
+  SortedTranscripts(
+      ReferenceDictionary refDict,
+      List<TranscriptModel> transcripts,
+      VariantContextAnnotator.Options options) {
+    this.refDict = refDict;
+    this.options = options;
+    // Stable sort keeps the database order of transcripts with the same begin position.
+    this.transcripts = transcripts.toArray(new TranscriptModel[0]);
+    Arrays.sort(
+        this.transcripts,
+        Comparator.comparingInt(tm -> tm.getTXRegion().withStrand(Strand.FWD).getBeginPos()));
+    this.begins = new int[this.transcripts.length];
+    this.ends = new int[this.transcripts.length];
+    for (int i = 0; i < this.transcripts.length; ++i) {
+      begins[i] = this.transcripts[i].getTXRegion().withStrand(Strand.FWD).getBeginPos();
+      ends[i] = this.transcripts[i].getTXRegion().withStrand(Strand.FWD).getEndPos();
+    }
+  }
+
+  /** @return the number of transcripts. */
+  int size() {
+    return transcripts.length;
+  }
+
+  /** @return the transcript at {@code index}. */
+  TranscriptModel get(int index) {
+    return transcripts[index];
+  }
+
+  /** @return the forward strand begin positions, ordered. */
+  int[] getBegins() {
+    return begins;
+  }
+
+  /** @return the forward strand end positions. */
+  int[] getEnds() {
+    return ends;
+  }
+
+  /**
+   * Get annotator over some of the transcripts.
+   *
+   * @param indices Sorted indices of the transcripts.
+   * @return Annotator over the transcripts, the previous one if {@code indices} did not change.
+   */
+  VariantContextAnnotator getAnnotator(List<Integer> indices) {
+    if (!indices.equals(annotatorIndices)) {
+      final ImmutableList.Builder<TranscriptModel> builder = ImmutableList.builder();
+      for (int i : indices) {
+        builder.add(transcripts[i]);
+      }
+      annotator =
+          new VariantContextAnnotator(
+              refDict, new JannovarData(refDict, builder.build()).getChromosomes(), options);
+      annotatorIndices = indices;
+    }
+    return annotator;
+  }
+}
@@ -0,0 +1,314 @@
+package com.github.bihealth.varfish_annotator.annotate;
+
+import com.google.common.collect.ImmutableList;
+import de.charite.compbio.jannovar.annotation.Annotation;
+import de.charite.compbio.jannovar.annotation.PutativeImpact;
+import de.charite.compbio.jannovar.annotation.VariantAnnotations;
+import de.charite.compbio.jannovar.annotation.VariantEffect;
+import de.charite.compbio.jannovar.data.ReferenceDictionary;
+import de.charite.compbio.jannovar.htsjdk.InvalidCoordinatesException;
+import de.charite.compbio.jannovar.htsjdk.VariantContextAnnotator;
+import de.charite.compbio.jannovar.reference.GenomeInterval;
+import de.charite.compbio.jannovar.reference.Strand;
+import de.charite.compbio.jannovar.reference.TranscriptModel;
+import htsjdk.variant.variantcontext.Allele;
+import htsjdk.variant.variantcontext.VariantContext;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Annotation of small variants without the transcripts in whose introns they lie deep, if the
+ * annotations of these transcripts cannot be selected for the output.
+ *
+ * <p>Jannovar builds the full annotation including the HGVS changes for each overlapping
+ * transcript, but only the most pathogenic annotation per gene reaches the output. A transcript
+ * with the variant at least {@link #MARGIN} bases away from all of its exons can only get effects
+ * of {@link PutativeImpact#MODIFIER} impact. If each of its genes already has an annotation with a
+ * more pathogenic effect from the other transcripts, the transcript is left out. Otherwise, the
+ * variant must be annotated with all transcripts. All other transcripts within {@link
+ * TranscriptSweep#PADDING} are kept, such that neighbouring genes keep their upstream and
+ * downstream annotations. Variants for which a left out transcript has a gene without any kept
+ * transcript fall back right away, and the annotator over the kept transcripts is reused as long
+ * as these stay the same.
+ *
+ * <p>Each worker thread uses its own instance per contig.
+ */
+final class TranscriptPruning {
+
+  /** Distance of the variant to all exons of a transcript for leaving it out. */
+  static final int MARGIN = 25;
+
+  /** Maximal length of the alleles of variants that are handled. */
+  static final int MAX_ALLELE_LENGTH = 50;
+
+  /** The most pathogenic effect of {@link PutativeImpact#MODIFIER} impact. */
+  private static final VariantEffect MOST_PATHOGENIC_MODIFIER = mostPathogenicModifier();
+
+  /** Whether the transcripts are from RefSeq, ENSEMBL otherwise. */
+  private final boolean isRefSeq;
+
+  /** The transcripts of the contig and the annotator. */
+  private final SortedTranscripts transcripts;
+
+  /** Selection of the transcripts to keep by position and gene. */
+  private final Selector selector;
+
+  /**
+   * Construct pruning.
+   *
+   * @param refDict Reference dictionary of the transcript database.
+   * @param transcripts The transcripts of the contig.
+   * @param options Options for building the annotator.
+   * @param isRefSeq Whether the transcripts are from RefSeq, ENSEMBL otherwise.
+   */
+  TranscriptPruning(
+      ReferenceDictionary refDict,
+      List<TranscriptModel> transcripts,
+      VariantContextAnnotator.Options options,
+      boolean isRefSeq) {
+    this.isRefSeq = isRefSeq;
+    this.transcripts = new SortedTranscripts(refDict, transcripts, options);
+    final int numTranscripts = this.transcripts.size();
+    final int[][] exonBegins = new int[numTranscripts][];
+    final int[][] exonEnds = new int[numTranscripts][];
+    final List<List<String>> geneKeys = new ArrayList<>(numTranscripts);
+    for (int i = 0; i < numTranscripts; ++i) {
+      final TranscriptModel tm = this.transcripts.get(i);
+      final List<GenomeInterval> exons = tm.getExonRegions();
+      exonBegins[i] = new int[exons.size()];
+      exonEnds[i] = new int[exons.size()];
+      for (int j = 0; j < exons.size(); ++j) {
+        exonBegins[i][j] = exons.get(j).withStrand(Strand.FWD).getBeginPos();
+        exonEnds[i][j] = exons.get(j).withStrand(Strand.FWD).getEndPos();
+      }
+      geneKeys.add(getGeneKeys(tm));
+    }
+    this.selector =
+        new Selector(
+            this.transcripts.getBegins(),
+            this.transcripts.getEnds(),
+            exonBegins,
+            exonEnds,
+            geneKeys);
+  }
+
+  /**
+   * Annotate {@code ctx} without the transcripts whose annotations cannot be selected.
+   *
+   * @return The annotations, {@code null} if {@code ctx} must be annotated with all transcripts.
+   */
+  ImmutableList<VariantAnnotations> annotate(VariantContext ctx) {
+    if (ctx.isSymbolicOrSV() || ctx.getReference().length() > MAX_ALLELE_LENGTH) {
+      return null;
+    }
+    for (Allele allele : ctx.getAlternateAlleles()) {
+      if (allele.length() > MAX_ALLELE_LENGTH) {
+        return null;
+      }
+    }
+
+    // Jannovar's alleles lie within [begin, end) after trimming and shifting.
+    final Selection selection = selector.select(ctx.getStart() - 2, ctx.getEnd() + 1);
+    if (selection == null) {
+      return null;
+    }
+
+    final ImmutableList<VariantAnnotations> result;
+    try {
+      result = transcripts.getAnnotator(selection.kept).buildAnnotations(ctx);
+    } catch (InvalidCoordinatesException e) {
+      return null;
+    }
+
+    for (VariantAnnotations annotations : result) {
+      final Map<String, VariantEffect> bestEffects = getBestEffects(annotations);
+      for (String key : selection.prunedGeneKeys) {
+        final VariantEffect best = bestEffects.get(key);
+        if (best == null || best.compareTo(MOST_PATHOGENIC_MODIFIER) >= 0) {
+          return null;
+        }
+      }
+    }
+    return result;
+  }
+
+  /** @return the most pathogenic effect for each gene key of the non-intergenic annotations. */
+  private Map<String, VariantEffect> getBestEffects(VariantAnnotations annotations) {
+    final Map<String, VariantEffect> result = new HashMap<>();
+    for (Annotation annotation : annotations.getAnnotations()) {
+      final VariantEffect effect = annotation.getMostPathogenicVarType();
+      if (effect == null
+          || annotation.getTranscript() == null
+          || effect == VariantEffect.INTERGENIC_VARIANT) {
+        continue;
+      }
+      for (String key : getGeneKeys(annotation.getTranscript())) {
+        final VariantEffect best = result.get(key);
+        if (best == null || effect.compareTo(best) < 0) {
+          result.put(key, effect);
+        }
+      }
+    }
+    return result;
+  }
+
+  /** @return keys of the RefSeq and ENSEMBL genes of {@code tm}, as used by {@link GeneColumns}. */
+  private List<String> getGeneKeys(TranscriptModel tm) {
+    final String refseqGeneId;
+    final String ensemblGeneId;
+    if (isRefSeq) {
+      refseqGeneId = tm.getGeneID();
+      ensemblGeneId = tm.getAltGeneIDs().get("ENSEMBL_GENE_ID");
+    } else {
+      refseqGeneId = tm.getAltGeneIDs().get("ENTREZ_ID");
+      ensemblGeneId = tm.getGeneID();
+    }
+    final List<String> result = new ArrayList<>(2);
+    if (refseqGeneId != null) {
+      result.add("refseq:" + refseqGeneId);
+    }
+    if (ensemblGeneId != null) {
+      result.add("ensembl:" + ensemblGeneId);
+    }
+    return result;
+  }
+
+  /** Transcripts to keep and gene keys of the left out ones for one variant. */
+  static final class Selection {
+
+    /** Sorted indices of the transcripts to keep. */
+    final List<Integer> kept;
+
+    /** Gene keys of the left out transcripts. */
+    final Set<String> prunedGeneKeys;
+
+    Selection(List<Integer> kept, Set<String> prunedGeneKeys) {
+      this.kept = kept;
+      this.prunedGeneKeys = prunedGeneKeys;
+    }
+  }
+
+  /** Selection of the transcripts to keep by their forward strand positions and gene keys. */
+  static final class Selector {
+
+    /** Begin and end positions of the transcripts, ordered by begin position. */
+    private final int[] begins;
+
+    private final int[] ends;
+
+    /** Begin and end positions of the exons of each transcript. */
+    private final int[][] exonBegins;
+
+    private final int[][] exonEnds;
+
+    /** Gene keys of each transcript. */
+    private final List<List<String>> geneKeys;
+
+    /** Largest length of the transcripts, for finding the overlapping ones. */
+    private final int maxLength;
+
+    Selector(
+        int[] begins,
+        int[] ends,
+        int[][] exonBegins,
+        int[][] exonEnds,
+        List<List<String>> geneKeys) {
+      this.begins = begins;
+      this.ends = ends;
+      this.exonBegins = exonBegins;
+      this.exonEnds = exonEnds;
+      this.geneKeys = geneKeys;
+      int maxLength = 0;
+      for (int i = 0; i < begins.length; ++i) {
+        maxLength = Math.max(maxLength, ends[i] - begins[i]);
+      }
+      this.maxLength = maxLength;
+    }
+
+    /**
+     * Select the transcripts for the variant within the 0-based half-open interval {@code [begin,
+     * end)}.
+     *
+     * @return The selection, {@code null} if the variant must be annotated with all transcripts
+     *     because no transcript can be left out, none of the kept ones contains the variant, or a
+     *     left out transcript has a gene without kept transcripts.
+     */
+    Selection select(int begin, int end) {
+      final List<Integer> kept = new ArrayList<>();
+      final Set<String> prunedGeneKeys = new HashSet<>();
+      boolean pruned = false;
+      boolean contained = false;
+      // Jannovar also reports transcripts near the variant, e.g., as upstream or downstream, so
+      // all of these are kept unless the variant lies deep in one of their introns.
+      final int padding = TranscriptSweep.PADDING;
+      int hi = upperBound(begins, end - 1 + padding);
+      for (int i = hi - 1; i >= 0 && (long) begins[i] + maxLength + padding > begin; --i) {
+        if (ends[i] + padding <= begin) {
+          continue;
+        } else if (begins[i] < end && ends[i] > begin && isDeepIntronic(i, begin, end)) {
+          pruned = true;
+          prunedGeneKeys.addAll(geneKeys.get(i));
+        } else {
+          kept.add(i);
+          contained = contained || (begins[i] <= begin && ends[i] >= end);
+        }
+      }
+      if (!pruned || !contained) {
+        return null;
+      }
+
+      // Only the kept transcripts can yield the more pathogenic effect for each gene.
+      final Set<String> keptGeneKeys = new HashSet<>();
+      for (int i : kept) {
+        keptGeneKeys.addAll(geneKeys.get(i));
+      }
+      if (!keptGeneKeys.containsAll(prunedGeneKeys)) {
+        return null;
+      }
+
+      Collections.sort(kept);
+      return new Selection(kept, prunedGeneKeys);
+    }
+
+    /** @return whether {@code [begin, end)} is at least {@link #MARGIN} away from all exons. */
+    private boolean isDeepIntronic(int i, int begin, int end) {
+      for (int j = 0; j < exonBegins[i].length; ++j) {
+        if (exonBegins[i][j] < end + MARGIN && exonEnds[i][j] + MARGIN > begin) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+
+  /** @return index of the first value in {@code values} greater than {@code value}. */
+  private static int upperBound(int[] values, int value) {
+    int lo = 0;
+    int hi = values.length;
+    while (lo < hi) {
+      final int mid = (lo + hi) >>> 1;
+      if (values[mid] <= value) {
+        lo = mid + 1;
+      } else {
+        hi = mid;
+      }
+    }
+    return lo;
+  }
+
+  private static VariantEffect mostPathogenicModifier() {
+    VariantEffect result = null;
+    for (VariantEffect effect : VariantEffect.values()) {
+      if (effect.getImpact() == PutativeImpact.MODIFIER
+          && (result == null || effect.compareTo(result) < 0)) {
+        result = effect;
+      }
+    }
+    return result;
+  }
+}
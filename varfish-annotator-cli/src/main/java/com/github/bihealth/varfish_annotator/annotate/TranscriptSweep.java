@@ -0,0 +1,153 @@
+package com.github.bihealth.varfish_annotator.annotate;
+
+import de.charite.compbio.jannovar.data.ReferenceDictionary;
+import de.charite.compbio.jannovar.htsjdk.VariantContextAnnotator;
+import de.charite.compbio.jannovar.reference.TranscriptModel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Window of the transcripts near the current position, advanced with coordinate-sorted variants of
+ * one contig.
+ *
+ * <p>Variants that lie completely within an active transcript are annotated with a small Jannovar
+ * annotator. All transcripts within {@link #PADDING} of such a variant are active, so the result is
+ * the same as with the annotator for the whole contig. The annotator is built over the transcripts
+ * for the next {@link #SPAN} bases and kept until a variant lies beyond these, rather than being
+ * rebuilt whenever a transcript enters or leaves the window. Other variants, e.g., intergenic ones
+ * for which Jannovar looks at the neighbouring transcripts at any distance, and all variants after
+ * the input went backwards must use the annotator for the whole contig.
+ */
+final class TranscriptSweep {
+
+  /** Distance of the variant to transcripts that are always active, larger than Jannovar's. */
+  static final int PADDING = 10_000;
+
+  /** Number of bases from the variant on covered by a newly built annotator. */
+  static final int SPAN = 1_000_000;
+
+  /** The transcripts of the contig and the annotator. */
+  private final SortedTranscripts transcripts;
+
+  /** Selection of the transcripts by position. */
+  private final Window window;
+
+  /**
+   * Construct sweep.
+   *
+   * @param refDict Reference dictionary of the transcript database.
+   * @param transcripts The transcripts of the contig.
+   * @param options Options for building the annotator.
+   */
+  TranscriptSweep(
+      ReferenceDictionary refDict,
+      List<TranscriptModel> transcripts,
+      VariantContextAnnotator.Options options) {
+    this.transcripts = new SortedTranscripts(refDict, transcripts, options);
+    this.window = new Window(this.transcripts.getBegins(), this.transcripts.getEnds());
+  }
+
+  /**
+   * Advance to the variant at the 0-based half-open interval {@code [begin, end)}.
+   *
+   * @return Annotator over the transcripts near the variant, {@code null} if the variant must be
+   *     annotated with the annotator for the whole contig.
+   */
+  VariantContextAnnotator advance(int begin, int end) {
+    final List<Integer> selected = window.advance(begin, end);
+    return (selected == null) ? null : transcripts.getAnnotator(selected);
+  }
+
+  /** Selection of the transcripts for the annotator by their forward strand positions. */
+  static final class Window {
+
+    /** Begin and end positions of the transcripts, ordered by begin position. */
+    private final int[] begins;
+
+    private final int[] ends;
+
+    /** Index of the next transcript to make active. */
+    private int next;
+
+    /** Indices of the active transcripts. */
+    private final List<Integer> active = new ArrayList<>();
+
+    /** Smallest end position of the active transcripts. */
+    private int minEnd = Integer.MAX_VALUE;
+
+    /** Begin position of the last variant, used for detecting unsorted input. */
+    private int lastBegin = Integer.MIN_VALUE;
+
+    /** Whether the input went backwards. */
+    private boolean unsorted;
+
+    /** Indices of the selected transcripts, {@code null} if none were selected yet. */
+    private List<Integer> selected;
+
+    /** End of the positions that {@link #selected} covers. */
+    private int selectedEnd;
+
+    Window(int[] begins, int[] ends) {
+      this.begins = begins;
+      this.ends = ends;
+    }
+
+    /**
+     * Advance to the variant at the 0-based half-open interval {@code [begin, end)}.
+     *
+     * @return Sorted indices of the transcripts for annotating the variant, the same list as long
+     *     as the variants stay within its span, {@code null} if the variant must be annotated with
+     *     all transcripts.
+     */
+    List<Integer> advance(int begin, int end) {
+      if (unsorted || begin < lastBegin) {
+        unsorted = true;
+        return null;
+      }
+      lastBegin = begin;
+
+      // Jannovar's alleles lie within [begin - 1, end + 1) after trimming and shifting, drop all
+      // transcripts that cannot come near this or any later variant and add the upcoming ones.
+      if (minEnd + PADDING <= begin - 1) {
+        active.removeIf(i -> ends[i] + PADDING <= begin - 1);
+        minEnd = Integer.MAX_VALUE;
+        for (int i : active) {
+          minEnd = Math.min(minEnd, ends[i]);
+        }
+      }
+      while (next < begins.length && begins[next] - PADDING < end + 1) {
+        if (ends[next] + PADDING > begin - 1) {
+          active.add(next);
+          minEnd = Math.min(minEnd, ends[next]);
+        }
+        ++next;
+      }
+
+      // Only variants within a transcript are annotated without looking at neighbours.
+      boolean contained = false;
+      for (int i : active) {
+        if (begins[i] <= begin - 1 && ends[i] >= end + 1) {
+          contained = true;
+          break;
+        }
+      }
+      if (!contained) {
+        return null;
+      }
+
+      // The active transcripts plus the upcoming ones within the span include all transcripts
+      // near any later variant that ends within the span.
+      if (selected == null || end + 1 > selectedEnd) {
+        selectedEnd = Math.max(end + 1, begin - 1 + SPAN);
+        final List<Integer> result = new ArrayList<>(active);
+        Collections.sort(result);
+        for (int i = next; i < begins.length && begins[i] - PADDING < selectedEnd; ++i) {
+          result.add(i);
+        }
+        selected = result;
+      }
+      return selected;
+    }
+  }
+}
@@ -0,0 +1,76 @@
+package com.github.bihealth.varfish_annotator.annotate;
+
+/**
+ * A genomic sub-region of an indexed VCF file that is annotated by one worker.
+ *
+ * <p>Shards tile the contigs without overlap. A record belongs to the shard that contains its start
+ * position, such that each record is annotated exactly once.
+ */
+public final class VcfShard {
+
+  /** Position of the shard in the input file, used for ordering the output. */
+  private final int index;
+
+  /** Name of the contig. */
+  private final String contig;
+
+  /** 1-based start position of the shard. */
+  private final int start;
+
+  /** 1-based, inclusive end position of the shard. */
+  private final int end;
+
+  /** Estimated amount of work, derived from the index. */
+  private final long weight;
+
+  /** Constructor. */
+  public VcfShard(int index, String contig, int start, int end, long weight) {
+    this.index = index;
+    this.contig = contig;
+    this.start = start;
+    this.end = end;
+    this.weight = weight;
+  }
+
+  public int getIndex() {
+    return index;
+  }
+
+  public String getContig() {
+    return contig;
+  }
+
+  public int getStart() {
+    return start;
+  }
+
+  public int getEnd() {
+    return end;
+  }
+
+  public long getWeight() {
+    return weight;
+  }
+
+  /** @return whether the record starting at {@code pos} is assigned to this shard. */
+  public boolean containsStart(int pos) {
+    return pos >= start && pos <= end;
+  }
+
+  @Override
+  public String toString() {
+    return "VcfShard{"
+        + "index="
+        + index
+        + ", contig='"
+        + contig
+        + '\''
+        + ", start="
+        + start
+        + ", end="
+        + end
+        + ", weight="
+        + weight
+        + '}';
+  }
+}
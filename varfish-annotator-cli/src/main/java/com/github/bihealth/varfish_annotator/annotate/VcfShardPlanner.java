@@ -0,0 +1,139 @@
+package com.github.bihealth.varfish_annotator.annotate;
+
+import htsjdk.samtools.SAMSequenceDictionary;
+import htsjdk.samtools.SAMSequenceRecord;
+import htsjdk.tribble.index.Block;
+import htsjdk.tribble.index.Index;
+import htsjdk.tribble.index.IndexFactory;
+import htsjdk.tribble.index.tabix.TabixIndex;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Split an indexed VCF file into {@link VcfShard}s of roughly equal amount of work.
+ *
+ * <p>The variant density is estimated from the index by querying it in windows of {@link
+ * #WINDOW_SIZE} bases and summing up the sizes of the returned blocks. Adjacent windows are then
+ * merged into shards until each shard carries about the same weight. This way, large and dense
+ * contigs such as chr1 are split into several shards while small contigs end up in a single one.
+ */
+public final class VcfShardPlanner {
+
+  /** Size of the windows used for estimating the variant density. */
+  public static final int WINDOW_SIZE = 1_000_000;
+
+  /** Number of shards to aim for per worker thread, allows for balancing the load. */
+  public static final int SHARDS_PER_THREAD = 8;
+
+  /** Largest position supported by the tabix binning scheme. */
+  public static final int MAX_POS = (1 << 29) - 1;
+
+  /** The index to use for planning. */
+  private final Index index;
+
+  /** Sequence dictionary from the VCF header for contig lengths, may be {@code null}. */
+  private final SAMSequenceDictionary seqDict;
+
+  /** Constructor. */
+  public VcfShardPlanner(Index index, SAMSequenceDictionary seqDict) {
+    this.index = index;
+    this.seqDict = seqDict;
+  }
+
+  /**
+   * Load tabix (<tt>.tbi</tt>) or tribble (<tt>.idx</tt>) index for the given VCF file.
+   *
+   * @param vcfPath Path to the VCF file.
+   * @return The loaded {@link Index} or {@code null} if there is no index.
+   */
+  public static Index loadIndex(String vcfPath) {
+    for (String suffix : new String[] {".tbi", ".idx"}) {
+      final File indexFile = new File(vcfPath + suffix);
+      if (indexFile.exists()) {
+        return IndexFactory.loadIndex(indexFile.toString());
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Plan shards for the given contigs.
+   *
+   * @param contigs Names of the contigs to plan for, in the order of the input file.
+   * @param numThreads Number of worker threads to plan for.
+   * @return List of shards, ordered as in the input file.
+   */
+  public List<VcfShard> planShards(List<String> contigs, int numThreads) {
+    // Compute weights of all windows first so we know the total weight.
+    final List<long[]> windowWeights = new ArrayList<>();
+    long totalWeight = 0;
+    for (String contig : contigs) {
+      final int length = getContigLength(contig);
+      final int numWindows = Math.max(1, (length + WINDOW_SIZE - 1) / WINDOW_SIZE);
+      final long[] weights = new long[numWindows];
+      for (int i = 0; i < numWindows; ++i) {
+        weights[i] = estimateWeight(contig, windowStart(i), windowEnd(i, numWindows));
+        totalWeight += weights[i];
+      }
+      windowWeights.add(weights);
+    }
+
+    // Merge adjacent windows until the target weight has been reached; never cross contigs.
+    final long targetWeight = Math.max(1, totalWeight / ((long) numThreads * SHARDS_PER_THREAD));
+    final List<VcfShard> result = new ArrayList<>();
+    for (int c = 0; c < contigs.size(); ++c) {
+      final String contig = contigs.get(c);
+      final long[] weights = windowWeights.get(c);
+      int shardStart = 1;
+      long shardWeight = 0;
+      for (int i = 0; i < weights.length; ++i) {
+        shardWeight += weights[i];
+        if (shardWeight >= targetWeight || i + 1 == weights.length) {
+          final int shardEnd = windowEnd(i, weights.length);
+          result.add(new VcfShard(result.size(), contig, shardStart, shardEnd, shardWeight));
+          shardStart = shardEnd + 1;
+          shardWeight = 0;
+        }
+      }
+    }
+    return result;
+  }
+
+  private static int windowStart(int i) {
+    return i * WINDOW_SIZE + 1;
+  }
+
+  /** The last window is extended to {@link #MAX_POS} so records past the contig end are kept. */
+  private static int windowEnd(int i, int numWindows) {
+    if (i + 1 == numWindows) {
+      return MAX_POS;
+    } else {
+      return (i + 1) * WINDOW_SIZE;
+    }
+  }
+
+  private int getContigLength(String contig) {
+    final SAMSequenceRecord record = (seqDict == null) ? null : seqDict.getSequence(contig);
+    if (record == null || record.getSequenceLength() <= 0) {
+      return MAX_POS;
+    } else {
+      return Math.min(record.getSequenceLength(), MAX_POS);
+    }
+  }
+
+  /** Estimate the number of (compressed) bytes of records in the given region. */
+  private long estimateWeight(String contig, int start, int end) {
+    long result = 0;
+    for (Block block : index.getBlocks(contig, start, end)) {
+      if (index instanceof TabixIndex) {
+        // Tabix blocks are given as BGZF virtual offsets; the upper 48 bits are the offset of the
+        // compressed block in the file.
+        result += (block.getEndPosition() >>> 16) - (block.getStartPosition() >>> 16) + 1;
+      } else {
+        result += block.getSize();
+      }
+    }
+    return result;
+  }
+}
@@ -88,6 +88,13 @@ public final class AnnotateSvsArgs {
       required = true)
   private String outputDbInfos;
 
+  @Parameter(
+      names = "--output-format",
+      description =
+          "Format of the genotypes and feature effects files, one of 'tsv' and 'pgcopy' "
+              + "(PostgreSQL binary COPY format)")
+  private String outputFormat = "tsv";
+
   @Parameter(
       names = "--contig-regex",
       description = "Regular expression to use for selection of contigs")
@@ -131,6 +138,18 @@ public final class AnnotateSvsArgs {
       description = "Merge BNDs within the given radius (default: 50)")
   private int mergeBndRadius = 50;
 
+  @Parameter(
+      names = "--transcript-allowlist",
+      description =
+          "Path to file with one transcript accession per line, e.g. MANE Select; only these "
+              + "transcripts are used for annotation, versions are ignored")
+  private String transcriptAllowlist;
+
+  @Parameter(
+      names = "--coding-transcripts-only",
+      description = "Use only protein-coding transcripts for annotation")
+  private boolean codingTranscriptsOnly = false;
+
   public String getRefseqSerPath() {
     return refseqSerPath;
   }
@@ -179,6 +198,10 @@ public final class AnnotateSvsArgs {
     return outputFeatureEffects;
   }
 
+  public String getOutputFormat() {
+    return outputFormat;
+  }
+
   public String getContigRegex() {
     return contigRegex;
   }
@@ -219,6 +242,14 @@ public final class AnnotateSvsArgs {
     return mergeBndRadius;
   }
 
+  public String getTranscriptAllowlist() {
+    return transcriptAllowlist;
+  }
+
+  public boolean isCodingTranscriptsOnly() {
+    return codingTranscriptsOnly;
+  }
+
   @Override
   public String toString() {
     return "AnnotateSvsArgs{"
@@ -261,6 +292,9 @@ public final class AnnotateSvsArgs {
         + ", outputDbInfos='"
         + outputDbInfos
         + '\''
+        + ", outputFormat='"
+        + outputFormat
+        + '\''
         + ", contigRegex='"
         + contigRegex
         + '\''
@@ -284,6 +318,11 @@ public final class AnnotateSvsArgs {
         + mergeOverlap
         + ", mergeBndRadius="
         + mergeBndRadius
+        + ", transcriptAllowlist='"
+        + transcriptAllowlist
+        + '\''
+        + ", codingTranscriptsOnly="
+        + codingTranscriptsOnly
         + '}';
   }
 }
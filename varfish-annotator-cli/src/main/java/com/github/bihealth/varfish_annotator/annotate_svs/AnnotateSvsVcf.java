@@ -5,6 +5,9 @@ import com.github.bihealth.varfish_annotator.annotate.AnnotateVcf;
 import com.github.bihealth.varfish_annotator.checks.IncompatibleVcfException;
 import com.github.bihealth.varfish_annotator.checks.VcfCompatibilityChecker;
 import com.github.bihealth.varfish_annotator.data.GenomeVersion;
+import com.github.bihealth.varfish_annotator.data.PgCopyColumns;
+import com.github.bihealth.varfish_annotator.data.TranscriptDatabase;
+import com.github.bihealth.varfish_annotator.data.TranscriptFilter;
 import com.github.bihealth.varfish_annotator.db.DbInfoWriterHelper;
 import com.github.bihealth.varfish_annotator.utils.*;
 import com.google.code.externalsorting.csv.CSVRecordBuffer;
@@ -18,8 +21,6 @@ import com.google.common.io.Closer;
 import de.charite.compbio.jannovar.annotation.SVAnnotation;
 import de.charite.compbio.jannovar.annotation.SVAnnotations;
 import de.charite.compbio.jannovar.data.JannovarData;
-import de.charite.compbio.jannovar.data.JannovarDataSerializer;
-import de.charite.compbio.jannovar.data.SerializationException;
 import de.charite.compbio.jannovar.hgvs.AminoAcidCode;
 import de.charite.compbio.jannovar.htsjdk.InvalidBreakendDescriptionException;
 import de.charite.compbio.jannovar.htsjdk.InvalidCoordinatesException;
@@ -44,6 +45,7 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.sql.*;
 import java.util.*;
+import java.util.function.Predicate;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import org.apache.commons.csv.CSVFormat;
@@ -68,6 +70,10 @@ public final class AnnotateSvsVcf {
           "ensembl_transcript_coding",
           "ensembl_effect");
 
+  /** Number of threads for compressing the final output files, written after annotation. */
+  private static final int NUM_COMPRESSION_THREADS =
+      Math.min(4, Runtime.getRuntime().availableProcessors());
+
   /** Configuration for the command. */
   private final AnnotateSvsArgs args;
 
@@ -104,6 +110,17 @@ public final class AnnotateSvsVcf {
       System.err.println("Invalid release: " + args.getRelease() + ", not one of GRCh37, GRCh38");
       System.exit(1);
     }
+    if (!ImmutableList.of("tsv", "pgcopy").contains(args.getOutputFormat())) {
+      System.err.println(
+          "Invalid output format: " + args.getOutputFormat() + ", not one of tsv, pgcopy");
+      System.exit(1);
+    }
+    if (isPgCopy()
+        && !(StringUtils.isIntegerOrMissing(args.getCaseId())
+            && StringUtils.isIntegerOrMissing(args.getSetId()))) {
+      System.err.println("Case and set ID must be integers for output format pgcopy");
+      System.exit(1);
+    }
 
     String dbPath = args.getDbPath();
     if (dbPath.endsWith(".h2.db")) {
@@ -133,6 +150,7 @@ public final class AnnotateSvsVcf {
     final Path tmpGtsPath = Paths.get(tmpDir.toString(), "tmp.gts.tsv");
     final Path tmpFesPath = Paths.get(tmpDir.toString(), "tmp.feature-effects.tsv");
     final Path tmpSortedGtsPath = Paths.get(tmpDir.toString(), "tmp.gts-sorted.tsv");
+    final Path tmpFinalGtsPath = Paths.get(tmpDir.toString(), "tmp.gts-final.tsv");
 
     try (Connection conn =
             DriverManager.getConnection(
@@ -142,16 +160,12 @@ public final class AnnotateSvsVcf {
                     + "DB_CLOSE_ON_EXIT=FALSE",
                 "sa",
                 "");
-        OutputStream dbInfoStream = Files.newOutputStream(Paths.get(args.getOutputDbInfos()));
-        OutputStream tmpGtsStream = Files.newOutputStream(tmpGtsPath);
-        OutputStream tmpFeStream = Files.newOutputStream(tmpFesPath);
+        OutputStream tmpGtsStream = new AsyncFileOutputStream(tmpGtsPath);
+        OutputStream tmpFeStream = new AsyncFileOutputStream(tmpFesPath);
         Writer tmpGtsWriter =
             GzipUtil.maybeOpenGzipOutputStream(tmpGtsStream, tmpGtsPath.toString());
         Writer tmpFeatureEffectsWriter =
             GzipUtil.maybeOpenGzipOutputStream(tmpFeStream, String.valueOf(tmpFesPath));
-        Writer dbInfoWriter =
-            GzipUtil.maybeOpenGzipOutputStream(dbInfoStream, args.getOutputDbInfos());
-        BufferedWriter dbInfoBufWriter = new BufferedWriter(dbInfoWriter);
         Closer covVcfCloser = Closer.create(); ) {
       // Guess genome version, check for compatibility, perform database self-test.
       final GenomeVersion genomeVersion;
@@ -172,8 +186,13 @@ public final class AnnotateSvsVcf {
       }
 
       System.err.println("Deserializing Jannovar file...");
-      JannovarData refseqJvData = new JannovarDataSerializer(args.getRefseqSerPath()).load();
-      JannovarData ensemblJvData = new JannovarDataSerializer(args.getEnsemblSerPath()).load();
+      final List<JannovarData> jvDatas =
+          TranscriptDatabase.loadJannovarData(
+              ImmutableList.of(args.getRefseqSerPath(), args.getEnsemblSerPath()),
+              TranscriptFilter.load(
+                  args.getTranscriptAllowlist(), args.isCodingTranscriptsOnly()));
+      final JannovarData refseqJvData = jvDatas.get(0);
+      final JannovarData ensemblJvData = jvDatas.get(1);
 
       // Process each input VCF file.
       boolean isFirst = true;
@@ -201,13 +220,18 @@ public final class AnnotateSvsVcf {
       final Set<String> denySvUuid = new HashSet<>(); // SV UUIDs to remove, if any
       tmpGtsWriter.flush();
       tmpGtsWriter.close();
+      // The binary COPY format is converted from the final TSV file.
+      final Path gtsPath = isPgCopy() ? tmpFinalGtsPath : Paths.get(args.getOutputGts());
       if (args.getInputVcf().size() == 1) {
         // External sort and write to output file.
-        writeSortedGts(tmpGtsPath, Paths.get(args.getOutputGts()));
+        writeSortedGts(tmpGtsPath, gtsPath);
       } else {
         // External sort and write to temporary file.  Merge by tool from there.
         writeSortedGts(tmpGtsPath, tmpSortedGtsPath);
-        mergeSortedGts(tmpSortedGtsPath, args.getOutputGts(), covReaders, denySvUuid);
+        mergeSortedGts(tmpSortedGtsPath, gtsPath.toString(), covReaders, denySvUuid);
+      }
+      if (isPgCopy()) {
+        writePgCopy(gtsPath, args.getOutputGts(), arr -> true);
       }
       // Write out feature effect records, removing those from denySvUuid.
       tmpFeatureEffectsWriter.flush();
@@ -215,7 +239,7 @@ public final class AnnotateSvsVcf {
       writeFeatureEffects(tmpFesPath, denySvUuid);
 
       new DbInfoWriterHelper()
-          .writeDbInfos(conn, dbInfoBufWriter, args.getRelease(), AnnotateVcf.class);
+          .writeDbInfos(conn, args.getOutputDbInfos(), args.getRelease(), AnnotateVcf.class);
     } catch (SQLException e) {
       System.err.println("Problem with database connection");
       e.printStackTrace();
@@ -224,10 +248,6 @@ public final class AnnotateSvsVcf {
       System.err.println("Problem executing annotate");
       e.printStackTrace();
       System.exit(1);
-    } catch (SerializationException e) {
-      System.err.println("Problem deserializing Jannovar database");
-      e.printStackTrace();
-      System.exit(1);
     } catch (IOException e) {
       System.err.println("Problem opening output files database");
       e.printStackTrace();
@@ -257,8 +277,10 @@ public final class AnnotateSvsVcf {
     InputStream in = new FileInputStream(tmpGtsPath.toFile());
     BufferedReader fbr = new BufferedReader(new InputStreamReader(in, Charset.defaultCharset()));
 
-    OutputStream outStream = Files.newOutputStream(Paths.get(outputGtsPath));
-    Writer writer = GzipUtil.maybeOpenGzipOutputStream(outStream, args.getOutputGts());
+    OutputStream outStream = new AsyncFileOutputStream(Paths.get(outputGtsPath));
+    Writer writer =
+        GzipUtil.maybeOpenBgzfOutputStream(
+            outStream, outputGtsPath, NUM_COMPRESSION_THREADS, true);
 
     List<GenotypeRecord> chromRecords = new ArrayList<>();
     List<String> header = null;
@@ -511,9 +533,15 @@ public final class AnnotateSvsVcf {
 
   /** Write out feature effects record from tmpFesPath if their UUID is not in denySvUuuid. */
   private void writeFeatureEffects(Path tmpFesPath, Set<String> denySvUuid) throws IOException {
-    try (OutputStream outStream = Files.newOutputStream(Paths.get(args.getOutputFeatureEffects()));
+    if (isPgCopy()) {
+      writePgCopy(tmpFesPath, args.getOutputFeatureEffects(), arr -> !denySvUuid.contains(arr[2]));
+      return;
+    }
+    try (OutputStream outStream =
+            new AsyncFileOutputStream(Paths.get(args.getOutputFeatureEffects()));
         Writer writer =
-            GzipUtil.maybeOpenGzipOutputStream(outStream, args.getOutputFeatureEffects());
+            GzipUtil.maybeOpenBgzfOutputStream(
+                outStream, args.getOutputFeatureEffects(), NUM_COMPRESSION_THREADS, false);
         InputStream in = new FileInputStream(tmpFesPath.toFile());
         BufferedReader fbr =
             new BufferedReader(new InputStreamReader(in, Charset.defaultCharset())); ) {
@@ -530,6 +558,50 @@ public final class AnnotateSvsVcf {
     }
   }
 
+  /** @return whether to write the PostgreSQL binary COPY format instead of TSV. */
+  private boolean isPgCopy() {
+    return "pgcopy".equals(args.getOutputFormat());
+  }
+
+  /**
+   * Write the rows of the TSV file {@code tsvPath} for which {@code keep} holds to {@code
+   * outputPath} in the PostgreSQL binary COPY format.
+   */
+  private void writePgCopy(Path tsvPath, String outputPath, Predicate<String[]> keep)
+      throws IOException {
+    try (InputStream in = new FileInputStream(tsvPath.toFile());
+        BufferedReader fbr =
+            new BufferedReader(new InputStreamReader(in, Charset.defaultCharset()));
+        OutputStream outStream = new AsyncFileOutputStream(Paths.get(outputPath));
+        OutputStream copyStream =
+            GzipUtil.maybeBgzfOutputStream(
+                outStream, outputPath, NUM_COMPRESSION_THREADS, false); ) {
+      final String headerLine = fbr.readLine();
+      if (headerLine == null) {
+        throw new IOException("Missing header in " + tsvPath);
+      }
+      final List<String> header = Arrays.asList(headerLine.split("\t"));
+      final List<PgCopyRowWriter.Type> types = PgCopyColumns.typesOf(header);
+      final RowWriter writer = new PgCopyRowWriter(header, types, copyStream);
+      writer.writeHeader();
+      String line;
+      while ((line = fbr.readLine()) != null) {
+        final String[] arr = line.split("\t", -1);
+        if (!keep.test(arr)) {
+          continue;
+        }
+        for (int i = 0; i < arr.length; ++i) {
+          final boolean isJson = i < types.size() && types.get(i) == PgCopyRowWriter.Type.JSONB;
+          writer.add(isJson ? StringUtils.tripleQuotedToJson(arr[i]) : arr[i]);
+        }
+        writer.endRow();
+      }
+      writer.finish();
+    } catch (IllegalArgumentException | IllegalStateException e) {
+      throw new IOException("Problem converting " + tsvPath + " to " + outputPath, e);
+    }
+  }
+
   /** Write out sorted files, ready for merging (if necessary). */
   private void writeSortedGts(Path tmpGtsPath, Path toPath) throws IOException {
     // Configuration for sorting
@@ -557,8 +629,10 @@ public final class AnnotateSvsVcf {
     final ArrayList<CSVRecord> gtHeader = new ArrayList<>();
     final List<File> gtSortInBatch =
         CsvExternalSort.sortInBatch(tmpGtsPath.toFile(), null, sortOptions, gtHeader);
-    try (OutputStream gtsStream = Files.newOutputStream(toPath);
-        Writer gtsWriter = GzipUtil.maybeOpenGzipOutputStream(gtsStream, toPath.toString());
+    try (OutputStream gtsStream = new AsyncFileOutputStream(toPath);
+        Writer gtsWriter =
+            GzipUtil.maybeOpenBgzfOutputStream(
+                gtsStream, toPath.toString(), NUM_COMPRESSION_THREADS, true);
         BufferedWriter bufWriter = new BufferedWriter(gtsWriter)) {
       List<CSVRecordBuffer> bfbs = new ArrayList<>();
       for (File f : gtSortInBatch) {
@@ -896,11 +970,9 @@ public final class AnnotateSvsVcf {
       // Create UUID for the variant.
       final UUID variantId = nextUuid();
 
-      // Get annotations sorted descendingly by variant effect.
-      final List<SVAnnotation> sortedRefseqAnnos =
-          AnnoSorting.sortSvAnnos(refseqAnnotationsList, i);
-      final List<SVAnnotation> sortedEnsemblAnnos =
-          AnnoSorting.sortSvAnnos(ensemblAnnotationsList, i);
+      // Get annotations of the allele, the most pathogenic one per gene is selected below.
+      final List<SVAnnotation> refseqAnnos = getAlleleAnnos(refseqAnnotationsList, i);
+      final List<SVAnnotation> ensemblAnnos = getAlleleAnnos(ensemblAnnotationsList, i);
 
       // Build `SVGenomeVariant` from `ctx` regardless of any annotation.
       final SVGenomeVariant svGenomeVar;
@@ -929,13 +1001,13 @@ public final class AnnotateSvsVcf {
 
       // Short-circuit here in case we don't have any feature annotation in either RefSeq and
       // ENSEMBL list.
-      if (sortedRefseqAnnos.isEmpty() && sortedEnsemblAnnos.isEmpty()) {
+      if (refseqAnnos.isEmpty() && ensemblAnnos.isEmpty()) {
         continue; // short-circuit
       }
 
       // Write one entry for each gene into the feature effect call file.
       final FeRecordBuilder.Result feResult =
-          feRecordBuilder.buildAnnosByDb(sortedEnsemblAnnos, sortedRefseqAnnos);
+          feRecordBuilder.buildAnnosByDb(ensemblAnnos, refseqAnnos);
       for (String geneId : feResult.getGeneIds()) {
         List<Object> featureEffectOutRec =
             feRecordBuilder.buildRecord(
@@ -952,6 +1024,16 @@ public final class AnnotateSvsVcf {
     }
   }
 
+  /** @return annotations of the {@code i}-th allele, empty if {@code annotationsList} is null. */
+  private static List<SVAnnotation> getAlleleAnnos(
+      ImmutableList<SVAnnotations> annotationsList, int i) {
+    if (annotationsList == null) {
+      return ImmutableList.of();
+    } else {
+      return annotationsList.get(i - 1).getAnnotations();
+    }
+  }
+
   private ImmutableList<SVAnnotations> silentBuildAnnotations(
       VariantContext ctx, VariantContextAnnotator annotator) {
     try {
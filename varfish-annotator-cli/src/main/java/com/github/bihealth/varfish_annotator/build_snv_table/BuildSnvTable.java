@@ -0,0 +1,300 @@
+package com.github.bihealth.varfish_annotator.build_snv_table;
+
+import com.github.bihealth.varfish_annotator.VarfishAnnotatorException;
+import com.github.bihealth.varfish_annotator.annotate.GeneColumns;
+import com.github.bihealth.varfish_annotator.data.SnvEffectTable;
+import com.github.bihealth.varfish_annotator.data.SnvEffectTableWriter;
+import com.github.bihealth.varfish_annotator.data.TranscriptDatabase;
+import com.github.bihealth.varfish_annotator.data.TranscriptFilter;
+import com.github.bihealth.varfish_annotator.utils.MappedFastaReference;
+import com.github.bihealth.varfish_annotator.utils.VariantDescription;
+import com.google.common.collect.ImmutableList;
+import de.charite.compbio.jannovar.annotation.VariantAnnotations;
+import de.charite.compbio.jannovar.data.JannovarData;
+import de.charite.compbio.jannovar.data.ReferenceDictionary;
+import de.charite.compbio.jannovar.hgvs.AminoAcidCode;
+import de.charite.compbio.jannovar.htsjdk.InvalidCoordinatesException;
+import de.charite.compbio.jannovar.htsjdk.VariantContextAnnotator;
+import de.charite.compbio.jannovar.reference.GenomeInterval;
+import de.charite.compbio.jannovar.reference.Strand;
+import de.charite.compbio.jannovar.reference.TranscriptModel;
+import htsjdk.variant.variantcontext.Allele;
+import htsjdk.variant.variantcontext.VariantContext;
+import htsjdk.variant.variantcontext.VariantContextBuilder;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Implementation of the <tt>build-snv-table</tt> command.
+ *
+ * <p>Annotates every possible SNV in the exons of all RefSeq and ENSEMBL transcripts, extended by
+ * {@link #SPLICE_PADDING} bases for the splice regions, with Jannovar and stores the output
+ * columns that <tt>annotate</tt> would write for them in an {@link SnvEffectTable}.
+ */
+public final class BuildSnvTable {
+
+  /** Number of bases to add on both sides of each exon. */
+  static final int SPLICE_PADDING = 10;
+
+  /** Number of positions annotated at once by a worker thread. */
+  private static final int CHUNK_SIZE = 1024;
+
+  /** Number of chunks in flight per worker thread. */
+  private static final int CHUNKS_PER_THREAD = 4;
+
+  /** Configuration for the command. */
+  private final BuildSnvTableArgs args;
+
+  /** Construct with the given configuration. */
+  public BuildSnvTable(BuildSnvTableArgs args) {
+    this.args = args;
+  }
+
+  /** Execute the command. */
+  public void run() {
+    System.err.println("Running build-snv-table; args: " + args);
+    if (!ImmutableList.of("GRCh37", "GRCh38").contains(args.getRelease())) {
+      System.err.println("Invalid release: " + args.getRelease() + ", not one of GRCh37, GRCh38");
+      System.exit(1);
+    }
+    if (args.getThreads() < 1) {
+      System.err.println("Invalid number of threads: " + args.getThreads());
+      System.exit(1);
+    }
+
+    final ExecutorService executor = Executors.newFixedThreadPool(args.getThreads());
+    try {
+      System.err.println("Deserializing Jannovar file...");
+      final List<String> paths =
+          ImmutableList.of(args.getRefseqSerPath(), args.getEnsemblSerPath());
+      final List<JannovarData> jvDatas =
+          TranscriptDatabase.loadJannovarData(
+              paths,
+              TranscriptFilter.load(args.getTranscriptAllowlist(), args.isCodingTranscriptsOnly()));
+      final MappedFastaReference ref = new MappedFastaReference(args.getRefPath());
+      final String identity =
+          SnvEffectTable.buildIdentity(
+              args.getRelease(),
+              Arrays.asList(
+                  args.getRefseqSerPath(),
+                  args.getEnsemblSerPath(),
+                  args.getTranscriptAllowlist()),
+              args.isCodingTranscriptsOnly());
+      try (SnvEffectTableWriter writer =
+          new SnvEffectTableWriter(new File(args.getOutputPath()), identity)) {
+        final ReferenceDictionary refDict = jvDatas.get(0).getRefDict();
+        for (int chrId : new TreeSet<>(refDict.getContigIDToName().keySet())) {
+          final String contigName = getContigName(refDict.getContigIDToName().get(chrId));
+          if (!contigName.matches(args.getContigRegex()) || !ref.hasContig(contigName)) {
+            System.err.println("Skipping contig " + contigName);
+            continue;
+          }
+          writeContig(writer, executor, jvDatas, ref, chrId, contigName);
+        }
+      }
+    } catch (VarfishAnnotatorException e) {
+      System.err.println("Problem executing build-snv-table");
+      e.printStackTrace();
+      System.exit(1);
+    } catch (IOException e) {
+      System.err.println("Problem writing SNV effect table");
+      e.printStackTrace();
+      System.exit(1);
+    } finally {
+      executor.shutdownNow();
+    }
+
+    System.err.println("All done. Have a nice day!");
+  }
+
+  /** @return contig name as used by <tt>annotate</tt> for the normalized variants. */
+  private String getContigName(String name) {
+    final String stripped = name.replaceFirst("^chr", "");
+    return "GRCh37".equals(args.getRelease()) ? stripped : "chr" + stripped;
+  }
+
+  /** Annotate the positions of one contig in parallel and write them in order. */
+  private void writeContig(
+      SnvEffectTableWriter writer,
+      ExecutorService executor,
+      List<JannovarData> jvDatas,
+      MappedFastaReference ref,
+      int chrId,
+      String contigName)
+      throws VarfishAnnotatorException, IOException {
+    final int[][] intervals = buildIntervals(jvDatas, chrId, ref.getLength(contigName));
+    final int[] begins = intervals[0];
+    final int[] ends = intervals[1];
+    int numPositions = 0;
+    for (int i = 0; i < begins.length; ++i) {
+      numPositions += ends[i] - begins[i];
+    }
+    System.err.println(
+        "Contig " + contigName + ": " + begins.length + " intervals, " + numPositions + " bp");
+    writer.startContig(chrId, contigName, begins, ends);
+
+    // Annotate chunks of positions in parallel, keeping a bounded number of chunks in flight.
+    final Deque<Future<List<AnnotatedPosition>>> futures = new ArrayDeque<>();
+    int interval = 0;
+    int pos = (begins.length == 0) ? 0 : begins[0];
+    try {
+      while (interval < begins.length || !futures.isEmpty()) {
+        while (interval < begins.length
+            && futures.size() < args.getThreads() * CHUNKS_PER_THREAD) {
+          final List<Integer> chunk = new ArrayList<>(CHUNK_SIZE);
+          while (interval < begins.length && chunk.size() < CHUNK_SIZE) {
+            chunk.add(pos++);
+            if (pos == ends[interval] && ++interval < begins.length) {
+              pos = begins[interval];
+            }
+          }
+          futures.add(executor.submit(() -> annotatePositions(jvDatas, ref, contigName, chunk)));
+        }
+        for (AnnotatedPosition annotated : futures.removeFirst().get()) {
+          writer.addPosition(annotated.ref, annotated.values);
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new VarfishAnnotatorException("Interrupted while building SNV effect table", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof VarfishAnnotatorException) {
+        throw (VarfishAnnotatorException) e.getCause();
+      } else {
+        throw new VarfishAnnotatorException("Problem annotating SNVs", e.getCause());
+      }
+    }
+  }
+
+  /**
+   * Build the exons of all transcripts on {@code chrId}, extended by {@link #SPLICE_PADDING} and
+   * merged.
+   *
+   * @return Begin and end positions of the sorted, non-overlapping intervals.
+   */
+  private static int[][] buildIntervals(List<JannovarData> jvDatas, int chrId, long length) {
+    final List<long[]> exons = new ArrayList<>();
+    for (JannovarData jvData : jvDatas) {
+      for (TranscriptModel tm : jvData.getTmByAccession().values()) {
+        if (tm.getChr() != chrId) {
+          continue;
+        }
+        for (GenomeInterval exon : tm.getExonRegions()) {
+          final GenomeInterval fwdExon = exon.withStrand(Strand.FWD);
+          exons.add(
+              new long[] {
+                Math.max(0, fwdExon.getBeginPos() - SPLICE_PADDING),
+                Math.min(length, (long) fwdExon.getEndPos() + SPLICE_PADDING)
+              });
+        }
+      }
+    }
+    exons.sort((lhs, rhs) -> Long.compare(lhs[0], rhs[0]));
+
+    final int[] begins = new int[exons.size()];
+    final int[] ends = new int[exons.size()];
+    int numIntervals = 0;
+    for (long[] exon : exons) {
+      if (exon[0] >= exon[1]) {
+        continue;
+      } else if (numIntervals > 0 && exon[0] <= ends[numIntervals - 1]) {
+        ends[numIntervals - 1] = (int) Math.max(ends[numIntervals - 1], exon[1]);
+      } else {
+        begins[numIntervals] = (int) exon[0];
+        ends[numIntervals] = (int) exon[1];
+        ++numIntervals;
+      }
+    }
+    return new int[][] {Arrays.copyOf(begins, numIntervals), Arrays.copyOf(ends, numIntervals)};
+  }
+
+  /** Annotate all SNVs at the 0-based {@code positions} of {@code contigName}. */
+  private static List<AnnotatedPosition> annotatePositions(
+      List<JannovarData> jvDatas,
+      MappedFastaReference ref,
+      String contigName,
+      List<Integer> positions) {
+    final List<VariantContextAnnotator> annotators = new ArrayList<>();
+    for (JannovarData jvData : jvDatas) {
+      annotators.add(
+          new VariantContextAnnotator(
+              jvData.getRefDict(),
+              jvData.getChromosomes(),
+              new VariantContextAnnotator.Options(
+                  false, AminoAcidCode.ONE_LETTER, false, false, false, false, false)));
+    }
+
+    final List<AnnotatedPosition> result = new ArrayList<>(positions.size());
+    for (int pos : positions) {
+      final char refBase = Character.toUpperCase((char) ref.getBase(contigName, pos));
+      final String[] values = new String[SnvEffectTable.BASES.length()];
+      if (SnvEffectTable.BASES.indexOf(refBase) < 0) {
+        result.add(new AnnotatedPosition(refBase, values));
+        continue;
+      }
+
+      // Annotate the three alternative bases at once, as one multi-allelic variant call.
+      final List<Allele> alleles = new ArrayList<>();
+      alleles.add(Allele.create(String.valueOf(refBase), true));
+      for (int b = 0; b < SnvEffectTable.BASES.length(); ++b) {
+        if (SnvEffectTable.BASES.charAt(b) != refBase) {
+          alleles.add(Allele.create(String.valueOf(SnvEffectTable.BASES.charAt(b)), false));
+        }
+      }
+      final VariantContext ctx =
+          new VariantContextBuilder()
+              .chr(contigName)
+              .start(pos + 1)
+              .stop(pos + 1)
+              .alleles(alleles)
+              .make();
+      final ImmutableList<VariantAnnotations> refseqAnnotationsList =
+          silentBuildAnnotations(ctx, annotators.get(0));
+      final ImmutableList<VariantAnnotations> ensemblAnnotationsList =
+          silentBuildAnnotations(ctx, annotators.get(1));
+      for (int i = 1; i < alleles.size(); ++i) {
+        final String alt = alleles.get(i).getBaseString();
+        final VariantDescription normalizedVar =
+            new VariantDescription(contigName, pos, String.valueOf(refBase), alt);
+        values[SnvEffectTable.BASES.indexOf(alt)] =
+            GeneColumns.encode(
+                GeneColumns.select(refseqAnnotationsList, ensemblAnnotationsList, i)
+                    .build(normalizedVar));
+      }
+      result.add(new AnnotatedPosition(refBase, values));
+    }
+    return result;
+  }
+
+  private static ImmutableList<VariantAnnotations> silentBuildAnnotations(
+      VariantContext ctx, VariantContextAnnotator annotator) {
+    try {
+      return annotator.buildAnnotations(ctx);
+    } catch (InvalidCoordinatesException e) {
+      return null;
+    }
+  }
+
+  /** The reference base of a position and the encoded annotation of each alternative base. */
+  private static final class AnnotatedPosition {
+
+    final char ref;
+
+    final String[] values;
+
+    AnnotatedPosition(char ref, String[] values) {
+      this.ref = ref;
+      this.values = values;
+    }
+  }
+}
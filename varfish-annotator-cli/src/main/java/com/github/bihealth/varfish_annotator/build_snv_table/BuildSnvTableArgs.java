@@ -0,0 +1,130 @@
+package com.github.bihealth.varfish_annotator.build_snv_table;
+
+import com.beust.jcommander.Parameter;
+import com.beust.jcommander.Parameters;
+
+/** JCommander command for <tt>varfish_annotator build-snv-table</tt>. */
+@Parameters(
+    commandDescription =
+        "Precompute the annotation of all SNVs in exons and splice regions for --snv-table")
+public final class BuildSnvTableArgs {
+
+  @Parameter(names = "--help", help = true)
+  private boolean help = false;
+
+  @Parameter(
+      names = "--refseq-ser-path",
+      description = "Path to Jannovar .ser file for RefSeq, the same as for annotate",
+      required = true)
+  private String refseqSerPath;
+
+  @Parameter(
+      names = "--ensembl-ser-path",
+      description = "Path to Jannovar .ser file for ENSEMBL, the same as for annotate",
+      required = true)
+  private String ensemblSerPath;
+
+  @Parameter(
+      names = "--ref-path",
+      description = "Path to reference FASTA file, used for the reference bases",
+      required = true)
+  private String refPath;
+
+  @Parameter(names = "--release", description = "The genome release used", required = true)
+  private String release;
+
+  @Parameter(names = "--output-path", description = "Path to output file", required = true)
+  private String outputPath;
+
+  @Parameter(
+      names = "--contig-regex",
+      description = "Regular expression to use for selection of contigs")
+  private String contigRegex = "^(chr)?(\\d+|X|Y|M|MT)$";
+
+  @Parameter(names = "--threads", description = "Number of worker threads")
+  private int threads = 1;
+
+  @Parameter(
+      names = "--transcript-allowlist",
+      description =
+          "Path to file with one transcript accession per line, the same as for annotate")
+  private String transcriptAllowlist;
+
+  @Parameter(
+      names = "--coding-transcripts-only",
+      description = "Use only protein-coding transcripts, the same as for annotate")
+  private boolean codingTranscriptsOnly = false;
+
+  public boolean isHelp() {
+    return help;
+  }
+
+  public String getRefseqSerPath() {
+    return refseqSerPath;
+  }
+
+  public String getEnsemblSerPath() {
+    return ensemblSerPath;
+  }
+
+  public String getRefPath() {
+    return refPath;
+  }
+
+  public String getRelease() {
+    return release;
+  }
+
+  public String getOutputPath() {
+    return outputPath;
+  }
+
+  public String getContigRegex() {
+    return contigRegex;
+  }
+
+  public int getThreads() {
+    return threads;
+  }
+
+  public String getTranscriptAllowlist() {
+    return transcriptAllowlist;
+  }
+
+  public boolean isCodingTranscriptsOnly() {
+    return codingTranscriptsOnly;
+  }
+
+  @Override
+  public String toString() {
+    return "BuildSnvTableArgs{"
+        + "help="
+        + help
+        + ", refseqSerPath='"
+        + refseqSerPath
+        + '\''
+        + ", ensemblSerPath='"
+        + ensemblSerPath
+        + '\''
+        + ", refPath='"
+        + refPath
+        + '\''
+        + ", release='"
+        + release
+        + '\''
+        + ", outputPath='"
+        + outputPath
+        + '\''
+        + ", contigRegex='"
+        + contigRegex
+        + '\''
+        + ", threads="
+        + threads
+        + ", transcriptAllowlist='"
+        + transcriptAllowlist
+        + '\''
+        + ", codingTranscriptsOnly="
+        + codingTranscriptsOnly
+        + '}';
+  }
+}
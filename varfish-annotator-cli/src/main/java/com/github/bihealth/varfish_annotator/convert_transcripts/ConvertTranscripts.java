@@ -0,0 +1,42 @@
+package com.github.bihealth.varfish_annotator.convert_transcripts;
+
+import com.github.bihealth.varfish_annotator.data.TranscriptDatabaseWriter;
+import de.charite.compbio.jannovar.data.JannovarData;
+import de.charite.compbio.jannovar.data.JannovarDataSerializer;
+import de.charite.compbio.jannovar.data.SerializationException;
+import java.io.File;
+import java.io.IOException;
+
+/** Implementation of the <tt>convert-transcripts</tt> command. */
+public final class ConvertTranscripts {
+
+  /** Configuration for the command. */
+  private final ConvertTranscriptsArgs args;
+
+  /** Construct with the given configuration. */
+  public ConvertTranscripts(ConvertTranscriptsArgs args) {
+    this.args = args;
+  }
+
+  /** Execute the command. */
+  public void run() {
+    System.err.println("Running convert-transcripts; args: " + args);
+
+    try {
+      System.err.println("Deserializing Jannovar file...");
+      final JannovarData jvData = new JannovarDataSerializer(args.getInputSerPath()).load();
+      System.err.println("Writing transcript database...");
+      TranscriptDatabaseWriter.write(jvData, new File(args.getOutputPath()));
+    } catch (SerializationException e) {
+      System.err.println("Problem deserializing Jannovar database");
+      e.printStackTrace();
+      System.exit(1);
+    } catch (IOException e) {
+      System.err.println("Problem writing transcript database");
+      e.printStackTrace();
+      System.exit(1);
+    }
+
+    System.err.println("All done. Have a nice day!");
+  }
+}
@@ -0,0 +1,50 @@
+package com.github.bihealth.varfish_annotator.convert_transcripts;
+
+import com.beust.jcommander.Parameter;
+import com.beust.jcommander.Parameters;
+
+/** JCommander command for <tt>varfish_annotator convert-transcripts</tt>. */
+@Parameters(commandDescription = "Convert Jannovar .ser file for faster loading")
+public final class ConvertTranscriptsArgs {
+
+  @Parameter(names = "--help", help = true)
+  private boolean help = false;
+
+  @Parameter(
+      names = "--input-ser-path",
+      description = "Path to Jannovar .ser file",
+      required = true)
+  private String inputSerPath;
+
+  @Parameter(
+      names = "--output-path",
+      description = "Path to output file, can be used as --refseq-ser-path/--ensembl-ser-path",
+      required = true)
+  private String outputPath;
+
+  public boolean isHelp() {
+    return help;
+  }
+
+  public String getInputSerPath() {
+    return inputSerPath;
+  }
+
+  public String getOutputPath() {
+    return outputPath;
+  }
+
+  @Override
+  public String toString() {
+    return "ConvertTranscriptsArgs{"
+        + "help="
+        + help
+        + ", inputSerPath='"
+        + inputSerPath
+        + '\''
+        + ", outputPath='"
+        + outputPath
+        + '\''
+        + '}';
+  }
+}
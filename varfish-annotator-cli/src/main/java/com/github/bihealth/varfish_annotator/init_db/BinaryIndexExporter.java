@@ -0,0 +1,80 @@
+package com.github.bihealth.varfish_annotator.init_db;
+
+import com.github.bihealth.varfish_annotator.VarfishAnnotatorException;
+import com.github.bihealth.varfish_annotator.data.VcfConstants;
+import com.github.bihealth.varfish_annotator.db.BinaryFrequencyIndex;
+import com.github.bihealth.varfish_annotator.db.BinaryFrequencyIndexWriter;
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+
+/**
+ * Export the frequency tables to {@link BinaryFrequencyIndex} files next to the database.
+ *
+ * <p>The tables are read with a {@link WindowedTableScan} such that the records are written in
+ * sorted order without materializing whole tables.
+ */
+public final class BinaryIndexExporter {
+
+  /** The JDBC connection. */
+  private final Connection conn;
+
+  /** The genome release. */
+  private final String genomeRelease;
+
+  /** Path to the H2 database. */
+  private final String dbPath;
+
+  /**
+   * Construct the <tt>BinaryIndexExporter</tt> object.
+   *
+   * @param conn Connection to database
+   * @param genomeRelease The genome release to export.
+   * @param dbPath Path to the H2 database, the index files are written next to it.
+   */
+  public BinaryIndexExporter(Connection conn, String genomeRelease, String dbPath) {
+    this.conn = conn;
+    this.genomeRelease = genomeRelease;
+    this.dbPath = dbPath;
+  }
+
+  /** Execute the export of all existing frequency tables. */
+  public void run() throws VarfishAnnotatorException {
+    for (String prefix : VcfConstants.FREQUENCY_PREFIXES) {
+      if (!WindowedTableScan.tableExists(conn, prefix + "_var")) {
+        System.err.println("Table " + prefix + "_var does not exist, skipping binary index");
+        continue;
+      }
+      final File file = BinaryFrequencyIndex.getPath(dbPath, prefix);
+      System.err.println("Exporting " + prefix + "_var to " + file + "...");
+      exportTable(prefix, file);
+    }
+  }
+
+  private void exportTable(String prefix, File file) throws VarfishAnnotatorException {
+    final WindowedTableScan scan =
+        new WindowedTableScan(
+            conn,
+            prefix + "_var",
+            genomeRelease,
+            prefix + "_af, " + prefix + "_het, " + prefix + "_hom, " + prefix + "_hemi");
+    final long tableRowCount = BloomFilterBuilder.countAllRows(conn, prefix + "_var");
+    try (BinaryFrequencyIndexWriter writer =
+        new BinaryFrequencyIndexWriter(file, genomeRelease, tableRowCount, scan.getChroms())) {
+      scan.run(
+          (chrom, rs) ->
+              writer.add(
+                  chrom,
+                  rs.getInt(1),
+                  rs.getString(2),
+                  rs.getString(3),
+                  rs.getDouble(4),
+                  rs.getInt(5),
+                  rs.getInt(6),
+                  rs.getInt(7)));
+      System.err.println("Wrote " + writer.getNumRecords() + " records");
+    } catch (IOException e) {
+      throw new VarfishAnnotatorException("Problem with writing binary index " + file, e);
+    }
+  }
+}
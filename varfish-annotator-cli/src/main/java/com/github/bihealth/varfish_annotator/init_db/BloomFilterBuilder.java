@@ -0,0 +1,94 @@
+package com.github.bihealth.varfish_annotator.init_db;
+
+import com.github.bihealth.varfish_annotator.VarfishAnnotatorException;
+import com.github.bihealth.varfish_annotator.db.VariantBloomFilter;
+import com.google.common.collect.ImmutableList;
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/** Build {@link VariantBloomFilter} files for the variant tables next to the database. */
+public final class BloomFilterBuilder {
+
+  /** Names of the tables to build filters for. */
+  public static final ImmutableList<String> TABLES =
+      ImmutableList.of(
+          ExacImporter.TABLE_NAME,
+          GnomadExomesImporter.TABLE_NAME,
+          GnomadGenomesImporter.TABLE_NAME,
+          ThousandGenomesImporter.TABLE_NAME,
+          ClinvarImporter.TABLE_NAME);
+
+  /** The JDBC connection. */
+  private final Connection conn;
+
+  /** The genome release. */
+  private final String genomeRelease;
+
+  /** Path to the H2 database. */
+  private final String dbPath;
+
+  /** Desired false-positive probability. */
+  private final double fpp;
+
+  /**
+   * Construct the <tt>BloomFilterBuilder</tt> object.
+   *
+   * @param conn Connection to database
+   * @param genomeRelease The genome release to build the filters for.
+   * @param dbPath Path to the H2 database, the filter files are written next to it.
+   * @param fpp Desired false-positive probability.
+   */
+  public BloomFilterBuilder(Connection conn, String genomeRelease, String dbPath, double fpp) {
+    this.conn = conn;
+    this.genomeRelease = genomeRelease;
+    this.dbPath = dbPath;
+    this.fpp = fpp;
+  }
+
+  /** Build filters for all existing tables. */
+  public void run() throws VarfishAnnotatorException {
+    for (String table : TABLES) {
+      if (!WindowedTableScan.tableExists(conn, table)) {
+        System.err.println("Table " + table + " does not exist, skipping Bloom filter");
+        continue;
+      }
+      final File file = VariantBloomFilter.getPath(dbPath, table);
+      System.err.println("Building Bloom filter for " + table + " in " + file + "...");
+      buildFilter(table, file);
+    }
+  }
+
+  private void buildFilter(String table, File file) throws VarfishAnnotatorException {
+    final WindowedTableScan scan = new WindowedTableScan(conn, table, genomeRelease, "");
+    final VariantBloomFilter filter =
+        VariantBloomFilter.create(
+            genomeRelease, countAllRows(conn, table), scan.countRows(), fpp);
+    scan.run(
+        (chrom, rs) -> filter.put(chrom, rs.getInt(1), rs.getString(2), rs.getString(3)));
+    try {
+      filter.write(file);
+    } catch (IOException e) {
+      throw new VarfishAnnotatorException("Problem with writing Bloom filter " + file, e);
+    }
+  }
+
+  /**
+   * Count all rows of {@code table}, used for detecting stale filters.
+   *
+   * <p>This is cheap in H2 as opposed to counting the rows of one release.
+   */
+  public static long countAllRows(Connection conn, String table)
+      throws VarfishAnnotatorException {
+    try (PreparedStatement stmt = conn.prepareStatement("SELECT COUNT(*) FROM " + table);
+        ResultSet rs = stmt.executeQuery()) {
+      rs.next();
+      return rs.getLong(1);
+    } catch (SQLException e) {
+      throw new VarfishAnnotatorException("Problem with counting rows of " + table, e);
+    }
+  }
+}
@@ -0,0 +1,300 @@
+package com.github.bihealth.varfish_annotator.init_db;
+
+import com.github.bihealth.varfish_annotator.VarfishAnnotatorException;
+import com.github.bihealth.varfish_annotator.data.VcfConstants;
+import com.github.bihealth.varfish_annotator.db.DbConstants;
+import com.google.common.collect.ImmutableList;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Build the denormalized {@link DbConstants#COMBINED_TABLE_NAME} table from the frequency and
+ * ClinVar tables.
+ *
+ * <p>The table has one row per variant with the columns of all frequency tables and two ClinVar
+ * flags. Chromosome names are stored without "chr" prefix. Only the source rows that {@code
+ * annotate} would find with its chromosome naming rules are included, and ClinVar records are
+ * flagged depending on the prefix of their chromosome name, such that lookups in the combined
+ * table return the same results as lookups in the source tables. The source tables are kept, and
+ * their row counts are stored in {@link DbConstants#COMBINED_SOURCES_TABLE_NAME} such that {@code
+ * annotate} can detect a combined table that is out of date.
+ */
+public final class CombinedTableBuilder {
+
+  /** Number of rows to write per batch. */
+  private static final int BATCH_SIZE = 10_000;
+
+  /** The JDBC connection. */
+  private final Connection conn;
+
+  /** The genome release. */
+  private final String genomeRelease;
+
+  /**
+   * Construct the <tt>CombinedTableBuilder</tt> object.
+   *
+   * @param conn Connection to database
+   * @param genomeRelease The genome release to build the table for.
+   */
+  public CombinedTableBuilder(Connection conn, String genomeRelease) {
+    this.conn = conn;
+    this.genomeRelease = genomeRelease;
+  }
+
+  /** Re-create the combined table from all existing source tables. */
+  public void run() throws VarfishAnnotatorException {
+    System.err.println("Re-creating table in database...");
+    recreateTable();
+
+    for (String prefix : VcfConstants.FREQUENCY_PREFIXES) {
+      if (!WindowedTableScan.tableExists(conn, prefix + "_var")) {
+        System.err.println("Table " + prefix + "_var does not exist, skipping");
+        continue;
+      }
+      System.err.println("Merging " + prefix + "_var into combined table...");
+      mergeFrequencies(prefix);
+    }
+    if (WindowedTableScan.tableExists(conn, ClinvarImporter.TABLE_NAME)) {
+      System.err.println("Merging " + ClinvarImporter.TABLE_NAME + " into combined table...");
+      mergeClinvar();
+    } else {
+      System.err.println("Table " + ClinvarImporter.TABLE_NAME + " does not exist, skipping");
+    }
+    recordSources();
+  }
+
+  /**
+   * Check whether the combined table was built for {@code genomeRelease} from the current source
+   * tables.
+   *
+   * @return whether the row counts of the source tables are unchanged since building the table.
+   */
+  public static boolean isUpToDate(Connection conn, String genomeRelease)
+      throws VarfishAnnotatorException {
+    if (!WindowedTableScan.tableExists(conn, DbConstants.COMBINED_SOURCES_TABLE_NAME)) {
+      return false;
+    }
+    final Map<String, Long> recorded = new HashMap<>();
+    final String query =
+        "SELECT table_name, row_count FROM "
+            + DbConstants.COMBINED_SOURCES_TABLE_NAME
+            + " WHERE release = ?";
+    try (PreparedStatement stmt = conn.prepareStatement(query)) {
+      stmt.setString(1, genomeRelease);
+      try (ResultSet rs = stmt.executeQuery()) {
+        while (rs.next()) {
+          recorded.put(rs.getString(1), rs.getLong(2));
+        }
+      }
+    } catch (SQLException e) {
+      throw new VarfishAnnotatorException("Problem with reading combined table sources", e);
+    }
+    for (String table : getSourceTables()) {
+      if (recorded.getOrDefault(table, -1L) != countRowsIfExists(conn, table)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** Store the row counts of the source tables. */
+  private void recordSources() throws VarfishAnnotatorException {
+    final String insertQuery =
+        "INSERT INTO " + DbConstants.COMBINED_SOURCES_TABLE_NAME + " VALUES (?, ?, ?)";
+    try (PreparedStatement stmt = conn.prepareStatement(insertQuery)) {
+      for (String table : getSourceTables()) {
+        stmt.setString(1, genomeRelease);
+        stmt.setString(2, table);
+        stmt.setLong(3, countRowsIfExists(conn, table));
+        stmt.executeUpdate();
+      }
+    } catch (SQLException e) {
+      throw new VarfishAnnotatorException("Problem with recording combined table sources", e);
+    }
+  }
+
+  /** @return the names of the frequency and ClinVar tables. */
+  private static List<String> getSourceTables() {
+    final List<String> result = new ArrayList<>();
+    for (String prefix : VcfConstants.FREQUENCY_PREFIXES) {
+      result.add(prefix + "_var");
+    }
+    result.add(ClinvarImporter.TABLE_NAME);
+    return result;
+  }
+
+  /** @return the number of rows of {@code table}, {@code -1} if it does not exist. */
+  private static long countRowsIfExists(Connection conn, String table)
+      throws VarfishAnnotatorException {
+    return WindowedTableScan.tableExists(conn, table)
+        ? BloomFilterBuilder.countAllRows(conn, table)
+        : -1;
+  }
+
+  private void recreateTable() throws VarfishAnnotatorException {
+    final ImmutableList<String> tables =
+        ImmutableList.of(DbConstants.COMBINED_TABLE_NAME, DbConstants.COMBINED_SOURCES_TABLE_NAME);
+    for (String table : tables) {
+      try (PreparedStatement stmt = conn.prepareStatement("DROP TABLE IF EXISTS " + table)) {
+        stmt.executeUpdate();
+      } catch (SQLException e) {
+        throw new VarfishAnnotatorException("Problem with DROP TABLE statement", e);
+      }
+    }
+
+    final String createSourcesQuery =
+        "CREATE TABLE "
+            + DbConstants.COMBINED_SOURCES_TABLE_NAME
+            + "(release VARCHAR(10) NOT NULL, table_name VARCHAR(100) NOT NULL, "
+            + "row_count BIGINT NOT NULL)";
+    try (PreparedStatement stmt = conn.prepareStatement(createSourcesQuery)) {
+      stmt.executeUpdate();
+    } catch (SQLException e) {
+      throw new VarfishAnnotatorException("Problem with CREATE TABLE statement", e);
+    }
+
+    final StringBuilder createQuery =
+        new StringBuilder()
+            .append("CREATE TABLE ")
+            .append(DbConstants.COMBINED_TABLE_NAME)
+            .append("(")
+            .append("release VARCHAR(10) NOT NULL, ")
+            .append("chrom VARCHAR(20) NOT NULL, ")
+            .append("start INTEGER NOT NULL, ")
+            .append("ref VARCHAR(")
+            .append(InitDb.VARCHAR_LEN)
+            .append(") NOT NULL, ")
+            .append("alt VARCHAR(")
+            .append(InitDb.VARCHAR_LEN)
+            .append(") NOT NULL, ");
+    for (String prefix : VcfConstants.FREQUENCY_PREFIXES) {
+      createQuery
+          .append(prefix)
+          .append("_het INTEGER, ")
+          .append(prefix)
+          .append("_hom INTEGER, ")
+          .append(prefix)
+          .append("_hemi INTEGER, ")
+          .append(prefix)
+          .append("_af DOUBLE, ");
+    }
+    createQuery
+        .append(DbConstants.COMBINED_CLINVAR_PLAIN)
+        .append(" BOOLEAN DEFAULT FALSE NOT NULL, ")
+        .append(DbConstants.COMBINED_CLINVAR_CHR)
+        .append(" BOOLEAN DEFAULT FALSE NOT NULL, ")
+        .append(")");
+    try (PreparedStatement stmt = conn.prepareStatement(createQuery.toString())) {
+      stmt.executeUpdate();
+    } catch (SQLException e) {
+      throw new VarfishAnnotatorException("Problem with CREATE TABLE statement", e);
+    }
+
+    final ImmutableList<String> indexQueries =
+        ImmutableList.of(
+            "CREATE PRIMARY KEY ON "
+                + DbConstants.COMBINED_TABLE_NAME
+                + " (release, chrom, start, ref, alt)");
+    for (String query : indexQueries) {
+      try (PreparedStatement stmt = conn.prepareStatement(query)) {
+        stmt.executeUpdate();
+      } catch (SQLException e) {
+        throw new VarfishAnnotatorException("Problem with CREATE INDEX statement", e);
+      }
+    }
+  }
+
+  /**
+   * Merge the rows of one frequency table.
+   *
+   * <p>{@code annotate} queries gnomAD with "chr" prefix for GRCh38 and all other tables without.
+   */
+  private void mergeFrequencies(String prefix) throws VarfishAnnotatorException {
+    final boolean withChr =
+        "GRCh38".equals(genomeRelease)
+            && ImmutableList.of(
+                    VcfConstants.GNOMAD_EXOMES_PREFIX, VcfConstants.GNOMAD_GENOMES_PREFIX)
+                .contains(prefix);
+    final String columns =
+        prefix + "_het, " + prefix + "_hom, " + prefix + "_hemi, " + prefix + "_af";
+    final String mergeQuery =
+        "MERGE INTO "
+            + DbConstants.COMBINED_TABLE_NAME
+            + " (release, chrom, start, ref, alt, "
+            + columns
+            + ") KEY (release, chrom, start, ref, alt)"
+            + " VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    final WindowedTableScan scan =
+        new WindowedTableScan(conn, prefix + "_var", genomeRelease, columns);
+    try (PreparedStatement stmt = conn.prepareStatement(mergeQuery)) {
+      final int[] numBatched = new int[] {0};
+      scan.run(
+          (chrom, rs) -> {
+            if (chrom.startsWith("chr") != withChr) {
+              return; // never queried by annotate
+            }
+            stmt.setString(1, genomeRelease);
+            stmt.setString(2, stripChr(chrom));
+            stmt.setInt(3, rs.getInt(1));
+            stmt.setString(4, rs.getString(2));
+            stmt.setString(5, rs.getString(3));
+            stmt.setInt(6, rs.getInt(4));
+            stmt.setInt(7, rs.getInt(5));
+            stmt.setInt(8, rs.getInt(6));
+            stmt.setDouble(9, rs.getDouble(7));
+            stmt.addBatch();
+            if (++numBatched[0] % BATCH_SIZE == 0) {
+              stmt.executeBatch();
+            }
+          });
+      stmt.executeBatch();
+    } catch (SQLException e) {
+      throw new VarfishAnnotatorException("Problem with merging " + prefix + "_var", e);
+    }
+  }
+
+  /** Merge the rows of the ClinVar table, flagging them by their chromosome prefix. */
+  private void mergeClinvar() throws VarfishAnnotatorException {
+    final String flagQuery =
+        "MERGE INTO "
+            + DbConstants.COMBINED_TABLE_NAME
+            + " (release, chrom, start, ref, alt, %s) KEY (release, chrom, start, ref, alt)"
+            + " VALUES (?, ?, ?, ?, ?, TRUE)";
+    final WindowedTableScan scan =
+        new WindowedTableScan(conn, ClinvarImporter.TABLE_NAME, genomeRelease, "");
+    try (PreparedStatement plainStmt =
+            conn.prepareStatement(String.format(flagQuery, DbConstants.COMBINED_CLINVAR_PLAIN));
+        PreparedStatement chrStmt =
+            conn.prepareStatement(String.format(flagQuery, DbConstants.COMBINED_CLINVAR_CHR))) {
+      final int[] numBatched = new int[] {0};
+      scan.run(
+          (chrom, rs) -> {
+            final PreparedStatement stmt = chrom.startsWith("chr") ? chrStmt : plainStmt;
+            stmt.setString(1, genomeRelease);
+            stmt.setString(2, stripChr(chrom));
+            stmt.setInt(3, rs.getInt(1));
+            stmt.setString(4, rs.getString(2));
+            stmt.setString(5, rs.getString(3));
+            stmt.addBatch();
+            if (++numBatched[0] % BATCH_SIZE == 0) {
+              plainStmt.executeBatch();
+              chrStmt.executeBatch();
+            }
+          });
+      plainStmt.executeBatch();
+      chrStmt.executeBatch();
+    } catch (SQLException e) {
+      throw new VarfishAnnotatorException("Problem with merging ClinVar", e);
+    }
+  }
+
+  private static String stripChr(String chrom) {
+    return chrom.startsWith("chr") ? chrom.substring(3) : chrom;
+  }
+}
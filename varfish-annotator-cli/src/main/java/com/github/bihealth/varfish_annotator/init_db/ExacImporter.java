@@ -38,7 +38,7 @@ public final class ExacImporter {
   private final String vcfPath;
 
   /** Helper to use for variant normalization. */
-  private final String refFastaPath;
+  private final VariantNormalizer normalizer;
 
   /** Chromosome of selected region. */
   private final String chrom;
@@ -55,18 +55,19 @@ public final class ExacImporter {
    * @param conn Connection to database
    * @param genomeRelease
    * @param vcfPath Path to ExAC VCF path.
+   * @param normalizer Helper for normalizing variants, may be shared between importers.
    * @param genomicRegion Genomic region {@code CHR:START-END} to process.
    */
   public ExacImporter(
       Connection conn,
       String genomeRelease,
       String vcfPath,
-      String refFastaPath,
+      VariantNormalizer normalizer,
       String genomicRegion) {
     this.conn = conn;
     this.genomeRelease = genomeRelease;
     this.vcfPath = vcfPath;
-    this.refFastaPath = refFastaPath;
+    this.normalizer = normalizer;
 
     if (genomicRegion == null) {
       this.chrom = null;
@@ -85,7 +86,6 @@ public final class ExacImporter {
     recreateTable();
 
     System.err.println("Importing ExAC...");
-    final VariantNormalizer normalizer = new VariantNormalizer(refFastaPath);
     String prevChr = null;
     try (VCFFileReader reader = new VCFFileReader(new File(vcfPath), true)) {
       final CloseableIterator<VariantContext> it;
@@ -1,5 +1,6 @@
 package com.github.bihealth.varfish_annotator.init_db;
 
+import com.github.bihealth.varfish_annotator.utils.VariantNormalizer;
 import java.sql.Connection;
 import java.util.List;
 
@@ -14,9 +15,9 @@ public final class GnomadExomesImporter extends GnomadImporter {
       Connection conn,
       String genomeRelease,
       List<String> gnomadVcfPaths,
-      String refFastaPath,
+      VariantNormalizer normalizer,
       String genomicRegion) {
-    super(conn, genomeRelease, gnomadVcfPaths, refFastaPath, genomicRegion);
+    super(conn, genomeRelease, gnomadVcfPaths, normalizer, genomicRegion);
   }
 
   public static final String TABLE_NAME = "gnomad_exome_var";
@@ -30,7 +30,7 @@ abstract class GnomadImporter {
   protected final List<String> gnomadVcfPaths;
 
   /** Helper to use for variant normalization. */
-  protected final String refFastaPath;
+  protected final VariantNormalizer normalizer;
 
   /** Chromosome of selected region. */
   private final String chrom;
@@ -47,18 +47,19 @@ abstract class GnomadImporter {
    * @param conn Connection to database
    * @param genomeRelease
    * @param gnomadVcfPaths Path to gnomAD VCF path.
+   * @param normalizer Helper for normalizing variants, may be shared between importers.
    * @param genomicRegion Genomic regiin {@code CHR:START-END} to process.
    */
   GnomadImporter(
       Connection conn,
       String genomeRelease,
       List<String> gnomadVcfPaths,
-      String refFastaPath,
+      VariantNormalizer normalizer,
       String genomicRegion) {
     this.conn = conn;
     this.genomeRelease = genomeRelease;
     this.gnomadVcfPaths = gnomadVcfPaths;
-    this.refFastaPath = refFastaPath;
+    this.normalizer = normalizer;
 
     if (genomicRegion == null) {
       this.chrom = null;
@@ -77,7 +78,6 @@ abstract class GnomadImporter {
     recreateTable();
 
     System.err.println("Importing gnomAD...");
-    final VariantNormalizer normalizer = new VariantNormalizer(refFastaPath);
     String prevChr = null;
     for (String gnomadVcfPath : gnomadVcfPaths) {
       try (VCFFileReader reader = new VCFFileReader(new File(gnomadVcfPath), true)) {
@@ -1,6 +1,7 @@
 package com.github.bihealth.varfish_annotator.init_db;
 
 import com.github.bihealth.varfish_annotator.VarfishAnnotatorException;
+import com.github.bihealth.varfish_annotator.utils.VariantNormalizer;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
@@ -13,11 +14,22 @@ public final class InitDb {
   /** Configuration for the command. */
   private final InitDbArgs args;
 
+  /** Normalizer shared by all VCF importers, created on first use. */
+  private VariantNormalizer normalizer;
+
   /** Construct with the given configuration. */
   public InitDb(InitDbArgs args) {
     this.args = args;
   }
 
+  /** @return the shared normalizer, mapping the reference on the first call. */
+  private VariantNormalizer getNormalizer() throws VarfishAnnotatorException {
+    if (normalizer == null) {
+      normalizer = new VariantNormalizer(args.getRefPath());
+    }
+    return normalizer;
+  }
+
   /** Execute the command. */
   public void run() {
     System.err.println("Running init-db; args: " + args);
@@ -36,7 +48,7 @@ public final class InitDb {
                 conn,
                 args.getRelease(),
                 args.getGnomadExomesPaths(),
-                args.getRefPath(),
+                getNormalizer(),
                 args.getGenomicRegion())
             .run();
       }
@@ -46,7 +58,7 @@ public final class InitDb {
                 conn,
                 args.getRelease(),
                 args.getGnomadGenomesPaths(),
-                args.getRefPath(),
+                getNormalizer(),
                 args.getGenomicRegion())
             .run();
       }
@@ -56,7 +68,7 @@ public final class InitDb {
                 conn,
                 args.getRelease(),
                 args.getThousandGenomesPaths(),
-                args.getRefPath(),
+                getNormalizer(),
                 args.getGenomicRegion())
             .run();
       }
@@ -66,7 +78,7 @@ public final class InitDb {
                 conn,
                 args.getRelease(),
                 args.getExacPath(),
-                args.getRefPath(),
+                getNormalizer(),
                 args.getGenomicRegion())
             .run();
       }
@@ -82,6 +94,19 @@ public final class InitDb {
         System.err.println("Storing database release versions...");
         new DbReleaseUpdater(conn, args.getDbReleaseInfos()).run();
       }
+      if (args.isBuildCombinedTable()) {
+        System.err.println("Building combined table...");
+        new CombinedTableBuilder(conn, args.getRelease()).run();
+      }
+      if (args.isExportBinaryIndex()) {
+        System.err.println("Exporting binary frequency indices...");
+        new BinaryIndexExporter(conn, args.getRelease(), args.getDbPath()).run();
+      }
+      if (args.isBuildBloomFilters()) {
+        System.err.println("Building Bloom filters...");
+        new BloomFilterBuilder(conn, args.getRelease(), args.getDbPath(), args.getBloomFilterFpp())
+            .run();
+      }
     } catch (SQLException e) {
       System.err.println("Problem with database conection");
       e.printStackTrace();
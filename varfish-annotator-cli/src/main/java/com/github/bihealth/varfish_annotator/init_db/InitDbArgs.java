@@ -2,6 +2,7 @@ package com.github.bihealth.varfish_annotator.init_db;
 
 import com.beust.jcommander.Parameter;
 import com.beust.jcommander.Parameters;
+import com.github.bihealth.varfish_annotator.db.VariantBloomFilter;
 import java.util.List;
 
 /**
@@ -74,6 +75,32 @@ public final class InitDbArgs {
   @Parameter(names = "--release", description = "The genome release used", required = true)
   private String release;
 
+  @Parameter(
+      names = "--build-combined-table",
+      description =
+          "Build table combining the frequency and ClinVar tables for use with "
+              + "'annotate --db-lookup-mode combined'")
+  private boolean buildCombinedTable = false;
+
+  @Parameter(
+      names = "--export-binary-index",
+      description =
+          "Export frequency tables to memory-mapped binary index files next to the database "
+              + "for use with 'annotate --db-lookup-mode binary-index'")
+  private boolean exportBinaryIndex = false;
+
+  @Parameter(
+      names = "--build-bloom-filters",
+      description =
+          "Build Bloom filters of the variant tables next to the database for use with "
+              + "'annotate --bloom-filters'")
+  private boolean buildBloomFilters = false;
+
+  @Parameter(
+      names = "--bloom-filter-fpp",
+      description = "False-positive probability of the Bloom filters")
+  private double bloomFilterFpp = VariantBloomFilter.DEFAULT_FPP;
+
   public boolean isHelp() {
     return help;
   }
@@ -122,6 +149,22 @@ public final class InitDbArgs {
     return release;
   }
 
+  public boolean isBuildCombinedTable() {
+    return buildCombinedTable;
+  }
+
+  public boolean isExportBinaryIndex() {
+    return exportBinaryIndex;
+  }
+
+  public boolean isBuildBloomFilters() {
+    return buildBloomFilters;
+  }
+
+  public double getBloomFilterFpp() {
+    return bloomFilterFpp;
+  }
+
   @Override
   public String toString() {
     return "InitDbArgs{"
@@ -154,6 +197,14 @@ public final class InitDbArgs {
         + '\''
         + ", dbReleaseInfos="
         + dbReleaseInfos
+        + ", buildCombinedTable="
+        + buildCombinedTable
+        + ", exportBinaryIndex="
+        + exportBinaryIndex
+        + ", buildBloomFilters="
+        + buildBloomFilters
+        + ", bloomFilterFpp="
+        + bloomFilterFpp
         + "'}";
   }
 }
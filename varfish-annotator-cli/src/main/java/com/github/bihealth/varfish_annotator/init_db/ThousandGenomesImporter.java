@@ -37,7 +37,7 @@ public final class ThousandGenomesImporter {
   private final List<String> vcfPaths;
 
   /** Helper to use for variant normalization. */
-  private final String refFastaPath;
+  private final VariantNormalizer normalizer;
 
   /** Chromosome of selected region. */
   private final String chrom;
@@ -54,18 +54,19 @@ public final class ThousandGenomesImporter {
    * @param conn Connection to database
    * @param genomeRelease
    * @param vcfPaths Path to Thousand Genomes VCF path.
+   * @param normalizer Helper for normalizing variants, may be shared between importers.
    * @param genomicRegion Genomic region {@code CHR:START-END} to process.
    */
   public ThousandGenomesImporter(
       Connection conn,
       String genomeRelease,
       List<String> vcfPaths,
-      String refFastaPath,
+      VariantNormalizer normalizer,
       String genomicRegion) {
     this.conn = conn;
     this.genomeRelease = genomeRelease;
     this.vcfPaths = ImmutableList.copyOf(vcfPaths);
-    this.refFastaPath = refFastaPath;
+    this.normalizer = normalizer;
 
     if (genomicRegion == null) {
       this.chrom = null;
@@ -84,7 +85,6 @@ public final class ThousandGenomesImporter {
     recreateTable();
 
     System.err.println("Importing Thousand Genomes...");
-    final VariantNormalizer normalizer = new VariantNormalizer(refFastaPath);
     String prevChr = null;
     for (String vcfPath : vcfPaths) {
       try (VCFFileReader reader = new VCFFileReader(new File(vcfPath), true)) {
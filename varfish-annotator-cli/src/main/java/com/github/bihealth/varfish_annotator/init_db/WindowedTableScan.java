@@ -0,0 +1,148 @@
+package com.github.bihealth.varfish_annotator.init_db;
+
+import com.github.bihealth.varfish_annotator.VarfishAnnotatorException;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Scan the rows of one release in a variant table ordered by chromosome and start position.
+ *
+ * <p>The table is read per chromosome in windows of {@link #WINDOW_SIZE} bases using the primary
+ * key index, such that whole tables are never materialized by the database.
+ */
+final class WindowedTableScan {
+
+  /** Callback for the scanned rows. */
+  interface RowHandler {
+    /**
+     * Handle one row.
+     *
+     * @param chrom The chromosome of the row.
+     * @param rs The result set with {@code start, ref, alt} and the additional columns.
+     */
+    void handle(String chrom, ResultSet rs) throws SQLException, IOException;
+  }
+
+  /** Number of bases to read from the database at once. */
+  private static final int WINDOW_SIZE = 1_000_000;
+
+  /** The JDBC connection. */
+  private final Connection conn;
+
+  /** Name of the table. */
+  private final String table;
+
+  /** The genome release. */
+  private final String genomeRelease;
+
+  /** Additional columns to select, may be empty. */
+  private final String extraColumns;
+
+  /** Chromosomes in the table, in ascending order; loaded lazily. */
+  private List<String> chroms;
+
+  /** Largest start position for each of {@link #chroms}. */
+  private List<Integer> maxStarts;
+
+  /** Constructor. */
+  WindowedTableScan(Connection conn, String table, String genomeRelease, String extraColumns) {
+    this.conn = conn;
+    this.table = table;
+    this.genomeRelease = genomeRelease;
+    this.extraColumns = extraColumns;
+  }
+
+  /** @return whether {@code table} exists in the database. */
+  static boolean tableExists(Connection conn, String table) throws VarfishAnnotatorException {
+    final String query = "SELECT COUNT(*) FROM INFORMATION_SCHEMA.TABLES WHERE TABLE_NAME = ?";
+    try (PreparedStatement stmt = conn.prepareStatement(query)) {
+      stmt.setString(1, table.toUpperCase());
+      try (ResultSet rs = stmt.executeQuery()) {
+        return rs.next() && rs.getInt(1) > 0;
+      }
+    } catch (SQLException e) {
+      throw new VarfishAnnotatorException("Problem with querying table list", e);
+    }
+  }
+
+  /** @return the chromosomes of the release in the table, in scan order. */
+  List<String> getChroms() throws VarfishAnnotatorException {
+    if (chroms == null) {
+      loadChroms();
+    }
+    return chroms;
+  }
+
+  /** @return the number of rows of the release in the table. */
+  long countRows() throws VarfishAnnotatorException {
+    final String query = "SELECT COUNT(*) FROM " + table + " WHERE release = ?";
+    try (PreparedStatement stmt = conn.prepareStatement(query)) {
+      stmt.setString(1, genomeRelease);
+      try (ResultSet rs = stmt.executeQuery()) {
+        rs.next();
+        return rs.getLong(1);
+      }
+    } catch (SQLException e) {
+      throw new VarfishAnnotatorException("Problem with counting rows of " + table, e);
+    }
+  }
+
+  /** Pass all rows of the release to {@code handler}. */
+  void run(RowHandler handler) throws VarfishAnnotatorException {
+    if (chroms == null) {
+      loadChroms();
+    }
+    final String query =
+        "SELECT start, ref, alt"
+            + (extraColumns.isEmpty() ? "" : ", " + extraColumns)
+            + " FROM "
+            + table
+            + " WHERE (release = ?) AND (chrom = ?) AND (start >= ?) AND (start < ?)"
+            + " ORDER BY start";
+    try (PreparedStatement stmt = conn.prepareStatement(query)) {
+      for (int i = 0; i < chroms.size(); ++i) {
+        final String chrom = chroms.get(i);
+        for (long windowStart = 0; windowStart <= maxStarts.get(i); windowStart += WINDOW_SIZE) {
+          stmt.setString(1, genomeRelease);
+          stmt.setString(2, chrom);
+          stmt.setLong(3, windowStart);
+          stmt.setLong(4, windowStart + WINDOW_SIZE);
+          try (ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+              handler.handle(chrom, rs);
+            }
+          }
+        }
+      }
+    } catch (SQLException e) {
+      throw new VarfishAnnotatorException("Problem with scanning " + table, e);
+    } catch (IOException e) {
+      throw new VarfishAnnotatorException("Problem with writing rows of " + table, e);
+    }
+  }
+
+  private void loadChroms() throws VarfishAnnotatorException {
+    chroms = new ArrayList<>();
+    maxStarts = new ArrayList<>();
+    final String query =
+        "SELECT chrom, MAX(start) FROM "
+            + table
+            + " WHERE release = ? GROUP BY chrom ORDER BY chrom";
+    try (PreparedStatement stmt = conn.prepareStatement(query)) {
+      stmt.setString(1, genomeRelease);
+      try (ResultSet rs = stmt.executeQuery()) {
+        while (rs.next()) {
+          chroms.add(rs.getString(1));
+          maxStarts.add(rs.getInt(2));
+        }
+      }
+    } catch (SQLException e) {
+      throw new VarfishAnnotatorException("Problem with querying chromosomes of " + table, e);
+    }
+  }
+}
@@ -0,0 +1,41 @@
+package com.github.bihealth.varfish_annotator.annotate;
+
+import com.github.bihealth.varfish_annotator.utils.VariantDescription;
+import java.util.Arrays;
+import java.util.Collections;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class AlleleAnnotationTest {
+
+  @Test
+  public void testRoundTrip() throws Exception {
+    final AlleleAnnotation anno =
+        new AlleleAnnotation(
+            new VariantDescription("1", 100, "A", "C"),
+            "snv",
+            Arrays.asList("TRUE", "0.5", "ä"),
+            Arrays.asList(Arrays.asList("1", "2"), Collections.emptyList()));
+    final AlleleAnnotation copy = AlleleAnnotation.fromBytes(anno.toBytes());
+    Assertions.assertEquals(anno.getNormalizedVar(), copy.getNormalizedVar());
+    Assertions.assertEquals(anno.getVarType(), copy.getVarType());
+    Assertions.assertEquals(anno.getDbColumns(), copy.getDbColumns());
+    Assertions.assertEquals(anno.getGeneColumns(), copy.getGeneColumns());
+  }
+
+  @Test
+  public void testRoundTripLongAllele() throws Exception {
+    // Longer than the 64 KiB supported by DataOutputStream.writeUTF().
+    final String alt = String.join("", Collections.nCopies(20_000, "ACGT"));
+    final AlleleAnnotation anno =
+        new AlleleAnnotation(
+            new VariantDescription("1", 100, "A", alt),
+            "indel",
+            Collections.singletonList(alt),
+            Collections.singletonList(Collections.singletonList(alt)));
+    final AlleleAnnotation copy = AlleleAnnotation.fromBytes(anno.toBytes());
+    Assertions.assertEquals(alt, copy.getNormalizedVar().getAlt());
+    Assertions.assertEquals(anno.getDbColumns(), copy.getDbColumns());
+    Assertions.assertEquals(anno.getGeneColumns(), copy.getGeneColumns());
+  }
+}
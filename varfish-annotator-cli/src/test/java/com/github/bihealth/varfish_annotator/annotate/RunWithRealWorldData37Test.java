@@ -4,16 +4,22 @@ import com.ginsberg.junit.exit.FailOnSystemExit;
 import com.github.bihealth.varfish_annotator.ResourceUtils;
 import com.github.bihealth.varfish_annotator.VarfishAnnotatorCli;
 import com.github.bihealth.varfish_annotator.utils.GzipUtil;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
 import org.apache.commons.io.FileUtils;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.io.TempDir;
 import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
 import org.junit.jupiter.params.provider.ValueSource;
 
 /** Test running with some real-world data files for GRCh37. */
@@ -48,7 +54,8 @@ public class RunWithRealWorldData37Test {
       String expectedGtsFileName,
       boolean gzipOutput,
       boolean selfTestChr1Only,
-      boolean selfTestChr22Only)
+      boolean selfTestChr22Only,
+      String... extraArgs)
       throws IOException {
     final String gzSuffix = gzipOutput ? ".gz" : "";
     final File vcfPath = new File(tmpFolder + "/" + inputFileName);
@@ -90,6 +97,7 @@ public class RunWithRealWorldData37Test {
     } else if (selfTestChr22Only) {
       args.add("--self-test-chr22-only");
     }
+    args.addAll(Arrays.asList(extraArgs));
     final String[] argsArr = new String[args.size()];
     args.toArray(argsArr);
     VarfishAnnotatorCli.main(argsArr);
@@ -124,4 +132,140 @@ public class RunWithRealWorldData37Test {
         false,
         true);
   }
+
+  /** Preparation needed by a run with optional features. */
+  enum Setup {
+    NONE,
+    ANNOTATION_CACHE,
+    BINARY_INDEX_AND_BLOOM_FILTERS,
+    COMBINED_TABLE,
+    CONVERTED_TRANSCRIPTS,
+    SNV_TABLE
+  }
+
+  /** Optional features that must not change the output, with their preparation. */
+  static Stream<Arguments> optionalFeatures() {
+    return Stream.of(
+        Arguments.of(Setup.NONE, ImmutableList.of("--threads", "4")),
+        Arguments.of(
+            Setup.NONE, ImmutableList.of("--threads", "4", "--parallel-mode", "pipeline")),
+        Arguments.of(Setup.NONE, ImmutableList.of("--db-lookup-mode", "merge-join")),
+        Arguments.of(Setup.NONE, ImmutableList.of("--db-connections", "4")),
+        Arguments.of(Setup.NONE, ImmutableList.of("--clinvar-in-memory")),
+        Arguments.of(Setup.ANNOTATION_CACHE, ImmutableList.of("--annotation-cache-size", "16")),
+        Arguments.of(
+            Setup.BINARY_INDEX_AND_BLOOM_FILTERS,
+            ImmutableList.of("--db-lookup-mode", "binary-index", "--bloom-filters")),
+        Arguments.of(Setup.COMBINED_TABLE, ImmutableList.of("--db-lookup-mode", "combined")),
+        Arguments.of(Setup.CONVERTED_TRANSCRIPTS, ImmutableList.of()),
+        Arguments.of(
+            Setup.CONVERTED_TRANSCRIPTS, ImmutableList.of("--transcript-memory-budget", "1")),
+        Arguments.of(Setup.NONE, ImmutableList.of("--transcript-sweep")),
+        Arguments.of(Setup.NONE, ImmutableList.of("--intergenic-fast-path", "--threads", "1")),
+        Arguments.of(Setup.NONE, ImmutableList.of("--prune-transcripts")),
+        Arguments.of(Setup.SNV_TABLE, ImmutableList.of()));
+  }
+
+  @FailOnSystemExit
+  @ParameterizedTest(name = "{0} {1}")
+  @MethodSource("optionalFeatures")
+  void testGatkHcWithOptionalFeatures(Setup setup, List<String> featureArgs) throws IOException {
+    final List<String> extraArgs = new ArrayList<>(featureArgs);
+    int numRuns = 1;
+    switch (setup) {
+      case ANNOTATION_CACHE:
+        extraArgs.add("--annotation-cache");
+        extraArgs.add(tmpFolder + "/annotation-cache.bin");
+        numRuns = 2; // the first run fills the cache, the second one reads from it
+        break;
+      case BINARY_INDEX_AND_BLOOM_FILTERS:
+        initDb("--export-binary-index", "--build-bloom-filters");
+        break;
+      case COMBINED_TABLE:
+        initDb("--build-combined-table");
+        break;
+      case CONVERTED_TRANSCRIPTS:
+        convertTranscripts();
+        break;
+      case SNV_TABLE:
+        extraArgs.add("--snv-table");
+        extraArgs.add(buildSnvTable().toString());
+        break;
+      default:
+        break;
+    }
+
+    for (int run = 0; run < numRuns; ++run) {
+      runTest(
+          "bwa.gatk_hc.Case_1_index-N1-DNA1-WGS1.vcf.gz",
+          "input/real-world-37",
+          "bwa.gatk_hc.Case_1_index-N1-DNA1-WGS1.db-infos.tsv",
+          "bwa.gatk_hc.Case_1_index-N1-DNA1-WGS1.gts.tsv",
+          false,
+          false,
+          true,
+          extraArgs.toArray(new String[0]));
+    }
+  }
+
+  /** Run <tt>init-db</tt> on the database with the given extra arguments. */
+  private void initDb(String... extraArgs) {
+    final List<String> args =
+        Lists.newArrayList(
+            "init-db",
+            "--release",
+            "GRCh37",
+            "--db-path",
+            h2DbFile.toString().replace(".h2.db", ""));
+    args.addAll(Arrays.asList(extraArgs));
+    VarfishAnnotatorCli.main(args.toArray(new String[0]));
+  }
+
+  /** Convert the Jannovar .ser files and use the converted files in the following run. */
+  private void convertTranscripts() {
+    final File refseqDbFile = new File(tmpFolder + "/hg19_refseq.tx.bin");
+    final File ensemblDbFile = new File(tmpFolder + "/hg19_ensembl.tx.bin");
+    VarfishAnnotatorCli.main(
+        new String[] {
+          "convert-transcripts",
+          "--input-ser-path",
+          refseqSerFile.toString(),
+          "--output-path",
+          refseqDbFile.toString()
+        });
+    VarfishAnnotatorCli.main(
+        new String[] {
+          "convert-transcripts",
+          "--input-ser-path",
+          ensemblSerFile.toString(),
+          "--output-path",
+          ensemblDbFile.toString()
+        });
+    refseqSerFile = refseqDbFile;
+    ensemblSerFile = ensemblDbFile;
+  }
+
+  /** Build the SNV effect table for chr22 from the transcript files. */
+  private File buildSnvTable() {
+    final File snvTableFile = new File(tmpFolder + "/hg19.snvs.bin");
+    VarfishAnnotatorCli.main(
+        new String[] {
+          "build-snv-table",
+          "--release",
+          "GRCh37",
+          "--ref-path",
+          fastaFile.toString(),
+          "--refseq-ser-path",
+          refseqSerFile.toString(),
+          "--ensembl-ser-path",
+          ensemblSerFile.toString(),
+          "--contig-regex",
+          "^22$",
+          "--threads",
+          "2",
+          "--output-path",
+          snvTableFile.toString()
+        });
+    return snvTableFile;
+  }
 }
@@ -0,0 +1,94 @@
+package com.github.bihealth.varfish_annotator.annotate;
+
+import com.google.common.collect.ImmutableList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class TranscriptPruningTest {
+
+  /**
+   * Transcripts 0 and 1 of gene "g1" on {@code [1000, 10000)}, 0 with exons at both ends only and 1
+   * also with an exon on {@code [5000, 5100)}, and transcript 2 of gene "g2" on {@code [4000,
+   * 6000)} with exons at both ends.
+   */
+  private static TranscriptPruning.Selector buildSelector(String geneOfLast) {
+    return new TranscriptPruning.Selector(
+        new int[] {1_000, 1_000, 4_000},
+        new int[] {10_000, 10_000, 6_000},
+        new int[][] {{1_000, 9_900}, {1_000, 5_000, 9_900}, {4_000, 5_900}},
+        new int[][] {{1_100, 10_000}, {1_100, 5_100, 10_000}, {4_100, 6_000}},
+        ImmutableList.<List<String>>of(
+            ImmutableList.of("refseq:g1"),
+            ImmutableList.of("refseq:g1"),
+            ImmutableList.of("refseq:" + geneOfLast)));
+  }
+
+  @Test
+  public void testPruned() {
+    // The variant is near the exon of transcript 1, deep in the introns of the others.
+    final TranscriptPruning.Selection selection =
+        buildSelector("g1").select(5_100 + TranscriptPruning.MARGIN - 1, 5_200);
+    Assertions.assertNotNull(selection);
+    Assertions.assertEquals(Collections.singletonList(1), selection.kept);
+    Assertions.assertEquals(Collections.singleton("refseq:g1"), selection.prunedGeneKeys);
+  }
+
+  @Test
+  public void testGeneWithoutKeptTranscript() {
+    // Transcript 2 of gene "g2" would be left out, but no kept transcript can give "g2" a more
+    // pathogenic effect.
+    Assertions.assertNull(buildSelector("g2").select(5_100 + TranscriptPruning.MARGIN - 1, 5_200));
+  }
+
+  @Test
+  public void testNothingPruned() {
+    // The variant is near the exons of transcripts 0 and 1 and outside transcript 2.
+    Assertions.assertNull(buildSelector("g1").select(1_050, 1_051));
+  }
+
+  @Test
+  public void testMargin() {
+    // The variant is exactly MARGIN bases away from the exon of transcript 1, so that is left out
+    // as well and no kept transcript contains the variant.
+    Assertions.assertNull(buildSelector("g1").select(5_100 + TranscriptPruning.MARGIN, 5_200));
+  }
+
+  @Test
+  public void testKeptNotContained() {
+    // The variant overlaps the end of transcript 2, which would be the only kept one.
+    final TranscriptPruning.Selector selector =
+        new TranscriptPruning.Selector(
+            new int[] {1_000, 4_000},
+            new int[] {10_000, 6_000},
+            new int[][] {{1_000, 9_900}, {4_000, 5_900}},
+            new int[][] {{1_100, 10_000}, {4_100, 6_000}},
+            ImmutableList.<List<String>>of(
+                ImmutableList.of("refseq:g1"), ImmutableList.of("refseq:g1")));
+    Assertions.assertNull(selector.select(5_990, 6_010));
+    Assertions.assertNotNull(selector.select(5_980, 5_990));
+  }
+
+  @Test
+  public void testNeighbourKept() {
+    // The variant lies deep in an intron of transcript 0, transcript 2 of gene "g2" starts 3 kbp
+    // after it and gets an upstream or downstream annotation, transcript 3 is too far away.
+    final TranscriptPruning.Selector selector =
+        new TranscriptPruning.Selector(
+            new int[] {1_000, 1_000, 8_200, 40_000},
+            new int[] {10_000, 10_000, 9_000, 50_000},
+            new int[][] {{1_000, 9_900}, {1_000, 5_000, 9_900}, {8_200}, {40_000}},
+            new int[][] {{1_100, 10_000}, {1_100, 5_100, 10_000}, {9_000}, {50_000}},
+            ImmutableList.<List<String>>of(
+                ImmutableList.of("refseq:g1"),
+                ImmutableList.of("refseq:g1"),
+                ImmutableList.of("refseq:g2"),
+                ImmutableList.of("refseq:g3")));
+    final TranscriptPruning.Selection selection =
+        selector.select(5_100 + TranscriptPruning.MARGIN - 1, 5_200);
+    Assertions.assertNotNull(selection);
+    Assertions.assertEquals(Arrays.asList(1, 2), selection.kept);
+  }
+}
@@ -0,0 +1,76 @@
+package com.github.bihealth.varfish_annotator.annotate;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class TranscriptSweepTest {
+
+  @Test
+  public void testContained() {
+    final TranscriptSweep.Window window =
+        new TranscriptSweep.Window(new int[] {1_000, 2_000_000}, new int[] {2_000, 2_010_000});
+    // Jannovar may shift the variant by one base, so it must lie within the transcript with one
+    // base to spare on either side.
+    Assertions.assertNull(window.advance(999, 1_000));
+    Assertions.assertNull(window.advance(1_000, 1_001));
+    Assertions.assertEquals(asList(0), window.advance(1_001, 1_002));
+    Assertions.assertEquals(asList(0), window.advance(1_998, 1_999));
+    Assertions.assertNull(window.advance(1_998, 2_000));
+    Assertions.assertNull(window.advance(1_999, 2_000));
+    // Intergenic variants need all transcripts.
+    Assertions.assertNull(window.advance(10_000, 10_001));
+    Assertions.assertEquals(asList(1), window.advance(2_005_000, 2_005_001));
+  }
+
+  @Test
+  public void testUnsortedFallback() {
+    final TranscriptSweep.Window window =
+        new TranscriptSweep.Window(new int[] {1_000, 50_000}, new int[] {2_000, 60_000});
+    Assertions.assertNotNull(window.advance(55_000, 55_001));
+    Assertions.assertNotNull(window.advance(55_000, 55_002));
+    Assertions.assertNull(window.advance(1_500, 1_501));
+    // Once the input went backwards, later contained variants fall back as well.
+    Assertions.assertNull(window.advance(55_500, 55_501));
+    Assertions.assertNull(window.advance(1_500, 1_501));
+  }
+
+  @Test
+  public void testSelectionKeptWithinSpan() {
+    // Overlapping transcripts of 20 kbp every 5 kbp, such that the window changes all the time.
+    final int numTranscripts = 1_000;
+    final int[] begins = new int[numTranscripts];
+    final int[] ends = new int[numTranscripts];
+    for (int i = 0; i < numTranscripts; ++i) {
+      begins[i] = 100_000 + 5_000 * i;
+      ends[i] = begins[i] + 20_000 + (i % 7) * 1_000;
+    }
+    final TranscriptSweep.Window window = new TranscriptSweep.Window(begins, ends);
+
+    final List<List<Integer>> selections = new ArrayList<>();
+    for (int begin = 120_000; begin < 5_000_000; begin += 1_234) {
+      final List<Integer> selected = window.advance(begin, begin + 10);
+      Assertions.assertNotNull(selected);
+      if (selections.isEmpty() || selections.get(selections.size() - 1) != selected) {
+        selections.add(selected);
+      }
+      // All transcripts near the variant must be selected.
+      for (int i = 0; i < numTranscripts; ++i) {
+        if (ends[i] + TranscriptSweep.PADDING > begin - 1
+            && begins[i] - TranscriptSweep.PADDING < begin + 11) {
+          Assertions.assertTrue(selected.contains(i), begin + " " + i);
+        }
+      }
+    }
+    Assertions.assertEquals(5, selections.size());
+  }
+
+  private static List<Integer> asList(int... values) {
+    final List<Integer> result = new ArrayList<>();
+    for (int value : values) {
+      result.add(value);
+    }
+    return result;
+  }
+}
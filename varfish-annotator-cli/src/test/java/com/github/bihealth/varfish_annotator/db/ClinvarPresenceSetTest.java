@@ -0,0 +1,69 @@
+package com.github.bihealth.varfish_annotator.db;
+
+import com.github.bihealth.varfish_annotator.db.TestFrequencyDb.Variant;
+import java.sql.Connection;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class ClinvarPresenceSetTest {
+
+  Connection conn;
+  List<Variant> variants;
+
+  @BeforeEach
+  void initEach() throws Exception {
+    conn = TestFrequencyDb.open("clinvar-presence-set");
+    variants = TestFrequencyDb.create(conn, 11);
+  }
+
+  @AfterEach
+  void closeEach() throws Exception {
+    conn.close();
+  }
+
+  @Test
+  public void testSameAsPointQueries() throws Exception {
+    final ClinvarPresenceSet clinvarSet =
+        ClinvarPresenceSet.load(conn, TestFrequencyDb.RELEASE, Long.MAX_VALUE);
+    Assertions.assertNotNull(clinvarSet);
+    try (FrequencyLookup pointLookup =
+        new PointQueryFrequencyLookup(conn, TestFrequencyDb.RELEASE)) {
+      int numFound = 0;
+      for (Variant var : variants) {
+        final boolean expected = pointLookup.isInClinvar(var.chrom, var.start, var.ref, var.alt);
+        Assertions.assertEquals(
+            expected, clinvarSet.contains(var.chrom, var.start, var.ref, var.alt), var.toString());
+        numFound += expected ? 1 : 0;
+      }
+      Assertions.assertEquals(numFound, clinvarSet.size());
+    }
+  }
+
+  @Test
+  public void testMitochondrialNamesDiffer() throws Exception {
+    // "M" and "MT" have the same variants but only some are in ClinVar under both names.
+    final ClinvarPresenceSet clinvarSet =
+        ClinvarPresenceSet.load(conn, TestFrequencyDb.RELEASE, Long.MAX_VALUE);
+    int numOnlyM = 0;
+    int numOnlyMt = 0;
+    for (Variant var : variants) {
+      if (var.chrom.equals("M")) {
+        final boolean inM = clinvarSet.contains("M", var.start, var.ref, var.alt);
+        final boolean inMt = clinvarSet.contains("MT", var.start, var.ref, var.alt);
+        numOnlyM += (inM && !inMt) ? 1 : 0;
+        numOnlyMt += (!inM && inMt) ? 1 : 0;
+      }
+    }
+    Assertions.assertTrue(numOnlyM > 0);
+    Assertions.assertTrue(numOnlyMt > 0);
+  }
+
+  @Test
+  public void testOverBudget() throws Exception {
+    Assertions.assertNull(ClinvarPresenceSet.load(conn, TestFrequencyDb.RELEASE, 0));
+    Assertions.assertEquals(0, ClinvarPresenceSet.load(conn, "GRCh38", Long.MAX_VALUE).size());
+  }
+}
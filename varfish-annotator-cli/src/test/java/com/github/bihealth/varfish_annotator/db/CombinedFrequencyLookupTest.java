@@ -0,0 +1,99 @@
+package com.github.bihealth.varfish_annotator.db;
+
+import com.github.bihealth.varfish_annotator.db.TestFrequencyDb.Variant;
+import com.github.bihealth.varfish_annotator.init_db.CombinedTableBuilder;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class CombinedFrequencyLookupTest {
+
+  Connection conn;
+  List<Variant> variants;
+
+  @BeforeEach
+  void initEach() throws Exception {
+    conn = TestFrequencyDb.open("combined");
+    variants = TestFrequencyDb.create(conn, 23);
+    new CombinedTableBuilder(conn, TestFrequencyDb.RELEASE).run();
+  }
+
+  @AfterEach
+  void closeEach() throws Exception {
+    conn.close();
+  }
+
+  @Test
+  public void testSameAsPointQueries() throws Exception {
+    final List<Variant> query = new ArrayList<>(variants);
+    Collections.shuffle(query, new Random(42));
+    try (FrequencyLookup pointLookup =
+            new PointQueryFrequencyLookup(conn, TestFrequencyDb.RELEASE);
+        FrequencyLookup combinedLookup =
+            new CombinedFrequencyLookup(
+                conn, TestFrequencyDb.RELEASE, TestFrequencyDb.PREFIXES)) {
+      for (Variant var : query) {
+        Assertions.assertEquals(
+            TestFrequencyDb.lookupAll(pointLookup, var),
+            TestFrequencyDb.lookupAll(combinedLookup, var),
+            var.toString());
+      }
+    }
+  }
+
+  @Test
+  public void testClinvarByChromPrefix() throws Exception {
+    // ClinVar rows are only found with the chromosome name of the table.
+    final Variant var = variants.get(0);
+    try (Statement stmt = conn.createStatement()) {
+      stmt.executeUpdate("DELETE FROM clinvar_var");
+    }
+    try (PreparedStatement stmt =
+        conn.prepareStatement("INSERT INTO clinvar_var VALUES (?, ?, ?, ?, ?, ?)")) {
+      stmt.setString(1, TestFrequencyDb.RELEASE);
+      stmt.setString(2, "chr" + var.chrom);
+      stmt.setInt(3, var.start);
+      stmt.setInt(4, var.start + var.ref.length() - 1);
+      stmt.setString(5, var.ref);
+      stmt.setString(6, var.alt);
+      stmt.executeUpdate();
+    }
+    new CombinedTableBuilder(conn, TestFrequencyDb.RELEASE).run();
+
+    try (FrequencyLookup lookup =
+        new CombinedFrequencyLookup(conn, TestFrequencyDb.RELEASE, TestFrequencyDb.PREFIXES)) {
+      Assertions.assertFalse(lookup.isInClinvar(var.chrom, var.start, var.ref, var.alt));
+      Assertions.assertTrue(lookup.isInClinvar("chr" + var.chrom, var.start, var.ref, var.alt));
+    }
+  }
+
+  @Test
+  public void testUpToDate() throws Exception {
+    Assertions.assertTrue(CombinedTableBuilder.isUpToDate(conn, TestFrequencyDb.RELEASE));
+    Assertions.assertFalse(CombinedTableBuilder.isUpToDate(conn, "GRCh38"));
+
+    // Re-importing a source table makes the combined table stale.
+    final Variant var = variants.get(0);
+    try (PreparedStatement stmt =
+        conn.prepareStatement("INSERT INTO clinvar_var VALUES (?, ?, ?, ?, ?, ?)")) {
+      stmt.setString(1, TestFrequencyDb.RELEASE);
+      stmt.setString(2, "chr" + var.chrom);
+      stmt.setInt(3, var.start);
+      stmt.setInt(4, var.start + var.ref.length() - 1);
+      stmt.setString(5, var.ref);
+      stmt.setString(6, var.alt);
+      stmt.executeUpdate();
+    }
+    Assertions.assertFalse(CombinedTableBuilder.isUpToDate(conn, TestFrequencyDb.RELEASE));
+    new CombinedTableBuilder(conn, TestFrequencyDb.RELEASE).run();
+    Assertions.assertTrue(CombinedTableBuilder.isUpToDate(conn, TestFrequencyDb.RELEASE));
+  }
+}
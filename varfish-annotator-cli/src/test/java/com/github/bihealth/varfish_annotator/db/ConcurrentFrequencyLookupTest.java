@@ -0,0 +1,116 @@
+package com.github.bihealth.varfish_annotator.db;
+
+import com.github.bihealth.varfish_annotator.VarfishAnnotatorException;
+import com.github.bihealth.varfish_annotator.db.TestFrequencyDb.Variant;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class ConcurrentFrequencyLookupTest {
+
+  Connection conn;
+  List<Variant> variants;
+
+  @BeforeEach
+  void initEach() throws Exception {
+    conn = TestFrequencyDb.open("concurrent");
+    variants = TestFrequencyDb.create(conn, 7);
+  }
+
+  @AfterEach
+  void closeEach() throws Exception {
+    conn.close();
+  }
+
+  private List<Connection> openConnections(int count) throws Exception {
+    final List<Connection> result = new ArrayList<>();
+    for (int i = 0; i < count; ++i) {
+      result.add(TestFrequencyDb.open("concurrent"));
+    }
+    return result;
+  }
+
+  private static String render(FrequencyLookupResult result) {
+    final StringBuilder builder = new StringBuilder();
+    for (String prefix : TestFrequencyDb.PREFIXES) {
+      final DbInfo dbInfo = result.getDbInfo(prefix);
+      builder
+          .append(prefix)
+          .append('=')
+          .append(dbInfo.getAfPopmaxStr())
+          .append('/')
+          .append(dbInfo.getHetTotalStr())
+          .append('/')
+          .append(dbInfo.getHomTotalStr())
+          .append('/')
+          .append(dbInfo.getHemiTotalStr())
+          .append(' ');
+    }
+    return builder.append("clinvar=").append(result.isInClinvar()).toString();
+  }
+
+  @Test
+  public void testSameAsSequentialLookups() throws Exception {
+    final List<Connection> connections = openConnections(3);
+    try (FrequencyLookup pointLookup =
+            new PointQueryFrequencyLookup(conn, TestFrequencyDb.RELEASE);
+        FrequencyLookup concurrentLookup =
+            new ConcurrentFrequencyLookup(
+                connections, c -> new PointQueryFrequencyLookup(c, TestFrequencyDb.RELEASE))) {
+      for (Variant var : variants) {
+        final Map<String, String> chromByPrefix = new HashMap<>();
+        for (String prefix : TestFrequencyDb.PREFIXES) {
+          chromByPrefix.put(prefix, var.chrom);
+        }
+        Assertions.assertEquals(
+            render(pointLookup.lookupAll(chromByPrefix, var.chrom, var.start, var.ref, var.alt)),
+            render(
+                concurrentLookup.lookupAll(chromByPrefix, var.chrom, var.start, var.ref, var.alt)),
+            var.toString());
+        Assertions.assertEquals(
+            TestFrequencyDb.lookupAll(pointLookup, var),
+            TestFrequencyDb.lookupAll(concurrentLookup, var));
+      }
+    }
+    for (Connection pooledConn : connections) {
+      Assertions.assertTrue(pooledConn.isClosed());
+    }
+  }
+
+  @Test
+  public void testProblemIsRethrown() throws Exception {
+    final VarfishAnnotatorException problem = new VarfishAnnotatorException("test");
+    final FrequencyLookup failingLookup =
+        new FrequencyLookup() {
+          @Override
+          public DbInfo getDbInfo(String prefix, String chrom, int start, String ref, String alt)
+              throws VarfishAnnotatorException {
+            throw problem;
+          }
+
+          @Override
+          public boolean isInClinvar(String chrom, int start, String ref, String alt) {
+            return false;
+          }
+
+          @Override
+          public void close() {}
+        };
+    try (FrequencyLookup concurrentLookup =
+        new ConcurrentFrequencyLookup(openConnections(2), c -> failingLookup)) {
+      final Map<String, String> chromByPrefix = new HashMap<>();
+      chromByPrefix.put(TestFrequencyDb.PREFIXES.get(0), "1");
+      final VarfishAnnotatorException e =
+          Assertions.assertThrows(
+              VarfishAnnotatorException.class,
+              () -> concurrentLookup.lookupAll(chromByPrefix, "1", 100, "A", "C"));
+      Assertions.assertSame(problem, e);
+    }
+  }
+}
@@ -0,0 +1,100 @@
+package com.github.bihealth.varfish_annotator.db;
+
+import com.github.bihealth.varfish_annotator.db.TestFrequencyDb.Variant;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class MergeJoinFrequencyLookupTest {
+
+  Connection conn;
+  List<Variant> variants;
+
+  @BeforeEach
+  void initEach() throws Exception {
+    conn = TestFrequencyDb.open("merge-join");
+    variants = TestFrequencyDb.create(conn, 42);
+    variants.sort(
+        Comparator.<Variant>comparingInt(v -> TestFrequencyDb.CONTIGS.indexOf(v.chrom))
+            .thenComparingInt(v -> v.start));
+  }
+
+  @AfterEach
+  void closeEach() throws Exception {
+    conn.close();
+  }
+
+  /** Check that the merge-join lookup gives the same results as point queries for {@code query}. */
+  private void assertSameAsPointQueries(List<Variant> query) throws Exception {
+    try (FrequencyLookup pointLookup =
+            new PointQueryFrequencyLookup(conn, TestFrequencyDb.RELEASE);
+        FrequencyLookup mergeJoinLookup =
+            new MergeJoinFrequencyLookup(conn, TestFrequencyDb.RELEASE)) {
+      for (Variant var : query) {
+        Assertions.assertEquals(
+            TestFrequencyDb.lookupAll(pointLookup, var),
+            TestFrequencyDb.lookupAll(mergeJoinLookup, var),
+            var.toString());
+      }
+    }
+  }
+
+  @Test
+  public void testDense() throws Exception {
+    assertSameAsPointQueries(variants);
+  }
+
+  @Test
+  public void testSparse() throws Exception {
+    final List<Variant> query = new ArrayList<>();
+    for (int i = 0; i < variants.size(); i += 97) {
+      query.add(variants.get(i));
+    }
+    assertSameAsPointQueries(query);
+  }
+
+  @Test
+  public void testBackwardJumps() throws Exception {
+    // Sorted blocks in reverse order, each long enough for loading windows.
+    final List<Variant> query = new ArrayList<>();
+    for (int end = variants.size(); end > 0; end -= 500) {
+      query.addAll(variants.subList(Math.max(0, end - 500), end));
+    }
+    assertSameAsPointQueries(query);
+
+    final List<Variant> shuffled = new ArrayList<>(variants);
+    Collections.shuffle(shuffled, new Random(42));
+    assertSameAsPointQueries(shuffled);
+  }
+
+  @Test
+  public void testContigChanges() throws Exception {
+    // Alternate between the contigs within the dense regions.
+    final List<List<Variant>> byContig = new ArrayList<>();
+    for (String chrom : TestFrequencyDb.CONTIGS) {
+      final List<Variant> contigVariants = new ArrayList<>();
+      for (Variant var : variants) {
+        if (var.chrom.equals(chrom)) {
+          contigVariants.add(var);
+        }
+      }
+      byContig.add(contigVariants);
+    }
+    final List<Variant> query = new ArrayList<>();
+    for (int i = 0; i < variants.size(); i += 40) {
+      for (List<Variant> contigVariants : byContig) {
+        final int from = Math.min(i, contigVariants.size());
+        final int to = Math.min(i + 40, contigVariants.size());
+        query.addAll(contigVariants.subList(from, to));
+      }
+    }
+    assertSameAsPointQueries(query);
+  }
+}
@@ -0,0 +1,199 @@
+package com.github.bihealth.varfish_annotator.db;
+
+import com.github.bihealth.varfish_annotator.VarfishAnnotatorException;
+import com.github.bihealth.varfish_annotator.data.VcfConstants;
+import com.google.common.collect.ImmutableList;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/** In-memory H2 database with random frequency and ClinVar tables for testing lookups. */
+final class TestFrequencyDb {
+
+  /** Genome release of the rows. */
+  static final String RELEASE = "GRCh37";
+
+  /** Prefixes of the frequency tables. */
+  static final ImmutableList<String> PREFIXES =
+      ImmutableList.of(VcfConstants.EXAC_PREFIX, VcfConstants.GNOMAD_GENOMES_PREFIX);
+
+  /** Contigs of the rows, the mitochondrial ones with the same variants. */
+  static final ImmutableList<String> CONTIGS = ImmutableList.of("1", "2", "M", "MT");
+
+  private static final String BASES = "ACGT";
+
+  /** A variant that is queried. */
+  static final class Variant {
+    final String chrom;
+    final int start;
+    final String ref;
+    final String alt;
+
+    Variant(String chrom, int start, String ref, String alt) {
+      this.chrom = chrom;
+      this.start = start;
+      this.ref = ref;
+      this.alt = alt;
+    }
+
+    @Override
+    public String toString() {
+      return chrom + ":" + start + ":" + ref + ":" + alt;
+    }
+  }
+
+  private TestFrequencyDb() {}
+
+  /** Open connection to the in-memory database {@code name}, dropped with its last connection. */
+  static Connection open(String name) throws SQLException {
+    return DriverManager.getConnection("jdbc:h2:mem:" + name, "sa", "");
+  }
+
+  /**
+   * Create and fill the tables.
+   *
+   * <p>Chromosomes 1 and 2 have a dense region spanning several lookup windows and sparse rows far
+   * apart, with some long alleles that have no exact {@code VariantKey}. The variants on "M" and
+   * "MT" are the same, but their ClinVar rows differ.
+   *
+   * @return The variants in the tables followed by as many variants that are not.
+   */
+  static List<Variant> create(Connection conn, long seed) throws SQLException {
+    try (Statement stmt = conn.createStatement()) {
+      for (String prefix : PREFIXES) {
+        stmt.executeUpdate(
+            "CREATE TABLE "
+                + prefix
+                + "_var (release VARCHAR(10) NOT NULL, chrom VARCHAR(20) NOT NULL, "
+                + "start INTEGER NOT NULL, end INTEGER NOT NULL, ref VARCHAR(1000) NOT NULL, "
+                + "alt VARCHAR(1000) NOT NULL, "
+                + prefix
+                + "_het INTEGER NOT NULL, "
+                + prefix
+                + "_hom INTEGER NOT NULL, "
+                + prefix
+                + "_hemi INTEGER NOT NULL, "
+                + prefix
+                + "_af DOUBLE NOT NULL)");
+        stmt.executeUpdate(
+            "CREATE PRIMARY KEY ON " + prefix + "_var (release, chrom, start, ref, alt)");
+      }
+      stmt.executeUpdate(
+          "CREATE TABLE clinvar_var (release VARCHAR(10) NOT NULL, chrom VARCHAR(20) NOT NULL, "
+              + "start INTEGER NOT NULL, end INTEGER NOT NULL, ref VARCHAR(1000) NOT NULL, "
+              + "alt VARCHAR(1000) NOT NULL)");
+      stmt.executeUpdate("CREATE PRIMARY KEY ON clinvar_var (release, chrom, start, ref, alt)");
+    }
+
+    final Random random = new Random(seed);
+    final List<Variant> present = new ArrayList<>();
+    final List<Variant> absent = new ArrayList<>();
+    for (String chrom : CONTIGS) {
+      final boolean isMito = chrom.startsWith("M");
+      final List<Integer> starts = new ArrayList<>();
+      if (isMito) {
+        for (int start = 100; start < 16_000; start += 500) {
+          starts.add(start);
+        }
+      } else {
+        for (int start = 100_000; start < 300_000; start += 1 + random.nextInt(100)) {
+          starts.add(start);
+        }
+        for (int start = 1_000_000; start < 10_000_000; start += 1_000_000) {
+          starts.add(start);
+        }
+      }
+      for (int start : starts) {
+        final String ref;
+        if (isMito) {
+          ref = String.valueOf(BASES.charAt(start % 4));
+        } else if (random.nextInt(50) == 0) {
+          ref = randomSeq(random, 30);
+        } else {
+          ref = String.valueOf(BASES.charAt(random.nextInt(4)));
+        }
+        final String alt = String.valueOf(BASES.charAt((BASES.indexOf(ref.charAt(0)) + 1) % 4));
+        present.add(new Variant(chrom, start, ref, alt));
+        absent.add(new Variant(chrom, start, ref, ref.charAt(0) + alt));
+      }
+    }
+
+    for (String prefix : PREFIXES) {
+      try (PreparedStatement stmt =
+          conn.prepareStatement(
+              "INSERT INTO "
+                  + prefix
+                  + "_var VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)")) {
+        for (Variant var : present) {
+          if (random.nextInt(4) == 0 || var.chrom.equals("M")) {
+            continue; // not in every table, "M" only in ClinVar
+          }
+          bind(stmt, var);
+          stmt.setInt(7, random.nextInt(1000));
+          stmt.setInt(8, random.nextInt(1000));
+          stmt.setInt(9, random.nextInt(10));
+          stmt.setDouble(10, random.nextDouble());
+          stmt.executeUpdate();
+        }
+      }
+    }
+    try (PreparedStatement stmt =
+        conn.prepareStatement("INSERT INTO clinvar_var VALUES (?, ?, ?, ?, ?, ?)")) {
+      for (Variant var : present) {
+        if (random.nextInt(3) == 0) {
+          bind(stmt, var);
+          stmt.executeUpdate();
+        }
+      }
+    }
+
+    final List<Variant> result = new ArrayList<>(present);
+    result.addAll(absent);
+    return result;
+  }
+
+  private static void bind(PreparedStatement stmt, Variant var) throws SQLException {
+    stmt.setString(1, RELEASE);
+    stmt.setString(2, var.chrom);
+    stmt.setInt(3, var.start);
+    stmt.setInt(4, var.start + var.ref.length() - 1);
+    stmt.setString(5, var.ref);
+    stmt.setString(6, var.alt);
+  }
+
+  private static String randomSeq(Random random, int length) {
+    final StringBuilder result = new StringBuilder();
+    for (int i = 0; i < length; ++i) {
+      result.append(BASES.charAt(random.nextInt(4)));
+    }
+    return result.toString();
+  }
+
+  /** @return all results of {@code lookup} for {@code var} as one string for comparison. */
+  static String lookupAll(FrequencyLookup lookup, Variant var) throws VarfishAnnotatorException {
+    final StringBuilder result = new StringBuilder();
+    for (String prefix : PREFIXES) {
+      final DbInfo dbInfo = lookup.getDbInfo(prefix, var.chrom, var.start, var.ref, var.alt);
+      result
+          .append(prefix)
+          .append('=')
+          .append(dbInfo.getAfPopmaxStr())
+          .append('/')
+          .append(dbInfo.getHetTotalStr())
+          .append('/')
+          .append(dbInfo.getHomTotalStr())
+          .append('/')
+          .append(dbInfo.getHemiTotalStr())
+          .append(' ');
+    }
+    return result
+        .append("clinvar=")
+        .append(lookup.isInClinvar(var.chrom, var.start, var.ref, var.alt))
+        .toString();
+  }
+}
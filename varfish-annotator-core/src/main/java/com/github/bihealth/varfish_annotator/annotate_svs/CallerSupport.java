@@ -2,8 +2,7 @@ package com.github.bihealth.varfish_annotator.annotate_svs;
 
 import static com.github.bihealth.varfish_annotator.utils.StringUtils.tripleQuote;
 
-import com.google.common.base.Joiner;
-import htsjdk.variant.variantcontext.Allele;
+import com.github.bihealth.varfish_annotator.utils.GenotypeMatrix;
 import htsjdk.variant.variantcontext.Genotype;
 import htsjdk.variant.variantcontext.VariantContext;
 import htsjdk.variant.vcf.VCFFileReader;
@@ -45,9 +44,27 @@ public abstract class CallerSupport {
   public abstract boolean isCompatible(VCFHeader vcfHeader);
 
   public SampleGenotype buildSampleGenotype(VariantContext ctx, int alleleNo, String sample) {
+    return buildSampleGenotype(
+        ctx,
+        alleleNo,
+        sample,
+        GenotypeMatrix.buildGenotypeString(ctx, ctx.getGenotype(sample), alleleNo));
+  }
+
+  /** Build the genotype of one sample from the genotypes of the record decoded in {@code gts}. */
+  public SampleGenotype buildSampleGenotype(GenotypeMatrix gts, int sample, int alleleNo) {
+    return buildSampleGenotype(
+        gts.getVariantContext(),
+        alleleNo,
+        gts.getSampleName(sample),
+        gts.getGenotypeString(sample, alleleNo));
+  }
+
+  private SampleGenotype buildSampleGenotype(
+      VariantContext ctx, int alleleNo, String sample, String genotype) {
     SampleGenotypeBuilder builder = new SampleGenotypeBuilder();
     builder.setSampleName(sample);
-    builder.setGenotype(buildGenotype(ctx, alleleNo, sample));
+    builder.setGenotype(genotype);
     builder.setFilters(buildFilters(ctx, sample));
     builder.setGenotypeQuality(getGenotypeQuality(ctx, alleleNo, sample));
     annotateCovMq(builder, ctx, sample);
@@ -76,26 +93,6 @@ public abstract class CallerSupport {
   protected abstract void buildSampleGenotypeImpl(
       SampleGenotypeBuilder builder, VariantContext ctx, int alleleNo, String sample);
 
-  private String buildGenotype(VariantContext ctx, int alleleNo, String sample) {
-    final Genotype genotype = ctx.getGenotype(sample);
-    final List<String> gtList = new ArrayList<>();
-    for (Allele allele : genotype.getAlleles()) {
-      if (allele.isNoCall()) {
-        gtList.add(".");
-      } else if (ctx.getAlleleIndex(allele) == alleleNo) {
-        gtList.add("1");
-      } else {
-        gtList.add("0");
-      }
-    }
-    if (genotype.isPhased()) {
-      return Joiner.on("|").join(gtList);
-    } else {
-      gtList.sort(Comparator.naturalOrder());
-      return Joiner.on("/").join(gtList);
-    }
-  }
-
   private List<String> buildFilters(VariantContext ctx, String sample) {
     final Genotype genotype = ctx.getGenotype(sample);
     if (genotype.getFilters() != null && !genotype.getFilters().equals("")) {
@@ -1,5 +1,6 @@
 package com.github.bihealth.varfish_annotator.annotate_svs;
 
+import com.github.bihealth.varfish_annotator.utils.BestAnnotationSelector;
 import com.google.common.base.Joiner;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
@@ -41,13 +42,22 @@ public class FeRecordBuilder {
   String caseId;
   String setId;
 
+  /** Selector of the annotations per gene, reused for each allele. */
+  private final BestAnnotationSelector selector = new BestAnnotationSelector();
+
   public FeRecordBuilder(String caseId, String setId) {
     this.caseId = caseId;
     this.setId = setId;
   }
 
-  public Result buildAnnosByDb(
-      List<SVAnnotation> sortedEnsemblAnnos, List<SVAnnotation> sortedRefseqAnnos) {
+  /**
+   * Select the most pathogenic RefSeq and ENSEMBL annotation per gene.
+   *
+   * @param ensemblAnnos ENSEMBL annotations of one allele, in Jannovar's order.
+   * @param refseqAnnos RefSeq annotations of one allele, in Jannovar's order.
+   * @return The selected annotations by gene.
+   */
+  public Result buildAnnosByDb(List<SVAnnotation> ensemblAnnos, List<SVAnnotation> refseqAnnos) {
     // Collecting RefSeq and ENSEMBL annotations per gene.  We collect the variants by gene for
     // RefSeq in the simplest way possible (mapping to ENSEMBL gene by using HGNC annotation from
     // Jannovar). Further, if either only yields one gene we force it to be the same as the
@@ -56,8 +66,9 @@ public class FeRecordBuilder {
     // Intergenic variants are skipped.
 
     // Start out with the RefSeq annotations
-    final HashMap<String, SVAnnotation> refseqAnnoByGene = new HashMap<>();
-    for (SVAnnotation annotation : sortedRefseqAnnos) {
+    selector.clear();
+    for (int i = 0; i < refseqAnnos.size(); ++i) {
+      final SVAnnotation annotation = refseqAnnos.get(i);
       if (annotation.getTranscript() == null) {
         continue; // skip, no transcript
       }
@@ -65,24 +76,27 @@ public class FeRecordBuilder {
       if (geneId == null) {
         geneId = annotation.getTranscript().getGeneID();
       }
-      if (!annotation.getEffects().contains(VariantEffect.INTERGENIC_VARIANT)
-          && !refseqAnnoByGene.containsKey(geneId)) {
-        refseqAnnoByGene.put(geneId, annotation);
+      if (!annotation.getEffects().contains(VariantEffect.INTERGENIC_VARIANT)) {
+        selector.offer(
+            0, geneId, BestAnnotationSelector.rank(annotation.getMostPathogenicVariantEffect()), i);
       }
     }
+    final HashMap<String, SVAnnotation> refseqAnnoByGene = collectSelected(refseqAnnos);
 
     // Now, for the ENSEMBL annotations
-    final HashMap<String, SVAnnotation> ensemblAnnoByGene = new HashMap<>();
-    for (SVAnnotation annotation : sortedEnsemblAnnos) {
+    selector.clear();
+    for (int i = 0; i < ensemblAnnos.size(); ++i) {
+      final SVAnnotation annotation = ensemblAnnos.get(i);
       if (annotation.getTranscript() == null) {
         continue; // skip, no transcript
       }
       final String geneId = annotation.getTranscript().getGeneID();
-      if (!annotation.getEffects().contains(VariantEffect.INTERGENIC_VARIANT)
-          && !ensemblAnnoByGene.containsKey(geneId)) {
-        ensemblAnnoByGene.put(geneId, annotation);
+      if (!annotation.getEffects().contains(VariantEffect.INTERGENIC_VARIANT)) {
+        selector.offer(
+            0, geneId, BestAnnotationSelector.rank(annotation.getMostPathogenicVariantEffect()), i);
       }
     }
+    final HashMap<String, SVAnnotation> ensemblAnnoByGene = collectSelected(ensemblAnnos);
 
     // Match RefSeq and ENSEMBL annotations
     final TreeSet<String> geneIds = new TreeSet<>();
@@ -104,6 +118,19 @@ public class FeRecordBuilder {
     return new Result(geneIds, ensemblAnnoByGene, refseqAnnoByGene);
   }
 
+  /**
+   * Put the annotations selected by {@link #selector} into a new map, in sorted order such that
+   * the iteration order is the same as when filling the map from the sorted annotations.
+   */
+  private HashMap<String, SVAnnotation> collectSelected(List<SVAnnotation> annos) {
+    selector.sortSlots();
+    final HashMap<String, SVAnnotation> result = new HashMap<>();
+    for (int slot = 0; slot < selector.size(); ++slot) {
+      result.put(selector.getKey(slot), annos.get(selector.getIndex(slot)));
+    }
+    return result;
+  }
+
   public List<Object> buildRecord(
       UUID variantId, SVAnnotation refSeqAnno, SVAnnotation ensemblAnno) {
     List<Object> result = Lists.newArrayList(caseId, setId, variantId.toString());
@@ -2,6 +2,7 @@ package com.github.bihealth.varfish_annotator.annotate_svs;
 
 import com.github.bihealth.varfish_annotator.data.GenomeVersion;
 import com.github.bihealth.varfish_annotator.utils.GenotypeCounts;
+import com.github.bihealth.varfish_annotator.utils.GenotypeMatrix;
 import com.github.bihealth.varfish_annotator.utils.UcscBinning;
 import com.google.common.collect.ImmutableList;
 import de.charite.compbio.jannovar.pedigree.Pedigree;
@@ -23,8 +24,9 @@ public class GtRecordBuilder {
   private final String optOutFeatures;
   private final String caseId;
   private final String setId;
-  private final Pedigree pedigree;
   private final CallerSupport callerSupport;
+  /** Genotypes of the record, decoded once for all alleles. */
+  private final GenotypeMatrix genotypes;
 
   public GtRecordBuilder(
       String release,
@@ -39,8 +41,8 @@ public class GtRecordBuilder {
     this.optOutFeatures = optOutFeatures;
     this.caseId = caseId;
     this.setId = setId;
-    this.pedigree = pedigree;
     this.callerSupport = callerSupport;
+    this.genotypes = new GenotypeMatrix(pedigree, release);
   }
 
   public GenotypeRecord buildRecord(
@@ -102,15 +104,15 @@ public class GtRecordBuilder {
     }
     builder.setInfo(info);
 
-    final GenotypeCounts gtCounts =
-        GenotypeCounts.buildGenotypeCounts(ctx, alleleNo, pedigree, release);
+    genotypes.decode(ctx);
+    final GenotypeCounts gtCounts = genotypes.countGenotypes(alleleNo);
     builder.setNumHomAlt(gtCounts.numHomAlt);
     builder.setNumHomRef(gtCounts.numHomRef);
     builder.setNumHet(gtCounts.numHet);
     builder.setNumHemiAlt(gtCounts.numHemiAlt);
     builder.setNumHemiRef(gtCounts.numHemiRef);
 
-    builder.setGenotype(buildGenotypeValue(ctx, alleleNo));
+    builder.setGenotype(buildGenotypeValue(alleleNo));
 
     return builder.build();
   }
@@ -160,10 +162,12 @@ public class GtRecordBuilder {
     info.put("unaffectedCarriers", ctx.getCommonInfo().getAttributeAsInt("UNAFFECTED_CARRIERS", 0));
   }
 
-  private Map<String, Object> buildGenotypeValue(VariantContext ctx, int alleleNo) {
+  private Map<String, Object> buildGenotypeValue(int alleleNo) {
     final Map<String, Object> result = new TreeMap<>();
-    for (String sample : ctx.getSampleNames()) {
-      result.put(sample, callerSupport.buildSampleGenotype(ctx, alleleNo, sample).toMap());
+    for (int sample = 0; sample < genotypes.getNumSamples(); ++sample) {
+      result.put(
+          genotypes.getSampleName(sample),
+          callerSupport.buildSampleGenotype(genotypes, sample, alleleNo).toMap());
     }
     return result;
   }
@@ -0,0 +1,52 @@
+package com.github.bihealth.varfish_annotator.data;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import de.charite.compbio.jannovar.data.Chromosome;
+import de.charite.compbio.jannovar.data.JannovarData;
+import de.charite.compbio.jannovar.data.ReferenceDictionary;
+import de.charite.compbio.jannovar.reference.TranscriptModel;
+import java.util.HashMap;
+import java.util.Map;
+
+/** {@link TranscriptSource} for a fully loaded {@link JannovarData}. */
+public final class EagerTranscriptSource implements TranscriptSource {
+
+  /** The loaded transcript database. */
+  private final JannovarData jvData;
+
+  /** Transcripts by chromosome ID, built on first call of {@link #getTranscripts}. */
+  private Map<Integer, ImmutableList<TranscriptModel>> transcriptsByChrom;
+
+  public EagerTranscriptSource(JannovarData jvData) {
+    this.jvData = jvData;
+  }
+
+  @Override
+  public ReferenceDictionary getRefDict() {
+    return jvData.getRefDict();
+  }
+
+  @Override
+  public ImmutableMap<Integer, Chromosome> getChromosomes(String contig) {
+    return jvData.getChromosomes();
+  }
+
+  @Override
+  public synchronized ImmutableList<TranscriptModel> getTranscripts(String contig) {
+    if (transcriptsByChrom == null) {
+      final Map<Integer, ImmutableList.Builder<TranscriptModel>> builders = new HashMap<>();
+      for (TranscriptModel tm : jvData.getTmByAccession().values()) {
+        builders.computeIfAbsent(tm.getChr(), chr -> ImmutableList.builder()).add(tm);
+      }
+      transcriptsByChrom = new HashMap<>();
+      for (Map.Entry<Integer, ImmutableList.Builder<TranscriptModel>> entry : builders.entrySet()) {
+        transcriptsByChrom.put(entry.getKey(), entry.getValue().build());
+      }
+    }
+    final Integer chrId = jvData.getRefDict().getContigNameToID().get(contig);
+    final ImmutableList<TranscriptModel> result =
+        (chrId == null) ? null : transcriptsByChrom.get(chrId);
+    return (result == null) ? ImmutableList.of() : result;
+  }
+}
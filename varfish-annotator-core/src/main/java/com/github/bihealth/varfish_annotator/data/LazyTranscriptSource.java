@@ -0,0 +1,169 @@
+package com.github.bihealth.varfish_annotator.data;
+
+import com.github.bihealth.varfish_annotator.VarfishAnnotatorException;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import de.charite.compbio.jannovar.data.Chromosome;
+import de.charite.compbio.jannovar.data.JannovarData;
+import de.charite.compbio.jannovar.data.ReferenceDictionary;
+import de.charite.compbio.jannovar.reference.TranscriptModel;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * {@link TranscriptSource} that deserializes the transcripts of a chromosome from a {@link
+ * TranscriptDatabase} on first use.
+ *
+ * <p>Loaded chromosomes are kept in least-recently-used order and dropped when their estimated
+ * heap size exceeds the memory budget. The chromosome that was requested last is always kept, so
+ * the budget may be exceeded by a single large chromosome. Each chromosome is loaded by one thread
+ * only, while chromosomes requested by other threads are loaded concurrently.
+ */
+public final class LazyTranscriptSource implements TranscriptSource {
+
+  /** Estimated heap size of a transcript model without sequence and exons, in bytes. */
+  private static final long TRANSCRIPT_OVERHEAD = 512;
+
+  /** Estimated heap size of an exon interval, in bytes. */
+  private static final long EXON_SIZE = 96;
+
+  /** The transcript database to load from. */
+  private final TranscriptDatabase db;
+
+  /** The transcripts to keep. */
+  private final TranscriptFilter filter;
+
+  /** Memory budget for the loaded chromosomes, in bytes. */
+  private final long maxBytes;
+
+  /** Loaded or loading chromosomes by ID, in access order. */
+  private final LinkedHashMap<Integer, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+  /** Estimated size of the loaded chromosomes in {@link #entries}. */
+  private long usedBytes;
+
+  /** Number of chromosome loads and evictions, for reporting. */
+  private long numLoads;
+
+  private long numEvictions;
+
+  /**
+   * Construct with the given database, filter, and budget.
+   *
+   * @param db The transcript database to load from.
+   * @param filter The transcripts to keep.
+   * @param maxBytes Memory budget for the loaded chromosomes, in bytes.
+   */
+  public LazyTranscriptSource(TranscriptDatabase db, TranscriptFilter filter, long maxBytes) {
+    this.db = db;
+    this.filter = filter;
+    this.maxBytes = maxBytes;
+  }
+
+  @Override
+  public ReferenceDictionary getRefDict() {
+    return db.getRefDict();
+  }
+
+  @Override
+  public ImmutableMap<Integer, Chromosome> getChromosomes(String contig)
+      throws VarfishAnnotatorException {
+    final Entry entry = getEntry(contig);
+    return (entry == null) ? ImmutableMap.of() : entry.chromosomes;
+  }
+
+  @Override
+  public ImmutableList<TranscriptModel> getTranscripts(String contig)
+      throws VarfishAnnotatorException {
+    final Entry entry = getEntry(contig);
+    return (entry == null) ? ImmutableList.of() : entry.transcripts;
+  }
+
+  /** @return the loaded entry for {@code contig}, {@code null} if it is unknown. */
+  private Entry getEntry(String contig) throws VarfishAnnotatorException {
+    final Integer chrId = db.getRefDict().getContigNameToID().get(contig);
+    if (chrId == null) {
+      return null;
+    }
+
+    final Entry entry;
+    synchronized (this) {
+      entry = entries.computeIfAbsent(chrId, Entry::new);
+    }
+    entry.load();
+    synchronized (this) {
+      if (!entry.accounted && entries.get(chrId) == entry) {
+        entry.accounted = true;
+        usedBytes += entry.bytes;
+        numLoads += 1;
+        evict(chrId);
+      }
+    }
+    return entry;
+  }
+
+  /** Drop least recently used chromosomes other than {@code keepId} until within the budget. */
+  private void evict(int keepId) {
+    final Iterator<Entry> it = entries.values().iterator();
+    while (usedBytes > maxBytes && it.hasNext()) {
+      final Entry entry = it.next();
+      if (entry.chrId != keepId && entry.accounted) {
+        it.remove();
+        usedBytes -= entry.bytes;
+        numEvictions += 1;
+      }
+    }
+  }
+
+  public synchronized long getNumLoads() {
+    return numLoads;
+  }
+
+  public synchronized long getNumEvictions() {
+    return numEvictions;
+  }
+
+  /** @return estimated heap size of {@code tm} in bytes. */
+  private static long estimateSize(TranscriptModel tm) {
+    final long seqLength = (tm.getSequence() == null) ? 0 : tm.getSequence().length();
+    return TRANSCRIPT_OVERHEAD + 2 * seqLength + EXON_SIZE * tm.getExonRegions().size();
+  }
+
+  /** The transcripts of one chromosome. */
+  private final class Entry {
+
+    /** The chromosome ID. */
+    final int chrId;
+
+    /** The transcripts once loaded. */
+    private ImmutableList<TranscriptModel> transcripts;
+
+    /** The interval trees once loaded. */
+    private ImmutableMap<Integer, Chromosome> chromosomes;
+
+    /** Estimated heap size once loaded. */
+    long bytes;
+
+    /** Whether {@link #bytes} has been added to {@link #usedBytes}; guarded by the source. */
+    boolean accounted;
+
+    Entry(int chrId) {
+      this.chrId = chrId;
+    }
+
+    /** Load the transcripts if necessary, other threads wait for the first one. */
+    synchronized void load() throws VarfishAnnotatorException {
+      if (chromosomes == null) {
+        final ImmutableList<TranscriptModel> tms =
+            ImmutableList.copyOf(filter.apply(db.loadTranscripts(chrId)));
+        long size = 0;
+        for (TranscriptModel tm : tms) {
+          size += estimateSize(tm);
+        }
+        chromosomes = new JannovarData(db.getRefDict(), tms).getChromosomes();
+        transcripts = tms;
+        bytes = size;
+      }
+    }
+  }
+}
@@ -0,0 +1,79 @@
+package com.github.bihealth.varfish_annotator.data;
+
+import com.github.bihealth.varfish_annotator.utils.PgCopyRowWriter;
+import com.github.bihealth.varfish_annotator.utils.PgCopyRowWriter.Type;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import java.io.OutputStream;
+import java.util.List;
+
+/** Column types of the VarFish database tables, for writing PostgreSQL binary COPY files. */
+public final class PgCopyColumns {
+
+  /** Types of the columns that are not {@link Type#TEXT}. */
+  private static final ImmutableMap<String, Type> TYPES =
+      ImmutableMap.<String, Type>builder()
+          // Coordinates, shared by small variants and SVs.
+          .put("chromosome_no", Type.INT4)
+          .put("start", Type.INT4)
+          .put("end", Type.INT4)
+          .put("bin", Type.INT4)
+          .put("chromosome_no2", Type.INT4)
+          .put("bin2", Type.INT4)
+          .put("start_ci_left", Type.INT4)
+          .put("start_ci_right", Type.INT4)
+          .put("end_ci_left", Type.INT4)
+          .put("end_ci_right", Type.INT4)
+          .put("case_id", Type.INT4)
+          .put("set_id", Type.INT4)
+          .put("sv_uuid", Type.UUID)
+          .put("callers", Type.VARCHAR_ARRAY)
+          // Additional information and genotypes.
+          .put("info", Type.JSONB)
+          .put("genotype", Type.JSONB)
+          .put("num_hom_alt", Type.INT4)
+          .put("num_hom_ref", Type.INT4)
+          .put("num_het", Type.INT4)
+          .put("num_hemi_alt", Type.INT4)
+          .put("num_hemi_ref", Type.INT4)
+          // Databases.
+          .put("in_clinvar", Type.BOOL)
+          .put("exac_frequency", Type.FLOAT8)
+          .put("exac_homozygous", Type.INT4)
+          .put("exac_heterozygous", Type.INT4)
+          .put("exac_hemizygous", Type.INT4)
+          .put("thousand_genomes_frequency", Type.FLOAT8)
+          .put("thousand_genomes_homozygous", Type.INT4)
+          .put("thousand_genomes_heterozygous", Type.INT4)
+          .put("thousand_genomes_hemizygous", Type.INT4)
+          .put("gnomad_exomes_frequency", Type.FLOAT8)
+          .put("gnomad_exomes_homozygous", Type.INT4)
+          .put("gnomad_exomes_heterozygous", Type.INT4)
+          .put("gnomad_exomes_hemizygous", Type.INT4)
+          .put("gnomad_genomes_frequency", Type.FLOAT8)
+          .put("gnomad_genomes_homozygous", Type.INT4)
+          .put("gnomad_genomes_heterozygous", Type.INT4)
+          .put("gnomad_genomes_hemizygous", Type.INT4)
+          // Transcripts.
+          .put("refseq_transcript_coding", Type.BOOL)
+          .put("refseq_effect", Type.VARCHAR_ARRAY)
+          .put("refseq_exon_dist", Type.INT4)
+          .put("ensembl_transcript_coding", Type.BOOL)
+          .put("ensembl_effect", Type.VARCHAR_ARRAY)
+          .put("ensembl_exon_dist", Type.INT4)
+          .build();
+
+  /** @return the types of {@code columns}, {@link Type#TEXT} for unknown ones. */
+  public static ImmutableList<Type> typesOf(List<String> columns) {
+    final ImmutableList.Builder<Type> result = ImmutableList.builder();
+    for (String column : columns) {
+      result.add(TYPES.getOrDefault(column, Type.TEXT));
+    }
+    return result.build();
+  }
+
+  /** @return writer of {@code columns} with their types to {@code out}. */
+  public static PgCopyRowWriter openWriter(List<String> columns, OutputStream out) {
+    return new PgCopyRowWriter(columns, typesOf(columns), out);
+  }
+}
@@ -0,0 +1,345 @@
+package com.github.bihealth.varfish_annotator.data;
+
+import com.github.bihealth.varfish_annotator.VarfishAnnotatorException;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Precomputed annotation of all single nucleotide variants in a set of intervals, e.g., the exons
+ * and splice regions of all transcripts, read through a read-only memory mapping.
+ *
+ * <p>The file starts with a header containing the identity of the transcript databases that the
+ * table was built from. The positions of each contig are stored in blocks of {@link #BLOCK_SIZE}
+ * positions that are compressed separately and never cross a segment boundary of the mapping. The
+ * index of the contigs with their intervals and block offsets follows the blocks, the file ends
+ * with the offset of the index.
+ *
+ * <p>Each thread keeps the last block it decoded, such that one instance can be shared by any
+ * number of threads and coordinate-sorted input is decoded about once per block.
+ */
+public final class SnvEffectTable {
+
+  /** Magic bytes at the beginning and at the end of the file. */
+  static final byte[] MAGIC = "VFSNVTBL".getBytes(StandardCharsets.US_ASCII);
+
+  /** Version of the file format. */
+  static final int VERSION = 1;
+
+  /** Number of positions per block. */
+  static final int BLOCK_SIZE = 64;
+
+  /** Size of the mapped segments, a single mapping must stay below 2 GiB. */
+  static final long SEGMENT_SIZE = 1L << 30;
+
+  /** The bases for which the alternative alleles are stored, in this order. */
+  public static final String BASES = "ACGT";
+
+  /** Path to the file. */
+  private final File file;
+
+  /** Identity of the transcript databases the table was built from. */
+  private final String identity;
+
+  /** Index entries by Jannovar contig ID. */
+  private final Map<Integer, Contig> contigs;
+
+  /** The mapped segments of the blocks, segment {@code i} starts at {@code i * SEGMENT_SIZE}. */
+  private final MappedByteBuffer[] segments;
+
+  /** The last block decoded by each thread. */
+  private final ThreadLocal<DecodedBlock> lastBlock = new ThreadLocal<>();
+
+  private SnvEffectTable(
+      File file, String identity, Map<Integer, Contig> contigs, MappedByteBuffer[] segments) {
+    this.file = file;
+    this.identity = identity;
+    this.contigs = contigs;
+    this.segments = segments;
+  }
+
+  /**
+   * Build the identity of the transcript databases and filter settings used for a table.
+   *
+   * @param release The genome release.
+   * @param paths Paths to the transcript databases and the transcript allowlist, {@code null}
+   *     entries are skipped.
+   * @param codingOnly Whether only coding transcripts were used.
+   * @return The identity string.
+   */
+  public static String buildIdentity(String release, List<String> paths, boolean codingOnly) {
+    final StringBuilder result = new StringBuilder();
+    result.append(release).append('\n');
+    for (String path : paths) {
+      if (path != null) {
+        final File file = new File(path);
+        result.append(file.getName()).append('\t').append(file.length()).append('\n');
+      }
+    }
+    result.append("codingTranscriptsOnly=").append(codingOnly);
+    return result.toString();
+  }
+
+  /**
+   * Open table, reading the index and mapping the blocks.
+   *
+   * @param file Path to the file written by {@link SnvEffectTableWriter}.
+   * @throws VarfishAnnotatorException in case of problems with reading the file
+   */
+  public static SnvEffectTable open(File file) throws VarfishAnnotatorException {
+    try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+        FileChannel channel = raf.getChannel()) {
+      final long size = channel.size();
+      final int trailerSize = 8 + MAGIC.length;
+      if (size < MAGIC.length + trailerSize) {
+        throw new VarfishAnnotatorException("Not an SNV effect table: " + file);
+      }
+      final ByteBuffer trailer = ByteBuffer.allocate(trailerSize);
+      while (trailer.hasRemaining()) {
+        if (channel.read(trailer, size - trailerSize + trailer.position()) < 0) {
+          throw new VarfishAnnotatorException("Truncated SNV effect table: " + file);
+        }
+      }
+      final long indexOffset = trailer.getLong(0);
+      final byte[] trailerMagic = Arrays.copyOfRange(trailer.array(), 8, trailerSize);
+      if (!Arrays.equals(MAGIC, trailerMagic)) {
+        throw new VarfishAnnotatorException("Not an SNV effect table or truncated: " + file);
+      }
+
+      channel.position(0);
+      DataInputStream in =
+          new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+      final byte[] magic = new byte[MAGIC.length];
+      in.readFully(magic);
+      if (!Arrays.equals(MAGIC, magic)) {
+        throw new VarfishAnnotatorException("Not an SNV effect table: " + file);
+      }
+      final int version = in.readInt();
+      if (version != VERSION) {
+        throw new VarfishAnnotatorException(
+            "Unsupported SNV effect table version " + version + " in " + file);
+      }
+      final String identity = in.readUTF();
+
+      channel.position(indexOffset);
+      in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+      final int numContigs = in.readInt();
+      final Map<Integer, Contig> contigs = new HashMap<>();
+      for (int i = 0; i < numContigs; ++i) {
+        final int chrId = in.readInt();
+        final String name = in.readUTF();
+        final int numIntervals = in.readInt();
+        final int[] begins = new int[numIntervals];
+        final int[] ends = new int[numIntervals];
+        for (int j = 0; j < numIntervals; ++j) {
+          begins[j] = in.readInt();
+          ends[j] = in.readInt();
+        }
+        final long[] blockOffsets = new long[in.readInt()];
+        for (int j = 0; j < blockOffsets.length; ++j) {
+          blockOffsets[j] = in.readLong();
+        }
+        contigs.put(chrId, new Contig(chrId, name, begins, ends, blockOffsets));
+      }
+
+      final MappedByteBuffer[] segments =
+          new MappedByteBuffer[(int) ((indexOffset + SEGMENT_SIZE - 1) / SEGMENT_SIZE)];
+      for (int i = 0; i < segments.length; ++i) {
+        final long begin = i * SEGMENT_SIZE;
+        segments[i] =
+            channel.map(
+                FileChannel.MapMode.READ_ONLY, begin, Math.min(SEGMENT_SIZE, indexOffset - begin));
+      }
+      return new SnvEffectTable(file, identity, contigs, segments);
+    } catch (IOException e) {
+      throw new VarfishAnnotatorException("Problem reading SNV effect table " + file, e);
+    }
+  }
+
+  /** @return identity of the transcript databases, see {@link #buildIdentity}. */
+  public String getIdentity() {
+    return identity;
+  }
+
+  /** @return name of the contig used for the normalized variants, {@code null} if not in table. */
+  public String getContigName(int chrId) {
+    final Contig contig = contigs.get(chrId);
+    return (contig == null) ? null : contig.name;
+  }
+
+  /**
+   * Look up the annotation of a single nucleotide variant.
+   *
+   * @param chrId Jannovar ID of the contig.
+   * @param pos 0-based position of the variant.
+   * @param ref The reference base.
+   * @param alt The alternative base.
+   * @return The encoded annotation or {@code null} if the variant is not in the table or the
+   *     reference base does not match.
+   * @throws VarfishAnnotatorException in case of problems with decoding the block
+   */
+  public String get(int chrId, int pos, char ref, char alt) throws VarfishAnnotatorException {
+    final int altIdx = BASES.indexOf(alt);
+    final Contig contig = contigs.get(chrId);
+    if (altIdx < 0 || ref == alt || contig == null) {
+      return null;
+    }
+    final int ordinal = contig.getOrdinal(pos);
+    if (ordinal < 0) {
+      return null;
+    }
+
+    final int blockNo = ordinal / BLOCK_SIZE;
+    DecodedBlock block = lastBlock.get();
+    if (block == null || block.chrId != chrId || block.blockNo != blockNo) {
+      block = decodeBlock(contig, blockNo);
+      lastBlock.set(block);
+    }
+
+    int offset = block.positionOffsets[ordinal % BLOCK_SIZE];
+    if (block.data[offset++] != ref) {
+      return null;
+    }
+    for (int b = 0; b < altIdx; ++b) {
+      if (BASES.charAt(b) != ref) {
+        final int length = readInt(block.data, offset);
+        offset += 4 + Math.max(length, 0);
+      }
+    }
+    final int length = readInt(block.data, offset);
+    return (length < 0)
+        ? null
+        : new String(block.data, offset + 4, length, StandardCharsets.UTF_8);
+  }
+
+  /** Inflate block {@code blockNo} of {@code contig} and find its positions. */
+  private DecodedBlock decodeBlock(Contig contig, int blockNo) throws VarfishAnnotatorException {
+    final long begin = contig.blockOffsets[blockNo];
+    final int length = (int) (contig.blockOffsets[blockNo + 1] - begin);
+    final ByteBuffer buffer = segments[(int) (begin / SEGMENT_SIZE)].duplicate();
+    // Call through Buffer such that the class also links on Java 8 when built with newer JDKs.
+    ((Buffer) buffer).position((int) (begin % SEGMENT_SIZE));
+    final int rawLength = buffer.getInt();
+    final byte[] compressed = new byte[length - 4];
+    buffer.get(compressed);
+
+    final byte[] data = new byte[rawLength];
+    final Inflater inflater = new Inflater();
+    try {
+      inflater.setInput(compressed);
+      int numInflated = 0;
+      while (numInflated < rawLength && !inflater.finished()) {
+        final int n = inflater.inflate(data, numInflated, rawLength - numInflated);
+        if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+          break;
+        }
+        numInflated += n;
+      }
+      if (numInflated != rawLength) {
+        throw new VarfishAnnotatorException("Truncated block in SNV effect table " + file);
+      }
+    } catch (DataFormatException e) {
+      throw new VarfishAnnotatorException("Problem decoding SNV effect table " + file, e);
+    } finally {
+      inflater.end();
+    }
+
+    final int[] positionOffsets = new int[BLOCK_SIZE];
+    int offset = 0;
+    for (int i = 0; i < BLOCK_SIZE && offset < rawLength; ++i) {
+      positionOffsets[i] = offset;
+      final char ref = (char) data[offset++];
+      for (int b = 0; b < BASES.length(); ++b) {
+        if (BASES.charAt(b) != ref) {
+          final int valueLength = readInt(data, offset);
+          offset += 4 + Math.max(valueLength, 0);
+        }
+      }
+    }
+    return new DecodedBlock(contig.chrId, blockNo, data, positionOffsets);
+  }
+
+  private static int readInt(byte[] data, int offset) {
+    return ((data[offset] & 0xff) << 24)
+        | ((data[offset + 1] & 0xff) << 16)
+        | ((data[offset + 2] & 0xff) << 8)
+        | (data[offset + 3] & 0xff);
+  }
+
+  /** Index entry of one contig. */
+  private static final class Contig {
+
+    final int chrId;
+
+    final String name;
+
+    /** Sorted 0-based begin positions of the intervals. */
+    final int[] begins;
+
+    /** 0-based end positions of the intervals, exclusive. */
+    final int[] ends;
+
+    /** Number of positions in the intervals before each interval. */
+    final int[] ordinals;
+
+    /** Offsets of the blocks, followed by the end offset of the last block. */
+    final long[] blockOffsets;
+
+    Contig(int chrId, String name, int[] begins, int[] ends, long[] blockOffsets) {
+      this.chrId = chrId;
+      this.name = name;
+      this.begins = begins;
+      this.ends = ends;
+      this.blockOffsets = blockOffsets;
+      this.ordinals = new int[begins.length];
+      for (int i = 1; i < begins.length; ++i) {
+        ordinals[i] = ordinals[i - 1] + ends[i - 1] - begins[i - 1];
+      }
+    }
+
+    /** @return index of {@code pos} among all positions in the intervals, {@code -1} if none. */
+    int getOrdinal(int pos) {
+      int idx = Arrays.binarySearch(begins, pos);
+      if (idx < 0) {
+        idx = -idx - 2;
+      }
+      if (idx < 0 || pos >= ends[idx]) {
+        return -1;
+      }
+      return ordinals[idx] + pos - begins[idx];
+    }
+  }
+
+  /** A decoded block with the offset of each position in {@link #data}. */
+  private static final class DecodedBlock {
+
+    final int chrId;
+
+    final int blockNo;
+
+    final byte[] data;
+
+    final int[] positionOffsets;
+
+    DecodedBlock(int chrId, int blockNo, byte[] data, int[] positionOffsets) {
+      this.chrId = chrId;
+      this.blockNo = blockNo;
+      this.data = data;
+      this.positionOffsets = positionOffsets;
+    }
+  }
+}
@@ -0,0 +1,207 @@
+package com.github.bihealth.varfish_annotator.data;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Writer for {@link SnvEffectTable} files.
+ *
+ * <p>The positions of each contig must be added in the order of its intervals.
+ */
+public final class SnvEffectTableWriter implements Closeable {
+
+  /** The output stream. */
+  private final DataOutputStream out;
+
+  /** Number of bytes written so far. */
+  private long offset;
+
+  /** Index entries of the finished contigs. */
+  private final List<Contig> contigs = new ArrayList<>();
+
+  /** The contig currently written, {@code null} before the first one. */
+  private Contig contig;
+
+  /** Number of positions added to {@link #contig}. */
+  private int numPositions;
+
+  /** Offsets of the blocks of {@link #contig}. */
+  private final List<Long> blockOffsets = new ArrayList<>();
+
+  /** Content of the current block before compression. */
+  private final ByteArrayOutputStream blockBytes = new ByteArrayOutputStream();
+
+  private final DataOutputStream blockOut = new DataOutputStream(blockBytes);
+
+  /**
+   * Open the file and write the header.
+   *
+   * @param file Path to the output file.
+   * @param identity Identity of the transcript databases, see {@link
+   *     SnvEffectTable#buildIdentity}.
+   * @throws IOException in case of problems with writing
+   */
+  public SnvEffectTableWriter(File file, String identity) throws IOException {
+    this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 20));
+    out.write(SnvEffectTable.MAGIC);
+    out.writeInt(SnvEffectTable.VERSION);
+    out.writeUTF(identity);
+    offset = out.size();
+  }
+
+  /**
+   * Start the next contig, finishing the previous one.
+   *
+   * @param chrId Jannovar ID of the contig.
+   * @param name Name of the contig as used for the normalized variants.
+   * @param begins Sorted, non-overlapping 0-based begin positions of the intervals.
+   * @param ends 0-based end positions of the intervals, exclusive.
+   * @throws IOException in case of problems with writing
+   */
+  public void startContig(int chrId, String name, int[] begins, int[] ends) throws IOException {
+    finishContig();
+    contig = new Contig(chrId, name, begins.clone(), ends.clone());
+    numPositions = 0;
+    blockOffsets.clear();
+  }
+
+  /**
+   * Add the next position of the current contig.
+   *
+   * @param ref The reference base, upper case.
+   * @param values Encoded annotation for each alternative base in the order of {@link
+   *     SnvEffectTable#BASES}, {@code null} for the reference base and for unknown annotations.
+   * @throws IOException in case of problems with writing
+   */
+  public void addPosition(char ref, String[] values) throws IOException {
+    if (contig == null || numPositions == contig.numPositions) {
+      throw new IllegalStateException("Position out of the intervals of the current contig");
+    }
+    blockOut.writeByte(ref);
+    for (int b = 0; b < SnvEffectTable.BASES.length(); ++b) {
+      if (SnvEffectTable.BASES.charAt(b) == ref) {
+        continue;
+      }
+      if (values[b] == null) {
+        blockOut.writeInt(-1);
+      } else {
+        final byte[] bytes = values[b].getBytes(StandardCharsets.UTF_8);
+        blockOut.writeInt(bytes.length);
+        blockOut.write(bytes);
+      }
+    }
+    if (++numPositions % SnvEffectTable.BLOCK_SIZE == 0) {
+      flushBlock();
+    }
+  }
+
+  /**
+   * Compress and write the current block after its uncompressed size, not crossing a segment
+   * boundary.
+   */
+  private void flushBlock() throws IOException {
+    if (blockBytes.size() == 0) {
+      return;
+    }
+    final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+    new DataOutputStream(compressed).writeInt(blockBytes.size());
+    try (DeflaterOutputStream deflaterOut = new DeflaterOutputStream(compressed)) {
+      blockBytes.writeTo(deflaterOut);
+    }
+    blockBytes.reset();
+
+    final long segmentEnd =
+        (offset / SnvEffectTable.SEGMENT_SIZE + 1) * SnvEffectTable.SEGMENT_SIZE;
+    if (offset + compressed.size() > segmentEnd) {
+      for (; offset < segmentEnd; ++offset) {
+        out.write(0);
+      }
+    }
+    blockOffsets.add(offset);
+    compressed.writeTo(out);
+    offset += compressed.size();
+  }
+
+  /** Write the last block of the current contig and keep its index entry. */
+  private void finishContig() throws IOException {
+    if (contig == null) {
+      return;
+    }
+    if (numPositions != contig.numPositions) {
+      throw new IllegalStateException(
+          "Contig " + contig.name + " has " + numPositions + " of " + contig.numPositions);
+    }
+    flushBlock();
+    blockOffsets.add(offset);
+    contig.blockOffsets = new long[blockOffsets.size()];
+    for (int i = 0; i < blockOffsets.size(); ++i) {
+      contig.blockOffsets[i] = blockOffsets.get(i);
+    }
+    contigs.add(contig);
+    contig = null;
+  }
+
+  /** Write the last contig and the index, followed by the offset of the index. */
+  @Override
+  public void close() throws IOException {
+    try {
+      finishContig();
+      final long indexOffset = offset;
+      out.writeInt(contigs.size());
+      for (Contig c : contigs) {
+        out.writeInt(c.chrId);
+        out.writeUTF(c.name);
+        out.writeInt(c.begins.length);
+        for (int i = 0; i < c.begins.length; ++i) {
+          out.writeInt(c.begins[i]);
+          out.writeInt(c.ends[i]);
+        }
+        out.writeInt(c.blockOffsets.length);
+        for (long blockOffset : c.blockOffsets) {
+          out.writeLong(blockOffset);
+        }
+      }
+      out.writeLong(indexOffset);
+      out.write(SnvEffectTable.MAGIC);
+    } finally {
+      out.close();
+    }
+  }
+
+  /** Index entry of one contig. */
+  private static final class Contig {
+
+    final int chrId;
+
+    final String name;
+
+    final int[] begins;
+
+    final int[] ends;
+
+    final int numPositions;
+
+    long[] blockOffsets;
+
+    Contig(int chrId, String name, int[] begins, int[] ends) {
+      this.chrId = chrId;
+      this.name = name;
+      this.begins = begins;
+      this.ends = ends;
+      int total = 0;
+      for (int i = 0; i < begins.length; ++i) {
+        total += ends[i] - begins[i];
+      }
+      this.numPositions = total;
+    }
+  }
+}
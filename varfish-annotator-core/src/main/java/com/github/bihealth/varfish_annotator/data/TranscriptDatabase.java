@@ -0,0 +1,336 @@
+package com.github.bihealth.varfish_annotator.data;
+
+import com.github.bihealth.varfish_annotator.VarfishAnnotatorException;
+import com.google.common.collect.ImmutableList;
+import de.charite.compbio.jannovar.data.JannovarData;
+import de.charite.compbio.jannovar.data.JannovarDataSerializer;
+import de.charite.compbio.jannovar.data.ReferenceDictionary;
+import de.charite.compbio.jannovar.data.SerializationException;
+import de.charite.compbio.jannovar.reference.TranscriptModel;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.RandomAccessFile;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Jannovar transcript database in a layout that allows for loading chromosomes in parallel.
+ *
+ * <p>Files are written by {@link TranscriptDatabaseWriter}:
+ *
+ * <pre>
+ *   header  magic "VFTX", version, number of blocks
+ *   index   per block: chromosome ID, file offset, length, number of transcripts
+ *   blocks  deflated Java serialization of the reference dictionary (chromosome ID -1), followed
+ *           by one block with the transcripts of each chromosome
+ * </pre>
+ *
+ * <p>In the transcript blocks, the reference dictionary is written as a placeholder and strings
+ * with equal content are written only once. Each block is read from its own read-only memory
+ * mapping and decoded independently of the others.
+ */
+public final class TranscriptDatabase {
+
+  /** Magic bytes at the start of the file. */
+  static final byte[] MAGIC = {'V', 'F', 'T', 'X'};
+
+  /** File format version. */
+  static final int VERSION = 1;
+
+  /** Chromosome ID of the block with the reference dictionary. */
+  static final int REF_DICT_BLOCK = -1;
+
+  /** Path to the file. */
+  private final File file;
+
+  /** The reference dictionary shared by all transcripts. */
+  private final ReferenceDictionary refDict;
+
+  /** Mapped transcript blocks by chromosome ID, in file order. */
+  private final Map<Integer, Block> blocks;
+
+  private TranscriptDatabase(File file, ReferenceDictionary refDict, Map<Integer, Block> blocks) {
+    this.file = file;
+    this.refDict = refDict;
+    this.blocks = blocks;
+  }
+
+  /** @return whether {@code file} starts with the magic bytes of a transcript database. */
+  public static boolean isTranscriptDatabase(File file) throws VarfishAnnotatorException {
+    final byte[] magic = new byte[MAGIC.length];
+    try (InputStream in = new FileInputStream(file)) {
+      int numRead = 0;
+      while (numRead < magic.length) {
+        final int n = in.read(magic, numRead, magic.length - numRead);
+        if (n < 0) {
+          return false;
+        }
+        numRead += n;
+      }
+    } catch (IOException e) {
+      throw new VarfishAnnotatorException("Problem reading transcript database " + file, e);
+    }
+    return Arrays.equals(MAGIC, magic);
+  }
+
+  /**
+   * Open transcript database, mapping the blocks and reading the reference dictionary.
+   *
+   * @param file Path to the file written by {@link TranscriptDatabaseWriter}.
+   * @throws VarfishAnnotatorException in case of problems with reading the file
+   */
+  public static TranscriptDatabase open(File file) throws VarfishAnnotatorException {
+    try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+        FileChannel channel = raf.getChannel()) {
+      final DataInputStream in =
+          new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+      final byte[] magic = new byte[MAGIC.length];
+      in.readFully(magic);
+      if (!Arrays.equals(MAGIC, magic)) {
+        throw new VarfishAnnotatorException("Not a transcript database: " + file);
+      }
+      final int version = in.readInt();
+      if (version != VERSION) {
+        throw new VarfishAnnotatorException(
+            "Unsupported transcript database version " + version + " in " + file);
+      }
+      final int numBlocks = in.readInt();
+      ReferenceDictionary refDict = null;
+      final Map<Integer, Block> blocks = new LinkedHashMap<>();
+      for (int i = 0; i < numBlocks; ++i) {
+        final int chrId = in.readInt();
+        final long offset = in.readLong();
+        final int length = in.readInt();
+        final int numTranscripts = in.readInt();
+        final Block block =
+            new Block(
+                channel.map(FileChannel.MapMode.READ_ONLY, offset, length), numTranscripts);
+        if (chrId == REF_DICT_BLOCK) {
+          try (ObjectInputStream blockIn = block.newObjectInputStream(null)) {
+            refDict = (ReferenceDictionary) blockIn.readObject();
+          }
+        } else {
+          blocks.put(chrId, block);
+        }
+      }
+      if (refDict == null) {
+        throw new VarfishAnnotatorException("No reference dictionary in " + file);
+      }
+      return new TranscriptDatabase(file, refDict, blocks);
+    } catch (IOException | ClassNotFoundException | ClassCastException e) {
+      throw new VarfishAnnotatorException("Problem reading transcript database " + file, e);
+    }
+  }
+
+  public ReferenceDictionary getRefDict() {
+    return refDict;
+  }
+
+  /** @return IDs of the chromosomes with transcripts, in file order. */
+  public List<Integer> getChromosomeIds() {
+    return new ArrayList<>(blocks.keySet());
+  }
+
+  /**
+   * Deserialize the transcripts of one chromosome, may be called from multiple threads.
+   *
+   * @param chrId The chromosome ID from the reference dictionary.
+   * @return The transcripts on the chromosome, empty if there are none.
+   * @throws VarfishAnnotatorException in case of problems with deserialization
+   */
+  public List<TranscriptModel> loadTranscripts(int chrId) throws VarfishAnnotatorException {
+    final Block block = blocks.get(chrId);
+    if (block == null) {
+      return ImmutableList.of();
+    }
+    try (ObjectInputStream in = block.newObjectInputStream(refDict)) {
+      final List<TranscriptModel> result = new ArrayList<>(block.numTranscripts);
+      for (int i = 0; i < block.numTranscripts; ++i) {
+        result.add((TranscriptModel) in.readObject());
+      }
+      return result;
+    } catch (IOException | ClassNotFoundException | ClassCastException e) {
+      throw new VarfishAnnotatorException(
+          "Problem reading transcripts of chromosome " + chrId + " from " + file, e);
+    }
+  }
+
+  /**
+   * Deserialize all chromosomes on {@code executor} and build the {@link JannovarData}.
+   *
+   * <p>The transcripts of each chromosome keep their order from the original database.
+   *
+   * @param executor The executor to deserialize on.
+   * @param filter The transcripts to keep.
+   */
+  public CompletableFuture<JannovarData> loadAsync(Executor executor, TranscriptFilter filter) {
+    final List<CompletableFuture<List<TranscriptModel>>> parts = new ArrayList<>();
+    for (int chrId : blocks.keySet()) {
+      parts.add(
+          CompletableFuture.supplyAsync(
+              () -> {
+                try {
+                  return filter.apply(loadTranscripts(chrId));
+                } catch (VarfishAnnotatorException e) {
+                  throw new CompletionException(e);
+                }
+              },
+              executor));
+    }
+    return CompletableFuture.allOf(parts.toArray(new CompletableFuture<?>[0]))
+        .thenApplyAsync(
+            ignored -> {
+              final ImmutableList.Builder<TranscriptModel> builder = ImmutableList.builder();
+              for (CompletableFuture<List<TranscriptModel>> part : parts) {
+                builder.addAll(part.join());
+              }
+              return new JannovarData(refDict, builder.build());
+            },
+            executor);
+  }
+
+  /**
+   * Load transcript databases concurrently.
+   *
+   * <p>Each path can either point to a file written by {@link TranscriptDatabaseWriter}, of which
+   * the chromosomes are deserialized in parallel, or to a Jannovar {@code .ser} file.
+   *
+   * @param paths The paths to load.
+   * @param filter The transcripts to keep.
+   * @return The loaded databases, in the order of {@code paths}.
+   * @throws VarfishAnnotatorException in case of problems with loading
+   */
+  public static List<JannovarData> loadJannovarData(List<String> paths, TranscriptFilter filter)
+      throws VarfishAnnotatorException {
+    final ExecutorService executor =
+        Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+    try {
+      final List<CompletableFuture<JannovarData>> futures = new ArrayList<>();
+      for (String path : paths) {
+        if (isTranscriptDatabase(new File(path))) {
+          futures.add(open(new File(path)).loadAsync(executor, filter));
+        } else {
+          futures.add(
+              CompletableFuture.supplyAsync(
+                  () -> {
+                    try {
+                      return filter.apply(new JannovarDataSerializer(path).load());
+                    } catch (SerializationException e) {
+                      throw new CompletionException(e);
+                    }
+                  },
+                  executor));
+        }
+      }
+      final List<JannovarData> result = new ArrayList<>();
+      for (CompletableFuture<JannovarData> future : futures) {
+        result.add(future.get());
+      }
+      return result;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new VarfishAnnotatorException("Interrupted while loading transcript databases", e);
+    } catch (ExecutionException e) {
+      throw new VarfishAnnotatorException("Problem deserializing Jannovar database", e.getCause());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /** Placeholder for the reference dictionary in transcript blocks. */
+  static final class RefDictPlaceholder implements Serializable {
+
+    static final RefDictPlaceholder INSTANCE = new RefDictPlaceholder();
+
+    private static final long serialVersionUID = 1L;
+  }
+
+  /** One mapped block of the file. */
+  private static final class Block {
+
+    /** The deflated data. */
+    final ByteBuffer data;
+
+    /** Number of transcripts in the block. */
+    final int numTranscripts;
+
+    Block(ByteBuffer data, int numTranscripts) {
+      this.data = data;
+      this.numTranscripts = numTranscripts;
+    }
+
+    /** Open stream for reading the block, replacing the placeholder by {@code refDict}. */
+    ObjectInputStream newObjectInputStream(ReferenceDictionary refDict) throws IOException {
+      return new BlockObjectInputStream(
+          new InflaterInputStream(new ByteBufferInputStream(data.duplicate())), refDict);
+    }
+  }
+
+  /** Object stream that replaces {@link RefDictPlaceholder} by the shared dictionary. */
+  private static final class BlockObjectInputStream extends ObjectInputStream {
+
+    private final ReferenceDictionary refDict;
+
+    BlockObjectInputStream(InputStream in, ReferenceDictionary refDict) throws IOException {
+      super(in);
+      this.refDict = refDict;
+      enableResolveObject(true);
+    }
+
+    @Override
+    protected Object resolveObject(Object obj) {
+      return (obj instanceof RefDictPlaceholder) ? refDict : obj;
+    }
+  }
+
+  /** Stream reading from a {@link ByteBuffer}, advancing its position. */
+  private static final class ByteBufferInputStream extends InputStream {
+
+    private final ByteBuffer buffer;
+
+    ByteBufferInputStream(ByteBuffer buffer) {
+      this.buffer = buffer;
+    }
+
+    @Override
+    public int read() {
+      return buffer.hasRemaining() ? (buffer.get() & 0xff) : -1;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+      if (len == 0) {
+        return 0;
+      } else if (!buffer.hasRemaining()) {
+        return -1;
+      }
+      final int n = Math.min(len, buffer.remaining());
+      buffer.get(b, off, n);
+      return n;
+    }
+
+    @Override
+    public int available() {
+      return buffer.remaining();
+    }
+  }
+}
@@ -0,0 +1,119 @@
+package com.github.bihealth.varfish_annotator.data;
+
+import de.charite.compbio.jannovar.data.JannovarData;
+import de.charite.compbio.jannovar.data.ReferenceDictionary;
+import de.charite.compbio.jannovar.reference.TranscriptModel;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.DeflaterOutputStream;
+
+/** Writer for {@link TranscriptDatabase} files. */
+public final class TranscriptDatabaseWriter {
+
+  /** Size of the index entry of each block in bytes. */
+  private static final int INDEX_ENTRY_SIZE = 20;
+
+  private TranscriptDatabaseWriter() {}
+
+  /**
+   * Write the transcripts of {@code jvData} to {@code file}.
+   *
+   * @param jvData The transcript database to write.
+   * @param file Path to the output file.
+   * @throws IOException in case of problems with writing
+   */
+  public static void write(JannovarData jvData, File file) throws IOException {
+    // Group transcripts by chromosome, keeping their order within the chromosome.
+    final Map<Integer, List<TranscriptModel>> byChrom = new TreeMap<>();
+    for (TranscriptModel tm : jvData.getTmByAccession().values()) {
+      byChrom.computeIfAbsent(tm.getChr(), chr -> new ArrayList<>()).add(tm);
+    }
+
+    final List<Integer> chrIds = new ArrayList<>();
+    final List<byte[]> blocks = new ArrayList<>();
+    final List<Integer> counts = new ArrayList<>();
+    chrIds.add(TranscriptDatabase.REF_DICT_BLOCK);
+    blocks.add(serialize(jvData.getRefDict(), false));
+    counts.add(0);
+    for (Map.Entry<Integer, List<TranscriptModel>> entry : byChrom.entrySet()) {
+      chrIds.add(entry.getKey());
+      blocks.add(serialize(entry.getValue(), true));
+      counts.add(entry.getValue().size());
+    }
+
+    try (DataOutputStream out =
+        new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 20))) {
+      out.write(TranscriptDatabase.MAGIC);
+      out.writeInt(TranscriptDatabase.VERSION);
+      out.writeInt(blocks.size());
+      long offset = TranscriptDatabase.MAGIC.length + 8 + (long) INDEX_ENTRY_SIZE * blocks.size();
+      for (int i = 0; i < blocks.size(); ++i) {
+        out.writeInt(chrIds.get(i));
+        out.writeLong(offset);
+        out.writeInt(blocks.get(i).length);
+        out.writeInt(counts.get(i));
+        offset += blocks.get(i).length;
+      }
+      for (byte[] block : blocks) {
+        out.write(block);
+      }
+    }
+  }
+
+  /** Serialize and deflate the reference dictionary or a list of transcripts. */
+  private static byte[] serialize(Object obj, boolean isTranscripts) throws IOException {
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream out =
+        new BlockObjectOutputStream(new DeflaterOutputStream(bytes), isTranscripts)) {
+      if (isTranscripts) {
+        for (Object tm : (List<?>) obj) {
+          out.writeObject(tm);
+        }
+      } else {
+        out.writeObject(obj);
+      }
+    }
+    return bytes.toByteArray();
+  }
+
+  /**
+   * Object stream that writes a placeholder for the reference dictionary and each string content
+   * only once.
+   */
+  private static final class BlockObjectOutputStream extends ObjectOutputStream {
+
+    /** First string written for each content. */
+    private final Map<String, String> strings = new HashMap<>();
+
+    /** Whether to write the placeholder instead of the reference dictionary. */
+    private final boolean replaceRefDict;
+
+    BlockObjectOutputStream(OutputStream out, boolean replaceRefDict) throws IOException {
+      super(out);
+      this.replaceRefDict = replaceRefDict;
+      enableReplaceObject(true);
+    }
+
+    @Override
+    protected Object replaceObject(Object obj) {
+      if (replaceRefDict && obj instanceof ReferenceDictionary) {
+        return TranscriptDatabase.RefDictPlaceholder.INSTANCE;
+      } else if (obj instanceof String) {
+        return strings.computeIfAbsent((String) obj, s -> s);
+      } else {
+        return obj;
+      }
+    }
+  }
+}
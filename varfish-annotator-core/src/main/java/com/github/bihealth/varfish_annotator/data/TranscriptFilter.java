@@ -0,0 +1,136 @@
+package com.github.bihealth.varfish_annotator.data;
+
+import com.github.bihealth.varfish_annotator.VarfishAnnotatorException;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import de.charite.compbio.jannovar.data.JannovarData;
+import de.charite.compbio.jannovar.reference.TranscriptModel;
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Selection of the transcripts to annotate with, applied when loading the transcript databases.
+ *
+ * <p>Transcripts that are filtered out are not part of the Jannovar interval trees and thus never
+ * show up in annotations.
+ */
+public final class TranscriptFilter implements Predicate<TranscriptModel> {
+
+  /** Filter that keeps all transcripts. */
+  public static final TranscriptFilter ALL = new TranscriptFilter(null, false);
+
+  /** Accessions without version to keep, {@code null} to keep all. */
+  private final ImmutableSet<String> accessions;
+
+  /** Whether to keep coding transcripts only. */
+  private final boolean codingOnly;
+
+  /**
+   * Construct filter.
+   *
+   * @param accessions Accessions to keep, versions are ignored; {@code null} to keep all.
+   * @param codingOnly Whether to keep coding transcripts only.
+   */
+  public TranscriptFilter(ImmutableSet<String> accessions, boolean codingOnly) {
+    if (accessions == null) {
+      this.accessions = null;
+    } else {
+      final ImmutableSet.Builder<String> builder = ImmutableSet.builder();
+      for (String accession : accessions) {
+        builder.add(stripVersion(accession));
+      }
+      this.accessions = builder.build();
+    }
+    this.codingOnly = codingOnly;
+  }
+
+  /**
+   * Construct filter, reading the accessions from a file.
+   *
+   * @param allowlistPath Path to file with one accession per line, empty lines and lines starting
+   *     with {@code #} are ignored; {@code null} to keep all accessions.
+   * @param codingOnly Whether to keep coding transcripts only.
+   * @return The filter.
+   * @throws VarfishAnnotatorException in case of problems with reading the file
+   */
+  public static TranscriptFilter load(String allowlistPath, boolean codingOnly)
+      throws VarfishAnnotatorException {
+    if (allowlistPath == null) {
+      return codingOnly ? new TranscriptFilter(null, true) : ALL;
+    }
+    final ImmutableSet.Builder<String> builder = ImmutableSet.builder();
+    try (BufferedReader reader =
+        new BufferedReader(
+            new InputStreamReader(new FileInputStream(allowlistPath), StandardCharsets.UTF_8))) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        line = line.trim();
+        if (!line.isEmpty() && !line.startsWith("#")) {
+          builder.add(line);
+        }
+      }
+    } catch (IOException e) {
+      throw new VarfishAnnotatorException(
+          "Problem reading transcript allowlist " + allowlistPath, e);
+    }
+    return new TranscriptFilter(builder.build(), codingOnly);
+  }
+
+  /** @return whether the filter keeps all transcripts. */
+  public boolean isAll() {
+    return accessions == null && !codingOnly;
+  }
+
+  @Override
+  public boolean test(TranscriptModel tm) {
+    if (codingOnly && !tm.isCoding()) {
+      return false;
+    }
+    return accessions == null || accessions.contains(stripVersion(tm.getAccession()));
+  }
+
+  /** @return the transcripts of {@code tms} that pass the filter, in their original order. */
+  public List<TranscriptModel> apply(List<TranscriptModel> tms) {
+    if (isAll()) {
+      return tms;
+    }
+    final ImmutableList.Builder<TranscriptModel> builder = ImmutableList.builder();
+    for (TranscriptModel tm : tms) {
+      if (test(tm)) {
+        builder.add(tm);
+      }
+    }
+    return builder.build();
+  }
+
+  /** @return {@code jvData} restricted to the transcripts that pass the filter. */
+  public JannovarData apply(JannovarData jvData) {
+    if (isAll()) {
+      return jvData;
+    }
+    final List<TranscriptModel> tms =
+        apply(ImmutableList.copyOf(jvData.getTmByAccession().values()));
+    return new JannovarData(jvData.getRefDict(), ImmutableList.copyOf(tms));
+  }
+
+  /** @return {@code accession} without the version suffix, e.g. {@code NM_000492} */
+  private static String stripVersion(String accession) {
+    final int dot = accession.lastIndexOf('.');
+    return (dot < 0) ? accession : accession.substring(0, dot);
+  }
+
+  @Override
+  public String toString() {
+    return "TranscriptFilter{"
+        + "accessions="
+        + (accessions == null ? "all" : accessions.size())
+        + ", codingOnly="
+        + codingOnly
+        + '}';
+  }
+}
@@ -0,0 +1,39 @@
+package com.github.bihealth.varfish_annotator.data;
+
+import com.github.bihealth.varfish_annotator.VarfishAnnotatorException;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import de.charite.compbio.jannovar.data.Chromosome;
+import de.charite.compbio.jannovar.data.ReferenceDictionary;
+import de.charite.compbio.jannovar.reference.TranscriptModel;
+
+/** Source of Jannovar transcript interval trees for annotating variants of one contig. */
+public interface TranscriptSource {
+
+  /** @return the reference dictionary of the transcript database. */
+  ReferenceDictionary getRefDict();
+
+  /**
+   * Get transcript interval trees for annotating variants on {@code contig}.
+   *
+   * <p>Implementations must be thread-safe.
+   *
+   * @param contig Name of the contig as in the reference dictionary.
+   * @return Map from chromosome ID to {@link Chromosome}, containing at least {@code contig} if it
+   *     has transcripts.
+   * @throws VarfishAnnotatorException in case of problems with loading the transcripts
+   */
+  ImmutableMap<Integer, Chromosome> getChromosomes(String contig)
+      throws VarfishAnnotatorException;
+
+  /**
+   * Get the transcripts on {@code contig}.
+   *
+   * <p>Implementations must be thread-safe.
+   *
+   * @param contig Name of the contig as in the reference dictionary.
+   * @return The transcripts on {@code contig}, empty if there are none.
+   * @throws VarfishAnnotatorException in case of problems with loading the transcripts
+   */
+  ImmutableList<TranscriptModel> getTranscripts(String contig) throws VarfishAnnotatorException;
+}
@@ -17,6 +17,11 @@ public final class VcfConstants {
   /** Name of table with Thousand Genomes variants. */
   public static final String THOUSAND_GENOMES_PREFIX = "thousand_genomes";
 
+  /** Prefixes of all frequency tables. */
+  public static final ImmutableList<String> FREQUENCY_PREFIXES =
+      ImmutableList.of(
+          EXAC_PREFIX, GNOMAD_EXOMES_PREFIX, GNOMAD_GENOMES_PREFIX, THOUSAND_GENOMES_PREFIX);
+
   /** Header fields for the genotypes file. */
   public static final ImmutableList<String> HEADERS_GT =
       ImmutableList.of(
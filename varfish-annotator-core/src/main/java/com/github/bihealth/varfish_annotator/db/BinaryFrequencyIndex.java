@@ -0,0 +1,314 @@
+package com.github.bihealth.varfish_annotator.db;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Memory-mapped, sorted file with the frequency information of one of the <tt>*_var</tt> tables.
+ *
+ * <p>The file is written by {@link BinaryFrequencyIndexWriter} and consists of a header, a sorted
+ * region of fixed-width records, and an overflow region for alleles that cannot be packed into the
+ * record. Each record has the layout
+ *
+ * <pre>
+ *   int chromNo, int start, long alleles, double af, int het, int hom, int hemi
+ * </pre>
+ *
+ * and the records are sorted by {@code (chromNo, start)}. The {@code alleles} field either contains
+ * REF and ALT packed with two bits per base (see {@link #packAlleles(String, String)}) or, if the
+ * highest bit is set, the offset of the alleles in the overflow region.
+ *
+ * <p>The header also records the number of rows of the source table, such that indices exported
+ * before the table changed can be detected.
+ *
+ * <p>Lookups perform a binary search on the mapped file, instances are thread-safe.
+ */
+public final class BinaryFrequencyIndex implements Closeable {
+
+  /** Magic bytes at the start of the file. */
+  static final byte[] MAGIC = "VFBI".getBytes(StandardCharsets.US_ASCII);
+
+  /** File format version. */
+  static final int VERSION = 2;
+
+  /** Size of one record in bytes. */
+  static final int RECORD_SIZE = 36;
+
+  /** Offset of the record count in the header. */
+  static final int NUM_RECORDS_OFFSET = 8;
+
+  /** Flag for alleles stored in the overflow region. */
+  static final long OVERFLOW_FLAG = 1L << 63;
+
+  /** Maximal length of each packed allele. */
+  static final int MAX_PACKED_ALLELE_LEN = 15;
+
+  /** Maximal number of bases of REF and ALT together in packed alleles. */
+  static final int MAX_PACKED_BASES = 27;
+
+  /** Number of records per mapped segment, such that each segment stays below 2 GiB. */
+  private static final int SEGMENT_RECORDS = Integer.MAX_VALUE / RECORD_SIZE;
+
+  /** The opened file. */
+  private final RandomAccessFile file;
+
+  /** Genome release of the records. */
+  private final String release;
+
+  /** Number of rows of the source table when the index was exported. */
+  private final long tableRowCount;
+
+  /** Chromosome number by name. */
+  private final Map<String, Integer> chromNos;
+
+  /** Number of records. */
+  private final long numRecords;
+
+  /** Offset of the overflow region. */
+  private final long overflowOffset;
+
+  /** The mapped record region. */
+  private final ByteBuffer[] segments;
+
+  private BinaryFrequencyIndex(
+      RandomAccessFile file,
+      String release,
+      long tableRowCount,
+      Map<String, Integer> chromNos,
+      long numRecords,
+      long overflowOffset,
+      ByteBuffer[] segments) {
+    this.file = file;
+    this.release = release;
+    this.tableRowCount = tableRowCount;
+    this.chromNos = chromNos;
+    this.numRecords = numRecords;
+    this.overflowOffset = overflowOffset;
+    this.segments = segments;
+  }
+
+  /**
+   * Open and map the given file.
+   *
+   * @param path Path to the file to open.
+   * @return The opened index.
+   * @throws IOException in case of problems with reading the file or an invalid file
+   */
+  public static BinaryFrequencyIndex open(File path) throws IOException {
+    final RandomAccessFile file = new RandomAccessFile(path, "r");
+    try {
+      final FileChannel channel = file.getChannel();
+      final DataInputStream header = new DataInputStream(Channels.newInputStream(channel));
+      final byte[] magic = new byte[MAGIC.length];
+      header.readFully(magic);
+      if (!Arrays.equals(magic, MAGIC)) {
+        throw new IOException("Not a binary frequency index: " + path);
+      }
+      final int version = header.readInt();
+      if (version != VERSION) {
+        throw new IOException("Unsupported binary frequency index version " + version);
+      }
+      final long numRecords = header.readLong();
+      final long recordsOffset = header.readLong();
+      final long overflowOffset = header.readLong();
+      final String release = header.readUTF();
+      final long tableRowCount = header.readLong();
+      final int numChroms = header.readInt();
+      final Map<String, Integer> chromNos = new HashMap<>();
+      for (int i = 0; i < numChroms; ++i) {
+        chromNos.put(header.readUTF(), i);
+      }
+
+      final int numSegments = (int) ((numRecords + SEGMENT_RECORDS - 1) / SEGMENT_RECORDS);
+      final ByteBuffer[] segments = new ByteBuffer[numSegments];
+      for (int i = 0; i < numSegments; ++i) {
+        final long first = (long) i * SEGMENT_RECORDS;
+        final long count = Math.min(SEGMENT_RECORDS, numRecords - first);
+        segments[i] =
+            channel.map(
+                FileChannel.MapMode.READ_ONLY,
+                recordsOffset + first * RECORD_SIZE,
+                count * RECORD_SIZE);
+      }
+      return new BinaryFrequencyIndex(
+          file, release, tableRowCount, chromNos, numRecords, overflowOffset, segments);
+    } catch (IOException | RuntimeException e) {
+      file.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Get path to the binary index of a table next to the H2 database.
+   *
+   * @param dbPath Path to the H2 database, with or without <tt>.h2.db</tt> suffix.
+   * @param prefix Prefix of the table, e.g., {@code "exac"}.
+   * @return Path to the binary index file.
+   */
+  public static File getPath(String dbPath, String prefix) {
+    if (dbPath.endsWith(".h2.db")) {
+      dbPath = dbPath.substring(0, dbPath.length() - ".h2.db".length());
+    }
+    return new File(dbPath + "." + prefix + "_var.vfbi");
+  }
+
+  /** @return the genome release of the records. */
+  public String getRelease() {
+    return release;
+  }
+
+  /** @return the number of rows of the source table when the index was exported. */
+  public long getTableRowCount() {
+    return tableRowCount;
+  }
+
+  /** @return the number of records. */
+  public long getNumRecords() {
+    return numRecords;
+  }
+
+  /**
+   * Look up frequency information of a variant.
+   *
+   * @param chrom Chromosome name as used in the database table.
+   * @param start 1-based start position of the variant.
+   * @param ref Reference allele.
+   * @param alt Alternative allele.
+   * @return {@link DbInfo} for the variant, {@link DbInfo#nullValue()} if not found.
+   * @throws IOException in case of problems reading the overflow region
+   */
+  public DbInfo lookup(String chrom, int start, String ref, String alt) throws IOException {
+    final Integer chromNo = chromNos.get(chrom);
+    if (chromNo == null) {
+      return DbInfo.nullValue();
+    }
+    final long packed = packAlleles(ref, alt);
+
+    // Find first record with (chromNo, start) by binary search.
+    long lo = 0;
+    long hi = numRecords;
+    while (lo < hi) {
+      final long mid = (lo + hi) >>> 1;
+      final ByteBuffer buf = segments[(int) (mid / SEGMENT_RECORDS)];
+      final int offset = (int) (mid % SEGMENT_RECORDS) * RECORD_SIZE;
+      final int midChromNo = buf.getInt(offset);
+      final int midStart = buf.getInt(offset + 4);
+      if (midChromNo < chromNo || (midChromNo == chromNo && midStart < start)) {
+        lo = mid + 1;
+      } else {
+        hi = mid;
+      }
+    }
+
+    // Scan records with the same position for the alleles.
+    for (long i = lo; i < numRecords; ++i) {
+      final ByteBuffer buf = segments[(int) (i / SEGMENT_RECORDS)];
+      final int offset = (int) (i % SEGMENT_RECORDS) * RECORD_SIZE;
+      if (buf.getInt(offset) != chromNo || buf.getInt(offset + 4) != start) {
+        break;
+      }
+      final long alleles = buf.getLong(offset + 8);
+      final boolean matches;
+      if (packed != -1) {
+        matches = (alleles == packed);
+      } else if ((alleles & OVERFLOW_FLAG) != 0) {
+        matches = overflowAllelesEqual(alleles & ~OVERFLOW_FLAG, ref, alt);
+      } else {
+        matches = false;
+      }
+      if (matches) {
+        return new DbInfo(
+            buf.getDouble(offset + 16),
+            buf.getInt(offset + 24),
+            buf.getInt(offset + 28),
+            buf.getInt(offset + 32));
+      }
+    }
+    return DbInfo.nullValue();
+  }
+
+  private boolean overflowAllelesEqual(long offset, String ref, String alt) throws IOException {
+    final String[] alleles = readOverflowAlleles(offset);
+    return alleles[0].equals(ref) && alleles[1].equals(alt);
+  }
+
+  private String[] readOverflowAlleles(long offset) throws IOException {
+    final String[] result = new String[2];
+    long pos = overflowOffset + offset;
+    for (int i = 0; i < 2; ++i) {
+      final ByteBuffer lenBuf = readFully(pos, 4);
+      final int len = lenBuf.getInt(0);
+      final ByteBuffer strBuf = readFully(pos + 4, len);
+      result[i] = new String(strBuf.array(), 0, len, StandardCharsets.UTF_8);
+      pos += 4 + len;
+    }
+    return result;
+  }
+
+  private ByteBuffer readFully(long pos, int len) throws IOException {
+    final ByteBuffer buf = ByteBuffer.allocate(len);
+    while (buf.hasRemaining()) {
+      if (file.getChannel().read(buf, pos + buf.position()) < 0) {
+        throw new IOException("Unexpected end of binary frequency index");
+      }
+    }
+    return buf;
+  }
+
+  /**
+   * Pack REF and ALT allele into a {@code long}.
+   *
+   * <p>Bits 58-61 hold the REF length, bits 54-57 the ALT length, and the lower bits the bases of
+   * REF followed by ALT with two bits per base.
+   *
+   * @return the packed alleles or {@code -1} if they cannot be packed.
+   */
+  static long packAlleles(String ref, String alt) {
+    if (ref.length() > MAX_PACKED_ALLELE_LEN
+        || alt.length() > MAX_PACKED_ALLELE_LEN
+        || ref.length() + alt.length() > MAX_PACKED_BASES) {
+      return -1;
+    }
+    long result = ((long) ref.length() << 58) | ((long) alt.length() << 54);
+    int shift = 0;
+    for (String allele : new String[] {ref, alt}) {
+      for (int i = 0; i < allele.length(); ++i) {
+        final long code;
+        switch (allele.charAt(i)) {
+          case 'A':
+            code = 0;
+            break;
+          case 'C':
+            code = 1;
+            break;
+          case 'G':
+            code = 2;
+            break;
+          case 'T':
+            code = 3;
+            break;
+          default:
+            return -1;
+        }
+        result |= code << shift;
+        shift += 2;
+      }
+    }
+    return result;
+  }
+
+  @Override
+  public void close() throws IOException {
+    file.close();
+  }
+}
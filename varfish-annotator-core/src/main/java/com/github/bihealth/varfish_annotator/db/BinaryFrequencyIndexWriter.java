@@ -0,0 +1,168 @@
+package com.github.bihealth.varfish_annotator.db;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writer for {@link BinaryFrequencyIndex} files.
+ *
+ * <p>Records must be added ordered by the chromosome's position in the list passed to the
+ * constructor and by start position.
+ */
+public final class BinaryFrequencyIndexWriter implements Closeable {
+
+  /** Path to the output file. */
+  private final File file;
+
+  /** Temporary file for the overflow region. */
+  private final File overflowFile;
+
+  /** Chromosome number by name. */
+  private final Map<String, Integer> chromNos;
+
+  /** Output stream for header and records. */
+  private final DataOutputStream out;
+
+  /** Output stream for the overflow region. */
+  private final DataOutputStream overflowOut;
+
+  /** Offset of the first record in the file. */
+  private final long recordsOffset;
+
+  /** Number of bytes written to the overflow region so far. */
+  private long overflowSize;
+
+  /** Number of records written so far. */
+  private long numRecords;
+
+  /** Chromosome number of the last record. */
+  private int prevChromNo;
+
+  /** Start position of the last record. */
+  private int prevStart;
+
+  /**
+   * Create the file and write the header.
+   *
+   * @param file Path to the output file.
+   * @param release Genome release of the records.
+   * @param tableRowCount Number of rows of the source table, for detecting stale indices.
+   * @param chroms Chromosome names in the order of the records.
+   * @throws IOException in case of problems with writing
+   */
+  public BinaryFrequencyIndexWriter(
+      File file, String release, long tableRowCount, List<String> chroms) throws IOException {
+    this.file = file;
+    this.overflowFile = new File(file.getPath() + ".overflow.tmp");
+    this.chromNos = new HashMap<>();
+    for (String chrom : chroms) {
+      chromNos.put(chrom, chromNos.size());
+    }
+
+    this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 20));
+    this.overflowOut =
+        new DataOutputStream(new BufferedOutputStream(new FileOutputStream(overflowFile)));
+
+    // The counts and offsets are patched in close().
+    out.write(BinaryFrequencyIndex.MAGIC);
+    out.writeInt(BinaryFrequencyIndex.VERSION);
+    out.writeLong(0); // number of records
+    out.writeLong(0); // offset of records
+    out.writeLong(0); // offset of overflow region
+    out.writeUTF(release);
+    out.writeLong(tableRowCount);
+    out.writeInt(chroms.size());
+    for (String chrom : chroms) {
+      out.writeUTF(chrom);
+    }
+    this.recordsOffset = out.size();
+    this.overflowSize = 0;
+    this.numRecords = 0;
+    this.prevChromNo = 0;
+    this.prevStart = 0;
+  }
+
+  /**
+   * Add record.
+   *
+   * @throws IOException in case of problems with writing
+   * @throws IllegalArgumentException if the chromosome is unknown or the record is out of order
+   */
+  public void add(
+      String chrom, int start, String ref, String alt, double af, int het, int hom, int hemi)
+      throws IOException {
+    final Integer chromNo = chromNos.get(chrom);
+    if (chromNo == null) {
+      throw new IllegalArgumentException("Unknown chromosome: " + chrom);
+    }
+    if (chromNo < prevChromNo || (chromNo == prevChromNo && start < prevStart)) {
+      throw new IllegalArgumentException(
+          "Record out of order: " + chrom + ":" + start + " " + ref + ">" + alt);
+    }
+
+    long alleles = BinaryFrequencyIndex.packAlleles(ref, alt);
+    if (alleles == -1) {
+      alleles = BinaryFrequencyIndex.OVERFLOW_FLAG | overflowSize;
+      for (String allele : new String[] {ref, alt}) {
+        final byte[] bytes = allele.getBytes(StandardCharsets.UTF_8);
+        overflowOut.writeInt(bytes.length);
+        overflowOut.write(bytes);
+        overflowSize += 4 + bytes.length;
+      }
+    }
+
+    out.writeInt(chromNo);
+    out.writeInt(start);
+    out.writeLong(alleles);
+    out.writeDouble(af);
+    out.writeInt(het);
+    out.writeInt(hom);
+    out.writeInt(hemi);
+
+    numRecords += 1;
+    prevChromNo = chromNo;
+    prevStart = start;
+  }
+
+  /** @return the number of records written so far. */
+  public long getNumRecords() {
+    return numRecords;
+  }
+
+  /** Append the overflow region and finalize the header. */
+  @Override
+  public void close() throws IOException {
+    try {
+      overflowOut.close();
+      try (InputStream in = new BufferedInputStream(new FileInputStream(overflowFile))) {
+        final byte[] buffer = new byte[1 << 16];
+        int numRead;
+        while ((numRead = in.read(buffer)) != -1) {
+          out.write(buffer, 0, numRead);
+        }
+      }
+      out.close();
+
+      try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+        raf.seek(BinaryFrequencyIndex.NUM_RECORDS_OFFSET);
+        raf.writeLong(numRecords);
+        raf.writeLong(recordsOffset);
+        raf.writeLong(recordsOffset + numRecords * BinaryFrequencyIndex.RECORD_SIZE);
+      }
+    } finally {
+      overflowFile.delete();
+    }
+  }
+}
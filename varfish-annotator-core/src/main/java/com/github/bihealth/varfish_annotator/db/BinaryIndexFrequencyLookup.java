@@ -0,0 +1,51 @@
+package com.github.bihealth.varfish_annotator.db;
+
+import com.github.bihealth.varfish_annotator.VarfishAnnotatorException;
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * {@link FrequencyLookup} that answers frequency queries from {@link BinaryFrequencyIndex} files.
+ *
+ * <p>Tables without a binary index and ClinVar are queried through a delegate.
+ */
+public final class BinaryIndexFrequencyLookup implements FrequencyLookup {
+
+  /** Binary indices by table prefix, shared between threads and not closed by this class. */
+  private final Map<String, BinaryFrequencyIndex> indices;
+
+  /** Lookup for everything not in {@link #indices}. */
+  private final FrequencyLookup delegate;
+
+  /** Constructor. */
+  public BinaryIndexFrequencyLookup(
+      Map<String, BinaryFrequencyIndex> indices, FrequencyLookup delegate) {
+    this.indices = indices;
+    this.delegate = delegate;
+  }
+
+  @Override
+  public DbInfo getDbInfo(String prefix, String chrom, int start, String ref, String alt)
+      throws VarfishAnnotatorException {
+    final BinaryFrequencyIndex index = indices.get(prefix);
+    if (index == null) {
+      return delegate.getDbInfo(prefix, chrom, start, ref, alt);
+    }
+    try {
+      return index.lookup(chrom, start, ref, alt);
+    } catch (IOException e) {
+      throw new VarfishAnnotatorException("Problem with querying binary index of " + prefix, e);
+    }
+  }
+
+  @Override
+  public boolean isInClinvar(String chrom, int start, String ref, String alt)
+      throws VarfishAnnotatorException {
+    return delegate.isInClinvar(chrom, start, ref, alt);
+  }
+
+  @Override
+  public void close() throws VarfishAnnotatorException {
+    delegate.close();
+  }
+}
@@ -0,0 +1,57 @@
+package com.github.bihealth.varfish_annotator.db;
+
+import com.github.bihealth.varfish_annotator.VarfishAnnotatorException;
+import java.util.Map;
+
+/**
+ * {@link FrequencyLookup} that skips queries for variants that a {@link VariantBloomFilter} rules
+ * out and passes all other queries to a delegate.
+ */
+public final class BloomFilterFrequencyLookup implements FrequencyLookup {
+
+  /** Filters by table name, shared between threads. */
+  private final Map<String, VariantBloomFilter> filters;
+
+  /** Lookup for the variants that pass the filters. */
+  private final FrequencyLookup delegate;
+
+  /** Constructor. */
+  public BloomFilterFrequencyLookup(
+      Map<String, VariantBloomFilter> filters, FrequencyLookup delegate) {
+    this.filters = filters;
+    this.delegate = delegate;
+  }
+
+  @Override
+  public DbInfo getDbInfo(String prefix, String chrom, int start, String ref, String alt)
+      throws VarfishAnnotatorException {
+    final VariantBloomFilter filter = filters.get(prefix + "_var");
+    if (filter != null && !filter.mightContain(chrom, start, ref, alt)) {
+      return DbInfo.nullValue();
+    }
+    final DbInfo result = delegate.getDbInfo(prefix, chrom, start, ref, alt);
+    if (filter != null && result.isNull()) {
+      filter.recordFalsePositive();
+    }
+    return result;
+  }
+
+  @Override
+  public boolean isInClinvar(String chrom, int start, String ref, String alt)
+      throws VarfishAnnotatorException {
+    final VariantBloomFilter filter = filters.get(PointQueryFrequencyLookup.CLINVAR_TABLE);
+    if (filter != null && !filter.mightContain(chrom, start, ref, alt)) {
+      return false;
+    }
+    final boolean result = delegate.isInClinvar(chrom, start, ref, alt);
+    if (filter != null && !result) {
+      filter.recordFalsePositive();
+    }
+    return result;
+  }
+
+  @Override
+  public void close() throws VarfishAnnotatorException {
+    delegate.close();
+  }
+}
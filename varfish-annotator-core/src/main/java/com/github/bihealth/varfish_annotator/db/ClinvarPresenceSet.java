@@ -0,0 +1,143 @@
+package com.github.bihealth.varfish_annotator.db;
+
+import com.github.bihealth.varfish_annotator.VarfishAnnotatorException;
+import com.github.bihealth.varfish_annotator.utils.LongHashSet;
+import com.github.bihealth.varfish_annotator.utils.VariantKey;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * In-memory set of the variants in the ClinVar table for one release.
+ *
+ * <p>Variants are kept as {@link VariantKey}s in {@link LongHashSet}s, separately for table rows
+ * with and without "chr" prefix such that the answers are the same as for SQL queries. The few
+ * variants without exact key are kept as strings, as are the mitochondrial ones because "M" and
+ * "MT" share their key. Instances are thread-safe once loaded.
+ */
+public final class ClinvarPresenceSet {
+
+  /** Estimated number of bytes per row, used for checking the memory budget. */
+  public static final long BYTES_PER_ROW = 32;
+
+  /** Number of bases covered by one range scan when loading. */
+  static final int WINDOW_SIZE = 10_000_000;
+
+  /** Keys of rows with chromosome names without "chr" prefix. */
+  private final LongHashSet plainKeys;
+
+  /** Keys of rows with chromosome names with "chr" prefix. */
+  private final LongHashSet chrKeys;
+
+  /** Chromosome number of the mitochondrial genome, see {@link VariantKey#getChromNo(String)}. */
+  private static final int MITO_CHROM_NO = 25;
+
+  /** Rows without exact {@link VariantKey} or on the mitochondrial genome. */
+  private final Set<String> otherRows;
+
+  private ClinvarPresenceSet(int expectedSize) {
+    this.plainKeys = new LongHashSet(expectedSize);
+    this.chrKeys = new LongHashSet();
+    this.otherRows = new HashSet<>();
+  }
+
+  /**
+   * Load ClinVar variants of {@code release} if they fit into {@code maxBytes}.
+   *
+   * @param conn Database connection to use.
+   * @param release Genome release to load.
+   * @param maxBytes Memory budget in bytes.
+   * @return The loaded set or {@code null} if the table is too large for the budget.
+   * @throws VarfishAnnotatorException in case of problems with loading
+   */
+  public static ClinvarPresenceSet load(Connection conn, String release, long maxBytes)
+      throws VarfishAnnotatorException {
+    final String table = PointQueryFrequencyLookup.CLINVAR_TABLE;
+    try {
+      final Map<String, Integer> maxStarts = new LinkedHashMap<>();
+      long numRows = 0;
+      try (PreparedStatement stmt =
+          conn.prepareStatement(
+              "SELECT chrom, MAX(start), COUNT(*) FROM "
+                  + table
+                  + " WHERE release = ? GROUP BY chrom")) {
+        stmt.setString(1, release);
+        try (ResultSet rs = stmt.executeQuery()) {
+          while (rs.next()) {
+            maxStarts.put(rs.getString(1), rs.getInt(2));
+            numRows += rs.getLong(3);
+          }
+        }
+      }
+      if (numRows * BYTES_PER_ROW > maxBytes || numRows > Integer.MAX_VALUE) {
+        return null;
+      }
+
+      final ClinvarPresenceSet result = new ClinvarPresenceSet((int) numRows);
+      try (PreparedStatement stmt =
+          conn.prepareStatement(
+              "SELECT start, ref, alt FROM "
+                  + table
+                  + " WHERE (release = ?) AND (chrom = ?) AND (start >= ?) AND (start < ?)")) {
+        for (Map.Entry<String, Integer> entry : maxStarts.entrySet()) {
+          for (long begin = 0; begin <= entry.getValue(); begin += WINDOW_SIZE) {
+            stmt.setString(1, release);
+            stmt.setString(2, entry.getKey());
+            stmt.setLong(3, begin);
+            stmt.setLong(4, begin + WINDOW_SIZE);
+            try (ResultSet rs = stmt.executeQuery()) {
+              while (rs.next()) {
+                result.add(entry.getKey(), rs.getInt(1), rs.getString(2), rs.getString(3));
+              }
+            }
+          }
+        }
+      }
+      return result;
+    } catch (SQLException e) {
+      throw new VarfishAnnotatorException("Problem with loading " + table, e);
+    }
+  }
+
+  private void add(String chrom, int start, String ref, String alt) {
+    final long key = VariantKey.of(chrom, start, ref, alt);
+    if (isOther(key)) {
+      otherRows.add(buildKey(chrom, start, ref, alt));
+    } else if (chrom.startsWith("chr")) {
+      chrKeys.add(key);
+    } else {
+      plainKeys.add(key);
+    }
+  }
+
+  /** @return whether the variant is in ClinVar. */
+  public boolean contains(String chrom, int start, String ref, String alt) {
+    final long key = VariantKey.of(chrom, start, ref, alt);
+    if (isOther(key)) {
+      return otherRows.contains(buildKey(chrom, start, ref, alt));
+    } else if (chrom.startsWith("chr")) {
+      return chrKeys.contains(key);
+    } else {
+      return plainKeys.contains(key);
+    }
+  }
+
+  /** @return number of loaded variants. */
+  public int size() {
+    return plainKeys.size() + chrKeys.size() + otherRows.size();
+  }
+
+  /** @return whether the row for {@code key} must be kept in {@link #otherRows}. */
+  private static boolean isOther(long key) {
+    return !VariantKey.isExact(key) || VariantKey.getChromNo(key) == MITO_CHROM_NO;
+  }
+
+  private static String buildKey(String chrom, int start, String ref, String alt) {
+    return chrom + "\t" + start + "\t" + ref + "\t" + alt;
+  }
+}
@@ -0,0 +1,39 @@
+package com.github.bihealth.varfish_annotator.db;
+
+import com.github.bihealth.varfish_annotator.VarfishAnnotatorException;
+
+/**
+ * {@link FrequencyLookup} that answers ClinVar queries from a {@link ClinvarPresenceSet} and passes
+ * all other queries to a delegate.
+ */
+public final class ClinvarPresenceSetFrequencyLookup implements FrequencyLookup {
+
+  /** The preloaded ClinVar variants, shared between threads. */
+  private final ClinvarPresenceSet clinvarSet;
+
+  /** Lookup for the frequency queries. */
+  private final FrequencyLookup delegate;
+
+  /** Constructor. */
+  public ClinvarPresenceSetFrequencyLookup(
+      ClinvarPresenceSet clinvarSet, FrequencyLookup delegate) {
+    this.clinvarSet = clinvarSet;
+    this.delegate = delegate;
+  }
+
+  @Override
+  public DbInfo getDbInfo(String prefix, String chrom, int start, String ref, String alt)
+      throws VarfishAnnotatorException {
+    return delegate.getDbInfo(prefix, chrom, start, ref, alt);
+  }
+
+  @Override
+  public boolean isInClinvar(String chrom, int start, String ref, String alt) {
+    return clinvarSet.contains(chrom, start, ref, alt);
+  }
+
+  @Override
+  public void close() throws VarfishAnnotatorException {
+    delegate.close();
+  }
+}
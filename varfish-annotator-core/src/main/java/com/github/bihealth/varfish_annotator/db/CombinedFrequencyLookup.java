@@ -0,0 +1,153 @@
+package com.github.bihealth.varfish_annotator.db;
+
+import com.github.bihealth.varfish_annotator.VarfishAnnotatorException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@link FrequencyLookup} using the denormalized {@link DbConstants#COMBINED_TABLE_NAME} table.
+ *
+ * <p>The row of the last queried variant is cached, such that the frequency and ClinVar queries for
+ * one allele result in a single database query.
+ */
+public final class CombinedFrequencyLookup implements FrequencyLookup {
+
+  /** Database connection to use for the queries. */
+  private final Connection conn;
+
+  /** Genome release to query for. */
+  private final String release;
+
+  /** Prefixes of the frequency columns. */
+  private final List<String> prefixes;
+
+  /** Statement for the lookup, prepared on first use. */
+  private PreparedStatement stmt;
+
+  /** Key of the cached row. */
+  private String cachedKey;
+
+  /** Frequency information of the cached row by prefix, empty if the variant was not found. */
+  private final Map<String, DbInfo> cachedDbInfos;
+
+  /** ClinVar flag for chromosome names without "chr" of the cached row. */
+  private boolean cachedClinvarPlain;
+
+  /** ClinVar flag for chromosome names with "chr" of the cached row. */
+  private boolean cachedClinvarChr;
+
+  /**
+   * Constructor.
+   *
+   * @param conn Database connection to use for the queries.
+   * @param release Genome release to query for.
+   * @param prefixes Prefixes of the frequency columns in the combined table.
+   */
+  public CombinedFrequencyLookup(Connection conn, String release, List<String> prefixes) {
+    this.conn = conn;
+    this.release = release;
+    this.prefixes = prefixes;
+    this.stmt = null;
+    this.cachedKey = null;
+    this.cachedDbInfos = new HashMap<>();
+  }
+
+  @Override
+  public DbInfo getDbInfo(String prefix, String chrom, int start, String ref, String alt)
+      throws VarfishAnnotatorException {
+    fetch(chrom, start, ref, alt);
+    final DbInfo result = cachedDbInfos.get(prefix);
+    return (result == null) ? DbInfo.nullValue() : result;
+  }
+
+  @Override
+  public boolean isInClinvar(String chrom, int start, String ref, String alt)
+      throws VarfishAnnotatorException {
+    fetch(chrom, start, ref, alt);
+    return chrom.startsWith("chr") ? cachedClinvarChr : cachedClinvarPlain;
+  }
+
+  /** Load row of the variant unless it is cached already. */
+  private void fetch(String chrom, int start, String ref, String alt)
+      throws VarfishAnnotatorException {
+    final String plainChrom = chrom.startsWith("chr") ? chrom.substring(3) : chrom;
+    final String key = plainChrom + ":" + start + ":" + ref + ":" + alt;
+    if (key.equals(cachedKey)) {
+      return;
+    }
+
+    cachedKey = null;
+    cachedDbInfos.clear();
+    cachedClinvarPlain = false;
+    cachedClinvarChr = false;
+    try {
+      if (stmt == null) {
+        stmt = conn.prepareStatement(buildQuery());
+      }
+      stmt.setString(1, release);
+      stmt.setString(2, plainChrom);
+      stmt.setInt(3, start);
+      stmt.setString(4, ref);
+      stmt.setString(5, alt);
+      try (ResultSet rs = stmt.executeQuery()) {
+        if (rs.next()) {
+          int col = 1;
+          for (String prefix : prefixes) {
+            final double af = rs.getDouble(col);
+            if (!rs.wasNull()) {
+              cachedDbInfos.put(
+                  prefix,
+                  new DbInfo(af, rs.getInt(col + 1), rs.getInt(col + 2), rs.getInt(col + 3)));
+            }
+            col += 4;
+          }
+          cachedClinvarPlain = rs.getBoolean(col);
+          cachedClinvarChr = rs.getBoolean(col + 1);
+        }
+      }
+    } catch (SQLException e) {
+      throw new VarfishAnnotatorException("Problem with querying combined table", e);
+    }
+    cachedKey = key;
+  }
+
+  private String buildQuery() {
+    final StringBuilder result = new StringBuilder().append("SELECT ");
+    for (String prefix : prefixes) {
+      result
+          .append(prefix)
+          .append("_af, ")
+          .append(prefix)
+          .append("_het, ")
+          .append(prefix)
+          .append("_hom, ")
+          .append(prefix)
+          .append("_hemi, ");
+    }
+    return result
+        .append(DbConstants.COMBINED_CLINVAR_PLAIN)
+        .append(", ")
+        .append(DbConstants.COMBINED_CLINVAR_CHR)
+        .append(" FROM ")
+        .append(DbConstants.COMBINED_TABLE_NAME)
+        .append(" WHERE (release = ?) AND (chrom = ?) AND (start = ?)")
+        .append(" AND (ref = ?) AND (alt = ?)")
+        .toString();
+  }
+
+  @Override
+  public void close() throws VarfishAnnotatorException {
+    if (stmt != null) {
+      try {
+        stmt.close();
+      } catch (SQLException e) {
+        throw new VarfishAnnotatorException("Problem closing statement", e);
+      }
+    }
+  }
+}
@@ -0,0 +1,153 @@
+package com.github.bihealth.varfish_annotator.db;
+
+import com.github.bihealth.varfish_annotator.VarfishAnnotatorException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+/**
+ * {@link FrequencyLookup} that runs the queries of {@link #lookupAll} concurrently.
+ *
+ * <p>Each query borrows one of several lookups from a pool, each lookup uses its own read-only
+ * database connection. This hides the latency of the storage, e.g., on shared file systems. The
+ * pool and the executor are owned by this object and released in {@link #close()}.
+ */
+public final class ConcurrentFrequencyLookup implements FrequencyLookup {
+
+  /** The connections of the pool. */
+  private final List<Connection> connections;
+
+  /** The lookups of the pool. */
+  private final List<FrequencyLookup> lookups;
+
+  /** Currently idle lookups. */
+  private final BlockingQueue<FrequencyLookup> idleLookups;
+
+  /** Executor for the queries. */
+  private final ExecutorService executor;
+
+  /**
+   * Constructor.
+   *
+   * @param connections The read-only connections to use, one query runs on each at a time.
+   * @param lookupFactory Function for creating a lookup on one of the connections.
+   */
+  public ConcurrentFrequencyLookup(
+      List<Connection> connections, Function<Connection, FrequencyLookup> lookupFactory) {
+    this.connections = connections;
+    this.lookups = new ArrayList<>();
+    this.idleLookups = new ArrayBlockingQueue<>(connections.size());
+    for (Connection conn : connections) {
+      final FrequencyLookup lookup = lookupFactory.apply(conn);
+      lookups.add(lookup);
+      idleLookups.add(lookup);
+    }
+    this.executor = Executors.newFixedThreadPool(connections.size());
+  }
+
+  @Override
+  public DbInfo getDbInfo(String prefix, String chrom, int start, String ref, String alt)
+      throws VarfishAnnotatorException {
+    return withLookup(lookup -> lookup.getDbInfo(prefix, chrom, start, ref, alt));
+  }
+
+  @Override
+  public boolean isInClinvar(String chrom, int start, String ref, String alt)
+      throws VarfishAnnotatorException {
+    return withLookup(lookup -> lookup.isInClinvar(chrom, start, ref, alt));
+  }
+
+  @Override
+  public FrequencyLookupResult lookupAll(
+      Map<String, String> chromByPrefix, String clinvarChrom, int start, String ref, String alt)
+      throws VarfishAnnotatorException {
+    final Map<String, Future<DbInfo>> dbInfoFutures = new HashMap<>();
+    for (Map.Entry<String, String> entry : chromByPrefix.entrySet()) {
+      dbInfoFutures.put(
+          entry.getKey(),
+          submit(lookup -> lookup.getDbInfo(entry.getKey(), entry.getValue(), start, ref, alt)));
+    }
+    final Future<Boolean> clinvarFuture =
+        submit(lookup -> lookup.isInClinvar(clinvarChrom, start, ref, alt));
+
+    final Map<String, DbInfo> dbInfos = new HashMap<>();
+    for (Map.Entry<String, Future<DbInfo>> entry : dbInfoFutures.entrySet()) {
+      dbInfos.put(entry.getKey(), join(entry.getValue()));
+    }
+    return new FrequencyLookupResult(dbInfos, join(clinvarFuture));
+  }
+
+  /** A query against one lookup. */
+  private interface Query<T> {
+    T run(FrequencyLookup lookup) throws VarfishAnnotatorException;
+  }
+
+  private <T> Future<T> submit(Query<T> query) {
+    final Callable<T> task = () -> withLookup(query);
+    return executor.submit(task);
+  }
+
+  private <T> T withLookup(Query<T> query) throws VarfishAnnotatorException {
+    final FrequencyLookup lookup;
+    try {
+      lookup = idleLookups.take();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new VarfishAnnotatorException("Interrupted while waiting for lookup", e);
+    }
+    try {
+      return query.run(lookup);
+    } finally {
+      idleLookups.add(lookup);
+    }
+  }
+
+  private static <T> T join(Future<T> future) throws VarfishAnnotatorException {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new VarfishAnnotatorException("Interrupted while waiting for lookup", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof VarfishAnnotatorException) {
+        throw (VarfishAnnotatorException) e.getCause();
+      } else {
+        throw new VarfishAnnotatorException("Problem with concurrent lookup", e.getCause());
+      }
+    }
+  }
+
+  @Override
+  public void close() throws VarfishAnnotatorException {
+    executor.shutdownNow();
+    VarfishAnnotatorException problem = null;
+    for (FrequencyLookup lookup : lookups) {
+      try {
+        lookup.close();
+      } catch (VarfishAnnotatorException e) {
+        problem = e;
+      }
+    }
+    for (Connection conn : connections) {
+      try {
+        conn.close();
+      } catch (SQLException e) {
+        problem = new VarfishAnnotatorException("Problem closing connection", e);
+      }
+    }
+    if (problem != null) {
+      throw problem;
+    }
+  }
+}
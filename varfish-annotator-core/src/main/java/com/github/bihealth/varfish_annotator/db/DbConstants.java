@@ -5,4 +5,16 @@ public class DbConstants {
 
   /** The name of the table in the database. */
   public static final String TABLE_NAME = "db_release_info";
+
+  /** The name of the combined frequency and ClinVar table. */
+  public static final String COMBINED_TABLE_NAME = "combined_var";
+
+  /** The name of the table with the row counts of the source tables of the combined table. */
+  public static final String COMBINED_SOURCES_TABLE_NAME = "combined_var_sources";
+
+  /** Column of the combined table flagging ClinVar records with chromosome name without "chr". */
+  public static final String COMBINED_CLINVAR_PLAIN = "clinvar_plain";
+
+  /** Column of the combined table flagging ClinVar records with chromosome name with "chr". */
+  public static final String COMBINED_CLINVAR_CHR = "clinvar_chr";
 }
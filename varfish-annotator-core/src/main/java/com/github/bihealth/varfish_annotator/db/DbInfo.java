@@ -28,6 +28,11 @@ public class DbInfo {
     this.hemiTotal = hemiTotal;
   }
 
+  /** @return whether this is the "not found" value from {@link #nullValue()}. */
+  public boolean isNull() {
+    return afPopmax == null && hetTotal == null && homTotal == null && hemiTotal == null;
+  }
+
   /**
    * @return String with allele frequency in population with maximal allele frequency or "." if
    *     null.
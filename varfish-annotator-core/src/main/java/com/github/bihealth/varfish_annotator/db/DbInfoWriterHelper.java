@@ -1,8 +1,12 @@
 package com.github.bihealth.varfish_annotator.db;
 
 import com.github.bihealth.varfish_annotator.VarfishAnnotatorException;
+import com.github.bihealth.varfish_annotator.utils.AsyncFileOutputStream;
+import com.github.bihealth.varfish_annotator.utils.GzipUtil;
 import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Paths;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
@@ -11,6 +15,28 @@ import java.sql.SQLException;
 /** Helper class for writing out information about database to output TSV file. */
 public class DbInfoWriterHelper {
 
+  /**
+   * Write information about used databases to TSV file at {@code path}, gzip compressed if it ends
+   * with <code>".gz"</code>.
+   *
+   * @param conn Database connection to get the information from.
+   * @param path Path to the output file.
+   * @param genomeRelease The genome release to write out.
+   * @param classForVersion The Java class to use for extracting the version.
+   * @throws VarfishAnnotatorException in case of problems
+   */
+  public void writeDbInfos(
+      Connection conn, String path, String genomeRelease, Class classForVersion)
+      throws VarfishAnnotatorException {
+    try (OutputStream stream = new AsyncFileOutputStream(Paths.get(path));
+        BufferedWriter dbInfoWriter =
+            new BufferedWriter(GzipUtil.maybeOpenGzipOutputStream(stream, path))) {
+      writeDbInfos(conn, dbInfoWriter, genomeRelease, classForVersion);
+    } catch (IOException e) {
+      throw new VarfishAnnotatorException("Could not write database information to " + path, e);
+    }
+  }
+
   /**
    * Write information about used databases to TSV file.
    *
@@ -0,0 +1,67 @@
+package com.github.bihealth.varfish_annotator.db;
+
+import com.github.bihealth.varfish_annotator.VarfishAnnotatorException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Lookup of small variants in the frequency (ExAC, gnomAD, Thousand Genomes) and ClinVar tables.
+ *
+ * <p>Implementations are not thread-safe, each thread must use its own instance.
+ */
+public interface FrequencyLookup extends AutoCloseable {
+
+  /**
+   * Query frequency table for information about variant.
+   *
+   * @param prefix Prefix of the table to query, e.g., {@code "exac"}.
+   * @param chrom Chromosome name as used in the table.
+   * @param start 1-based start position of the variant.
+   * @param ref Reference allele.
+   * @param alt Alternative allele.
+   * @return {@link DbInfo} for the variant, {@link DbInfo#nullValue()} if not found.
+   * @throws VarfishAnnotatorException in case of problems with obtaining information
+   */
+  DbInfo getDbInfo(String prefix, String chrom, int start, String ref, String alt)
+      throws VarfishAnnotatorException;
+
+  /**
+   * Query ClinVar table for presence of variant.
+   *
+   * @param chrom Chromosome name as used in the table.
+   * @param start 1-based start position of the variant.
+   * @param ref Reference allele.
+   * @param alt Alternative allele.
+   * @return whether the variant is in ClinVar.
+   * @throws VarfishAnnotatorException in case of problems with obtaining information
+   */
+  boolean isInClinvar(String chrom, int start, String ref, String alt)
+      throws VarfishAnnotatorException;
+
+  /**
+   * Query the given frequency tables and ClinVar for one variant.
+   *
+   * <p>The default implementation performs the queries one after another.
+   *
+   * @param chromByPrefix Chromosome name as used in the table by prefix of the tables to query.
+   * @param clinvarChrom Chromosome name for querying ClinVar.
+   * @param start 1-based start position of the variant.
+   * @param ref Reference allele.
+   * @param alt Alternative allele.
+   * @return The combined result.
+   * @throws VarfishAnnotatorException in case of problems with obtaining information
+   */
+  default FrequencyLookupResult lookupAll(
+      Map<String, String> chromByPrefix, String clinvarChrom, int start, String ref, String alt)
+      throws VarfishAnnotatorException {
+    final Map<String, DbInfo> dbInfos = new HashMap<>();
+    for (Map.Entry<String, String> entry : chromByPrefix.entrySet()) {
+      dbInfos.put(entry.getKey(), getDbInfo(entry.getKey(), entry.getValue(), start, ref, alt));
+    }
+    return new FrequencyLookupResult(dbInfos, isInClinvar(clinvarChrom, start, ref, alt));
+  }
+
+  /** Release all resources. */
+  @Override
+  void close() throws VarfishAnnotatorException;
+}
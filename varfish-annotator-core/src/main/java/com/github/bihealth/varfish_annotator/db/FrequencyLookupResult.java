@@ -0,0 +1,29 @@
+package com.github.bihealth.varfish_annotator.db;
+
+import java.util.Map;
+
+/** Result of {@link FrequencyLookup#lookupAll}: frequency information and ClinVar membership. */
+public final class FrequencyLookupResult {
+
+  /** Frequency information by table prefix. */
+  private final Map<String, DbInfo> dbInfos;
+
+  /** Whether the variant is in ClinVar. */
+  private final boolean inClinvar;
+
+  /** Constructor. */
+  public FrequencyLookupResult(Map<String, DbInfo> dbInfos, boolean inClinvar) {
+    this.dbInfos = dbInfos;
+    this.inClinvar = inClinvar;
+  }
+
+  /** @return frequency information for table {@code prefix}, "not found" if it was not queried. */
+  public DbInfo getDbInfo(String prefix) {
+    final DbInfo result = dbInfos.get(prefix);
+    return (result == null) ? DbInfo.nullValue() : result;
+  }
+
+  public boolean isInClinvar() {
+    return inClinvar;
+  }
+}
@@ -0,0 +1,281 @@
+package com.github.bihealth.varfish_annotator.db;
+
+import com.github.bihealth.varfish_annotator.VarfishAnnotatorException;
+import com.github.bihealth.varfish_annotator.utils.LongObjectHashMap;
+import com.github.bihealth.varfish_annotator.utils.VariantKey;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@link FrequencyLookup} that joins a coordinate-sorted variant stream with sequential scans of
+ * the tables.
+ *
+ * <p>For each table, a cursor scans the current contig in ascending windows of {@link
+ * #WINDOW_SIZE} bases, using the primary key index on {@code (release, chrom, start, ref, alt)}.
+ * The rows of the last {@link #NUM_WINDOWS} windows are kept in memory such that variants that have
+ * been shifted to the left by normalization are found without going back to the database.
+ *
+ * <p>Loading a window materializes all of its rows, which only pays off for dense input. Thus, a
+ * window is loaded once it has seen {@link #MIN_QUERIES_PER_WINDOW} queries, or right away if it
+ * follows a loaded window that has seen as many. All other queries (e.g., for sparse or unsorted
+ * input) are answered by a {@link PointQueryFrequencyLookup}, so the results are always the same as
+ * with point queries.
+ */
+public final class MergeJoinFrequencyLookup implements FrequencyLookup {
+
+  /** Number of bases covered by the window of one range scan. */
+  static final int WINDOW_SIZE = 65_536;
+
+  /** Number of windows to keep per table. */
+  static final int NUM_WINDOWS = 2;
+
+  /** Number of queries for a window from which on it is loaded. */
+  static final int MIN_QUERIES_PER_WINDOW = 16;
+
+  /** Database connection to use for the queries. */
+  private final Connection conn;
+
+  /** Genome release to query for. */
+  private final String release;
+
+  /** Lookup used for positions that are not covered by the cursors. */
+  private final PointQueryFrequencyLookup fallback;
+
+  /** Cursors by table name. */
+  private final Map<String, TableCursor> cursors;
+
+  /** Constructor. */
+  public MergeJoinFrequencyLookup(Connection conn, String release) {
+    this.conn = conn;
+    this.release = release;
+    this.fallback = new PointQueryFrequencyLookup(conn, release);
+    this.cursors = new HashMap<>();
+  }
+
+  @Override
+  public DbInfo getDbInfo(String prefix, String chrom, int start, String ref, String alt)
+      throws VarfishAnnotatorException {
+    final TableCursor cursor =
+        getCursor(
+            prefix + "_var",
+            prefix + "_af, " + prefix + "_het, " + prefix + "_hom, " + prefix + "_hemi");
+    final Window window = cursor.getWindow(chrom, start);
+    if (window == null) {
+      return fallback.getDbInfo(prefix, chrom, start, ref, alt);
+    }
+    final DbInfo result = window.get(chrom, start, ref, alt);
+    return (result == null) ? DbInfo.nullValue() : result;
+  }
+
+  @Override
+  public boolean isInClinvar(String chrom, int start, String ref, String alt)
+      throws VarfishAnnotatorException {
+    final TableCursor cursor = getCursor(PointQueryFrequencyLookup.CLINVAR_TABLE, null);
+    final Window window = cursor.getWindow(chrom, start);
+    if (window == null) {
+      return fallback.isInClinvar(chrom, start, ref, alt);
+    }
+    return window.get(chrom, start, ref, alt) != null;
+  }
+
+  private TableCursor getCursor(String table, String columns) throws VarfishAnnotatorException {
+    TableCursor cursor = cursors.get(table);
+    if (cursor == null) {
+      cursor = new TableCursor(table, columns);
+      cursors.put(table, cursor);
+    }
+    return cursor;
+  }
+
+  @Override
+  public void close() throws VarfishAnnotatorException {
+    VarfishAnnotatorException problem = null;
+    for (TableCursor cursor : cursors.values()) {
+      try {
+        cursor.close();
+      } catch (VarfishAnnotatorException e) {
+        problem = e;
+      }
+    }
+    cursors.clear();
+    fallback.close();
+    if (problem != null) {
+      throw problem;
+    }
+  }
+
+  /**
+   * Rows of one window by {@link VariantKey}; rows whose key is not exact are kept by string key.
+   */
+  private static final class Window {
+
+    /** Rows with exact {@link VariantKey}. */
+    private final LongObjectHashMap<DbInfo> exactRows = new LongObjectHashMap<>();
+
+    /** Rows with long or non-ACGT alleles or on non-canonical contigs. */
+    private final Map<String, DbInfo> otherRows = new HashMap<>();
+
+    /** Number of queries answered from this window. */
+    private int numQueries;
+
+    void put(String chrom, int start, String ref, String alt, DbInfo dbInfo) {
+      final long key = VariantKey.of(chrom, start, ref, alt);
+      if (VariantKey.isExact(key)) {
+        exactRows.put(key, dbInfo);
+      } else {
+        otherRows.put(buildKey(start, ref, alt), dbInfo);
+      }
+    }
+
+    /** @return the row's information or {@code null} if the variant is not in the window. */
+    DbInfo get(String chrom, int start, String ref, String alt) {
+      final long key = VariantKey.of(chrom, start, ref, alt);
+      if (VariantKey.isExact(key)) {
+        return exactRows.get(key);
+      } else {
+        return otherRows.get(buildKey(start, ref, alt));
+      }
+    }
+
+    private static String buildKey(int start, String ref, String alt) {
+      return start + "\t" + ref + "\t" + alt;
+    }
+  }
+
+  /** Sequential scan of one table, one window at a time. */
+  private final class TableCursor {
+
+    /** Name of the table. */
+    private final String table;
+
+    /** Whether the table has frequency columns, {@code false} for ClinVar. */
+    private final boolean hasFrequencies;
+
+    /** Statement for the range scan. */
+    private final PreparedStatement stmt;
+
+    /** Contig of the kept windows. */
+    private String chrom;
+
+    /** Index of the first kept window. */
+    private int firstWindowNo;
+
+    /** The kept windows, starting with the one with index {@link #firstWindowNo}. */
+    private final List<Window> windows;
+
+    /** Index of the window that is not loaded and was queried last, -1 if none. */
+    private int pendingWindowNo;
+
+    /** Number of consecutive queries for the window with index {@link #pendingWindowNo}. */
+    private int numPendingQueries;
+
+    TableCursor(String table, String columns) throws VarfishAnnotatorException {
+      this.table = table;
+      this.hasFrequencies = (columns != null);
+      try {
+        this.stmt =
+            conn.prepareStatement(
+                "SELECT start, ref, alt"
+                    + (hasFrequencies ? ", " + columns : "")
+                    + " FROM "
+                    + table
+                    + " WHERE (release = ?) AND (chrom = ?) AND (start >= ?) AND (start < ?)");
+      } catch (SQLException e) {
+        throw new VarfishAnnotatorException("Problem preparing scan of " + table, e);
+      }
+      this.chrom = null;
+      this.firstWindowNo = 0;
+      this.windows = new ArrayList<>();
+      this.pendingWindowNo = -1;
+      this.numPendingQueries = 0;
+    }
+
+    /**
+     * Advance cursor to the window containing {@code start} if it is loaded or dense enough.
+     *
+     * @return The window or {@code null} if the query is to be answered by a point query.
+     */
+    Window getWindow(String chrom, int start) throws VarfishAnnotatorException {
+      final int windowNo = start / WINDOW_SIZE;
+      if (!chrom.equals(this.chrom)) {
+        this.chrom = chrom;
+        this.windows.clear();
+        this.pendingWindowNo = -1;
+      }
+
+      final int nextWindowNo = firstWindowNo + windows.size();
+      if (!windows.isEmpty() && windowNo >= firstWindowNo && windowNo < nextWindowNo) {
+        final Window window = windows.get(windowNo - firstWindowNo);
+        window.numQueries += 1;
+        return window;
+      }
+
+      // Load the window following a dense one right away, others once they have become dense.
+      final boolean isDenseNext =
+          !windows.isEmpty()
+              && windowNo == nextWindowNo
+              && windows.get(windows.size() - 1).numQueries >= MIN_QUERIES_PER_WINDOW;
+      if (!isDenseNext) {
+        if (windowNo != pendingWindowNo) {
+          pendingWindowNo = windowNo;
+          numPendingQueries = 0;
+        }
+        if (++numPendingQueries < MIN_QUERIES_PER_WINDOW) {
+          return null;
+        }
+      }
+      pendingWindowNo = -1;
+
+      if (windowNo != nextWindowNo) {
+        windows.clear();
+        firstWindowNo = windowNo;
+      }
+      final Window window = loadWindow(windowNo);
+      window.numQueries = isDenseNext ? 1 : MIN_QUERIES_PER_WINDOW;
+      windows.add(window);
+      while (windows.size() > NUM_WINDOWS) {
+        windows.remove(0);
+        firstWindowNo += 1;
+      }
+      return window;
+    }
+
+    private Window loadWindow(int windowNo) throws VarfishAnnotatorException {
+      final Window result = new Window();
+      try {
+        stmt.setString(1, release);
+        stmt.setString(2, chrom);
+        stmt.setInt(3, windowNo * WINDOW_SIZE);
+        stmt.setInt(4, (windowNo + 1) * WINDOW_SIZE);
+        try (ResultSet rs = stmt.executeQuery()) {
+          while (rs.next()) {
+            final DbInfo dbInfo;
+            if (hasFrequencies) {
+              dbInfo = new DbInfo(rs.getDouble(4), rs.getInt(5), rs.getInt(6), rs.getInt(7));
+            } else {
+              dbInfo = DbInfo.nullValue();
+            }
+            result.put(chrom, rs.getInt(1), rs.getString(2), rs.getString(3), dbInfo);
+          }
+        }
+      } catch (SQLException e) {
+        throw new VarfishAnnotatorException("Problem with scanning " + table, e);
+      }
+      return result;
+    }
+
+    void close() throws VarfishAnnotatorException {
+      try {
+        stmt.close();
+      } catch (SQLException e) {
+        throw new VarfishAnnotatorException("Problem closing scan of " + table, e);
+      }
+    }
+  }
+}
@@ -0,0 +1,121 @@
+package com.github.bihealth.varfish_annotator.db;
+
+import com.github.bihealth.varfish_annotator.VarfishAnnotatorException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+
+/** {@link FrequencyLookup} that performs one indexed query per variant and table. */
+public final class PointQueryFrequencyLookup implements FrequencyLookup {
+
+  /** Name of the ClinVar table. */
+  static final String CLINVAR_TABLE = "clinvar_var";
+
+  /** Database connection to use for the queries. */
+  private final Connection conn;
+
+  /** Genome release to query for. */
+  private final String release;
+
+  /** Prepared statements by table name, closed in {@link #close()}. */
+  private final Map<String, PreparedStatement> statements;
+
+  /** Constructor. */
+  public PointQueryFrequencyLookup(Connection conn, String release) {
+    this.conn = conn;
+    this.release = release;
+    this.statements = new HashMap<>();
+  }
+
+  @Override
+  public DbInfo getDbInfo(String prefix, String chrom, int start, String ref, String alt)
+      throws VarfishAnnotatorException {
+    try {
+      final PreparedStatement stmt =
+          getStatement(
+              prefix + "_var",
+              prefix + "_af, " + prefix + "_het, " + prefix + "_hom, " + prefix + "_hemi");
+      bindVariant(stmt, chrom, start, ref, alt);
+      try (ResultSet rs = stmt.executeQuery()) {
+        if (!rs.next()) {
+          return DbInfo.nullValue();
+        }
+        final DbInfo result = new DbInfo(rs.getDouble(1), rs.getInt(2), rs.getInt(3), rs.getInt(4));
+        if (rs.next()) {
+          throw new VarfishAnnotatorException(prefix + " returned more than one result");
+        }
+        return result;
+      }
+    } catch (SQLException e) {
+      throw new VarfishAnnotatorException("Problem with querying " + prefix, e);
+    }
+  }
+
+  @Override
+  public boolean isInClinvar(String chrom, int start, String ref, String alt)
+      throws VarfishAnnotatorException {
+    try {
+      final PreparedStatement stmt = getStatement(CLINVAR_TABLE, "COUNT(*)");
+      bindVariant(stmt, chrom, start, ref, alt);
+      try (ResultSet rs = stmt.executeQuery()) {
+        if (!rs.next()) {
+          throw new VarfishAnnotatorException(
+              "ClinVar counter query returned less than one result");
+        }
+        final boolean result = (rs.getInt(1) > 0);
+        if (rs.next()) {
+          throw new VarfishAnnotatorException(
+              "ClinVar counter query returned more than one result");
+        }
+        return result;
+      }
+    } catch (SQLException e) {
+      throw new VarfishAnnotatorException("Problem with querying ClinVar", e);
+    }
+  }
+
+  /** Get cached statement for querying {@code columns} from {@code table}. */
+  private PreparedStatement getStatement(String table, String columns) throws SQLException {
+    PreparedStatement stmt = statements.get(table);
+    if (stmt == null) {
+      stmt =
+          conn.prepareStatement(
+              "SELECT "
+                  + columns
+                  + " FROM "
+                  + table
+                  + " WHERE (release = ?) AND (chrom = ?) AND (start = ?)"
+                  + " AND (ref = ?) AND (alt = ?)");
+      statements.put(table, stmt);
+    }
+    return stmt;
+  }
+
+  private void bindVariant(PreparedStatement stmt, String chrom, int start, String ref, String alt)
+      throws SQLException {
+    stmt.setString(1, release);
+    stmt.setString(2, chrom);
+    stmt.setInt(3, start);
+    stmt.setString(4, ref);
+    stmt.setString(5, alt);
+  }
+
+  @Override
+  public void close() throws VarfishAnnotatorException {
+    SQLException problem = null;
+    for (PreparedStatement stmt : statements.values()) {
+      try {
+        stmt.close();
+      } catch (SQLException e) {
+        problem = e;
+      }
+    }
+    statements.clear();
+    if (problem != null) {
+      throw new VarfishAnnotatorException("Problem closing statements", problem);
+    }
+  }
+}
@@ -0,0 +1,170 @@
+package com.github.bihealth.varfish_annotator.db;
+
+import com.github.bihealth.varfish_annotator.utils.VariantKey;
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnel;
+import com.google.common.hash.Funnels;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bloom filter over the {@link VariantKey}s of the {@code (chrom, start, ref, alt)} of one of the
+ * variant tables.
+ *
+ * <p>Used for skipping database queries for variants that are definitely not in the table. The
+ * filter also counts the queries, the skipped queries, and the false positives reported through
+ * {@link #recordFalsePositive()}. Instances are thread-safe once built.
+ */
+public final class VariantBloomFilter {
+
+  /** Magic bytes at the start of the file. */
+  private static final String MAGIC = "VFBF";
+
+  /** File format version. */
+  private static final int VERSION = 2;
+
+  /** Default false-positive probability. */
+  public static final double DEFAULT_FPP = 0.01;
+
+  /** Funnel for the variant keys. */
+  private static final Funnel<Long> FUNNEL = Funnels.longFunnel();
+
+  /** Genome release of the keys. */
+  private final String release;
+
+  /** Number of rows in the table when the filter was built, for detecting stale filters. */
+  private final long tableRowCount;
+
+  /** The wrapped filter. */
+  private final BloomFilter<Long> filter;
+
+  /** Number of queries. */
+  private final LongAdder numQueries = new LongAdder();
+
+  /** Number of queries answered by the filter alone. */
+  private final LongAdder numSkipped = new LongAdder();
+
+  /** Number of queries that passed the filter but were not found. */
+  private final LongAdder numFalsePositives = new LongAdder();
+
+  private VariantBloomFilter(
+      String release, long tableRowCount, BloomFilter<Long> filter) {
+    this.release = release;
+    this.tableRowCount = tableRowCount;
+    this.filter = filter;
+  }
+
+  /**
+   * Create empty filter.
+   *
+   * @param release Genome release of the keys.
+   * @param tableRowCount Number of rows in the table.
+   * @param expectedKeys Expected number of keys to add.
+   * @param fpp Desired false-positive probability.
+   */
+  public static VariantBloomFilter create(
+      String release, long tableRowCount, long expectedKeys, double fpp) {
+    return new VariantBloomFilter(
+        release, tableRowCount, BloomFilter.create(FUNNEL, Math.max(1, expectedKeys), fpp));
+  }
+
+  /**
+   * Get path to the filter of a table next to the H2 database.
+   *
+   * @param dbPath Path to the H2 database, with or without <tt>.h2.db</tt> suffix.
+   * @param table Name of the table, e.g., {@code "clinvar_var"}.
+   * @return Path to the filter file.
+   */
+  public static File getPath(String dbPath, String table) {
+    if (dbPath.endsWith(".h2.db")) {
+      dbPath = dbPath.substring(0, dbPath.length() - ".h2.db".length());
+    }
+    return new File(dbPath + "." + table + ".bloom");
+  }
+
+  /** Read filter from {@code file}. */
+  public static VariantBloomFilter read(File file) throws IOException {
+    try (DataInputStream in =
+        new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+      if (!MAGIC.equals(in.readUTF())) {
+        throw new IOException("Not a variant Bloom filter: " + file);
+      }
+      final int version = in.readInt();
+      if (version != VERSION) {
+        throw new IOException("Unsupported variant Bloom filter version " + version);
+      }
+      final String release = in.readUTF();
+      final long tableRowCount = in.readLong();
+      return new VariantBloomFilter(release, tableRowCount, BloomFilter.readFrom(in, FUNNEL));
+    }
+  }
+
+  /** Write filter to {@code file}. */
+  public void write(File file) throws IOException {
+    try (DataOutputStream out =
+        new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+      out.writeUTF(MAGIC);
+      out.writeInt(VERSION);
+      out.writeUTF(release);
+      out.writeLong(tableRowCount);
+      filter.writeTo(out);
+    }
+  }
+
+  /** Add variant to the filter. */
+  public void put(String chrom, int start, String ref, String alt) {
+    filter.put(VariantKey.of(chrom, start, ref, alt));
+  }
+
+  /**
+   * Check whether the variant might be in the table and update the counters.
+   *
+   * @return {@code false} if the variant is definitely not in the table.
+   */
+  public boolean mightContain(String chrom, int start, String ref, String alt) {
+    numQueries.increment();
+    final boolean result = filter.mightContain(VariantKey.of(chrom, start, ref, alt));
+    if (!result) {
+      numSkipped.increment();
+    }
+    return result;
+  }
+
+  /** Record that a variant passed the filter but was not in the table. */
+  public void recordFalsePositive() {
+    numFalsePositives.increment();
+  }
+
+  public String getRelease() {
+    return release;
+  }
+
+  public long getTableRowCount() {
+    return tableRowCount;
+  }
+
+  public long getNumQueries() {
+    return numQueries.sum();
+  }
+
+  public long getNumSkipped() {
+    return numSkipped.sum();
+  }
+
+  public long getNumFalsePositives() {
+    return numFalsePositives.sum();
+  }
+
+  /** @return false positives among the queried variants not in the table, {@code 0} if none. */
+  public double getObservedFpp() {
+    final long numAbsent = getNumSkipped() + getNumFalsePositives();
+    return (numAbsent == 0) ? 0.0 : ((double) getNumFalsePositives()) / numAbsent;
+  }
+}
@@ -0,0 +1,303 @@
+package com.github.bihealth.varfish_annotator.utils;
+
+import com.github.bihealth.varfish_annotator.VarfishAnnotatorException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.util.Arrays;
+
+/**
+ * Persistent, size-bounded key/value cache in a memory-mapped file.
+ *
+ * <p>The file consists of a header, a hash index and a data region that is used as a ring log:
+ *
+ * <pre>
+ *   header   magic "VFAC", version, fingerprint, data size, number of index slots, write position
+ *   index    slots of (key hash, log position of record), linear probing over up to
+ *            {@link #MAX_PROBES} slots
+ *   data     records of (length, key length, key, value), appended at the write position
+ * </pre>
+ *
+ * <p>Records are appended at the write position, wrapping around at the end of the data region,
+ * such that the oldest records are overwritten first. Index slots pointing to overwritten records
+ * are treated as free. Lookups compare the full key, so hash collisions cannot return wrong values.
+ *
+ * <p>The fingerprint identifies the data the values were computed from. If it does not match the
+ * one given on opening, the cache is cleared. An exclusive lock on the file prevents concurrent
+ * runs from using the same cache. Instances are thread-safe.
+ */
+public final class AnnotationCache implements AutoCloseable {
+
+  /** Magic bytes at the start of the file. */
+  private static final int MAGIC = 0x56464143; // "VFAC"
+
+  /** File format version. */
+  private static final int VERSION = 1;
+
+  /** Size of the header in bytes. */
+  private static final int HEADER_SIZE = 64;
+
+  private static final int OFFSET_FINGERPRINT = 8;
+  private static final int OFFSET_DATA_SIZE = 16;
+  private static final int OFFSET_NUM_SLOTS = 24;
+  private static final int OFFSET_WRITE_POS = 32;
+
+  /** Size of an index slot in bytes. */
+  private static final int SLOT_SIZE = 16;
+
+  /** Size of the record header (record length, key length) in bytes. */
+  private static final int RECORD_HEADER_SIZE = 8;
+
+  /** Expected average record size, used for sizing the index. */
+  private static final int BYTES_PER_SLOT = 256;
+
+  /** Maximal number of index slots to probe. */
+  static final int MAX_PROBES = 16;
+
+  /** Largest supported cache size, a single mapping must stay below 2 GiB. */
+  public static final long MAX_SIZE = 1536L * 1024 * 1024;
+
+  /** The file channel, kept open for the lock. */
+  private final FileChannel channel;
+
+  /** Lock on the file. */
+  private final FileLock lock;
+
+  /** The mapping of the whole file. */
+  private final MappedByteBuffer buffer;
+
+  /** Number of index slots. */
+  private final int numSlots;
+
+  /** Offset of the data region in the file. */
+  private final int dataOffset;
+
+  /** Size of the data region. */
+  private final int dataSize;
+
+  /** Position in the log for the next record, grows monotonically. */
+  private long writePos;
+
+  /** Number of lookups and hits, for reporting. */
+  private long numLookups;
+
+  private long numHits;
+
+  private AnnotationCache(
+      FileChannel channel, FileLock lock, MappedByteBuffer buffer, int numSlots, int dataSize) {
+    this.channel = channel;
+    this.lock = lock;
+    this.buffer = buffer;
+    this.numSlots = numSlots;
+    this.dataOffset = HEADER_SIZE + numSlots * SLOT_SIZE;
+    this.dataSize = dataSize;
+    this.writePos = buffer.getLong(OFFSET_WRITE_POS);
+  }
+
+  /**
+   * Open or create cache.
+   *
+   * @param file Path to the cache file.
+   * @param size Size of the cache file in bytes, at most {@link #MAX_SIZE}.
+   * @param fingerprint Identifier of the data the values are computed from; the cache is cleared
+   *     if it differs from the one stored in the file.
+   * @return The opened cache or {@code null} if the file is locked by another process.
+   * @throws VarfishAnnotatorException in case of problems with opening the file
+   */
+  public static AnnotationCache open(File file, long size, long fingerprint)
+      throws VarfishAnnotatorException {
+    if (size < 1024 * 1024 || size > MAX_SIZE) {
+      throw new VarfishAnnotatorException("Invalid annotation cache size: " + size);
+    }
+    final int numSlots = Integer.highestOneBit((int) (size / BYTES_PER_SLOT / 2));
+    final int dataSize = (int) (size - HEADER_SIZE - (long) numSlots * SLOT_SIZE);
+
+    FileChannel channel = null;
+    try {
+      channel = new RandomAccessFile(file, "rw").getChannel();
+      final FileLock lock;
+      try {
+        lock = channel.tryLock();
+      } catch (OverlappingFileLockException e) {
+        channel.close();
+        return null;
+      }
+      if (lock == null) {
+        channel.close();
+        return null;
+      }
+      final boolean existed = channel.size() > 0;
+      final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+      if (!existed
+          || buffer.getInt(0) != MAGIC
+          || buffer.getInt(4) != VERSION
+          || buffer.getLong(OFFSET_FINGERPRINT) != fingerprint
+          || buffer.getLong(OFFSET_DATA_SIZE) != dataSize
+          || buffer.getInt(OFFSET_NUM_SLOTS) != numSlots) {
+        initialize(buffer, fingerprint, numSlots, dataSize);
+      }
+      return new AnnotationCache(channel, lock, buffer, numSlots, dataSize);
+    } catch (IOException e) {
+      if (channel != null) {
+        try {
+          channel.close();
+        } catch (IOException e2) {
+          // swallow, report original problem below
+        }
+      }
+      throw new VarfishAnnotatorException("Problem opening annotation cache " + file, e);
+    }
+  }
+
+  /** Write empty header and index. */
+  private static void initialize(
+      MappedByteBuffer buffer, long fingerprint, int numSlots, int dataSize) {
+    final byte[] zeros = new byte[64 * 1024];
+    final int indexEnd = HEADER_SIZE + numSlots * SLOT_SIZE;
+    for (int pos = 0; pos < indexEnd; pos += zeros.length) {
+      // Call through Buffer such that the class also links on Java 8 when built with newer JDKs.
+      ((Buffer) buffer).position(pos);
+      buffer.put(zeros, 0, Math.min(zeros.length, indexEnd - pos));
+    }
+    buffer.putInt(0, MAGIC);
+    buffer.putInt(4, VERSION);
+    buffer.putLong(OFFSET_FINGERPRINT, fingerprint);
+    buffer.putLong(OFFSET_DATA_SIZE, dataSize);
+    buffer.putInt(OFFSET_NUM_SLOTS, numSlots);
+    buffer.putLong(OFFSET_WRITE_POS, 0);
+  }
+
+  /**
+   * Get value for {@code key}.
+   *
+   * @return The value or {@code null} if not in the cache.
+   */
+  public synchronized byte[] get(byte[] key) {
+    numLookups += 1;
+    final long hash = hash(key);
+    final int home = (int) (hash & (numSlots - 1));
+    for (int probe = 0; probe < MAX_PROBES; ++probe) {
+      final int slotOffset = slotOffset((home + probe) & (numSlots - 1));
+      final long recordPos = buffer.getLong(slotOffset + 8);
+      if (recordPos == 0) {
+        return null; // free slot ends the probe sequence
+      }
+      if (buffer.getLong(slotOffset) == hash) {
+        final byte[] value = readRecord(recordPos - 1, key);
+        if (value != null) {
+          numHits += 1;
+          return value;
+        }
+      }
+    }
+    return null;
+  }
+
+  /** Put {@code value} for {@code key}, evicting the oldest records if necessary. */
+  public synchronized void put(byte[] key, byte[] value) {
+    final int recordSize = RECORD_HEADER_SIZE + key.length + value.length;
+    if (recordSize > dataSize / 4) {
+      return; // too large for caching
+    }
+    // Records do not wrap around the end of the data region.
+    if ((writePos % dataSize) + recordSize > dataSize) {
+      writePos += dataSize - (writePos % dataSize);
+    }
+    final long recordPos = writePos;
+    final int offset = dataOffset + (int) (recordPos % dataSize);
+    buffer.putInt(offset, recordSize);
+    buffer.putInt(offset + 4, key.length);
+    final ByteBuffer dup = buffer.duplicate();
+    ((Buffer) dup).position(offset + RECORD_HEADER_SIZE);
+    dup.put(key);
+    dup.put(value);
+    writePos += recordSize;
+    buffer.putLong(OFFSET_WRITE_POS, writePos);
+
+    // Use the first free, stale or matching slot; evict the home slot if there is none.
+    final long hash = hash(key);
+    final int home = (int) (hash & (numSlots - 1));
+    int target = home;
+    for (int probe = 0; probe < MAX_PROBES; ++probe) {
+      final int slot = (home + probe) & (numSlots - 1);
+      final long slotPos = buffer.getLong(slotOffset(slot) + 8);
+      if (slotPos == 0 || !isLive(slotPos - 1) || buffer.getLong(slotOffset(slot)) == hash) {
+        target = slot;
+        break;
+      }
+    }
+    // Positions are stored plus one such that zero marks free slots.
+    buffer.putLong(slotOffset(target), hash);
+    buffer.putLong(slotOffset(target) + 8, recordPos + 1);
+  }
+
+  /** @return value of record at {@code recordPos} if it is live and has {@code key}. */
+  private byte[] readRecord(long recordPos, byte[] key) {
+    if (!isLive(recordPos)) {
+      return null;
+    }
+    final int offset = dataOffset + (int) (recordPos % dataSize);
+    final int recordSize = buffer.getInt(offset);
+    final int keyLength = buffer.getInt(offset + 4);
+    if (keyLength != key.length
+        || recordSize < RECORD_HEADER_SIZE + keyLength
+        || recordPos + recordSize > writePos
+        || (recordPos % dataSize) + recordSize > dataSize) {
+      return null;
+    }
+    final ByteBuffer dup = buffer.duplicate();
+    ((Buffer) dup).position(offset + RECORD_HEADER_SIZE);
+    final byte[] storedKey = new byte[keyLength];
+    dup.get(storedKey);
+    if (!Arrays.equals(key, storedKey)) {
+      return null;
+    }
+    final byte[] value = new byte[recordSize - RECORD_HEADER_SIZE - keyLength];
+    dup.get(value);
+    return value;
+  }
+
+  /** @return whether the record at {@code recordPos} has not been overwritten yet. */
+  private boolean isLive(long recordPos) {
+    return recordPos < writePos && recordPos >= writePos - dataSize;
+  }
+
+  private static int slotOffset(int slot) {
+    return HEADER_SIZE + slot * SLOT_SIZE;
+  }
+
+  /** 64 bit FNV-1a hash of {@code key}. */
+  private static long hash(byte[] key) {
+    long result = 0xcbf29ce484222325L;
+    for (byte b : key) {
+      result = (result ^ (b & 0xff)) * 0x100000001b3L;
+    }
+    return result;
+  }
+
+  public synchronized long getNumLookups() {
+    return numLookups;
+  }
+
+  public synchronized long getNumHits() {
+    return numHits;
+  }
+
+  /** Flush the mapping and release the lock. */
+  @Override
+  public synchronized void close() throws VarfishAnnotatorException {
+    try {
+      buffer.force();
+      lock.release();
+      channel.close();
+    } catch (IOException e) {
+      throw new VarfishAnnotatorException("Problem closing annotation cache", e);
+    }
+  }
+}
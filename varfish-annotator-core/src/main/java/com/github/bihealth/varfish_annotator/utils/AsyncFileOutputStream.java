@@ -0,0 +1,216 @@
+package com.github.bihealth.varfish_annotator.utils;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * {@link OutputStream} to a file that leaves the actual writing to a dedicated thread.
+ *
+ * <p>Data is collected in one of a small ring of reusable direct buffers. Filled buffers are
+ * passed to the writer thread, which writes them through a {@link FileChannel} and hands them back.
+ * If writing falls behind, the caller blocks until a buffer is free again. Errors of the writer
+ * thread are reported by the next call. Not thread-safe.
+ */
+public final class AsyncFileOutputStream extends OutputStream {
+
+  /** Default number of buffers. */
+  public static final int DEFAULT_NUM_BUFFERS = 4;
+
+  /** Default size of each buffer. */
+  public static final int DEFAULT_BUFFER_SIZE = 1024 * 1024;
+
+  /** Marker passed to the writer thread on {@link #close()}. */
+  private static final ByteBuffer CLOSE_MARKER = ByteBuffer.allocate(0);
+
+  /** The file to write to. */
+  private final FileChannel channel;
+
+  /** Buffers available for filling. */
+  private final BlockingQueue<ByteBuffer> freeBuffers;
+
+  /** Filled buffers waiting to be written, and {@link #CLOSE_MARKER} on close. */
+  private final BlockingQueue<ByteBuffer> filledBuffers;
+
+  /** Total number of buffers. */
+  private final int numBuffers;
+
+  /** The thread writing {@link #filledBuffers} to {@link #channel}. */
+  private final Thread writerThread;
+
+  /** First error of the writer thread, if any. */
+  private volatile IOException writeError;
+
+  /** The buffer being filled, {@code null} after closing. */
+  private ByteBuffer current;
+
+  /**
+   * Open {@code path} for writing with default buffers, truncating existing files.
+   *
+   * @param path Path to the file to write.
+   * @throws IOException in case of problems opening the file
+   */
+  public AsyncFileOutputStream(Path path) throws IOException {
+    this(path, DEFAULT_NUM_BUFFERS, DEFAULT_BUFFER_SIZE);
+  }
+
+  /**
+   * Open {@code path} for writing, truncating existing files.
+   *
+   * @param path Path to the file to write.
+   * @param numBuffers Number of buffers, at least two.
+   * @param bufferSize Size of each buffer.
+   * @throws IOException in case of problems opening the file
+   */
+  public AsyncFileOutputStream(Path path, int numBuffers, int bufferSize) throws IOException {
+    if (numBuffers < 2) {
+      throw new IllegalArgumentException("Need at least two buffers but got " + numBuffers);
+    }
+    this.channel =
+        FileChannel.open(
+            path,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING,
+            StandardOpenOption.WRITE);
+    this.numBuffers = numBuffers;
+    this.freeBuffers = new ArrayBlockingQueue<>(numBuffers);
+    this.filledBuffers = new ArrayBlockingQueue<>(numBuffers + 1);
+    for (int i = 1; i < numBuffers; ++i) {
+      freeBuffers.add(ByteBuffer.allocateDirect(bufferSize));
+    }
+    this.current = ByteBuffer.allocateDirect(bufferSize);
+    this.writerThread = new Thread(this::runWriter, "async-writer-" + path.getFileName());
+    this.writerThread.setDaemon(true);
+    this.writerThread.start();
+  }
+
+  @Override
+  public void write(int b) throws IOException {
+    ensureOpen();
+    current.put((byte) b);
+    if (!current.hasRemaining()) {
+      passCurrent();
+    }
+  }
+
+  @Override
+  public void write(byte[] b, int off, int len) throws IOException {
+    ensureOpen();
+    while (len > 0) {
+      final int n = Math.min(len, current.remaining());
+      current.put(b, off, n);
+      off += n;
+      len -= n;
+      if (!current.hasRemaining()) {
+        passCurrent();
+      }
+    }
+  }
+
+  /** Pass the buffered data to the writer thread and wait until it has been written. */
+  @Override
+  public void flush() throws IOException {
+    ensureOpen();
+    if (current.position() > 0) {
+      passCurrent();
+    }
+    // All other buffers are free once the writer thread is idle.
+    final ByteBuffer[] others = new ByteBuffer[numBuffers - 1];
+    try {
+      for (int i = 0; i < others.length; ++i) {
+        others[i] = freeBuffers.take();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while flushing output file");
+    } finally {
+      for (ByteBuffer buffer : others) {
+        if (buffer != null) {
+          freeBuffers.add(buffer);
+        }
+      }
+    }
+    checkError();
+  }
+
+  /** Write out all buffered data, wait for the writer thread, and close the file. */
+  @Override
+  public void close() throws IOException {
+    if (current == null) {
+      return;
+    }
+    final ByteBuffer last = current;
+    current = null;
+    try {
+      if (last.position() > 0) {
+        filledBuffers.put(last);
+      }
+      filledBuffers.put(CLOSE_MARKER);
+      writerThread.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while closing output file");
+    } finally {
+      channel.close();
+    }
+    checkError();
+  }
+
+  /** Pass {@link #current} to the writer thread and wait for a free buffer. */
+  private void passCurrent() throws IOException {
+    checkError();
+    try {
+      filledBuffers.put(current);
+      current = freeBuffers.take();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for writer thread");
+    }
+  }
+
+  /** Main loop of {@link #writerThread}, after an error buffers are recycled without writing. */
+  private void runWriter() {
+    while (true) {
+      final ByteBuffer buffer;
+      try {
+        buffer = filledBuffers.take();
+      } catch (InterruptedException e) {
+        writeError = new InterruptedIOException("Writer thread was interrupted");
+        return;
+      }
+      if (buffer == CLOSE_MARKER) {
+        return;
+      }
+      // Call through Buffer such that the class also links on Java 8 when built with newer JDKs.
+      ((Buffer) buffer).flip();
+      try {
+        while (writeError == null && buffer.hasRemaining()) {
+          channel.write(buffer);
+        }
+      } catch (IOException e) {
+        writeError = e;
+      }
+      ((Buffer) buffer).clear();
+      freeBuffers.add(buffer);
+    }
+  }
+
+  private void ensureOpen() throws IOException {
+    if (current == null) {
+      throw new IOException("Stream is closed");
+    }
+  }
+
+  private void checkError() throws IOException {
+    if (writeError != null) {
+      throw new IOException("Problem writing output file", writeError);
+    }
+  }
+}
@@ -0,0 +1,190 @@
+package com.github.bihealth.varfish_annotator.utils;
+
+import de.charite.compbio.jannovar.annotation.VariantEffect;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Single-pass selection of the most pathogenic annotation per gene of one allele.
+ *
+ * <p>Annotations are offered with their index in Jannovar's annotation list, a group (e.g., the
+ * map to put them into) and a key (e.g., the gene ID). The result is the same as stably sorting
+ * the annotations by their most pathogenic effect, {@code null} last, and then keeping the first
+ * ({@link #offer}) or last ({@link #offerLast}) annotation per group and key.
+ *
+ * <p>The buffers are reused after {@link #clear}, such that the selection does not allocate once
+ * they are large enough. Not thread-safe.
+ */
+public final class BestAnnotationSelector {
+
+  /** Rank of annotations without effect, after all effects. */
+  public static final int NULL_RANK = Integer.MAX_VALUE;
+
+  /** Group of the slots. */
+  private int[] groups = new int[16];
+
+  /** Key of the slots. */
+  private String[] keys = new String[16];
+
+  /** Rank of the selected annotation of the slots. */
+  private int[] ranks = new int[16];
+
+  /** Index of the selected annotation of the slots. */
+  private int[] indices = new int[16];
+
+  /** Position of the slots in {@link #table}, for clearing. */
+  private int[] positions = new int[16];
+
+  /** Open addressing table with linear probing of slot numbers plus one, {@code 0} if free. */
+  private int[] table = new int[32];
+
+  /** Number of used slots. */
+  private int size;
+
+  /** @return rank of {@code effect} for comparison, {@link #NULL_RANK} for {@code null}. */
+  public static int rank(VariantEffect effect) {
+    return (effect == null) ? NULL_RANK : effect.ordinal();
+  }
+
+  /** Remove all slots. */
+  public void clear() {
+    for (int slot = 0; slot < size; ++slot) {
+      table[positions[slot]] = 0;
+      keys[slot] = null;
+    }
+    size = 0;
+  }
+
+  /** Keep the annotation at {@code index} if it comes first in sorted order for the key. */
+  public void offer(int group, String key, int rank, int index) {
+    final int slot = findOrAddSlot(group, key, rank, index);
+    if (rank < ranks[slot]) {
+      ranks[slot] = rank;
+      indices[slot] = index;
+    }
+  }
+
+  /**
+   * Keep the annotation at {@code index} if it comes last in sorted order for the key.
+   *
+   * <p>Annotations must be offered in ascending {@code index} order.
+   */
+  public void offerLast(int group, String key, int rank, int index) {
+    final int slot = findOrAddSlot(group, key, rank, index);
+    if (rank >= ranks[slot]) {
+      ranks[slot] = rank;
+      indices[slot] = index;
+    }
+  }
+
+  /** @return number of slots, i.e., distinct pairs of group and key. */
+  public int size() {
+    return size;
+  }
+
+  public int getGroup(int slot) {
+    return groups[slot];
+  }
+
+  public String getKey(int slot) {
+    return keys[slot];
+  }
+
+  /** @return index of the selected annotation of {@code slot}. */
+  public int getIndex(int slot) {
+    return indices[slot];
+  }
+
+  /**
+   * Order the slots by the sorted order of their selected annotations, i.e., by rank and index.
+   *
+   * <p>This is the order in which the keys would have been added to a map from the sorted list.
+   */
+  public void sortSlots() {
+    // Insertion sort, there are only few slots per allele.
+    for (int i = 1; i < size; ++i) {
+      for (int j = i; j > 0 && compareSlots(j - 1, j) > 0; --j) {
+        swapSlots(j - 1, j);
+      }
+    }
+  }
+
+  private int compareSlots(int lhs, int rhs) {
+    if (ranks[lhs] != ranks[rhs]) {
+      return Integer.compare(ranks[lhs], ranks[rhs]);
+    } else {
+      return Integer.compare(indices[lhs], indices[rhs]);
+    }
+  }
+
+  private void swapSlots(int lhs, int rhs) {
+    final int group = groups[lhs];
+    groups[lhs] = groups[rhs];
+    groups[rhs] = group;
+    final String key = keys[lhs];
+    keys[lhs] = keys[rhs];
+    keys[rhs] = key;
+    final int rank = ranks[lhs];
+    ranks[lhs] = ranks[rhs];
+    ranks[rhs] = rank;
+    final int index = indices[lhs];
+    indices[lhs] = indices[rhs];
+    indices[rhs] = index;
+    final int position = positions[lhs];
+    positions[lhs] = positions[rhs];
+    positions[rhs] = position;
+    table[positions[lhs]] = lhs + 1;
+    table[positions[rhs]] = rhs + 1;
+  }
+
+  /** @return slot for {@code group} and {@code key}, added with the given annotation if new. */
+  private int findOrAddSlot(int group, String key, int rank, int index) {
+    final int mask = table.length - 1;
+    int pos = hash(group, key) & mask;
+    while (table[pos] != 0) {
+      final int slot = table[pos] - 1;
+      if (groups[slot] == group && Objects.equals(keys[slot], key)) {
+        return slot;
+      }
+      pos = (pos + 1) & mask;
+    }
+
+    if (size == groups.length) {
+      final int capacity = 2 * size;
+      groups = Arrays.copyOf(groups, capacity);
+      keys = Arrays.copyOf(keys, capacity);
+      ranks = Arrays.copyOf(ranks, capacity);
+      indices = Arrays.copyOf(indices, capacity);
+      positions = Arrays.copyOf(positions, capacity);
+    }
+    final int slot = size++;
+    groups[slot] = group;
+    keys[slot] = key;
+    ranks[slot] = rank;
+    indices[slot] = index;
+    positions[slot] = pos;
+    table[pos] = slot + 1;
+    if (2 * size > table.length) {
+      rehash(2 * table.length);
+    }
+    return slot;
+  }
+
+  private void rehash(int capacity) {
+    table = new int[capacity];
+    final int mask = capacity - 1;
+    for (int slot = 0; slot < size; ++slot) {
+      int pos = hash(groups[slot], keys[slot]) & mask;
+      while (table[pos] != 0) {
+        pos = (pos + 1) & mask;
+      }
+      positions[slot] = pos;
+      table[pos] = slot + 1;
+    }
+  }
+
+  private static int hash(int group, String key) {
+    final int h = (31 * group + Objects.hashCode(key)) * 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+}
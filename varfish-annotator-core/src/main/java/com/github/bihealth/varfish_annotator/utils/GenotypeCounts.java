@@ -1,11 +1,7 @@
 package com.github.bihealth.varfish_annotator.utils;
 
-import com.google.common.base.Joiner;
 import de.charite.compbio.jannovar.pedigree.Pedigree;
-import htsjdk.variant.variantcontext.Allele;
-import htsjdk.variant.variantcontext.Genotype;
 import htsjdk.variant.variantcontext.VariantContext;
-import java.util.*;
 
 /** Simple helper for counting the different genotype kinds. */
 public class GenotypeCounts {
@@ -13,6 +9,8 @@ public class GenotypeCounts {
   /**
    * Count the different genotypes and return {@link GenotypeCounts}.
    *
+   * <p>Use {@link GenotypeMatrix#countGenotypes} for counting for all alleles of a record.
+   *
    * @param ctx {@link VariantContext} from the input file.
    * @param alleleNo The allele number (first alternative is 1)
    * @param pedigree Pedigree ot use for sex information
@@ -21,61 +19,9 @@ public class GenotypeCounts {
    */
   public static GenotypeCounts buildGenotypeCounts(
       VariantContext ctx, int alleleNo, Pedigree pedigree, String release) {
-    final GenotypeCounts result = new GenotypeCounts();
-
-    for (String sample : ctx.getSampleNames()) {
-      final boolean isMale =
-          (pedigree != null
-              && pedigree.hasPerson(sample)
-              && pedigree.getNameToMember().get(sample).getPerson().isMale());
-
-      final Genotype genotype = ctx.getGenotype(sample);
-      final Map<String, String> gts = new TreeMap<>();
-      final List<String> gtList = new ArrayList<>();
-      for (Allele allele : genotype.getAlleles()) {
-        if (allele.isNoCall()) {
-          gtList.add(".");
-        } else if (ctx.getAlleleIndex(allele) == alleleNo) {
-          gtList.add("1");
-        } else {
-          gtList.add("0");
-        }
-      }
-
-      final String gt;
-      if (genotype.isPhased()) {
-        gt = Joiner.on("|").join(gtList);
-      } else {
-        gtList.sort(Comparator.naturalOrder());
-        gt = Joiner.on("/").join(gtList);
-      }
-
-      if (gt.equals("0/1") || gt.equals("1/0") || gt.equals("0|1") || gt.equals("1|0")) {
-        result.numHet += 1;
-      } else if (gt.equals("0/0") || gt.equals("0|0")) {
-        if (isMale
-            && PseudoAutosomalRegionHelper.isChrX(ctx.getContig())
-            && !PseudoAutosomalRegionHelper.isInPar(release, ctx.getContig(), ctx.getStart())) {
-          result.numHemiRef += 1;
-        } else {
-          result.numHomRef += 1;
-        }
-      } else if (gt.equals("1/1") || gt.equals("1|1")) {
-        if (isMale
-            && PseudoAutosomalRegionHelper.isChrX(ctx.getContig())
-            && !PseudoAutosomalRegionHelper.isInPar(release, ctx.getContig(), ctx.getStart())) {
-          result.numHemiAlt += 1;
-        } else {
-          result.numHomAlt += 1;
-        }
-      } else if (gt.equals("0")) {
-        result.numHemiRef += 1;
-      } else if (gt.equals("1")) {
-        result.numHemiAlt += 1;
-      }
-    }
-
-    return result;
+    final GenotypeMatrix matrix = new GenotypeMatrix(pedigree, release);
+    matrix.decode(ctx);
+    return matrix.countGenotypes(alleleNo);
   }
 
   /** Number of hom. alt. calls. */
@@ -0,0 +1,295 @@
+package com.github.bihealth.varfish_annotator.utils;
+
+import de.charite.compbio.jannovar.pedigree.Pedigree;
+import htsjdk.variant.variantcontext.Allele;
+import htsjdk.variant.variantcontext.Genotype;
+import htsjdk.variant.variantcontext.GenotypesContext;
+import htsjdk.variant.variantcontext.VariantContext;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Allele indices of the genotype calls of all samples of one {@link VariantContext}.
+ *
+ * <p>The genotypes are decoded once per record into primitive arrays, from which the genotype
+ * counts and genotype strings of each alternative allele are derived. The sex of the samples from
+ * the pedigree is looked up once per set of samples. Each thread uses its own instance.
+ */
+public final class GenotypeMatrix {
+
+  /** Allele index of no-call alleles. */
+  public static final int NO_CALL = -2;
+
+  /** Pedigree to use for sex information, may be {@code null}. */
+  private final Pedigree pedigree;
+
+  /** String to identify genome release. */
+  private final String release;
+
+  /** Names of the samples, in the order of the genotypes in the records. */
+  private String[] sampleNames = new String[0];
+
+  /** Index of each sample in {@link #sampleNames}. */
+  private final Map<String, Integer> sampleIndices = new HashMap<>();
+
+  /** Indices of the samples, ordered by sample name. */
+  private int[] samplesByName = new int[0];
+
+  /** Whether each sample is male according to the pedigree. */
+  private boolean[] isMale = new boolean[0];
+
+  /** The decoded record. */
+  private VariantContext ctx;
+
+  /** Genotype of each sample. */
+  private Genotype[] genotypes = new Genotype[0];
+
+  /** Ploidy of each sample. */
+  private int[] ploidies = new int[0];
+
+  /** Whether the genotype of each sample is phased. */
+  private boolean[] phased = new boolean[0];
+
+  /** Allele indices, {@link #stride} entries per sample. */
+  private int[] alleles = new int[0];
+
+  /** Largest ploidy supported by {@link #alleles}. */
+  private int stride = 2;
+
+  /** Whether the record is on chrX outside the PARs, {@code null} if not determined yet. */
+  private Boolean hemizygousRegion;
+
+  /** The contig of the last record and whether it is chrX. */
+  private String lastContig;
+
+  private boolean lastIsChrX;
+
+  /**
+   * Construct matrix.
+   *
+   * @param pedigree Pedigree to use for sex information, may be {@code null}.
+   * @param release String to identify genome release.
+   */
+  public GenotypeMatrix(Pedigree pedigree, String release) {
+    this.pedigree = pedigree;
+    this.release = release;
+  }
+
+  /** Decode the genotypes of {@code ctx}, does nothing if it is the last decoded record. */
+  public void decode(VariantContext ctx) {
+    if (ctx == this.ctx) {
+      return;
+    }
+    final GenotypesContext gts = ctx.getGenotypes();
+    if (!hasSamples(gts)) {
+      setSamples(gts);
+    }
+    int maxPloidy = 0;
+    for (Genotype genotype : gts) {
+      maxPloidy = Math.max(maxPloidy, genotype.getPloidy());
+    }
+    if (maxPloidy > stride) {
+      stride = maxPloidy;
+      alleles = new int[sampleNames.length * stride];
+    }
+
+    for (int i = 0; i < gts.size(); ++i) {
+      final Genotype genotype = gts.get(i);
+      final int sample =
+          sampleNames[i].equals(genotype.getSampleName())
+              ? i
+              : sampleIndices.get(genotype.getSampleName());
+      genotypes[sample] = genotype;
+      phased[sample] = genotype.isPhased();
+      final List<Allele> gtAlleles = genotype.getAlleles();
+      ploidies[sample] = gtAlleles.size();
+      for (int j = 0; j < gtAlleles.size(); ++j) {
+        final Allele allele = gtAlleles.get(j);
+        alleles[sample * stride + j] = allele.isNoCall() ? NO_CALL : ctx.getAlleleIndex(allele);
+      }
+    }
+    this.ctx = ctx;
+    this.hemizygousRegion = null;
+  }
+
+  /** @return the decoded record. */
+  public VariantContext getVariantContext() {
+    return ctx;
+  }
+
+  /** @return number of samples. */
+  public int getNumSamples() {
+    return sampleNames.length;
+  }
+
+  public String getSampleName(int sample) {
+    return sampleNames[sample];
+  }
+
+  /** @return indices of the samples, ordered by sample name. */
+  public int[] getSamplesByName() {
+    return samplesByName;
+  }
+
+  public Genotype getGenotype(int sample) {
+    return genotypes[sample];
+  }
+
+  /**
+   * Build the genotype string of {@code sample}, e.g., "0/1", with "1" for allele {@code alleleNo}
+   * and "0" for all others.
+   */
+  public String getGenotypeString(int sample, int alleleNo) {
+    return formatGenotype(alleles, sample * stride, ploidies[sample], phased[sample], alleleNo);
+  }
+
+  /**
+   * Count the different genotypes.
+   *
+   * @param alleleNo The allele number (first alternative is 1)
+   * @return The genotype counts for all samples.
+   */
+  public GenotypeCounts countGenotypes(int alleleNo) {
+    final GenotypeCounts result = new GenotypeCounts();
+    for (int sample = 0; sample < sampleNames.length; ++sample) {
+      final int ploidy = ploidies[sample];
+      if (ploidy != 1 && ploidy != 2) {
+        continue;
+      }
+      int numAlt = 0;
+      boolean noCall = false;
+      for (int j = 0; j < ploidy; ++j) {
+        final int allele = alleles[sample * stride + j];
+        noCall = noCall || allele == NO_CALL;
+        numAlt += (allele == alleleNo) ? 1 : 0;
+      }
+      if (noCall) {
+        continue;
+      } else if (ploidy == 1) {
+        if (numAlt == 0) {
+          result.numHemiRef += 1;
+        } else {
+          result.numHemiAlt += 1;
+        }
+      } else if (numAlt == 1) {
+        result.numHet += 1;
+      } else if (numAlt == 0) {
+        if (isHemizygous(sample)) {
+          result.numHemiRef += 1;
+        } else {
+          result.numHomRef += 1;
+        }
+      } else {
+        if (isHemizygous(sample)) {
+          result.numHemiAlt += 1;
+        } else {
+          result.numHomAlt += 1;
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Build the genotype string of {@code genotype} in {@code ctx} without decoding all samples.
+   *
+   * @see #getGenotypeString
+   */
+  public static String buildGenotypeString(VariantContext ctx, Genotype genotype, int alleleNo) {
+    final List<Allele> gtAlleles = genotype.getAlleles();
+    final int[] indices = new int[gtAlleles.size()];
+    for (int j = 0; j < indices.length; ++j) {
+      final Allele allele = gtAlleles.get(j);
+      indices[j] = allele.isNoCall() ? NO_CALL : ctx.getAlleleIndex(allele);
+    }
+    return formatGenotype(indices, 0, indices.length, genotype.isPhased(), alleleNo);
+  }
+
+  /** Format the genotype with the allele indices at {@code alleles[offset, offset + ploidy)}. */
+  private static String formatGenotype(
+      int[] alleles, int offset, int ploidy, boolean phased, int alleleNo) {
+    if (ploidy == 0) {
+      return "";
+    }
+    final char[] codes = new char[ploidy];
+    for (int j = 0; j < ploidy; ++j) {
+      final int allele = alleles[offset + j];
+      codes[j] = (allele == NO_CALL) ? '.' : (allele == alleleNo) ? '1' : '0';
+    }
+    if (!phased) {
+      Arrays.sort(codes); // '.' < '0' < '1'
+    }
+    final StringBuilder result = new StringBuilder(2 * ploidy - 1);
+    for (int j = 0; j < ploidy; ++j) {
+      if (j > 0) {
+        result.append(phased ? '|' : '/');
+      }
+      result.append(codes[j]);
+    }
+    return result.toString();
+  }
+
+  /** @return whether homozygous calls of {@code sample} are hemizygous, at most once per record. */
+  private boolean isHemizygous(int sample) {
+    if (!isMale[sample]) {
+      return false;
+    }
+    if (hemizygousRegion == null) {
+      final String contig = ctx.getContig();
+      if (!contig.equals(lastContig)) {
+        lastContig = contig;
+        lastIsChrX = PseudoAutosomalRegionHelper.isChrX(contig);
+      }
+      hemizygousRegion =
+          lastIsChrX && !PseudoAutosomalRegionHelper.isInPar(release, contig, ctx.getStart());
+    }
+    return hemizygousRegion;
+  }
+
+  /** @return whether the samples of {@code gts} are the ones of the last record. */
+  private boolean hasSamples(GenotypesContext gts) {
+    if (gts.size() != sampleNames.length) {
+      return false;
+    }
+    for (int i = 0; i < sampleNames.length; ++i) {
+      final String name = gts.get(i).getSampleName();
+      if (!sampleNames[i].equals(name) && !sampleIndices.containsKey(name)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** Set up the samples from {@code gts}, including the lookup of their sex. */
+  private void setSamples(GenotypesContext gts) {
+    final int numSamples = gts.size();
+    sampleNames = new String[numSamples];
+    sampleIndices.clear();
+    isMale = new boolean[numSamples];
+    for (int i = 0; i < numSamples; ++i) {
+      final String sample = gts.get(i).getSampleName();
+      sampleNames[i] = sample;
+      sampleIndices.put(sample, i);
+      isMale[i] =
+          (pedigree != null
+              && pedigree.hasPerson(sample)
+              && pedigree.getNameToMember().get(sample).getPerson().isMale());
+    }
+    final Integer[] byName = new Integer[numSamples];
+    for (int i = 0; i < numSamples; ++i) {
+      byName[i] = i;
+    }
+    Arrays.sort(byName, Comparator.comparing(i -> sampleNames[i]));
+    samplesByName = new int[numSamples];
+    for (int i = 0; i < numSamples; ++i) {
+      samplesByName[i] = byName[i];
+    }
+    genotypes = new Genotype[numSamples];
+    ploidies = new int[numSamples];
+    phased = new boolean[numSamples];
+    alleles = new int[numSamples * stride];
+  }
+}
@@ -1,6 +1,7 @@
 package com.github.bihealth.varfish_annotator.utils;
 
 import java.io.*;
+import java.nio.file.Paths;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
 
@@ -28,6 +29,35 @@ public class GzipUtil {
     return magic == GZIPInputStream.GZIP_MAGIC;
   }
 
+  /**
+   * Wrap {@code os} in a {@link ParallelBgzfOutputStream} if file name ends with
+   * <code>".gz"</code>, optionally also writing a tabix index to <code>fileName + ".tbi"</code>.
+   */
+  public static OutputStream maybeBgzfOutputStream(
+      OutputStream os, String fileName, int numThreads, boolean writeTabixIndex) {
+    if (!fileName.endsWith(".gz")) {
+      return os;
+    }
+    final ParallelBgzfOutputStream bgzfStream = new ParallelBgzfOutputStream(os, numThreads);
+    if (writeTabixIndex) {
+      return new TabixIndexingOutputStream(bgzfStream, Paths.get(fileName + ".tbi"));
+    } else {
+      return bgzfStream;
+    }
+  }
+
+  /** Open BGZF stream as in {@link #maybeBgzfOutputStream} and wrap it in a writer. */
+  public static OutputStreamWriter maybeOpenBgzfOutputStream(
+      OutputStream os, String fileName, int numThreads, boolean writeTabixIndex)
+      throws IOException {
+    if (fileName.endsWith(".gz")) {
+      return new OutputStreamWriter(
+          maybeBgzfOutputStream(os, fileName, numThreads, writeTabixIndex), "UTF-8");
+    } else {
+      return new OutputStreamWriter(os);
+    }
+  }
+
   /** Open GZipOutputStream if file name ends with <code>".gz"</code>. */
   public static OutputStreamWriter maybeOpenGzipOutputStream(OutputStream os, String fileName)
       throws IOException {
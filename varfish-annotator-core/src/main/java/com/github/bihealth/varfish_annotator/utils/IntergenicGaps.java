@@ -0,0 +1,147 @@
+package com.github.bihealth.varfish_annotator.utils;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The gaps between the transcripts of one contig, taken over several transcript sources.
+ *
+ * <p>Each transcript is extended by a padding on both sides and the gaps are the regions not
+ * covered by any padded transcript. Gap {@code k} lies left of the {@code k}-th run of overlapping
+ * padded transcripts, such that there are one more gaps than runs. All positions are 0-based and
+ * intervals are half-open.
+ */
+public final class IntergenicGaps {
+
+  /** Return value of {@link #findGap} for intervals not within a gap. */
+  public static final int NO_GAP = -1;
+
+  /** Begin positions of the runs of padded transcripts. */
+  private final int[] runBegins;
+
+  /** End positions of the runs of padded transcripts. */
+  private final int[] runEnds;
+
+  /** Sorted unpadded begin positions of the transcripts of each source. */
+  private final int[][] sortedBegins;
+
+  /** Sorted unpadded end positions of the transcripts of each source. */
+  private final int[][] sortedEnds;
+
+  /**
+   * Construct the gaps.
+   *
+   * @param padding Number of bases to extend each transcript on both sides.
+   * @param begins Begin positions of the transcripts, one array per source.
+   * @param ends End positions of the transcripts, one array per source, parallel to {@code begins}.
+   */
+  public IntergenicGaps(int padding, List<int[]> begins, List<int[]> ends) {
+    final int numSources = begins.size();
+    sortedBegins = new int[numSources][];
+    sortedEnds = new int[numSources][];
+    int total = 0;
+    for (int s = 0; s < numSources; ++s) {
+      sortedBegins[s] = begins.get(s).clone();
+      sortedEnds[s] = ends.get(s).clone();
+      Arrays.sort(sortedBegins[s]);
+      Arrays.sort(sortedEnds[s]);
+      total += sortedBegins[s].length;
+    }
+
+    // Merge the padded intervals of all sources, sorted by begin position.
+    final long[] intervals = new long[total];
+    int n = 0;
+    for (int s = 0; s < numSources; ++s) {
+      for (int i = 0; i < begins.get(s).length; ++i) {
+        final long begin = Math.max(0, begins.get(s)[i] - padding);
+        final long end = (long) ends.get(s)[i] + padding;
+        intervals[n++] = (begin << 32) | Math.min(end, Integer.MAX_VALUE);
+      }
+    }
+    Arrays.sort(intervals);
+    final int[] tmpBegins = new int[total];
+    final int[] tmpEnds = new int[total];
+    int numRuns = 0;
+    for (long interval : intervals) {
+      final int begin = (int) (interval >>> 32);
+      final int end = (int) interval;
+      if (numRuns > 0 && begin <= tmpEnds[numRuns - 1]) {
+        tmpEnds[numRuns - 1] = Math.max(tmpEnds[numRuns - 1], end);
+      } else {
+        tmpBegins[numRuns] = begin;
+        tmpEnds[numRuns] = end;
+        ++numRuns;
+      }
+    }
+    runBegins = Arrays.copyOf(tmpBegins, numRuns);
+    runEnds = Arrays.copyOf(tmpEnds, numRuns);
+  }
+
+  /** @return number of gaps. */
+  public int getNumGaps() {
+    return runBegins.length + 1;
+  }
+
+  /**
+   * Find the gap that contains {@code [begin, end)}.
+   *
+   * @return Index of the gap or {@link #NO_GAP} if the interval overlaps with a padded transcript.
+   */
+  public int findGap(int begin, int end) {
+    // Index of the first run that does not end before or at begin.
+    int lo = 0;
+    int hi = runEnds.length;
+    while (lo < hi) {
+      final int mid = (lo + hi) >>> 1;
+      if (runEnds[mid] <= begin) {
+        lo = mid + 1;
+      } else {
+        hi = mid;
+      }
+    }
+    return (lo == runBegins.length || runBegins[lo] >= end) ? lo : NO_GAP;
+  }
+
+  /**
+   * @return Largest end position of the transcripts of {@code source} left of {@code gap}, {@link
+   *     Integer#MIN_VALUE} if there are none.
+   */
+  public int getLeftEnd(int source, int gap) {
+    if (gap == 0) {
+      return Integer.MIN_VALUE;
+    }
+    // All transcripts left of the gap end before the gap's begin position.
+    final int[] ends = sortedEnds[source];
+    final int idx = upperBound(ends, runEnds[gap - 1]) - 1;
+    return (idx < 0) ? Integer.MIN_VALUE : ends[idx];
+  }
+
+  /**
+   * @return Smallest begin position of the transcripts of {@code source} right of {@code gap},
+   *     {@link Integer#MAX_VALUE} if there are none.
+   */
+  public int getRightBegin(int source, int gap) {
+    if (gap == runBegins.length) {
+      return Integer.MAX_VALUE;
+    }
+    // All transcripts right of the gap begin at or after the gap's end position.
+    final int[] begins = sortedBegins[source];
+    final int idx = upperBound(begins, runBegins[gap] - 1);
+    return (idx == begins.length) ? Integer.MAX_VALUE : begins[idx];
+  }
+
+  /** @return index of the first value in {@code values} greater than {@code value}. */
+  private static int upperBound(int[] values, int value) {
+    int lo = 0;
+    int hi = values.length;
+    while (lo < hi) {
+      final int mid = (lo + hi) >>> 1;
+      if (values[mid] <= value) {
+        lo = mid + 1;
+      } else {
+        hi = mid;
+      }
+    }
+    return lo;
+  }
+}
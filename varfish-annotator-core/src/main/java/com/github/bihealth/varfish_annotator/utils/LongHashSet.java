@@ -0,0 +1,113 @@
+package com.github.bihealth.varfish_annotator.utils;
+
+import java.util.Arrays;
+
+/**
+ * Set of primitive {@code long} values, e.g., {@link VariantKey}s, without boxing.
+ *
+ * <p>Uses open addressing with linear probing in a single {@code long[]}, i.e., about 8 to 27
+ * bytes per value depending on the fill ratio. Values cannot be removed. Not thread-safe for
+ * writing, concurrent reads are fine once filled.
+ */
+public final class LongHashSet {
+
+  /** Maximal fill ratio of the table before growing. */
+  private static final double MAX_LOAD = 0.6;
+
+  /** Marker for free slots in {@link #values}, the value {@code 0} is tracked separately. */
+  private static final long FREE = 0L;
+
+  /** Values of the slots. */
+  private long[] values;
+
+  /** Whether the set contains {@code 0}. */
+  private boolean containsZero;
+
+  /** Number of values, including {@code 0}. */
+  private int size;
+
+  /** Number of values in {@link #values} at which to grow. */
+  private int threshold;
+
+  /** Construct empty set. */
+  public LongHashSet() {
+    this(16);
+  }
+
+  /** Construct empty set with room for {@code expectedSize} values before resizing. */
+  public LongHashSet(int expectedSize) {
+    int capacity = 16;
+    while (capacity * MAX_LOAD < expectedSize) {
+      capacity *= 2;
+    }
+    allocate(capacity);
+  }
+
+  /** @return {@code true} if {@code value} was not in the set before. */
+  public boolean add(long value) {
+    if (value == FREE) {
+      final boolean result = !containsZero;
+      if (result) {
+        containsZero = true;
+        size += 1;
+      }
+      return result;
+    }
+    final int slot = findSlot(value);
+    if (values[slot] == value) {
+      return false;
+    }
+    values[slot] = value;
+    size += 1;
+    if (size > threshold) {
+      grow();
+    }
+    return true;
+  }
+
+  public boolean contains(long value) {
+    if (value == FREE) {
+      return containsZero;
+    }
+    return values[findSlot(value)] == value;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  public void clear() {
+    Arrays.fill(values, FREE);
+    containsZero = false;
+    size = 0;
+  }
+
+  /** @return slot containing {@code value} or the free slot where it would be inserted. */
+  private int findSlot(long value) {
+    final int mask = values.length - 1;
+    int slot = LongObjectHashMap.mix(value) & mask;
+    while (values[slot] != FREE && values[slot] != value) {
+      slot = (slot + 1) & mask;
+    }
+    return slot;
+  }
+
+  private void grow() {
+    final long[] oldValues = values;
+    allocate(values.length * 2);
+    for (long value : oldValues) {
+      if (value != FREE) {
+        values[findSlot(value)] = value;
+      }
+    }
+  }
+
+  private void allocate(int capacity) {
+    values = new long[capacity];
+    threshold = (int) (capacity * MAX_LOAD);
+  }
+}
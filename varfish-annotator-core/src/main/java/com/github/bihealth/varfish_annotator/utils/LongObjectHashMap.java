@@ -0,0 +1,186 @@
+package com.github.bihealth.varfish_annotator.utils;
+
+import java.util.Arrays;
+
+/**
+ * Map from primitive {@code long} keys, e.g., {@link VariantKey}s, to objects without boxing the
+ * keys.
+ *
+ * <p>Uses open addressing with linear probing and backward-shift deletion, such that lookups do
+ * not allocate. {@code null} values are not supported. Not thread-safe.
+ *
+ * @param <V> The type of the values.
+ */
+public final class LongObjectHashMap<V> {
+
+  /** Maximal fill ratio of the table before growing. */
+  private static final double MAX_LOAD = 0.6;
+
+  /** Marker for free slots in {@link #keys}, the key {@code 0} is stored in {@link #zeroValue}. */
+  private static final long FREE = 0L;
+
+  /** Keys of the slots. */
+  private long[] keys;
+
+  /** Values of the slots, {@code null} for free slots. */
+  private Object[] values;
+
+  /** Value for key {@code 0}, if any. */
+  private V zeroValue;
+
+  /** Number of entries, including key {@code 0}. */
+  private int size;
+
+  /** Number of entries in {@link #keys} at which to grow. */
+  private int threshold;
+
+  /** Construct empty map. */
+  public LongObjectHashMap() {
+    this(16);
+  }
+
+  /** Construct empty map with room for {@code expectedSize} entries before resizing. */
+  public LongObjectHashMap(int expectedSize) {
+    int capacity = 16;
+    while (capacity * MAX_LOAD < expectedSize) {
+      capacity *= 2;
+    }
+    allocate(capacity);
+  }
+
+  /** @return value for {@code key} or {@code null} if not present. */
+  @SuppressWarnings("unchecked")
+  public V get(long key) {
+    if (key == FREE) {
+      return zeroValue;
+    }
+    final int slot = findSlot(key);
+    return (keys[slot] == key) ? (V) values[slot] : null;
+  }
+
+  public boolean containsKey(long key) {
+    return get(key) != null;
+  }
+
+  /**
+   * Put value for {@code key}.
+   *
+   * @return The previous value or {@code null} if there was none.
+   */
+  @SuppressWarnings("unchecked")
+  public V put(long key, V value) {
+    if (value == null) {
+      throw new IllegalArgumentException("null values are not supported");
+    }
+    if (key == FREE) {
+      final V result = zeroValue;
+      zeroValue = value;
+      if (result == null) {
+        size += 1;
+      }
+      return result;
+    }
+    final int slot = findSlot(key);
+    if (keys[slot] == key) {
+      final V result = (V) values[slot];
+      values[slot] = value;
+      return result;
+    }
+    keys[slot] = key;
+    values[slot] = value;
+    size += 1;
+    if (size > threshold) {
+      grow();
+    }
+    return null;
+  }
+
+  /**
+   * Remove entry for {@code key}.
+   *
+   * @return The removed value or {@code null} if there was none.
+   */
+  @SuppressWarnings("unchecked")
+  public V remove(long key) {
+    if (key == FREE) {
+      final V result = zeroValue;
+      if (result != null) {
+        zeroValue = null;
+        size -= 1;
+      }
+      return result;
+    }
+    int slot = findSlot(key);
+    if (keys[slot] != key) {
+      return null;
+    }
+    final V result = (V) values[slot];
+    size -= 1;
+    // Shift back following entries of the probe sequence into the freed slot.
+    final int mask = keys.length - 1;
+    int next = (slot + 1) & mask;
+    while (keys[next] != FREE) {
+      final int home = mix(keys[next]) & mask;
+      if (((next - home) & mask) >= ((next - slot) & mask)) {
+        keys[slot] = keys[next];
+        values[slot] = values[next];
+        slot = next;
+      }
+      next = (next + 1) & mask;
+    }
+    keys[slot] = FREE;
+    values[slot] = null;
+    return result;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  public void clear() {
+    Arrays.fill(keys, FREE);
+    Arrays.fill(values, null);
+    zeroValue = null;
+    size = 0;
+  }
+
+  /** @return slot containing {@code key} or the free slot where it would be inserted. */
+  private int findSlot(long key) {
+    final int mask = keys.length - 1;
+    int slot = mix(key) & mask;
+    while (keys[slot] != FREE && keys[slot] != key) {
+      slot = (slot + 1) & mask;
+    }
+    return slot;
+  }
+
+  @SuppressWarnings("unchecked")
+  private void grow() {
+    final long[] oldKeys = keys;
+    final Object[] oldValues = values;
+    allocate(keys.length * 2);
+    for (int i = 0; i < oldKeys.length; ++i) {
+      if (oldKeys[i] != FREE) {
+        final int slot = findSlot(oldKeys[i]);
+        keys[slot] = oldKeys[i];
+        values[slot] = oldValues[i];
+      }
+    }
+  }
+
+  private void allocate(int capacity) {
+    keys = new long[capacity];
+    values = new Object[capacity];
+    threshold = (int) (capacity * MAX_LOAD);
+  }
+
+  /** Spread the bits of the key, keys like {@link VariantKey} have structured lower bits. */
+  static int mix(long key) {
+    long h = key * 0x9e3779b97f4a7c15L;
+    return (int) (h ^ (h >>> 32));
+  }
+}
@@ -0,0 +1,189 @@
+package com.github.bihealth.varfish_annotator.utils;
+
+import com.github.bihealth.varfish_annotator.VarfishAnnotatorException;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Random access to the bases of an indexed FASTA file through a read-only memory mapping.
+ *
+ * <p>The file offset of each base is computed from the FAI index, skipping the line breaks, and the
+ * base is read from the mapping without copying or allocating. As the mapping is only accessed
+ * with absolute reads, one instance can be shared by any number of threads.
+ */
+public final class MappedFastaReference {
+
+  /** Size of the mapped segments, a single mapping must stay below 2 GiB. */
+  private static final long SEGMENT_SIZE = 1L << 30;
+
+  /** Path to the FASTA file. */
+  private final String fastaPath;
+
+  /** The FAI entries by contig name. */
+  private final Map<String, FaiEntry> entries;
+
+  /** The mapped segments of the file, segment {@code i} starts at {@code i * SEGMENT_SIZE}. */
+  private final MappedByteBuffer[] segments;
+
+  /**
+   * Map the given FASTA file.
+   *
+   * @param fastaPath Path to the FASTA file, the index must be at {@code fastaPath + ".fai"}.
+   * @throws VarfishAnnotatorException on problems with opening the FASTA or FAI file
+   */
+  public MappedFastaReference(String fastaPath) throws VarfishAnnotatorException {
+    this.fastaPath = fastaPath;
+    this.entries = readFai(new File(fastaPath + ".fai"));
+    try (RandomAccessFile file = new RandomAccessFile(fastaPath, "r");
+        FileChannel channel = file.getChannel()) {
+      final long size = channel.size();
+      this.segments = new MappedByteBuffer[(int) ((size + SEGMENT_SIZE - 1) / SEGMENT_SIZE)];
+      for (int i = 0; i < segments.length; ++i) {
+        final long begin = i * SEGMENT_SIZE;
+        segments[i] =
+            channel.map(FileChannel.MapMode.READ_ONLY, begin, Math.min(SEGMENT_SIZE, size - begin));
+      }
+    } catch (IOException e) {
+      throw new VarfishAnnotatorException("Could not map FASTA file " + fastaPath, e);
+    }
+  }
+
+  private static Map<String, FaiEntry> readFai(File faiFile) throws VarfishAnnotatorException {
+    final Map<String, FaiEntry> result = new HashMap<>();
+    try (BufferedReader reader =
+        Files.newBufferedReader(faiFile.toPath(), StandardCharsets.UTF_8)) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        if (line.isEmpty()) {
+          continue;
+        }
+        final String[] arr = line.split("\t");
+        if (arr.length < 5) {
+          throw new VarfishAnnotatorException("Invalid FAI line: " + line);
+        }
+        result.put(
+            arr[0],
+            new FaiEntry(
+                Long.parseLong(arr[1]),
+                Long.parseLong(arr[2]),
+                Integer.parseInt(arr[3]),
+                Integer.parseInt(arr[4])));
+      }
+    } catch (IOException | NumberFormatException e) {
+      throw new VarfishAnnotatorException("Could not read FAI file " + faiFile, e);
+    }
+    return result;
+  }
+
+  /** @return whether the FASTA file contains {@code contig}. */
+  public boolean hasContig(String contig) {
+    return entries.containsKey(contig);
+  }
+
+  /** @return length of {@code contig}. */
+  public long getLength(String contig) {
+    return getEntry(contig).length;
+  }
+
+  /**
+   * Get a single base.
+   *
+   * @param contig Name of the contig.
+   * @param pos 0-based position on the contig.
+   * @return The base as stored in the file.
+   * @throws IllegalArgumentException if the contig is unknown or the position is out of range
+   */
+  public byte getBase(String contig, long pos) {
+    final FaiEntry entry = getEntry(contig);
+    if (pos < 0 || pos >= entry.length) {
+      throw new IllegalArgumentException(
+          "Position " + pos + " is out of range for " + contig + " of length " + entry.length);
+    }
+    final long offset =
+        entry.offset + (pos / entry.lineBases) * entry.lineWidth + (pos % entry.lineBases);
+    return segments[(int) (offset / SEGMENT_SIZE)].get((int) (offset % SEGMENT_SIZE));
+  }
+
+  /**
+   * Get bases of a range.
+   *
+   * @param contig Name of the contig.
+   * @param begin 0-based start position.
+   * @param end 0-based end position, exclusive.
+   * @return The bases as stored in the file.
+   */
+  public String getBases(String contig, long begin, long end) {
+    final byte[] result = new byte[(int) (end - begin)];
+    getBases(contig, begin, result, result.length);
+    return new String(result, StandardCharsets.US_ASCII);
+  }
+
+  /**
+   * Copy bases of a range into {@code dest}, resolving the contig only once.
+   *
+   * @param contig Name of the contig.
+   * @param begin 0-based start position.
+   * @param dest Buffer to write the bases to, starting at index {@code 0}.
+   * @param length Number of bases to copy.
+   * @throws IllegalArgumentException if the contig is unknown or the range is out of bounds
+   */
+  public void getBases(String contig, long begin, byte[] dest, int length) {
+    final FaiEntry entry = getEntry(contig);
+    if (begin < 0 || length < 0 || begin + length > entry.length) {
+      throw new IllegalArgumentException(
+          "Range "
+              + begin
+              + "-"
+              + (begin + length)
+              + " is out of range for "
+              + contig
+              + " of length "
+              + entry.length);
+    }
+    for (int i = 0; i < length; ++i) {
+      final long pos = begin + i;
+      final long offset =
+          entry.offset + (pos / entry.lineBases) * entry.lineWidth + (pos % entry.lineBases);
+      dest[i] = segments[(int) (offset / SEGMENT_SIZE)].get((int) (offset % SEGMENT_SIZE));
+    }
+  }
+
+  private FaiEntry getEntry(String contig) {
+    final FaiEntry entry = entries.get(contig);
+    if (entry == null) {
+      throw new IllegalArgumentException("Unknown contig " + contig + " in " + fastaPath);
+    }
+    return entry;
+  }
+
+  /** One line of the FAI index. */
+  private static final class FaiEntry {
+
+    /** Number of bases in the contig. */
+    final long length;
+
+    /** File offset of the first base. */
+    final long offset;
+
+    /** Number of bases per line. */
+    final int lineBases;
+
+    /** Number of bytes per line, including the line break. */
+    final int lineWidth;
+
+    FaiEntry(long length, long offset, int lineBases, int lineWidth) {
+      this.length = length;
+      this.offset = offset;
+      this.lineBases = lineBases;
+      this.lineWidth = lineWidth;
+    }
+  }
+}
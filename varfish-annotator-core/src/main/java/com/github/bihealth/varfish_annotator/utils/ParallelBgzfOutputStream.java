@@ -0,0 +1,258 @@
+package com.github.bihealth.varfish_annotator.utils;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * {@link OutputStream} writing the BGZF format, compressing blocks on a pool of threads.
+ *
+ * <p>The data is cut into blocks of at most {@link #MAX_BLOCK_SIZE} bytes. Each block is a gzip
+ * member of its own carrying the BGZF extra field, such that the output is readable by any gzip
+ * reader and can be indexed with tabix. Blocks are compressed in parallel and written out in
+ * order. Not thread-safe.
+ */
+public final class ParallelBgzfOutputStream extends OutputStream {
+
+  /** Maximal number of uncompressed bytes per block, as used by bgzip. */
+  public static final int MAX_BLOCK_SIZE = 0xff00;
+
+  /** Maximal size of a compressed block, including header and footer. */
+  private static final int MAX_COMPRESSED_BLOCK_SIZE = 0x10000;
+
+  /** Size of the gzip header with the BGZF extra field. */
+  private static final int HEADER_SIZE = 18;
+
+  /** Size of the gzip footer with CRC32 and uncompressed size. */
+  private static final int FOOTER_SIZE = 8;
+
+  /** Empty block marking the end of a BGZF file. */
+  private static final byte[] EOF_BLOCK = {
+    0x1f, (byte) 0x8b, 0x08, 0x04, 0x00, 0x00, 0x00, 0x00, 0x00, (byte) 0xff, 0x06, 0x00, 0x42,
+    0x43, 0x02, 0x00, 0x1b, 0x00, 0x03, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00
+  };
+
+  /** The stream to write compressed blocks to, closed by this stream. */
+  private final OutputStream out;
+
+  /** Compression level to use. */
+  private final int level;
+
+  /** Threads for compressing the blocks. */
+  private final ExecutorService executor;
+
+  /** Blocks being compressed, in output order. */
+  private final ArrayDeque<Future<byte[]>> pending = new ArrayDeque<>();
+
+  /** Maximal number of blocks in {@link #pending}. */
+  private final int maxPending;
+
+  /** Uncompressed bytes of the current block. */
+  private byte[] buffer = new byte[MAX_BLOCK_SIZE];
+
+  /** Number of used bytes in {@link #buffer}. */
+  private int length;
+
+  /** Number of blocks passed to {@link #executor}. */
+  private int numBlocks;
+
+  /** Number of blocks written to {@link #out}. */
+  private int numWritten;
+
+  /** Offset of each written block in the output, and of the next one. */
+  private long[] blockAddresses = new long[1024];
+
+  private boolean closed;
+
+  /**
+   * Construct stream with default compression level.
+   *
+   * @param out The stream to write to.
+   * @param numThreads Number of threads to use for compression.
+   */
+  public ParallelBgzfOutputStream(OutputStream out, int numThreads) {
+    this(out, numThreads, Deflater.DEFAULT_COMPRESSION);
+  }
+
+  /**
+   * Construct stream.
+   *
+   * @param out The stream to write to.
+   * @param numThreads Number of threads to use for compression.
+   * @param level The compression level to use.
+   */
+  public ParallelBgzfOutputStream(OutputStream out, int numThreads, int level) {
+    this.out = out;
+    this.level = level;
+    this.maxPending = 2 * numThreads;
+    this.executor =
+        Executors.newFixedThreadPool(
+            numThreads,
+            runnable -> {
+              final Thread thread = new Thread(runnable, "bgzf-compress");
+              thread.setDaemon(true);
+              return thread;
+            });
+  }
+
+  @Override
+  public void write(int b) throws IOException {
+    buffer[length++] = (byte) b;
+    if (length == MAX_BLOCK_SIZE) {
+      submitBlock();
+    }
+  }
+
+  @Override
+  public void write(byte[] b, int off, int len) throws IOException {
+    while (len > 0) {
+      final int n = Math.min(len, MAX_BLOCK_SIZE - length);
+      System.arraycopy(b, off, buffer, length, n);
+      length += n;
+      off += n;
+      len -= n;
+      if (length == MAX_BLOCK_SIZE) {
+        submitBlock();
+      }
+    }
+  }
+
+  /** Finish the current block and write out all blocks. */
+  @Override
+  public void flush() throws IOException {
+    submitBlock();
+    while (!pending.isEmpty()) {
+      writeBlock(pending.removeFirst());
+    }
+    out.flush();
+  }
+
+  /** Write out all data, followed by the end-of-file marker block, and close the stream. */
+  @Override
+  public void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    try {
+      flush();
+      out.write(EOF_BLOCK);
+      out.flush();
+    } finally {
+      executor.shutdownNow();
+      out.close();
+    }
+  }
+
+  /**
+   * @return position of the next byte written, to be converted by {@link #getVirtualOffset} once
+   *     {@link #hasVirtualOffset} holds.
+   */
+  public long getPosition() {
+    return ((long) numBlocks << 16) | length;
+  }
+
+  /** @return whether the offset of the block of {@code position} in the output is known. */
+  public boolean hasVirtualOffset(long position) {
+    return (position >>> 16) <= numWritten;
+  }
+
+  /** @return BGZF virtual offset of {@code position}, as used in tabix indices. */
+  public long getVirtualOffset(long position) {
+    return (blockAddresses[(int) (position >>> 16)] << 16) | (position & 0xffff);
+  }
+
+  /** Pass the current block to the compression threads, waiting if too many are pending. */
+  private void submitBlock() throws IOException {
+    if (length == 0) {
+      return;
+    }
+    if (pending.size() >= maxPending) {
+      writeBlock(pending.removeFirst());
+    }
+    final byte[] data = buffer;
+    final int size = length;
+    pending.addLast(executor.submit(() -> compressBlock(data, size, level)));
+    numBlocks += 1;
+    buffer = new byte[MAX_BLOCK_SIZE];
+    length = 0;
+  }
+
+  private void writeBlock(Future<byte[]> future) throws IOException {
+    final byte[] block;
+    try {
+      block = future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while compressing BGZF block");
+    } catch (ExecutionException e) {
+      throw new IOException("Problem compressing BGZF block", e.getCause());
+    }
+    out.write(block);
+    if (numWritten + 1 == blockAddresses.length) {
+      blockAddresses = Arrays.copyOf(blockAddresses, 2 * blockAddresses.length);
+    }
+    blockAddresses[numWritten + 1] = blockAddresses[numWritten] + block.length;
+    numWritten += 1;
+  }
+
+  /** Compress {@code data[0, size)} into a complete BGZF block. */
+  private static byte[] compressBlock(byte[] data, int size, int level) {
+    final byte[] block = new byte[MAX_COMPRESSED_BLOCK_SIZE];
+    final int maxDataSize = MAX_COMPRESSED_BLOCK_SIZE - HEADER_SIZE - FOOTER_SIZE;
+    int dataSize = deflate(data, size, level, block, maxDataSize);
+    if (dataSize < 0) {
+      // Incompressible data, stored blocks always fit as MAX_BLOCK_SIZE leaves enough room.
+      dataSize = deflate(data, size, Deflater.NO_COMPRESSION, block, maxDataSize);
+    }
+    final int blockSize = HEADER_SIZE + dataSize + FOOTER_SIZE;
+
+    block[0] = 0x1f; // ID1
+    block[1] = (byte) 0x8b; // ID2
+    block[2] = 8; // CM = deflate
+    block[3] = 4; // FLG = FEXTRA
+    block[9] = (byte) 0xff; // OS = unknown, MTIME and XFL are zero
+    block[10] = 6; // XLEN
+    block[12] = 'B'; // SI1
+    block[13] = 'C'; // SI2
+    block[14] = 2; // SLEN
+    putShort(block, 16, blockSize - 1); // BSIZE
+
+    final CRC32 crc = new CRC32();
+    crc.update(data, 0, size);
+    putInt(block, HEADER_SIZE + dataSize, (int) crc.getValue());
+    putInt(block, HEADER_SIZE + dataSize + 4, size);
+    return Arrays.copyOf(block, blockSize);
+  }
+
+  /** @return number of bytes written to {@code block} after the header, -1 if too many. */
+  private static int deflate(byte[] data, int size, int level, byte[] block, int maxDataSize) {
+    final Deflater deflater = new Deflater(level, true);
+    try {
+      deflater.setInput(data, 0, size);
+      deflater.finish();
+      final int dataSize = deflater.deflate(block, HEADER_SIZE, maxDataSize);
+      return deflater.finished() ? dataSize : -1;
+    } finally {
+      deflater.end();
+    }
+  }
+
+  private static void putShort(byte[] bytes, int offset, int value) {
+    bytes[offset] = (byte) value;
+    bytes[offset + 1] = (byte) (value >>> 8);
+  }
+
+  private static void putInt(byte[] bytes, int offset, int value) {
+    putShort(bytes, offset, value);
+    putShort(bytes, offset + 2, value >>> 16);
+  }
+}
@@ -0,0 +1,359 @@
+package com.github.bihealth.varfish_annotator.utils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Writer for rows in the binary format of PostgreSQL's <code>COPY ... WITH (FORMAT binary)</code>.
+ *
+ * <p>Each column has a {@link Type}. Integers are written as they are, while fields given as
+ * strings are converted from their TSV representation, where "." is {@code NULL}, "TRUE" and
+ * "FALSE" are booleans, and arrays are literals such as <code>{"a","b"}</code>. Rows are collected
+ * in a reusable byte buffer as in {@link TsvRowWriter}. Not thread-safe.
+ */
+public final class PgCopyRowWriter implements RowWriter {
+
+  /** Types of the columns. */
+  public enum Type {
+    /** {@code integer} */
+    INT4,
+    /** {@code double precision} */
+    FLOAT8,
+    /** {@code boolean} */
+    BOOL,
+    /** {@code text} or {@code varchar} */
+    TEXT,
+    /** {@code jsonb} */
+    JSONB,
+    /** {@code uuid} */
+    UUID,
+    /** {@code varchar[]} */
+    VARCHAR_ARRAY
+  }
+
+  /** Signature at the start of the output. */
+  private static final byte[] SIGNATURE = {
+    'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xff, '\r', '\n', 0
+  };
+
+  /** Type OID of {@code varchar}, for the elements of arrays. */
+  private static final int VARCHAR_OID = 1043;
+
+  /** Version of the binary {@code jsonb} representation. */
+  private static final byte JSONB_VERSION = 1;
+
+  /** Number of buffered bytes at which the buffer is written out after a row. */
+  private static final int FLUSH_THRESHOLD = 64 * 1024;
+
+  /** The column names. */
+  private final List<String> columns;
+
+  /** The column types. */
+  private final Type[] types;
+
+  /** The stream to write to, not closed by this writer. */
+  private final OutputStream out;
+
+  /** Buffered bytes. */
+  private byte[] buffer = new byte[2 * FLUSH_THRESHOLD];
+
+  /** Number of used bytes in {@link #buffer}. */
+  private int length;
+
+  /** Number of fields of the current row. */
+  private int numFields;
+
+  /** Offset of the current row in {@link #buffer}. */
+  private int rowStart;
+
+  /**
+   * Construct writer.
+   *
+   * @param columns The column names.
+   * @param types The type of each column.
+   * @param out The stream to write to.
+   */
+  public PgCopyRowWriter(List<String> columns, List<Type> types, OutputStream out) {
+    if (columns.size() != types.size()) {
+      throw new IllegalArgumentException(
+          "Got " + types.size() + " types for " + columns.size() + " columns");
+    }
+    this.columns = columns;
+    this.types = types.toArray(new Type[0]);
+    this.out = out;
+  }
+
+  @Override
+  public List<String> getColumns() {
+    return columns;
+  }
+
+  /** Write the signature and the header of the binary format, without extensions. */
+  @Override
+  public void writeHeader() throws IOException {
+    ensureCapacity(SIGNATURE.length + 8);
+    System.arraycopy(SIGNATURE, 0, buffer, length, SIGNATURE.length);
+    length += SIGNATURE.length;
+    putInt(0); // flags
+    putInt(0); // length of header extension
+  }
+
+  /** Append the next field of the current row, converted from its TSV representation. */
+  @Override
+  public PgCopyRowWriter add(String value) {
+    final Type type = startField();
+    try {
+      if (".".equals(value)) {
+        putInt(-1);
+        return this;
+      }
+      switch (type) {
+        case INT4:
+          putInt(4);
+          putInt(Integer.parseInt(value));
+          break;
+        case FLOAT8:
+          putInt(8);
+          putLong(Double.doubleToLongBits(Double.parseDouble(value)));
+          break;
+        case BOOL:
+          putInt(1);
+          buffer[length++] = (byte) (parseBoolean(value) ? 1 : 0);
+          break;
+        case TEXT:
+          putText(value, false);
+          break;
+        case JSONB:
+          putText(value, true);
+          break;
+        case UUID:
+          final UUID uuid = UUID.fromString(value);
+          putInt(16);
+          putLong(uuid.getMostSignificantBits());
+          putLong(uuid.getLeastSignificantBits());
+          break;
+        case VARCHAR_ARRAY:
+          putArray(parseArray(value));
+          break;
+        default:
+          throw new IllegalStateException("Unknown type " + type);
+      }
+    } catch (IllegalArgumentException e) {
+      final String column = columns.get(numFields - 1);
+      discardRow();
+      throw new IllegalArgumentException("Invalid value for column " + column + ": " + value, e);
+    }
+    return this;
+  }
+
+  @Override
+  public PgCopyRowWriter add(int value) {
+    return add((long) value);
+  }
+
+  @Override
+  public PgCopyRowWriter add(long value) {
+    if (numFields < types.length && types[numFields] == Type.INT4 && value == (int) value) {
+      startField();
+      putInt(4);
+      putInt((int) value);
+      return this;
+    } else {
+      return add(Long.toString(value));
+    }
+  }
+
+  @Override
+  public PgCopyRowWriter addAll(List<String> values) {
+    for (String value : values) {
+      add(value);
+    }
+    return this;
+  }
+
+  @Override
+  public void endRow() throws IOException {
+    if (numFields != columns.size()) {
+      final int actual = numFields;
+      discardRow();
+      throw new IllegalStateException(
+          "Row has " + actual + " fields but there are " + columns.size() + " columns");
+    }
+    numFields = 0;
+    if (length >= FLUSH_THRESHOLD) {
+      writeBuffer();
+    }
+  }
+
+  @Override
+  public void write(byte[] bytes, int off, int len) throws IOException {
+    if (numFields != 0) {
+      throw new IllegalStateException("Cannot write rows in the middle of a row");
+    }
+    if (length + len > buffer.length) {
+      writeBuffer();
+    }
+    if (len > buffer.length) {
+      out.write(bytes, off, len);
+    } else {
+      System.arraycopy(bytes, off, buffer, length, len);
+      length += len;
+    }
+  }
+
+  /** Write out the buffered rows and flush the stream. */
+  @Override
+  public void flush() throws IOException {
+    writeBuffer();
+    out.flush();
+  }
+
+  /** Write the trailer of the binary format and flush. */
+  @Override
+  public void finish() throws IOException {
+    if (numFields != 0) {
+      throw new IllegalStateException("Cannot finish in the middle of a row");
+    }
+    ensureCapacity(2);
+    putShort(-1);
+    flush();
+  }
+
+  /** @return the elements of the array literal {@code value}, e.g., <code>{"a","b"}</code>. */
+  static List<String> parseArray(String value) {
+    if (value.length() < 2 || value.charAt(0) != '{' || value.charAt(value.length() - 1) != '}') {
+      throw new IllegalArgumentException("Invalid array literal: " + value);
+    }
+    final List<String> result = new ArrayList<>();
+    if (value.length() == 2) {
+      return result;
+    }
+    final StringBuilder element = new StringBuilder();
+    boolean inQuotes = false;
+    for (int i = 1; i < value.length() - 1; ++i) {
+      final char c = value.charAt(i);
+      if (inQuotes && c == '\\' && i + 1 < value.length() - 1) {
+        element.append(value.charAt(++i));
+      } else if (c == '"') {
+        inQuotes = !inQuotes;
+      } else if (c == ',' && !inQuotes) {
+        result.add(element.toString());
+        element.setLength(0);
+      } else {
+        element.append(c);
+      }
+    }
+    result.add(element.toString());
+    return result;
+  }
+
+  private static boolean parseBoolean(String value) {
+    if ("TRUE".equalsIgnoreCase(value)) {
+      return true;
+    } else if ("FALSE".equalsIgnoreCase(value)) {
+      return false;
+    } else {
+      throw new IllegalArgumentException("Invalid boolean: " + value);
+    }
+  }
+
+  /** Start the next field, with the field count if it is the first of the row. */
+  private Type startField() {
+    if (numFields == types.length) {
+      discardRow();
+      throw new IllegalStateException("Row has more fields than the " + types.length + " columns");
+    }
+    // Room for field count, length, and fixed-size values.
+    ensureCapacity(2 + 4 + 16);
+    if (numFields == 0) {
+      rowStart = length;
+      putShort(types.length);
+    }
+    return types[numFields++];
+  }
+
+  /** Put {@code value} as UTF-8 with its length, prefixed by the version for {@code jsonb}. */
+  private void putText(String value, boolean jsonb) {
+    ensureCapacity(4 + 1 + value.length());
+    final int lengthOffset = length;
+    length += 4;
+    if (jsonb) {
+      buffer[length++] = JSONB_VERSION;
+    }
+    for (int i = 0; i < value.length(); ++i) {
+      final char c = value.charAt(i);
+      if (c >= 0x80) {
+        final byte[] bytes = value.substring(i).getBytes(StandardCharsets.UTF_8);
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, buffer, length, bytes.length);
+        length += bytes.length;
+        break;
+      }
+      buffer[length++] = (byte) c;
+    }
+    putIntAt(lengthOffset, length - lengthOffset - 4);
+  }
+
+  /** Put one-dimensional {@code varchar[]} with {@code elements}. */
+  private void putArray(List<String> elements) {
+    ensureCapacity(4 * 6);
+    final int lengthOffset = length;
+    length += 4;
+    putInt(elements.isEmpty() ? 0 : 1); // number of dimensions
+    putInt(0); // flags, no NULL elements
+    putInt(VARCHAR_OID);
+    if (!elements.isEmpty()) {
+      putInt(elements.size());
+      putInt(1); // lower bound
+    }
+    for (String element : elements) {
+      putText(element, false);
+    }
+    putIntAt(lengthOffset, length - lengthOffset - 4);
+  }
+
+  private void putShort(int value) {
+    buffer[length++] = (byte) (value >>> 8);
+    buffer[length++] = (byte) value;
+  }
+
+  private void putInt(int value) {
+    putIntAt(length, value);
+    length += 4;
+  }
+
+  private void putIntAt(int offset, int value) {
+    buffer[offset] = (byte) (value >>> 24);
+    buffer[offset + 1] = (byte) (value >>> 16);
+    buffer[offset + 2] = (byte) (value >>> 8);
+    buffer[offset + 3] = (byte) value;
+  }
+
+  private void putLong(long value) {
+    putInt((int) (value >>> 32));
+    putInt((int) value);
+  }
+
+  private void discardRow() {
+    if (numFields > 0) {
+      length = rowStart;
+    }
+    numFields = 0;
+  }
+
+  private void ensureCapacity(int extra) {
+    if (length + extra > buffer.length) {
+      buffer = Arrays.copyOf(buffer, Math.max(2 * buffer.length, length + extra));
+    }
+  }
+
+  private void writeBuffer() throws IOException {
+    out.write(buffer, 0, length);
+    length = 0;
+  }
+}
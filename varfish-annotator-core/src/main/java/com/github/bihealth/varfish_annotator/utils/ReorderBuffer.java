@@ -0,0 +1,109 @@
+package com.github.bihealth.varfish_annotator.utils;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Bounded buffer that hands out items in the order of their sequence numbers.
+ *
+ * <p>Producers {@link #put(long, Object)} items with consecutive sequence numbers starting at 0 in
+ * any order, the consumer {@link #take()}s them in sequence order. Producers block if their item
+ * is {@code capacity} or more positions ahead of the next item to take, which limits the number of
+ * buffered items. The item with the next sequence number can always be put, such that the buffer
+ * cannot dead-lock.
+ *
+ * @param <T> The type of the buffered items.
+ */
+public final class ReorderBuffer<T> {
+
+  /** Maximal number of positions an item may be ahead of the next item to take. */
+  private final int capacity;
+
+  /** Buffered items by their sequence number. */
+  private final Map<Long, T> items;
+
+  /** Sequence number of the next item to take. */
+  private long next;
+
+  /** Total number of items after {@link #finish(long)} was called, {@code -1} before. */
+  private long total;
+
+  /** Problem reported through {@link #abort(Throwable)}, if any. */
+  private Throwable failure;
+
+  /** Construct with the given capacity. */
+  public ReorderBuffer(int capacity) {
+    if (capacity < 1) {
+      throw new IllegalArgumentException("Invalid capacity: " + capacity);
+    }
+    this.capacity = capacity;
+    this.items = new HashMap<>();
+    this.next = 0;
+    this.total = -1;
+    this.failure = null;
+  }
+
+  /**
+   * Put item with the given sequence number, blocking while it is too far ahead.
+   *
+   * @throws InterruptedException if interrupted while waiting
+   * @throws IllegalStateException if the buffer has been aborted
+   */
+  public synchronized void put(long seqNo, T item) throws InterruptedException {
+    while (failure == null && seqNo >= next + capacity) {
+      wait();
+    }
+    checkNotAborted();
+    items.put(seqNo, item);
+    if (seqNo == next) {
+      notifyAll();
+    }
+  }
+
+  /**
+   * Take the next item in sequence order, blocking until it is available.
+   *
+   * @return The next item or {@code null} if all items have been taken after {@link
+   *     #finish(long)}.
+   * @throws InterruptedException if interrupted while waiting
+   * @throws IllegalStateException if the buffer has been aborted
+   */
+  public synchronized T take() throws InterruptedException {
+    while (failure == null && !items.containsKey(next) && next != total) {
+      wait();
+    }
+    checkNotAborted();
+    if (next == total) {
+      return null;
+    }
+    final T result = items.remove(next);
+    next += 1;
+    notifyAll();
+    return result;
+  }
+
+  /** Mark that no items with sequence numbers at or above {@code total} will be put. */
+  public synchronized void finish(long total) {
+    this.total = total;
+    notifyAll();
+  }
+
+  /** Abort because of {@code failure}, waking up all waiting threads. */
+  public synchronized void abort(Throwable failure) {
+    if (this.failure == null) {
+      this.failure = failure;
+    }
+    notifyAll();
+  }
+
+  /** @return the problem passed to {@link #abort(Throwable)}, if any. */
+  public synchronized Throwable getFailure() {
+    return failure;
+  }
+
+  private void checkNotAborted() {
+    if (failure != null) {
+      throw new IllegalStateException("Reorder buffer was aborted", failure);
+    }
+  }
+}
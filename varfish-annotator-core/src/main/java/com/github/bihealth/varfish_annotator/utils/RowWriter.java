@@ -0,0 +1,47 @@
+package com.github.bihealth.varfish_annotator.utils;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Writer for rows with a fixed list of columns, appended field by field.
+ *
+ * <p>Fields given as strings use the text representation of the TSV files, e.g., "." for missing
+ * values. Implementations are not thread-safe.
+ */
+public interface RowWriter extends Flushable {
+
+  /** @return the column names. */
+  List<String> getColumns();
+
+  /** Write the start of the output, e.g., the header row. */
+  void writeHeader() throws IOException;
+
+  /** Append the next field of the current row. */
+  RowWriter add(String value);
+
+  /** Append the next field of the current row. */
+  RowWriter add(int value);
+
+  /** Append the next field of the current row. */
+  RowWriter add(long value);
+
+  /** Append each of {@code values} as the next fields of the current row. */
+  RowWriter addAll(List<String> values);
+
+  /**
+   * Finish the current row.
+   *
+   * @throws IllegalStateException if the row does not have one field per column, the row is
+   *     discarded then
+   * @throws IOException in case of problems with writing out the buffer
+   */
+  void endRow() throws IOException;
+
+  /** Write {@code len} bytes of rows rendered by another writer of the same kind. */
+  void write(byte[] bytes, int off, int len) throws IOException;
+
+  /** Write the end of the output, if any, and flush. */
+  void finish() throws IOException;
+}
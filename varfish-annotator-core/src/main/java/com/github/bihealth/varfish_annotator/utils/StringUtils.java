@@ -11,4 +11,60 @@ public class StringUtils {
   public static String tripleQuote(String s) {
     return "\"\"\"" + s.replaceAll("\"\"\"", "") + "\"\"\"";
   }
+
+  /**
+   * Quote {@code s} as JSON string.
+   *
+   * @param s String to quote.
+   * @return JSON string literal with the value {@code s}.
+   */
+  public static String jsonQuote(String s) {
+    final StringBuilder result = new StringBuilder(s.length() + 2).append('"');
+    for (int i = 0; i < s.length(); ++i) {
+      final char c = s.charAt(i);
+      if (c == '"' || c == '\\') {
+        result.append('\\').append(c);
+      } else if (c < 0x20) {
+        result.append(String.format("\\u%04x", (int) c));
+      } else {
+        result.append(c);
+      }
+    }
+    return result.append('"').toString();
+  }
+
+  /** @return whether {@code value} is "." or fits into a 32 bit integer. */
+  public static boolean isIntegerOrMissing(String value) {
+    if (".".equals(value)) {
+      return true;
+    }
+    try {
+      Integer.parseInt(value);
+      return true;
+    } catch (NumberFormatException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Convert the value {@code s} of a JSON column in a TSV file to plain JSON.
+   *
+   * @param s Value with strings quoted by {@link #tripleQuote}.
+   * @return Version of {@code s} with strings quoted by {@link #jsonQuote}.
+   * @throws IllegalArgumentException if a string in {@code s} is not terminated
+   */
+  public static String tripleQuotedToJson(String s) {
+    final StringBuilder result = new StringBuilder(s.length());
+    int pos = 0;
+    int start;
+    while ((start = s.indexOf("\"\"\"", pos)) != -1) {
+      final int end = s.indexOf("\"\"\"", start + 3);
+      if (end == -1) {
+        throw new IllegalArgumentException("Unterminated string in " + s);
+      }
+      result.append(s, pos, start).append(jsonQuote(s.substring(start + 3, end)));
+      pos = end + 3;
+    }
+    return result.append(s, pos, s.length()).toString();
+  }
 }
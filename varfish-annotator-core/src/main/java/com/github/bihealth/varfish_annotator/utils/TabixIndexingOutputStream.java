@@ -0,0 +1,247 @@
+package com.github.bihealth.varfish_annotator.utils;
+
+import htsjdk.tribble.SimpleFeature;
+import htsjdk.tribble.index.tabix.TabixFormat;
+import htsjdk.tribble.index.tabix.TabixIndexCreator;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * {@link OutputStream} writing TSV through a {@link ParallelBgzfOutputStream} and building a tabix
+ * index of the rows on the fly.
+ *
+ * <p>The first line is the header, from which the "chromosome", "start", and "end" columns are
+ * taken. The index is written on {@link #close()} if all of these columns exist and the rows are
+ * sorted by coordinate, otherwise a warning is printed and any existing index file is removed.
+ */
+public final class TabixIndexingOutputStream extends OutputStream {
+
+  /** The stream to write to, closed by this stream. */
+  private final ParallelBgzfOutputStream out;
+
+  /** Path to write the index to. */
+  private final Path indexPath;
+
+  /** Bytes of the current line. */
+  private byte[] line = new byte[1024];
+
+  /** Number of used bytes in {@link #line}. */
+  private int lineLength;
+
+  /** Position of the current line in {@link #out}. */
+  private long linePosition;
+
+  /** Whether the header line has been seen. */
+  private boolean seenHeader;
+
+  /** The index being built, {@code null} if no index can be written. */
+  private TabixIndexCreator indexCreator;
+
+  /** 0-based indices of the chromosome, start, and end columns. */
+  private int chromColumn;
+
+  private int startColumn;
+
+  private int endColumn;
+
+  /** Rows waiting for the offset of their block, as features and positions in {@link #out}. */
+  private final ArrayDeque<SimpleFeature> pendingFeatures = new ArrayDeque<>();
+
+  private final ArrayDeque<Long> pendingPositions = new ArrayDeque<>();
+
+  /** Contigs seen so far, for checking the sort order. */
+  private final Set<String> seenContigs = new HashSet<>();
+
+  private String lastContig;
+
+  private int lastStart;
+
+  private boolean closed;
+
+  /**
+   * Construct stream.
+   *
+   * @param out The stream to write to.
+   * @param indexPath Path to write the index to.
+   */
+  public TabixIndexingOutputStream(ParallelBgzfOutputStream out, Path indexPath) {
+    this.out = out;
+    this.indexPath = indexPath;
+  }
+
+  @Override
+  public void write(int b) throws IOException {
+    write(new byte[] {(byte) b}, 0, 1);
+  }
+
+  @Override
+  public void write(byte[] b, int off, int len) throws IOException {
+    final int end = off + len;
+    int begin = off;
+    for (int i = off; i < end; ++i) {
+      if (b[i] == '\n') {
+        appendLine(b, begin, i - begin + 1);
+        endLine();
+        begin = i + 1;
+      }
+    }
+    if (begin < end) {
+      appendLine(b, begin, end - begin);
+    }
+  }
+
+  @Override
+  public void flush() throws IOException {
+    out.flush();
+  }
+
+  /** Write out all data and the index, and close the stream. */
+  @Override
+  public void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    out.flush();
+    if (indexCreator == null) {
+      out.close();
+      Files.deleteIfExists(indexPath);
+      return;
+    }
+    addPendingFeatures();
+    final long endOffset = out.getVirtualOffset(out.getPosition());
+    out.close();
+    indexCreator.finalizeIndex(endOffset).write(indexPath);
+  }
+
+  /** Write {@code b[off, off + len)} to {@link #out}, keeping it if needed for indexing. */
+  private void appendLine(byte[] b, int off, int len) throws IOException {
+    if (lineLength == 0) {
+      linePosition = out.getPosition();
+    }
+    if (indexCreator != null || !seenHeader) {
+      if (lineLength + len > line.length) {
+        line = Arrays.copyOf(line, Math.max(2 * line.length, lineLength + len));
+      }
+      System.arraycopy(b, off, line, lineLength, len);
+    }
+    lineLength += len;
+    out.write(b, off, len);
+  }
+
+  /** Process the complete line in {@link #line}. */
+  private void endLine() {
+    if (!seenHeader) {
+      seenHeader = true;
+      setupIndex();
+    } else if (indexCreator != null) {
+      addLine();
+    }
+    lineLength = 0;
+  }
+
+  /** Set up {@link #indexCreator} if the header has the coordinate columns. */
+  private void setupIndex() {
+    final List<String> header =
+        Arrays.asList(
+            new String(line, 0, lineLength - 1, StandardCharsets.UTF_8).split("\t", -1));
+    chromColumn = header.indexOf("chromosome");
+    startColumn = header.indexOf("start");
+    endColumn = header.indexOf("end");
+    if (chromColumn < 0 || startColumn < 0 || endColumn < 0) {
+      disableIndex("header has no chromosome, start, and end columns");
+      return;
+    }
+    indexCreator =
+        new TabixIndexCreator(
+            new TabixFormat(
+                TabixFormat.GENERIC_FLAGS,
+                chromColumn + 1,
+                startColumn + 1,
+                endColumn + 1,
+                '#',
+                1));
+  }
+
+  /** Register the row in {@link #line} with the index. */
+  private void addLine() {
+    String contig = null;
+    int start = -1;
+    int end = -1;
+    int column = 0;
+    int fieldBegin = 0;
+    for (int i = 0; i < lineLength; ++i) {
+      if (line[i] == '\t' || line[i] == '\n') {
+        if (column == chromColumn) {
+          contig = new String(line, fieldBegin, i - fieldBegin, StandardCharsets.UTF_8);
+        } else if (column == startColumn) {
+          start = parsePosition(fieldBegin, i);
+        } else if (column == endColumn) {
+          end = parsePosition(fieldBegin, i);
+        }
+        column += 1;
+        fieldBegin = i + 1;
+      }
+    }
+    if (contig == null || start < 0 || end < 0) {
+      disableIndex("row without valid coordinates");
+      return;
+    }
+
+    if (!contig.equals(lastContig)) {
+      if (!seenContigs.add(contig)) {
+        disableIndex("rows are not sorted by coordinate");
+        return;
+      }
+      lastContig = contig;
+      lastStart = 0;
+    }
+    if (start < lastStart) {
+      disableIndex("rows are not sorted by coordinate");
+      return;
+    }
+    lastStart = start;
+
+    pendingFeatures.addLast(new SimpleFeature(contig, start, Math.max(start, end)));
+    pendingPositions.addLast(linePosition);
+    addPendingFeatures();
+  }
+
+  /** Pass the pending rows to the index as far as the offsets of their blocks are known. */
+  private void addPendingFeatures() {
+    while (!pendingPositions.isEmpty() && out.hasVirtualOffset(pendingPositions.peekFirst())) {
+      indexCreator.addFeature(
+          pendingFeatures.removeFirst(), out.getVirtualOffset(pendingPositions.removeFirst()));
+    }
+  }
+
+  /** @return the non-negative integer in {@code line[begin, end)}, -1 if invalid. */
+  private int parsePosition(int begin, int end) {
+    if (begin == end || end - begin > 9) {
+      return -1;
+    }
+    int result = 0;
+    for (int i = begin; i < end; ++i) {
+      if (line[i] < '0' || line[i] > '9') {
+        return -1;
+      }
+      result = 10 * result + (line[i] - '0');
+    }
+    return result;
+  }
+
+  private void disableIndex(String reason) {
+    System.err.println("WARNING: Not writing tabix index " + indexPath + ", " + reason);
+    indexCreator = null;
+    pendingFeatures.clear();
+    pendingPositions.clear();
+  }
+}
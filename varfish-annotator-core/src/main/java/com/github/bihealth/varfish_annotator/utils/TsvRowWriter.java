@@ -0,0 +1,190 @@
+package com.github.bihealth.varfish_annotator.utils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Writer for tab-separated rows with a fixed list of columns.
+ *
+ * <p>Fields are appended directly as UTF-8 into a reusable byte buffer, numbers without creating
+ * intermediate strings. The buffer is passed to the output stream once it is large enough. Each
+ * row must have exactly one field per column. Not thread-safe.
+ */
+public final class TsvRowWriter implements RowWriter {
+
+  /** Number of buffered bytes at which the buffer is written out after a row. */
+  private static final int FLUSH_THRESHOLD = 64 * 1024;
+
+  /** The column names. */
+  private final List<String> columns;
+
+  /** The stream to write to, not closed by this writer. */
+  private final OutputStream out;
+
+  /** Buffered bytes. */
+  private byte[] buffer = new byte[2 * FLUSH_THRESHOLD];
+
+  /** Number of used bytes in {@link #buffer}. */
+  private int length;
+
+  /** Number of fields of the current row. */
+  private int numFields;
+
+  /** Offset of the current row in {@link #buffer}. */
+  private int rowStart;
+
+  /**
+   * Construct writer.
+   *
+   * @param columns The column names.
+   * @param out The stream to write to.
+   */
+  public TsvRowWriter(List<String> columns, OutputStream out) {
+    this.columns = columns;
+    this.out = out;
+  }
+
+  @Override
+  public List<String> getColumns() {
+    return columns;
+  }
+
+  /** Write the header row with the column names. */
+  @Override
+  public void writeHeader() throws IOException {
+    for (String column : columns) {
+      add(column);
+    }
+    endRow();
+  }
+
+  @Override
+  public TsvRowWriter add(String value) {
+    startField(value.length());
+    for (int i = 0; i < value.length(); ++i) {
+      final char c = value.charAt(i);
+      if (c >= 0x80) {
+        appendBytes(value.substring(i).getBytes(StandardCharsets.UTF_8));
+        break;
+      }
+      buffer[length++] = (byte) c;
+    }
+    return this;
+  }
+
+  /** Append the next field of the current row in decimal. */
+  @Override
+  public TsvRowWriter add(int value) {
+    return add((long) value);
+  }
+
+  /** Append the next field of the current row in decimal. */
+  @Override
+  public TsvRowWriter add(long value) {
+    if (value == Long.MIN_VALUE) {
+      return add(Long.toString(value));
+    }
+    startField(20);
+    if (value < 0) {
+      buffer[length++] = '-';
+      value = -value;
+    }
+    final int begin = length;
+    do {
+      buffer[length++] = (byte) ('0' + (value % 10));
+      value /= 10;
+    } while (value != 0);
+    // Digits were written least significant first.
+    for (int lo = begin, hi = length - 1; lo < hi; ++lo, --hi) {
+      final byte tmp = buffer[lo];
+      buffer[lo] = buffer[hi];
+      buffer[hi] = tmp;
+    }
+    return this;
+  }
+
+  @Override
+  public TsvRowWriter addAll(List<String> values) {
+    for (String value : values) {
+      add(value);
+    }
+    return this;
+  }
+
+  @Override
+  public void endRow() throws IOException {
+    if (numFields != columns.size()) {
+      final int actual = numFields;
+      if (numFields > 0) {
+        length = rowStart;
+      }
+      numFields = 0;
+      throw new IllegalStateException(
+          "Row has " + actual + " fields but there are " + columns.size() + " columns");
+    }
+    ensureCapacity(1);
+    buffer[length++] = '\n';
+    numFields = 0;
+    if (length >= FLUSH_THRESHOLD) {
+      writeBuffer();
+    }
+  }
+
+  @Override
+  public void write(byte[] bytes, int off, int len) throws IOException {
+    if (numFields != 0) {
+      throw new IllegalStateException("Cannot write rows in the middle of a row");
+    }
+    if (length + len > buffer.length) {
+      writeBuffer();
+    }
+    if (len > buffer.length) {
+      out.write(bytes, off, len);
+    } else {
+      System.arraycopy(bytes, off, buffer, length, len);
+      length += len;
+    }
+  }
+
+  /** Write out the buffered rows and flush the stream. */
+  @Override
+  public void flush() throws IOException {
+    writeBuffer();
+    out.flush();
+  }
+
+  /** Same as {@link #flush()}, TSV files have no trailer. */
+  @Override
+  public void finish() throws IOException {
+    flush();
+  }
+
+  private void startField(int maxLength) {
+    ensureCapacity(maxLength + 1);
+    if (numFields++ > 0) {
+      buffer[length++] = '\t';
+    } else {
+      rowStart = length;
+    }
+  }
+
+  private void appendBytes(byte[] bytes) {
+    ensureCapacity(bytes.length);
+    System.arraycopy(bytes, 0, buffer, length, bytes.length);
+    length += bytes.length;
+  }
+
+  private void ensureCapacity(int extra) {
+    if (length + extra > buffer.length) {
+      buffer = Arrays.copyOf(buffer, Math.max(2 * buffer.length, length + extra));
+    }
+  }
+
+  private void writeBuffer() throws IOException {
+    out.write(buffer, 0, length);
+    length = 0;
+  }
+}
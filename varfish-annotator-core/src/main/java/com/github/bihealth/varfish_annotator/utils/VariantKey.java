@@ -0,0 +1,217 @@
+package com.github.bihealth.varfish_annotator.utils;
+
+/**
+ * Encoding of {@code (chrom, pos, ref, alt)} into a single {@code long}.
+ *
+ * <p>Variants on the canonical chromosomes with up to {@link #MAX_EXACT_BASES} bases in REF and
+ * ALT together, consisting of {@code ACGT} only, are encoded exactly:
+ *
+ * <pre>
+ *   bit  63     0 (exact)
+ *   bits 58-62  chromosome number, see {@link #getChromNo(String)}
+ *   bits 30-57  position
+ *   bits 26-29  length of REF
+ *   bits 22-25  length of ALT
+ *   bits  0-21  REF followed by ALT with two bits per base, first base highest
+ * </pre>
+ *
+ * <p>All other variants get a hashed key with bit 63 set. If chromosome and position can be
+ * represented, these are kept in bits 30-62 and the alleles are hashed into bits 0-29, otherwise
+ * everything is hashed into bits 0-57. Hashed keys may collide, so users that need exact answers
+ * must check {@link #isExact(long)} and fall back to the original values for hashed keys.
+ *
+ * <p>Exact keys of the same chromosome sort by position. Chromosome names
+ * with and without "chr" prefix yield the same key. No key is {@code 0}.
+ */
+public final class VariantKey {
+
+  /** Largest number of bases in REF and ALT together that can be encoded exactly. */
+  public static final int MAX_EXACT_BASES = 11;
+
+  /** Largest position that can be stored in the key. */
+  public static final int MAX_POS = (1 << 28) - 1;
+
+  /** Flag for hashed keys. */
+  private static final long HASHED = 1L << 63;
+
+  private static final int CHROM_SHIFT = 58;
+  private static final int POS_SHIFT = 30;
+  private static final int REF_LEN_SHIFT = 26;
+  private static final int ALT_LEN_SHIFT = 22;
+
+  private static final long MASK_4 = 0xfL;
+  private static final long MASK_5 = 0x1fL;
+  private static final long MASK_28 = (1L << 28) - 1;
+  private static final long MASK_30 = (1L << 30) - 1;
+  private static final long MASK_58 = (1L << 58) - 1;
+
+  /** FNV-1a offset basis. */
+  private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+
+  /** FNV-1a prime. */
+  private static final long FNV_PRIME = 0x100000001b3L;
+
+  /** Bases by their two-bit code. */
+  private static final char[] BASES = {'A', 'C', 'G', 'T'};
+
+  private VariantKey() {}
+
+  /**
+   * Build key for the given variant.
+   *
+   * @param chrom Chromosome name, with or without "chr" prefix.
+   * @param pos Position, the key does not care whether it is 0- or 1-based.
+   * @param ref Reference allele, may be empty.
+   * @param alt Alternative allele, may be empty.
+   * @return The key, never {@code 0}.
+   */
+  public static long of(String chrom, int pos, String ref, String alt) {
+    final int chromNo = getChromNo(chrom);
+    if (chromNo == 0 || pos < 0 || pos > MAX_POS) {
+      final String name = chrom.startsWith("chr") ? chrom.substring(3) : chrom;
+      final long hash = hash(hash(hash(hash(FNV_OFFSET, name), pos), ref), alt);
+      return HASHED | (fmix(hash) & MASK_58);
+    }
+    final long prefix = ((long) chromNo << CHROM_SHIFT) | ((long) pos << POS_SHIFT);
+    final long alleles = encodeAlleles(ref, alt);
+    if (alleles >= 0) {
+      return prefix | alleles;
+    } else {
+      return HASHED | prefix | (fmix(hash(hash(FNV_OFFSET, ref), alt)) & MASK_30);
+    }
+  }
+
+  /** @return whether the key was encoded exactly and can be decoded. */
+  public static boolean isExact(long key) {
+    return (key & HASHED) == 0;
+  }
+
+  /** @return chromosome number of the key, {@code 0} if it has not been stored. */
+  public static int getChromNo(long key) {
+    return (int) ((key >>> CHROM_SHIFT) & MASK_5);
+  }
+
+  /** @return position of the key, {@code -1} if it has not been stored. */
+  public static int getPos(long key) {
+    return (getChromNo(key) == 0) ? -1 : (int) ((key >>> POS_SHIFT) & MASK_28);
+  }
+
+  /** @return reference allele of exact key. */
+  public static String getRef(long key) {
+    checkExact(key);
+    final int refLen = (int) ((key >>> REF_LEN_SHIFT) & MASK_4);
+    return decodeBases(key, 0, refLen);
+  }
+
+  /** @return alternative allele of exact key. */
+  public static String getAlt(long key) {
+    checkExact(key);
+    final int refLen = (int) ((key >>> REF_LEN_SHIFT) & MASK_4);
+    final int altLen = (int) ((key >>> ALT_LEN_SHIFT) & MASK_4);
+    return decodeBases(key, refLen, altLen);
+  }
+
+  /**
+   * Get number of canonical chromosome.
+   *
+   * @param chrom Chromosome name, with or without "chr" prefix.
+   * @return {@code 1}-{@code 22} for autosomes, {@code 23} for X, {@code 24} for Y, {@code 25} for
+   *     the mitochondrial genome, {@code 0} for all other names.
+   */
+  public static int getChromNo(String chrom) {
+    final int offset = chrom.startsWith("chr") ? 3 : 0;
+    final int length = chrom.length() - offset;
+    if (length == 1 || length == 2) {
+      final char c0 = chrom.charAt(offset);
+      if (length == 1) {
+        switch (c0) {
+          case 'X':
+            return 23;
+          case 'Y':
+            return 24;
+          case 'M':
+            return 25;
+          default:
+            return (c0 >= '1' && c0 <= '9') ? c0 - '0' : 0;
+        }
+      }
+      final char c1 = chrom.charAt(offset + 1);
+      if (c0 == 'M' && c1 == 'T') {
+        return 25;
+      } else if (c0 >= '1' && c0 <= '2' && c1 >= '0' && c1 <= '9') {
+        final int result = (c0 - '0') * 10 + (c1 - '0');
+        return (result <= 22) ? result : 0;
+      }
+    }
+    return 0;
+  }
+
+  /** Encode alleles into the lower 30 bits, {@code -1} if this is not possible. */
+  private static long encodeAlleles(String ref, String alt) {
+    if (ref.length() + alt.length() > MAX_EXACT_BASES) {
+      return -1;
+    }
+    long bases = 0;
+    for (int i = 0; i < ref.length() + alt.length(); ++i) {
+      final char c = (i < ref.length()) ? ref.charAt(i) : alt.charAt(i - ref.length());
+      final int code = encodeBase(c);
+      if (code < 0) {
+        return -1;
+      }
+      bases |= ((long) code) << (2 * (MAX_EXACT_BASES - 1 - i));
+    }
+    return ((long) ref.length() << REF_LEN_SHIFT) | ((long) alt.length() << ALT_LEN_SHIFT) | bases;
+  }
+
+  private static int encodeBase(char c) {
+    switch (c) {
+      case 'A':
+        return 0;
+      case 'C':
+        return 1;
+      case 'G':
+        return 2;
+      case 'T':
+        return 3;
+      default:
+        return -1;
+    }
+  }
+
+  private static String decodeBases(long key, int offset, int length) {
+    final char[] result = new char[length];
+    for (int i = 0; i < length; ++i) {
+      final int shift = 2 * (MAX_EXACT_BASES - 1 - (offset + i));
+      result[i] = BASES[(int) ((key >>> shift) & 0x3L)];
+    }
+    return new String(result);
+  }
+
+  private static void checkExact(long key) {
+    if (!isExact(key)) {
+      throw new IllegalArgumentException("Cannot decode alleles of hashed key " + key);
+    }
+  }
+
+  private static long hash(long hash, String s) {
+    for (int i = 0; i < s.length(); ++i) {
+      hash = (hash ^ s.charAt(i)) * FNV_PRIME;
+    }
+    // Separator, such that ("AC", "G") and ("A", "CG") differ.
+    return (hash ^ 0xff) * FNV_PRIME;
+  }
+
+  private static long hash(long hash, int value) {
+    return (hash ^ value) * FNV_PRIME;
+  }
+
+  /** Finalization step of MurmurHash3 for spreading the bits. */
+  private static long fmix(long h) {
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    h *= 0xc4ceb93fe1a85ec3L;
+    h ^= h >>> 33;
+    return h;
+  }
+}
@@ -1,9 +1,6 @@
 package com.github.bihealth.varfish_annotator.utils;
 
 import com.github.bihealth.varfish_annotator.VarfishAnnotatorException;
-import htsjdk.samtools.reference.IndexedFastaSequenceFile;
-import java.io.File;
-import java.io.FileNotFoundException;
 
 /**
  * Helper class for normalizing two variants
@@ -15,14 +12,18 @@ import java.io.FileNotFoundException;
  * <p>Tan, Adrian, Gonçalo R. Abecasis, and Hyun Min Kang. "Unified representation of genetic
  * variants." Bioinformatics (2015): btv112.
  *
+ * <p>The reference bases are read from a {@link MappedFastaReference}, so one normalizer can be
+ * shared by any number of threads.
+ *
  * @author <a href="mailto:manuel.holtgrewe@bihealth.de">Manuel Holtgrewe</a>
  */
 public final class VariantNormalizer {
 
-  /** Path to indexed FASTA path to use */
-  final String fastaPath;
+  /** Number of reference bases to read at once when shifting. */
+  private static final int WINDOW_SIZE = 128;
+
   /** Random access in FASTA files using FAI */
-  final IndexedFastaSequenceFile fai;
+  final MappedFastaReference reference;
 
   /**
    * Construct new variant normalizer object
@@ -31,12 +32,16 @@ public final class VariantNormalizer {
    * @throws VarfishAnnotatorException On problems with opening the FASTA/FAI file
    */
   public VariantNormalizer(String fastaPath) throws VarfishAnnotatorException {
-    this.fastaPath = fastaPath;
-    try {
-      this.fai = new IndexedFastaSequenceFile(new File(fastaPath));
-    } catch (FileNotFoundException e) {
-      throw new VarfishAnnotatorException("Could not find FASTA/FAI file", e);
-    }
+    this(new MappedFastaReference(fastaPath));
+  }
+
+  /**
+   * Construct new variant normalizer object
+   *
+   * @param reference The reference sequence to use, may be shared with other normalizers
+   */
+  public VariantNormalizer(MappedFastaReference reference) {
+    this.reference = reference;
   }
 
   /**
@@ -46,8 +51,7 @@ public final class VariantNormalizer {
    * are given as sequence.
    */
   public VariantDescription normalizeVariant(VariantDescription desc) {
-    final VariantDescription shifted = shiftLeft(desc);
-    return trimBasesLeft(shifted, 0);
+    return normalize(desc, 0);
   }
 
   /**
@@ -59,56 +63,114 @@ public final class VariantNormalizer {
    * are given as sequence.
    */
   public VariantDescription normalizeInsertion(VariantDescription desc) {
-    final VariantDescription shifted = shiftLeft(desc);
-    return trimBasesLeft(shifted, 1);
+    return normalize(desc, 1);
   }
 
-  private VariantDescription shiftLeft(VariantDescription desc) {
-    int start = desc.getPos();
-    String ref = desc.getRef();
-    String alt = desc.getAlt();
-
-    boolean anyChange = true;
-    while (anyChange) {
-      anyChange = false;
-
-      // Trim right-most nucletoide
-      if (ref.length() > 0
-          && alt.length() > 0
-          && ref.charAt(ref.length() - 1) == alt.charAt(alt.length() - 1)) {
-        ref = ref.substring(0, ref.length() - 1);
-        alt = alt.substring(0, alt.length() - 1);
-        anyChange = true;
-      }
-      // Extend alleles to the left if there is an empty allele
-      if (ref.length() == 0 || alt.length() == 0) {
-        char extension = (char) fai.getSubsequenceAt(desc.getChrom(), start, start).getBases()[0];
-        ref = extension + ref;
-        alt = extension + alt;
-        start -= 1;
-        anyChange = true;
-      }
+  /**
+   * Shift variant to the left and trim common bases, keeping at least {@code minSize} bases.
+   *
+   * <p>Works on offsets into the original alleles and only builds new strings for the result.
+   * Variants that are already normalized, such as SNVs, are returned as is.
+   */
+  private VariantDescription normalize(VariantDescription desc, int minSize) {
+    final String ref = desc.getRef();
+    final String alt = desc.getAlt();
+    if (ref.length() == 1 && alt.length() == 1 && ref.charAt(0) != alt.charAt(0)) {
+      return desc; // SNV
     }
 
-    return new VariantDescription(desc.getChrom(), start, ref, alt);
+    // Trim right-most nucleotides
+    int refEnd = ref.length();
+    int altEnd = alt.length();
+    while (refEnd > 0 && altEnd > 0 && ref.charAt(refEnd - 1) == alt.charAt(altEnd - 1)) {
+      refEnd -= 1;
+      altEnd -= 1;
+    }
+
+    if (refEnd > 0 && altEnd > 0) {
+      return trimBasesLeft(desc, refEnd, altEnd, minSize);
+    } else if (refEnd == 0 && altEnd == 0) {
+      throw new IllegalArgumentException("Cannot normalize variant with REF == ALT: " + desc);
+    } else if (refEnd > 0) {
+      return shiftLeft(desc, ref, refEnd, true, minSize);
+    } else {
+      return shiftLeft(desc, alt, altEnd, false, minSize);
+    }
   }
 
-  private VariantDescription trimBasesLeft(VariantDescription desc, int minSize) {
-    int start = desc.getPos();
-    String ref = desc.getRef();
-    String alt = desc.getAlt();
+  /**
+   * Shift insertion or deletion of {@code seq.substring(0, length)} before {@code desc.getPos()}
+   * to the left as long as the preceding reference base equals its last base.
+   *
+   * <p>Each shift rotates the inserted or deleted sequence to the right by one, so the result is
+   * built once from the number of shifts. The reference is read backwards in windows.
+   */
+  private VariantDescription shiftLeft(
+      VariantDescription desc, String seq, int length, boolean isDeletion, int minSize) {
+    final String chrom = desc.getChrom();
+    final int pos = desc.getPos();
+    final byte[] window = new byte[Math.min(WINDOW_SIZE, Math.max(pos, 1))];
+    int windowBegin = pos;
 
-    // Trim left bases
+    int numShifts = 0;
+    byte base;
     while (true) {
-      if (ref.length() > minSize && alt.length() > minSize && ref.charAt(0) == alt.charAt(0)) {
-        ref = ref.substring(1);
-        alt = alt.substring(1);
-        start += 1;
-      } else {
+      final int refPos = pos - 1 - numShifts;
+      if (refPos < windowBegin) {
+        if (refPos < 0) {
+          throw new IllegalArgumentException(
+              "Cannot shift variant beyond start of contig: " + desc);
+        }
+        final int windowLength = Math.min(window.length, refPos + 1);
+        windowBegin = refPos + 1 - windowLength;
+        reference.getBases(chrom, windowBegin, window, windowLength);
+      }
+      base = window[refPos - windowBegin];
+      if (base != seq.charAt(length - 1 - numShifts % length)) {
         break;
       }
+      numShifts += 1;
+    }
+
+    // Keep the preceding base as anchor only if requested.
+    final int anchor = (minSize > 0) ? 1 : 0;
+    final char[] shifted = new char[anchor + length];
+    if (anchor > 0) {
+      shifted[0] = (char) base;
+    }
+    final int rotation = numShifts % length;
+    for (int i = 0; i < length; ++i) {
+      shifted[anchor + i] = seq.charAt((i - rotation + length) % length);
     }
+    final String longer = new String(shifted);
+    final String shorter = (anchor > 0) ? String.valueOf((char) base) : "";
+    final int start = pos - numShifts - anchor;
+    if (isDeletion) {
+      return new VariantDescription(chrom, start, longer, shorter);
+    } else {
+      return new VariantDescription(chrom, start, shorter, longer);
+    }
+  }
 
-    return new VariantDescription(desc.getChrom(), start, ref, alt);
+  /** Trim left bases of {@code ref.substring(0, refEnd)} and {@code alt.substring(0, altEnd)}. */
+  private VariantDescription trimBasesLeft(
+      VariantDescription desc, int refEnd, int altEnd, int minSize) {
+    final String ref = desc.getRef();
+    final String alt = desc.getAlt();
+    int begin = 0;
+    while (refEnd - begin > minSize
+        && altEnd - begin > minSize
+        && ref.charAt(begin) == alt.charAt(begin)) {
+      begin += 1;
+    }
+
+    if (begin == 0 && refEnd == ref.length() && altEnd == alt.length()) {
+      return desc; // already normalized
+    }
+    return new VariantDescription(
+        desc.getChrom(),
+        desc.getPos() + begin,
+        ref.substring(begin, refEnd),
+        alt.substring(begin, altEnd));
   }
 }
@@ -0,0 +1,94 @@
+package com.github.bihealth.varfish_annotator.data;
+
+import com.github.bihealth.varfish_annotator.VarfishAnnotatorException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Collections;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class SnvEffectTableTest {
+
+  @TempDir public File tmpFolder;
+
+  private File file;
+
+  @BeforeEach
+  void initEach() throws IOException {
+    // Contig 1 has the intervals [100, 150) and [1000, 1100), more than two blocks in total, and
+    // contig 2 has [5, 7).
+    file = new File(tmpFolder, "snvs.bin");
+    try (SnvEffectTableWriter writer = new SnvEffectTableWriter(file, "GRCh37\nidentity")) {
+      writer.startContig(1, "1", new int[] {100, 1000}, new int[] {150, 1100});
+      for (int pos = 100; pos < 150; ++pos) {
+        writer.addPosition('A', values(pos, 'A'));
+      }
+      for (int pos = 1000; pos < 1100; ++pos) {
+        writer.addPosition('C', values(pos, 'C'));
+      }
+      writer.startContig(2, "2", new int[] {5}, new int[] {7});
+      writer.addPosition('N', new String[4]);
+      writer.addPosition('G', new String[] {"", null, null, "a\tb\nc\td"});
+    }
+  }
+
+  private static String[] values(int pos, char ref) {
+    final String[] result = new String[4];
+    for (int b = 0; b < 4; ++b) {
+      if (SnvEffectTable.BASES.charAt(b) != ref) {
+        result[b] = pos + ">" + SnvEffectTable.BASES.charAt(b);
+      }
+    }
+    return result;
+  }
+
+  @Test
+  public void testLookup() throws VarfishAnnotatorException {
+    final SnvEffectTable table = SnvEffectTable.open(file);
+    Assertions.assertEquals("GRCh37\nidentity", table.getIdentity());
+    Assertions.assertEquals("1", table.getContigName(1));
+    Assertions.assertEquals("2", table.getContigName(2));
+    Assertions.assertNull(table.getContigName(3));
+
+    Assertions.assertEquals("100>C", table.get(1, 100, 'A', 'C'));
+    Assertions.assertEquals("149>T", table.get(1, 149, 'A', 'T'));
+    Assertions.assertEquals("1000>A", table.get(1, 1000, 'C', 'A'));
+    Assertions.assertEquals("1099>G", table.get(1, 1099, 'C', 'G'));
+    Assertions.assertEquals("1050>T", table.get(1, 1050, 'C', 'T'));
+    Assertions.assertEquals("120>G", table.get(1, 120, 'A', 'G'));
+
+    Assertions.assertEquals("", table.get(2, 6, 'G', 'A'));
+    Assertions.assertEquals("a\tb\nc\td", table.get(2, 6, 'G', 'T'));
+    Assertions.assertNull(table.get(2, 6, 'G', 'C'));
+  }
+
+  @Test
+  public void testMisses() throws VarfishAnnotatorException {
+    final SnvEffectTable table = SnvEffectTable.open(file);
+    Assertions.assertNull(table.get(1, 99, 'A', 'C'));
+    Assertions.assertNull(table.get(1, 150, 'A', 'C'));
+    Assertions.assertNull(table.get(1, 1100, 'C', 'A'));
+    Assertions.assertNull(table.get(1, 100, 'G', 'C'));
+    Assertions.assertNull(table.get(1, 100, 'A', 'A'));
+    Assertions.assertNull(table.get(1, 100, 'A', 'N'));
+    Assertions.assertNull(table.get(2, 5, 'N', 'A'));
+    Assertions.assertNull(table.get(3, 5, 'A', 'C'));
+  }
+
+  @Test
+  public void testIdentity() {
+    Assertions.assertEquals(
+        "GRCh37\ncodingTranscriptsOnly=true",
+        SnvEffectTable.buildIdentity("GRCh37", Collections.singletonList(null), true));
+  }
+
+  @Test
+  public void testOpenInvalid() throws IOException {
+    final File invalid = new File(tmpFolder, "invalid.bin");
+    Files.write(invalid.toPath(), new byte[100]);
+    Assertions.assertThrows(VarfishAnnotatorException.class, () -> SnvEffectTable.open(invalid));
+  }
+}
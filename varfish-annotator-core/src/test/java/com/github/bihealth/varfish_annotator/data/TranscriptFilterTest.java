@@ -0,0 +1,40 @@
+package com.github.bihealth.varfish_annotator.data;
+
+import com.github.bihealth.varfish_annotator.VarfishAnnotatorException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class TranscriptFilterTest {
+
+  @TempDir public File tmpFolder;
+
+  @Test
+  public void testLoadWithoutAllowlist() throws VarfishAnnotatorException {
+    Assertions.assertTrue(TranscriptFilter.load(null, false).isAll());
+    Assertions.assertFalse(TranscriptFilter.load(null, true).isAll());
+  }
+
+  @Test
+  public void testLoadAllowlist() throws IOException, VarfishAnnotatorException {
+    final File allowlist = new File(tmpFolder, "allowlist.txt");
+    Files.write(
+        allowlist.toPath(),
+        "# MANE Select\nNM_000492.4\n\nNM_000492.3\nENST00000003084\n"
+            .getBytes(StandardCharsets.UTF_8));
+    final TranscriptFilter filter = TranscriptFilter.load(allowlist.getPath(), false);
+    Assertions.assertFalse(filter.isAll());
+    Assertions.assertEquals("TranscriptFilter{accessions=2, codingOnly=false}", filter.toString());
+  }
+
+  @Test
+  public void testLoadMissingAllowlist() {
+    Assertions.assertThrows(
+        VarfishAnnotatorException.class,
+        () -> TranscriptFilter.load(new File(tmpFolder, "missing.txt").getPath(), false));
+  }
+}
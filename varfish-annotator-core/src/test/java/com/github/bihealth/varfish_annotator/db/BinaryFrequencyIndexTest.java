@@ -0,0 +1,65 @@
+package com.github.bihealth.varfish_annotator.db;
+
+import com.google.common.collect.ImmutableList;
+import java.io.File;
+import java.io.IOException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class BinaryFrequencyIndexTest {
+
+  @TempDir public File tmpFolder;
+
+  @Test
+  public void testWriteAndLookup() throws IOException {
+    final File file = new File(tmpFolder, "test.vfbi");
+    final String longRef = "ACGTACGTACGTACGTACGT";
+    try (BinaryFrequencyIndexWriter writer =
+        new BinaryFrequencyIndexWriter(file, "GRCh37", 7, ImmutableList.of("1", "2"))) {
+      writer.add("1", 100, "A", "C", 0.5, 1, 2, 3);
+      writer.add("1", 100, "A", "G", 0.25, 4, 5, 6);
+      writer.add("1", 200, longRef, "A", 0.125, 7, 8, 9);
+      writer.add("1", 200, "N", "A", 0.0625, 10, 11, 12);
+      writer.add("2", 50, "T", "TA", 0.75, 13, 14, 15);
+    }
+
+    try (BinaryFrequencyIndex index = BinaryFrequencyIndex.open(file)) {
+      Assertions.assertEquals("GRCh37", index.getRelease());
+      Assertions.assertEquals(7L, index.getTableRowCount());
+      Assertions.assertEquals(5L, index.getNumRecords());
+
+      Assertions.assertEquals("0.25", index.lookup("1", 100, "A", "G").getAfPopmaxStr());
+      Assertions.assertEquals("4", index.lookup("1", 100, "A", "G").getHetTotalStr());
+      Assertions.assertEquals("2", index.lookup("1", 100, "A", "C").getHomTotalStr());
+      Assertions.assertEquals("9", index.lookup("1", 200, longRef, "A").getHemiTotalStr());
+      Assertions.assertEquals("0.0625", index.lookup("1", 200, "N", "A").getAfPopmaxStr());
+      Assertions.assertEquals("0.75", index.lookup("2", 50, "T", "TA").getAfPopmaxStr());
+
+      // Missing variants, positions, and chromosomes.
+      Assertions.assertEquals("0", index.lookup("1", 100, "A", "T").getAfPopmaxStr());
+      Assertions.assertEquals("0", index.lookup("1", 150, "A", "C").getAfPopmaxStr());
+      Assertions.assertEquals("0", index.lookup("2", 51, "T", "TA").getAfPopmaxStr());
+      Assertions.assertEquals("0", index.lookup("X", 100, "A", "C").getAfPopmaxStr());
+    }
+  }
+
+  @Test
+  public void testPackAlleles() {
+    Assertions.assertNotEquals(
+        BinaryFrequencyIndex.packAlleles("A", "CG"), BinaryFrequencyIndex.packAlleles("AC", "G"));
+    Assertions.assertEquals(-1L, BinaryFrequencyIndex.packAlleles("N", "A"));
+    Assertions.assertEquals(-1L, BinaryFrequencyIndex.packAlleles("ACGTACGTACGTACGT", "A"));
+  }
+
+  @Test
+  public void testOutOfOrder() throws IOException {
+    final File file = new File(tmpFolder, "test.vfbi");
+    try (BinaryFrequencyIndexWriter writer =
+        new BinaryFrequencyIndexWriter(file, "GRCh37", 1, ImmutableList.of("1"))) {
+      writer.add("1", 100, "A", "C", 0.5, 1, 2, 3);
+      Assertions.assertThrows(
+          IllegalArgumentException.class, () -> writer.add("1", 99, "A", "C", 0.5, 1, 2, 3));
+    }
+  }
+}
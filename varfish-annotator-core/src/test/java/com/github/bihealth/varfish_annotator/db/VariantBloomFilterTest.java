@@ -0,0 +1,45 @@
+package com.github.bihealth.varfish_annotator.db;
+
+import java.io.File;
+import java.io.IOException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class VariantBloomFilterTest {
+
+  @TempDir public File tmpFolder;
+
+  @Test
+  public void testWriteReadAndCount() throws IOException {
+    final VariantBloomFilter filter = VariantBloomFilter.create("GRCh37", 2000, 1000, 0.01);
+    for (int i = 0; i < 1000; ++i) {
+      filter.put("1", 1000 + 2 * i, "A", "C");
+    }
+    final File file = new File(tmpFolder, "test.bloom");
+    filter.write(file);
+
+    final VariantBloomFilter loaded = VariantBloomFilter.read(file);
+    Assertions.assertEquals("GRCh37", loaded.getRelease());
+    Assertions.assertEquals(2000L, loaded.getTableRowCount());
+
+    // No false negatives.
+    for (int i = 0; i < 1000; ++i) {
+      Assertions.assertTrue(loaded.mightContain("1", 1000 + 2 * i, "A", "C"));
+    }
+    Assertions.assertEquals(0L, loaded.getNumSkipped());
+
+    // Most absent variants are skipped.
+    int numPassed = 0;
+    for (int i = 0; i < 1000; ++i) {
+      if (loaded.mightContain("1", 1000 + 2 * i, "A", "G")) {
+        numPassed += 1;
+        loaded.recordFalsePositive();
+      }
+    }
+    Assertions.assertTrue(numPassed < 50);
+    Assertions.assertEquals(2000L, loaded.getNumQueries());
+    Assertions.assertEquals(1000L - numPassed, loaded.getNumSkipped());
+    Assertions.assertEquals(numPassed / 1000.0, loaded.getObservedFpp(), 1e-9);
+  }
+}
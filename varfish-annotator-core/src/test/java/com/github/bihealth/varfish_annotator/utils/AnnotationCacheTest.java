@@ -0,0 +1,66 @@
+package com.github.bihealth.varfish_annotator.utils;
+
+import com.github.bihealth.varfish_annotator.VarfishAnnotatorException;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class AnnotationCacheTest {
+
+  private static final long SIZE = 1024 * 1024;
+
+  @TempDir public File tmpFolder;
+
+  @Test
+  public void testPutGetAndReopen() throws VarfishAnnotatorException {
+    final File file = new File(tmpFolder, "cache.bin");
+    try (AnnotationCache cache = AnnotationCache.open(file, SIZE, 42)) {
+      Assertions.assertNull(cache.get(bytes("1\t100\tA\tC")));
+      cache.put(bytes("1\t100\tA\tC"), bytes("value 1"));
+      cache.put(bytes("1\t100\tA\tG"), bytes("value 2"));
+      Assertions.assertEquals("value 1", string(cache.get(bytes("1\t100\tA\tC"))));
+      Assertions.assertEquals("value 2", string(cache.get(bytes("1\t100\tA\tG"))));
+    }
+
+    try (AnnotationCache cache = AnnotationCache.open(file, SIZE, 42)) {
+      Assertions.assertEquals("value 1", string(cache.get(bytes("1\t100\tA\tC"))));
+      Assertions.assertEquals(1, cache.getNumHits());
+    }
+
+    // A different fingerprint clears the cache.
+    try (AnnotationCache cache = AnnotationCache.open(file, SIZE, 43)) {
+      Assertions.assertNull(cache.get(bytes("1\t100\tA\tC")));
+    }
+  }
+
+  @Test
+  public void testEvictsOldestRecords() throws VarfishAnnotatorException {
+    final File file = new File(tmpFolder, "cache.bin");
+    final byte[] value = new byte[1000];
+    try (AnnotationCache cache = AnnotationCache.open(file, SIZE, 42)) {
+      for (int i = 0; i < 5000; ++i) {
+        cache.put(bytes("key " + i), value);
+      }
+      Assertions.assertNull(cache.get(bytes("key 0")));
+      Assertions.assertArrayEquals(value, cache.get(bytes("key 4999")));
+    }
+  }
+
+  @Test
+  public void testLockedByOtherUser() throws VarfishAnnotatorException {
+    final File file = new File(tmpFolder, "cache.bin");
+    try (AnnotationCache cache = AnnotationCache.open(file, SIZE, 42)) {
+      Assertions.assertNull(AnnotationCache.open(file, SIZE, 42));
+    }
+  }
+
+  private static byte[] bytes(String s) {
+    return s.getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static String string(byte[] data) {
+    return new String(data, StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,48 @@
+package com.github.bihealth.varfish_annotator.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class AsyncFileOutputStreamTest {
+
+  @TempDir public File tmpFolder;
+
+  @Test
+  public void testWrite() throws IOException {
+    final File file = new File(tmpFolder, "out.tsv");
+    Files.write(file.toPath(), new byte[10_000]); // is truncated
+
+    final Random random = new Random(42);
+    final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+    try (AsyncFileOutputStream out = new AsyncFileOutputStream(file.toPath(), 2, 64)) {
+      for (int i = 0; i < 1_000; ++i) {
+        final byte[] chunk = new byte[random.nextInt(200)];
+        random.nextBytes(chunk);
+        out.write(chunk, 0, chunk.length);
+        out.write(i);
+        expected.write(chunk, 0, chunk.length);
+        expected.write(i);
+        if (i == 500) {
+          out.flush();
+          Assertions.assertArrayEquals(expected.toByteArray(), Files.readAllBytes(file.toPath()));
+        }
+      }
+    }
+    Assertions.assertArrayEquals(expected.toByteArray(), Files.readAllBytes(file.toPath()));
+  }
+
+  @Test
+  public void testWriteAfterClose() throws IOException {
+    final AsyncFileOutputStream out =
+        new AsyncFileOutputStream(new File(tmpFolder, "out.tsv").toPath());
+    out.close();
+    out.close();
+    Assertions.assertThrows(IOException.class, () -> out.write(1));
+  }
+}
@@ -0,0 +1,100 @@
+package com.github.bihealth.varfish_annotator.utils;
+
+import de.charite.compbio.jannovar.annotation.VariantEffect;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class BestAnnotationSelectorTest {
+
+  @Test
+  public void testRank() {
+    Assertions.assertTrue(
+        BestAnnotationSelector.rank(VariantEffect.STOP_GAINED)
+            < BestAnnotationSelector.rank(VariantEffect.INTERGENIC_VARIANT));
+    Assertions.assertEquals(BestAnnotationSelector.NULL_RANK, BestAnnotationSelector.rank(null));
+  }
+
+  @Test
+  public void testOfferTies() {
+    final BestAnnotationSelector selector = new BestAnnotationSelector();
+    selector.offer(0, "a", 5, 0);
+    selector.offer(0, "a", 3, 1);
+    selector.offer(0, "a", 3, 2);
+    selector.offerLast(1, "a", 3, 3);
+    selector.offerLast(1, "a", 5, 4);
+    selector.offerLast(1, "a", 5, 5);
+    selector.offerLast(1, "a", 4, 6);
+    Assertions.assertEquals(2, selector.size());
+    Assertions.assertEquals(1, selector.getIndex(0));
+    Assertions.assertEquals(5, selector.getIndex(1));
+
+    selector.clear();
+    Assertions.assertEquals(0, selector.size());
+    selector.offer(1, "a", 7, 0);
+    Assertions.assertEquals(1, selector.size());
+    Assertions.assertEquals(1, selector.getGroup(0));
+    Assertions.assertEquals(0, selector.getIndex(0));
+  }
+
+  @Test
+  public void testAgainstSorting() {
+    final Random random = new Random(42);
+    final BestAnnotationSelector selector = new BestAnnotationSelector();
+    for (int round = 0; round < 1_000; ++round) {
+      final int numAnnos = random.nextInt(200);
+      final List<int[]> annos = new ArrayList<>();
+      for (int i = 0; i < numAnnos; ++i) {
+        // Group, key, rank and index; few distinct ranks to exercise ties.
+        final int rank =
+            random.nextInt(10) == 0 ? BestAnnotationSelector.NULL_RANK : random.nextInt(4);
+        annos.add(new int[] {random.nextInt(2), random.nextInt(50), rank, i});
+      }
+
+      // Expected: first per key after stable sort, or last for group 1.
+      final List<int[]> sorted = new ArrayList<>(annos);
+      sorted.sort(Comparator.comparingInt(anno -> anno[2]));
+      final Map<String, Integer> expected = new LinkedHashMap<>();
+      for (int[] anno : sorted) {
+        final String key = anno[0] + ":" + anno[1];
+        if (anno[0] == 1 || !expected.containsKey(key)) {
+          expected.put(key, anno[3]);
+        }
+      }
+
+      selector.clear();
+      for (int[] anno : annos) {
+        if (anno[0] == 0) {
+          selector.offer(anno[0], "gene" + anno[1], anno[2], anno[3]);
+        } else {
+          selector.offerLast(anno[0], "gene" + anno[1], anno[2], anno[3]);
+        }
+      }
+      selector.sortSlots();
+      final Map<String, Integer> actual = new LinkedHashMap<>();
+      for (int slot = 0; slot < selector.size(); ++slot) {
+        actual.put(
+            selector.getGroup(slot) + ":" + selector.getKey(slot).substring(4),
+            selector.getIndex(slot));
+      }
+      Assertions.assertEquals(expected, actual);
+      // Slots of group 0 are in the order in which the keys are first seen in sorted order.
+      Assertions.assertEquals(filterGroup0(expected), filterGroup0(actual));
+    }
+  }
+
+  private static List<String> filterGroup0(Map<String, Integer> map) {
+    final List<String> result = new ArrayList<>();
+    for (String key : map.keySet()) {
+      if (key.startsWith("0:")) {
+        result.add(key);
+      }
+    }
+    return result;
+  }
+}
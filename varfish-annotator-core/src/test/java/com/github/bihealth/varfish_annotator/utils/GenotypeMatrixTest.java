@@ -0,0 +1,105 @@
+package com.github.bihealth.varfish_annotator.utils;
+
+import com.google.common.collect.ImmutableList;
+import de.charite.compbio.jannovar.pedigree.Disease;
+import de.charite.compbio.jannovar.pedigree.PedFileContents;
+import de.charite.compbio.jannovar.pedigree.PedParseException;
+import de.charite.compbio.jannovar.pedigree.PedPerson;
+import de.charite.compbio.jannovar.pedigree.Pedigree;
+import de.charite.compbio.jannovar.pedigree.Sex;
+import htsjdk.variant.variantcontext.Allele;
+import htsjdk.variant.variantcontext.Genotype;
+import htsjdk.variant.variantcontext.GenotypeBuilder;
+import htsjdk.variant.variantcontext.VariantContext;
+import htsjdk.variant.variantcontext.VariantContextBuilder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class GenotypeMatrixTest {
+
+  private static final Allele REF = Allele.create("A", true);
+  private static final Allele ALT1 = Allele.create("C", false);
+  private static final Allele ALT2 = Allele.create("G", false);
+
+  @Test
+  public void testAutosomal() {
+    final VariantContext ctx =
+        buildContext(
+            "1",
+            100,
+            genotype("S1", false, REF, ALT1),
+            genotype("S2", false, ALT1, ALT1),
+            genotype("S3", false, Allele.NO_CALL, Allele.NO_CALL),
+            genotype("S4", false, REF),
+            genotype("S5", true, ALT1, REF),
+            genotype("S6", false, ALT2, ALT2));
+    final GenotypeMatrix matrix = new GenotypeMatrix(null, "GRCh37");
+    matrix.decode(ctx);
+
+    Assertions.assertEquals(6, matrix.getNumSamples());
+    final List<String> gts1 = new ArrayList<>();
+    final List<String> gts2 = new ArrayList<>();
+    for (int sample : matrix.getSamplesByName()) {
+      gts1.add(matrix.getSampleName(sample) + "=" + matrix.getGenotypeString(sample, 1));
+      gts2.add(matrix.getSampleName(sample) + "=" + matrix.getGenotypeString(sample, 2));
+    }
+    Assertions.assertEquals(
+        Arrays.asList("S1=0/1", "S2=1/1", "S3=./.", "S4=0", "S5=1|0", "S6=0/0"), gts1);
+    Assertions.assertEquals(
+        Arrays.asList("S1=0/0", "S2=0/0", "S3=./.", "S4=0", "S5=0|0", "S6=1/1"), gts2);
+
+    assertCounts(1, 1, 2, 0, 1, matrix.countGenotypes(1));
+    assertCounts(1, 3, 0, 0, 1, matrix.countGenotypes(2));
+    assertCounts(1, 1, 2, 0, 1, GenotypeCounts.buildGenotypeCounts(ctx, 1, null, "GRCh37"));
+  }
+
+  @Test
+  public void testChrXHemizygous() throws PedParseException {
+    final Pedigree pedigree =
+        new Pedigree(
+            new PedFileContents(
+                ImmutableList.of(),
+                ImmutableList.of(
+                    new PedPerson("FAM", "M", "0", "0", Sex.MALE, Disease.UNAFFECTED),
+                    new PedPerson("FAM", "F", "0", "0", Sex.FEMALE, Disease.UNAFFECTED))),
+            "FAM");
+    final GenotypeMatrix matrix = new GenotypeMatrix(pedigree, "GRCh37");
+
+    // Outside of the PARs, homozygous calls of males are counted as hemizygous.
+    matrix.decode(
+        buildContext(
+            "X", 5_000_000, genotype("M", false, ALT1, ALT1), genotype("F", false, ALT1, ALT1)));
+    assertCounts(1, 0, 0, 1, 0, matrix.countGenotypes(1));
+
+    // Inside of PAR1, and for samples in a different order.
+    matrix.decode(
+        buildContext(
+            "X", 100_000, genotype("F", false, REF, REF), genotype("M", false, REF, REF)));
+    assertCounts(0, 2, 0, 0, 0, matrix.countGenotypes(1));
+    Assertions.assertEquals("0/0", matrix.getGenotypeString(0, 1));
+  }
+
+  private static void assertCounts(
+      int numHomAlt, int numHomRef, int numHet, int numHemiAlt, int numHemiRef, GenotypeCounts gc) {
+    Assertions.assertEquals(
+        Arrays.asList(numHomAlt, numHomRef, numHet, numHemiAlt, numHemiRef),
+        Arrays.asList(gc.numHomAlt, gc.numHomRef, gc.numHet, gc.numHemiAlt, gc.numHemiRef));
+  }
+
+  private static Genotype genotype(String sample, boolean phased, Allele... alleles) {
+    return new GenotypeBuilder(sample, Arrays.asList(alleles)).phased(phased).make();
+  }
+
+  private static VariantContext buildContext(String contig, int pos, Genotype... genotypes) {
+    return new VariantContextBuilder()
+        .chr(contig)
+        .start(pos)
+        .stop(pos)
+        .alleles(Arrays.asList(REF, ALT1, ALT2))
+        .genotypes(Arrays.asList(genotypes))
+        .make();
+  }
+}
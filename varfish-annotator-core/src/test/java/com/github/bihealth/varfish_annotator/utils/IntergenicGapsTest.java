@@ -0,0 +1,67 @@
+package com.github.bihealth.varfish_annotator.utils;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class IntergenicGapsTest {
+
+  private IntergenicGaps gaps;
+
+  @BeforeEach
+  void initEach() {
+    // Source 0 has transcripts [1000, 2000) and [5000, 6000), source 1 has [1500, 3000) and
+    // [20000, 21000). With a padding of 100, the runs are [900, 3100), [4900, 6100), and
+    // [19900, 21100).
+    gaps =
+        new IntergenicGaps(
+            100,
+            ImmutableList.of(new int[] {5000, 1000}, new int[] {1500, 20000}),
+            ImmutableList.of(new int[] {6000, 2000}, new int[] {3000, 21000}));
+  }
+
+  @Test
+  public void testFindGap() {
+    Assertions.assertEquals(4, gaps.getNumGaps());
+    Assertions.assertEquals(0, gaps.findGap(0, 900));
+    Assertions.assertEquals(IntergenicGaps.NO_GAP, gaps.findGap(0, 901));
+    Assertions.assertEquals(IntergenicGaps.NO_GAP, gaps.findGap(2000, 2001));
+    Assertions.assertEquals(1, gaps.findGap(3100, 4900));
+    Assertions.assertEquals(IntergenicGaps.NO_GAP, gaps.findGap(3099, 3200));
+    Assertions.assertEquals(IntergenicGaps.NO_GAP, gaps.findGap(4000, 5000));
+    Assertions.assertEquals(2, gaps.findGap(10000, 10001));
+    Assertions.assertEquals(3, gaps.findGap(21100, 30000));
+  }
+
+  @Test
+  public void testNeighbours() {
+    Assertions.assertEquals(Integer.MIN_VALUE, gaps.getLeftEnd(0, 0));
+    Assertions.assertEquals(1000, gaps.getRightBegin(0, 0));
+    Assertions.assertEquals(1500, gaps.getRightBegin(1, 0));
+
+    Assertions.assertEquals(2000, gaps.getLeftEnd(0, 1));
+    Assertions.assertEquals(3000, gaps.getLeftEnd(1, 1));
+    Assertions.assertEquals(5000, gaps.getRightBegin(0, 1));
+    Assertions.assertEquals(20000, gaps.getRightBegin(1, 1));
+
+    Assertions.assertEquals(6000, gaps.getLeftEnd(0, 2));
+    Assertions.assertEquals(3000, gaps.getLeftEnd(1, 2));
+    Assertions.assertEquals(Integer.MAX_VALUE, gaps.getRightBegin(0, 2));
+    Assertions.assertEquals(20000, gaps.getRightBegin(1, 2));
+
+    Assertions.assertEquals(6000, gaps.getLeftEnd(0, 3));
+    Assertions.assertEquals(21000, gaps.getLeftEnd(1, 3));
+    Assertions.assertEquals(Integer.MAX_VALUE, gaps.getRightBegin(1, 3));
+  }
+
+  @Test
+  public void testNoTranscripts() {
+    final IntergenicGaps empty =
+        new IntergenicGaps(100, ImmutableList.of(new int[0]), ImmutableList.of(new int[0]));
+    Assertions.assertEquals(1, empty.getNumGaps());
+    Assertions.assertEquals(0, empty.findGap(0, 1000));
+    Assertions.assertEquals(Integer.MIN_VALUE, empty.getLeftEnd(0, 0));
+    Assertions.assertEquals(Integer.MAX_VALUE, empty.getRightBegin(0, 0));
+  }
+}
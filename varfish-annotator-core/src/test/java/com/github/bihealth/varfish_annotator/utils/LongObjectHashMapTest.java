@@ -0,0 +1,55 @@
+package com.github.bihealth.varfish_annotator.utils;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class LongObjectHashMapTest {
+
+  @Test
+  public void testPutGetRemove() {
+    final LongObjectHashMap<String> map = new LongObjectHashMap<>();
+    Assertions.assertNull(map.put(0L, "zero"));
+    Assertions.assertNull(map.put(42L, "a"));
+    Assertions.assertEquals("a", map.put(42L, "b"));
+    Assertions.assertEquals(2, map.size());
+    Assertions.assertEquals("zero", map.get(0L));
+    Assertions.assertEquals("b", map.get(42L));
+    Assertions.assertNull(map.get(43L));
+    Assertions.assertEquals("b", map.remove(42L));
+    Assertions.assertEquals("zero", map.remove(0L));
+    Assertions.assertTrue(map.isEmpty());
+  }
+
+  @Test
+  public void testAgainstHashMap() {
+    final Random random = new Random(42);
+    final LongObjectHashMap<Long> map = new LongObjectHashMap<>();
+    final Map<Long, Long> expected = new HashMap<>();
+    for (int i = 0; i < 100_000; ++i) {
+      // Small key range to exercise collisions, overwrites and removals.
+      final long key = random.nextInt(5_000) * 1024L;
+      if (random.nextInt(3) == 0) {
+        Assertions.assertEquals(expected.remove(key), map.remove(key));
+      } else {
+        Assertions.assertEquals(expected.put(key, (long) i), map.put(key, (long) i));
+      }
+    }
+    Assertions.assertEquals(expected.size(), map.size());
+    for (long key = 0; key < 5_000 * 1024L; key += 1024L) {
+      Assertions.assertEquals(expected.get(key), map.get(key));
+    }
+  }
+
+  @Test
+  public void testLongHashSet() {
+    final LongHashSet set = new LongHashSet();
+    Assertions.assertTrue(set.add(VariantKey.of("1", 100, "A", "C")));
+    Assertions.assertFalse(set.add(VariantKey.of("chr1", 100, "A", "C")));
+    Assertions.assertTrue(set.contains(VariantKey.of("1", 100, "A", "C")));
+    Assertions.assertFalse(set.contains(VariantKey.of("1", 100, "A", "G")));
+    Assertions.assertEquals(1, set.size());
+  }
+}
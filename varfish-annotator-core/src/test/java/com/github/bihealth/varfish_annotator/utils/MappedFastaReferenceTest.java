@@ -0,0 +1,49 @@
+package com.github.bihealth.varfish_annotator.utils;
+
+import com.github.bihealth.varfish_annotator.VarfishAnnotatorException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class MappedFastaReferenceTest {
+
+  @TempDir public File tmpFolder;
+
+  private String fastaPath;
+
+  @BeforeEach
+  void initEach() throws IOException {
+    final File fasta = new File(tmpFolder, "ref.fa");
+    Files.write(
+        fasta.toPath(),
+        ">1\nACGT\nTGCA\nAA\n>2\nCCCC\nGG\n".getBytes(StandardCharsets.US_ASCII));
+    Files.write(
+        new File(tmpFolder, "ref.fa.fai").toPath(),
+        "1\t10\t3\t4\t5\n2\t6\t19\t4\t5\n".getBytes(StandardCharsets.US_ASCII));
+    fastaPath = fasta.getPath();
+  }
+
+  @Test
+  public void testGetBases() throws VarfishAnnotatorException {
+    final MappedFastaReference reference = new MappedFastaReference(fastaPath);
+    Assertions.assertTrue(reference.hasContig("1"));
+    Assertions.assertFalse(reference.hasContig("3"));
+    Assertions.assertEquals(10, reference.getLength("1"));
+    Assertions.assertEquals("ACGTTGCAAA", reference.getBases("1", 0, 10));
+    Assertions.assertEquals("TTG", reference.getBases("1", 3, 6));
+    Assertions.assertEquals('G', reference.getBase("2", 5));
+    Assertions.assertEquals("CCGG", reference.getBases("2", 2, 6));
+  }
+
+  @Test
+  public void testOutOfRange() throws VarfishAnnotatorException {
+    final MappedFastaReference reference = new MappedFastaReference(fastaPath);
+    Assertions.assertThrows(IllegalArgumentException.class, () -> reference.getBase("1", 10));
+    Assertions.assertThrows(IllegalArgumentException.class, () -> reference.getBase("3", 0));
+  }
+}
@@ -0,0 +1,135 @@
+package com.github.bihealth.varfish_annotator.utils;
+
+import htsjdk.tribble.readers.TabixReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class ParallelBgzfOutputStreamTest {
+
+  @TempDir public File tmpFolder;
+
+  @Test
+  public void testRoundTrip() throws IOException {
+    // Mix of compressible text and random bytes that do not compress.
+    final Random random = new Random(42);
+    final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+    for (int i = 0; i < 20_000; ++i) {
+      expected.write(("line " + i + "\n").getBytes(StandardCharsets.UTF_8));
+    }
+    final byte[] noise = new byte[300_000];
+    random.nextBytes(noise);
+    expected.write(noise);
+
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    final List<Long> positions = new ArrayList<>();
+    try (ParallelBgzfOutputStream bgzf = new ParallelBgzfOutputStream(out, 3)) {
+      final byte[] bytes = expected.toByteArray();
+      for (int off = 0; off < bytes.length; off += 10_000) {
+        positions.add(bgzf.getPosition());
+        bgzf.write(bytes, off, Math.min(10_000, bytes.length - off));
+      }
+      bgzf.write('x');
+      expected.write('x');
+      bgzf.flush();
+      for (long position : positions) {
+        Assertions.assertTrue(bgzf.hasVirtualOffset(position));
+      }
+    }
+    final byte[] compressed = out.toByteArray();
+
+    // Readable by a plain gzip reader.
+    final ByteArrayOutputStream actual = new ByteArrayOutputStream();
+    try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+      final byte[] buf = new byte[4096];
+      int n;
+      while ((n = in.read(buf)) > 0) {
+        actual.write(buf, 0, n);
+      }
+    }
+    Assertions.assertArrayEquals(expected.toByteArray(), actual.toByteArray());
+
+    // Chain of BGZF blocks, ending with the empty EOF block.
+    int offset = 0;
+    int numBlocks = 0;
+    while (offset < compressed.length) {
+      Assertions.assertEquals(0x1f, compressed[offset] & 0xff);
+      Assertions.assertEquals(0x8b, compressed[offset + 1] & 0xff);
+      Assertions.assertEquals('B', compressed[offset + 12]);
+      Assertions.assertEquals('C', compressed[offset + 13]);
+      final int blockSize =
+          (compressed[offset + 16] & 0xff) + ((compressed[offset + 17] & 0xff) << 8) + 1;
+      offset += blockSize;
+      numBlocks += 1;
+    }
+    Assertions.assertEquals(compressed.length, offset);
+    Assertions.assertTrue(numBlocks > 5);
+    Assertions.assertEquals(28, (compressed[compressed.length - 12] & 0xff) + 1);
+  }
+
+  @Test
+  public void testTabixIndex() throws IOException {
+    final File file = new File(tmpFolder, "out.gts.tsv.gz");
+    final StringBuilder expected = new StringBuilder();
+    try (OutputStream out =
+        GzipUtil.maybeBgzfOutputStream(
+            Files.newOutputStream(file.toPath()), file.toString(), 2, true)) {
+      writeLine(out, "release\tchromosome\tstart\tend\tinfo\n", expected);
+      for (String contig : new String[] {"1", "2", "X"}) {
+        for (int pos = 1; pos <= 200_000; pos += 10) {
+          writeLine(out, "GRCh37\t" + contig + "\t" + pos + "\t" + (pos + 1) + "\t.\n", expected);
+        }
+      }
+    }
+    Assertions.assertTrue(new File(file + ".tbi").exists());
+
+    final TabixReader reader = new TabixReader(file.toString());
+    final TabixReader.Iterator it = reader.query("2:150000-150011");
+    Assertions.assertEquals("GRCh37\t2\t150001\t150002\t.", it.next());
+    Assertions.assertEquals("GRCh37\t2\t150011\t150012\t.", it.next());
+    Assertions.assertNull(it.next());
+    reader.close();
+  }
+
+  @Test
+  public void testNoTabixIndexIfUnsorted() throws IOException {
+    final File file = new File(tmpFolder, "out.gts.tsv.gz");
+    final StringBuilder expected = new StringBuilder();
+    try (OutputStream out =
+        GzipUtil.maybeBgzfOutputStream(
+            Files.newOutputStream(file.toPath()), file.toString(), 2, true)) {
+      writeLine(out, "chromosome\tstart\tend\n", expected);
+      writeLine(out, "1\t100\t100\n", expected);
+      writeLine(out, "2\t100\t100\n", expected);
+      writeLine(out, "1\t200\t200\n", expected);
+    }
+    Assertions.assertFalse(new File(file + ".tbi").exists());
+    try (GZIPInputStream in = new GZIPInputStream(Files.newInputStream(file.toPath()))) {
+      final ByteArrayOutputStream actual = new ByteArrayOutputStream();
+      final byte[] buf = new byte[4096];
+      int n;
+      while ((n = in.read(buf)) > 0) {
+        actual.write(buf, 0, n);
+      }
+      Assertions.assertEquals(
+          expected.toString(), new String(actual.toByteArray(), StandardCharsets.UTF_8));
+    }
+  }
+
+  private static void writeLine(OutputStream out, String line, StringBuilder expected)
+      throws IOException {
+    out.write(line.getBytes(StandardCharsets.UTF_8));
+    expected.append(line);
+  }
+}
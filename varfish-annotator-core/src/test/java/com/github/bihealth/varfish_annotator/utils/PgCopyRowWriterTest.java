@@ -0,0 +1,129 @@
+package com.github.bihealth.varfish_annotator.utils;
+
+import com.github.bihealth.varfish_annotator.utils.PgCopyRowWriter.Type;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class PgCopyRowWriterTest {
+
+  @Test
+  public void testWriteRows() throws IOException {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    final PgCopyRowWriter writer =
+        new PgCopyRowWriter(
+            Arrays.asList("i", "f", "b", "t", "j"),
+            Arrays.asList(Type.INT4, Type.FLOAT8, Type.BOOL, Type.TEXT, Type.JSONB),
+            out);
+    writer.writeHeader();
+    writer.add(-42).add("0.5").add("TRUE").add("ä").add("{}").endRow();
+    writer.add(".").add(".").add("FALSE").add(".").add(".").endRow();
+    writer.finish();
+
+    final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+    final DataOutputStream data = new DataOutputStream(expected);
+    data.write("PGCOPY\n\377\r\n\0".getBytes(StandardCharsets.ISO_8859_1));
+    data.writeInt(0);
+    data.writeInt(0);
+    data.writeShort(5);
+    data.writeInt(4);
+    data.writeInt(-42);
+    data.writeInt(8);
+    data.writeDouble(0.5);
+    data.writeInt(1);
+    data.writeByte(1);
+    data.writeInt(2);
+    data.write("ä".getBytes(StandardCharsets.UTF_8));
+    data.writeInt(3);
+    data.writeByte(1);
+    data.write("{}".getBytes(StandardCharsets.UTF_8));
+    data.writeShort(5);
+    data.writeInt(-1);
+    data.writeInt(-1);
+    data.writeInt(1);
+    data.writeByte(0);
+    data.writeInt(-1);
+    data.writeInt(-1);
+    data.writeShort(-1);
+    Assertions.assertArrayEquals(expected.toByteArray(), out.toByteArray());
+  }
+
+  @Test
+  public void testWriteArrayAndUuid() throws IOException {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    final PgCopyRowWriter writer =
+        new PgCopyRowWriter(
+            Arrays.asList("a", "u"), Arrays.asList(Type.VARCHAR_ARRAY, Type.UUID), out);
+    writer.add("{\"x\",\"yz\"}").add("00000000-0000-0001-0000-000000000002").endRow();
+    writer.add("{}").add(".").endRow();
+    writer.flush();
+
+    final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+    final DataOutputStream data = new DataOutputStream(expected);
+    data.writeShort(2);
+    data.writeInt(4 * 5 + 4 + 1 + 4 + 2);
+    data.writeInt(1);
+    data.writeInt(0);
+    data.writeInt(1043);
+    data.writeInt(2);
+    data.writeInt(1);
+    data.writeInt(1);
+    data.writeBytes("x");
+    data.writeInt(2);
+    data.writeBytes("yz");
+    data.writeInt(16);
+    data.writeLong(1);
+    data.writeLong(2);
+    data.writeShort(2);
+    data.writeInt(4 * 3);
+    data.writeInt(0);
+    data.writeInt(0);
+    data.writeInt(1043);
+    data.writeInt(-1);
+    Assertions.assertArrayEquals(expected.toByteArray(), out.toByteArray());
+  }
+
+  @Test
+  public void testInvalidValueDiscardsRow() throws IOException {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    final PgCopyRowWriter writer =
+        new PgCopyRowWriter(Arrays.asList("a", "b"), Arrays.asList(Type.INT4, Type.INT4), out);
+    writer.add(1);
+    Assertions.assertThrows(IllegalArgumentException.class, () -> writer.add("x"));
+    writer.add("2").add(3).endRow();
+    writer.flush();
+
+    final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+    final DataOutputStream data = new DataOutputStream(expected);
+    data.writeShort(2);
+    data.writeInt(4);
+    data.writeInt(2);
+    data.writeInt(4);
+    data.writeInt(3);
+    Assertions.assertArrayEquals(expected.toByteArray(), out.toByteArray());
+  }
+
+  @Test
+  public void testParseArray() {
+    Assertions.assertEquals(Collections.emptyList(), PgCopyRowWriter.parseArray("{}"));
+    Assertions.assertEquals(Arrays.asList("a", "b"), PgCopyRowWriter.parseArray("{a,b}"));
+    Assertions.assertEquals(
+        Arrays.asList("a,b", "c\"d"), PgCopyRowWriter.parseArray("{\"a,b\",\"c\\\"d\"}"));
+    Assertions.assertThrows(IllegalArgumentException.class, () -> PgCopyRowWriter.parseArray("a"));
+  }
+
+  @Test
+  public void testTripleQuotedToJson() {
+    Assertions.assertEquals(
+        "{\"a\":{\"gt\":\"0/1\",\"ft\":[\"x\\\"y\"]}}",
+        StringUtils.tripleQuotedToJson(
+            "{\"\"\"a\"\"\":{\"\"\"gt\"\"\":\"\"\"0/1\"\"\",\"\"\"ft\"\"\":[\"\"\"x\"y\"\"\"]}}"));
+    Assertions.assertThrows(
+        IllegalArgumentException.class, () -> StringUtils.tripleQuotedToJson("\"\"\"a"));
+  }
+}
@@ -0,0 +1,68 @@
+package com.github.bihealth.varfish_annotator.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class ReorderBufferTest {
+
+  @Test
+  public void testTakeInSequenceOrder() throws InterruptedException {
+    final ReorderBuffer<String> buffer = new ReorderBuffer<>(4);
+    buffer.put(2, "c");
+    buffer.put(0, "a");
+    buffer.put(1, "b");
+    buffer.finish(3);
+
+    Assertions.assertEquals("a", buffer.take());
+    Assertions.assertEquals("b", buffer.take());
+    Assertions.assertEquals("c", buffer.take());
+    Assertions.assertNull(buffer.take());
+  }
+
+  @Test
+  public void testConcurrentProducers() throws InterruptedException {
+    final int numItems = 1000;
+    final int numThreads = 4;
+    final ReorderBuffer<Integer> buffer = new ReorderBuffer<>(8);
+    final List<Thread> threads = new ArrayList<>();
+    for (int t = 0; t < numThreads; ++t) {
+      final int offset = t;
+      final Thread thread =
+          new Thread(
+              () -> {
+                try {
+                  // Each producer handles every numThreads-th item in increasing order.
+                  for (int i = offset; i < numItems; i += numThreads) {
+                    buffer.put(i, i);
+                  }
+                } catch (InterruptedException e) {
+                  buffer.abort(e);
+                }
+              });
+      thread.start();
+      threads.add(thread);
+    }
+    buffer.finish(numItems);
+
+    for (int i = 0; i < numItems; ++i) {
+      Assertions.assertEquals(i, buffer.take().intValue());
+    }
+    Assertions.assertNull(buffer.take());
+    for (Thread thread : threads) {
+      thread.join();
+    }
+  }
+
+  @Test
+  public void testAbortWakesUpConsumer() throws InterruptedException {
+    final ReorderBuffer<String> buffer = new ReorderBuffer<>(2);
+    final Thread thread = new Thread(() -> buffer.abort(new RuntimeException("boom")));
+    thread.start();
+
+    Assertions.assertThrows(IllegalStateException.class, buffer::take);
+    thread.join();
+    Assertions.assertEquals("boom", buffer.getFailure().getMessage());
+  }
+}
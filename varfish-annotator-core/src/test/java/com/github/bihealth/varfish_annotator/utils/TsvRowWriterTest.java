@@ -0,0 +1,64 @@
+package com.github.bihealth.varfish_annotator.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class TsvRowWriterTest {
+
+  @Test
+  public void testWriteRows() throws IOException {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    final TsvRowWriter writer = new TsvRowWriter(Arrays.asList("a", "b", "c", "d"), out);
+    writer.writeHeader();
+    writer.add("x").add(0).add(-42).add(Long.MIN_VALUE).endRow();
+    writer.add("ä€").add(Integer.MAX_VALUE).addAll(Arrays.asList("", "y")).endRow();
+    Assertions.assertEquals(0, out.size());
+    writer.flush();
+
+    final String expected =
+        "a\tb\tc\td\n"
+            + "x\t0\t-42\t"
+            + Long.MIN_VALUE
+            + "\n"
+            + "ä€\t"
+            + Integer.MAX_VALUE
+            + "\t\ty\n";
+    Assertions.assertArrayEquals(expected.getBytes(StandardCharsets.UTF_8), out.toByteArray());
+  }
+
+  @Test
+  public void testWrongNumberOfFields() throws IOException {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    final TsvRowWriter writer = new TsvRowWriter(Arrays.asList("a", "b"), out);
+    writer.add("x");
+    Assertions.assertThrows(IllegalStateException.class, writer::endRow);
+    writer.add("x").add("y").endRow();
+    writer.flush();
+    Assertions.assertEquals("x\ty\n", new String(out.toByteArray(), StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void testWriteRenderedRows() throws IOException {
+    final ByteArrayOutputStream inner = new ByteArrayOutputStream();
+    final TsvRowWriter innerWriter = new TsvRowWriter(Arrays.asList("a"), inner);
+    final StringBuilder expected = new StringBuilder();
+    for (int i = 0; i < 100_000; ++i) {
+      innerWriter.add(i).endRow();
+      expected.append(i).append('\n');
+    }
+    innerWriter.flush();
+
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    final TsvRowWriter writer = new TsvRowWriter(Arrays.asList("a"), out);
+    final byte[] bytes = inner.toByteArray();
+    writer.write(bytes, 0, 10);
+    writer.write(bytes, 10, bytes.length - 10);
+    writer.flush();
+    Assertions.assertEquals(
+        expected.toString(), new String(out.toByteArray(), StandardCharsets.UTF_8));
+  }
+}
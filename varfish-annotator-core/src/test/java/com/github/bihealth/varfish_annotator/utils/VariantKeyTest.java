@@ -0,0 +1,67 @@
+package com.github.bihealth.varfish_annotator.utils;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class VariantKeyTest {
+
+  @Test
+  public void testExactRoundTrip() {
+    final long key = VariantKey.of("chrX", 123_456, "ACG", "T");
+    Assertions.assertTrue(VariantKey.isExact(key));
+    Assertions.assertEquals(23, VariantKey.getChromNo(key));
+    Assertions.assertEquals(123_456, VariantKey.getPos(key));
+    Assertions.assertEquals("ACG", VariantKey.getRef(key));
+    Assertions.assertEquals("T", VariantKey.getAlt(key));
+  }
+
+  @Test
+  public void testEmptyAlleles() {
+    final long key = VariantKey.of("1", 100, "", "A");
+    Assertions.assertTrue(VariantKey.isExact(key));
+    Assertions.assertEquals("", VariantKey.getRef(key));
+    Assertions.assertEquals("A", VariantKey.getAlt(key));
+    Assertions.assertNotEquals(key, VariantKey.of("1", 100, "A", ""));
+  }
+
+  @Test
+  public void testChrPrefixIgnored() {
+    Assertions.assertEquals(VariantKey.of("chr22", 1, "A", "C"), VariantKey.of("22", 1, "A", "C"));
+    Assertions.assertEquals(VariantKey.of("chrM", 1, "A", "C"), VariantKey.of("MT", 1, "A", "C"));
+    Assertions.assertEquals(
+        VariantKey.of("chrGL000220.1", 1, "A", "C"), VariantKey.of("GL000220.1", 1, "A", "C"));
+  }
+
+  @Test
+  public void testChromNo() {
+    Assertions.assertEquals(1, VariantKey.getChromNo("1"));
+    Assertions.assertEquals(22, VariantKey.getChromNo("chr22"));
+    Assertions.assertEquals(24, VariantKey.getChromNo("Y"));
+    Assertions.assertEquals(0, VariantKey.getChromNo("23"));
+    Assertions.assertEquals(0, VariantKey.getChromNo("chrUn"));
+  }
+
+  @Test
+  public void testHashedFallback() {
+    final long longAlleles = VariantKey.of("1", 1000, "ACGTACGTACGT", "A");
+    Assertions.assertFalse(VariantKey.isExact(longAlleles));
+    Assertions.assertEquals(1, VariantKey.getChromNo(longAlleles));
+    Assertions.assertEquals(1000, VariantKey.getPos(longAlleles));
+    Assertions.assertThrows(IllegalArgumentException.class, () -> VariantKey.getRef(longAlleles));
+
+    final long otherContig = VariantKey.of("GL000220.1", 1000, "A", "C");
+    Assertions.assertFalse(VariantKey.isExact(otherContig));
+    Assertions.assertEquals(-1, VariantKey.getPos(otherContig));
+
+    Assertions.assertFalse(VariantKey.isExact(VariantKey.of("1", 1000, "N", "A")));
+    Assertions.assertNotEquals(
+        VariantKey.of("1", 1000, "ACGTACGTACGT", "A"),
+        VariantKey.of("1", 1000, "ACGTACGTACG", "TA"));
+  }
+
+  @Test
+  public void testSortsByPosition() {
+    Assertions.assertTrue(VariantKey.of("2", 99, "T", "G") < VariantKey.of("2", 100, "A", "C"));
+    Assertions.assertTrue(VariantKey.of("1", 100, "T", "G") < VariantKey.of("2", 1, "A", "C"));
+  }
+}
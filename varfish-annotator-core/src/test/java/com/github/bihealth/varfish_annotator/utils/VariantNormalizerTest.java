@@ -0,0 +1,70 @@
+package com.github.bihealth.varfish_annotator.utils;
+
+import com.github.bihealth.varfish_annotator.VarfishAnnotatorException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class VariantNormalizerTest {
+
+  @TempDir public File tmpFolder;
+
+  private VariantNormalizer normalizer;
+
+  @BeforeEach
+  void initEach() throws IOException, VarfishAnnotatorException {
+    // 0-based: 0-3 "GCTG", 4-203 "A" * 200, 204-211 "CACACACA", 212-215 "TTGG"
+    final StringBuilder seq = new StringBuilder("GCTG");
+    for (int i = 0; i < 200; ++i) {
+      seq.append('A');
+    }
+    seq.append("CACACACATTGG");
+    final StringBuilder fasta = new StringBuilder(">1\n");
+    for (int i = 0; i < seq.length(); i += 50) {
+      fasta.append(seq, i, Math.min(seq.length(), i + 50)).append('\n');
+    }
+    final File fastaFile = new File(tmpFolder, "ref.fa");
+    Files.write(fastaFile.toPath(), fasta.toString().getBytes(StandardCharsets.US_ASCII));
+    Files.write(
+        new File(tmpFolder, "ref.fa.fai").toPath(),
+        ("1\t" + seq.length() + "\t3\t50\t51\n").getBytes(StandardCharsets.US_ASCII));
+    normalizer = new VariantNormalizer(fastaFile.getPath());
+  }
+
+  @Test
+  public void testSnvUnchanged() {
+    final VariantDescription snv = new VariantDescription("1", 10, "A", "C");
+    Assertions.assertSame(snv, normalizer.normalizeInsertion(snv));
+    Assertions.assertSame(snv, normalizer.normalizeVariant(snv));
+  }
+
+  @Test
+  public void testTrimMnv() {
+    Assertions.assertEquals(
+        new VariantDescription("1", 11, "C", "G"),
+        normalizer.normalizeVariant(new VariantDescription("1", 10, "ACT", "AGT")));
+  }
+
+  @Test
+  public void testShiftDeletionInHomopolymer() {
+    final VariantDescription del = new VariantDescription("1", 202, "AA", "A");
+    Assertions.assertEquals(
+        new VariantDescription("1", 3, "GA", "G"), normalizer.normalizeInsertion(del));
+    Assertions.assertEquals(
+        new VariantDescription("1", 4, "A", ""), normalizer.normalizeVariant(del));
+  }
+
+  @Test
+  public void testShiftInsertionInRepeat() {
+    final VariantDescription ins = new VariantDescription("1", 210, "C", "CAC");
+    Assertions.assertEquals(
+        new VariantDescription("1", 202, "A", "AAC"), normalizer.normalizeInsertion(ins));
+    Assertions.assertEquals(
+        new VariantDescription("1", 203, "", "AC"), normalizer.normalizeVariant(ins));
+  }
+}